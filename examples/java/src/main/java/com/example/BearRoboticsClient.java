@@ -2,8 +2,17 @@ package com.example;
 
 import com.example.auth.BearAuthService;
 import com.example.auth.JwtCredentials;
+import com.example.auth.TenantRegistry;
+import com.example.endpoints.MultiEndpointChannels;
+import com.example.state.FleetStateStore;
+import com.example.streaming.PriorityDispatcher;
+import com.example.streaming.StreamPriority;
 import com.example.streaming.StreamingClient;
 import com.example.streaming.StreamingRpcMethod;
+import com.example.unary.AdaptiveDeadlines;
+import com.example.unary.CircuitBreakerRegistry;
+import com.example.unary.ConcurrencyLimiter;
+import com.example.unary.RobotCommandExecutor;
 import com.example.unary.UnaryClient;
 import com.example.unary.UnaryRpcMethod;
 
@@ -12,11 +21,25 @@ import io.grpc.ManagedChannelBuilder;
 import io.grpc.stub.StreamObserver;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.logging.Logger;
 
+import bearrobotics.api.v1.core.FleetSelector.RobotSelector;
 import bearrobotics.api.v1.services.cloud.APIServiceGrpc;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeOnlineStatusRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeOnlineStatusResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusResponse;
 
 /**
  * Generic client for Bear Robotics Cloud API.
@@ -31,9 +54,45 @@ public class BearRoboticsClient {
     private final JwtCredentials credentials;
     private final AtomicBoolean running = new AtomicBoolean(true);
 
+    // Credentials of additional tenants, sharing the channel and auth HTTP client
+    private final TenantRegistry tenants = new TenantRegistry();
+
+    // Limiter, circuit breakers and deadlines of each tenant, so one tenant's load or failures
+    // never throttle another's calls
+    private final ConcurrentMap<String, TenantCalls> tenantCalls = new ConcurrentHashMap<>();
+
+    // Whether the channel is balanced over several endpoints, so streams can fail over at once
+    private final boolean multiEndpoint;
+
+    // Callback lanes shared by all streams created with a priority
+    private final PriorityDispatcher dispatcher = new PriorityDispatcher();
+
+    // Threads for the blocking unary calls of every limiter below, created only for calls in flight,
+    // so each tenant's limiter does not keep a pool of its own
+    private final ExecutorService unaryCallExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threads = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "BearRoboticsClient-UnaryCall-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    // Adaptive limit shared by all unary clients created from this client
+    private final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder().callExecutor(unaryCallExecutor).build();
+
+    // Per-robot circuit breakers used by unary clients created with a robot ID
+    private final CircuitBreakerRegistry circuitBreakers = new CircuitBreakerRegistry.Builder().build();
+
+    // Per-RPC latency statistics that set deadlines and hedge delays for unary clients that opt in
+    private final AdaptiveDeadlines deadlines = new AdaptiveDeadlines.Builder().build();
+
     // Stub instances
     private final APIServiceGrpc.APIServiceStub asyncStub;
     private final APIServiceGrpc.APIServiceBlockingStub blockingStub;
+    private final APIServiceGrpc.APIServiceFutureStub futureStub;
 
     /**
      * Initialize the gRPC client with TLS and JWT authentication.
@@ -55,20 +114,42 @@ public class BearRoboticsClient {
      * @throws IOException If there's an error initializing authentication
      */
     public BearRoboticsClient(String host, int port, String credentialsPath) throws IOException {
-        // Initialize auth service
-        this.authService = new BearAuthService(credentialsPath);
+        this(ManagedChannelBuilder.forAddress(host, port), false, credentialsPath);
+    }
+
+    /**
+     * Initialize the gRPC client against several equivalent endpoints, e.g. on-prem relays.
+     * Calls are balanced round-robin over the healthy endpoints, endpoints failing far more calls
+     * than the others are ejected for a while, and streams on an endpoint that goes away are reopened
+     * on another one without waiting for the reconnect delay.
+     *
+     * @param endpoints Endpoints as {@code host:port}, or {@code host} for port 443
+     * @param credentialsPath Path to the credentials JSON file
+     * @throws IOException If there's an error initializing authentication
+     */
+    public BearRoboticsClient(List<String> endpoints, String credentialsPath) throws IOException {
+        this(MultiEndpointChannels.forEndpoints(endpoints), true, credentialsPath);
+    }
+
+    private BearRoboticsClient(ManagedChannelBuilder<?> channelBuilder, boolean multiEndpoint, String credentialsPath)
+            throws IOException {
+        this.multiEndpoint = multiEndpoint;
+
+        // Initialize auth service on the resources shared with tenants
+        this.authService = tenants.newAuthService(credentialsPath);
 
         // Create the JWT credentials
         this.credentials = new JwtCredentials(authService);
 
         // Build the channel with TLS and keep-alive options for long-running connections
-        channel = ManagedChannelBuilder.forAddress(host, port)
+        channel = channelBuilder
                 .useTransportSecurity() // Use TLS for secure connection
                 .build();
 
         // Create the stubs with authentication
         asyncStub = APIServiceGrpc.newStub(channel).withCallCredentials(this.credentials);
         blockingStub = APIServiceGrpc.newBlockingStub(channel).withCallCredentials(this.credentials);
+        futureStub = APIServiceGrpc.newFutureStub(channel).withCallCredentials(this.credentials);
 
         logger.info("Bear Robotics gRPC client initialized with TLS and JWT authentication using v1 API");
     }
@@ -91,6 +172,78 @@ public class BearRoboticsClient {
         return blockingStub;
     }
 
+    /**
+     * Get the future stub for making non-blocking unary calls.
+     *
+     * @return The future stub
+     */
+    public APIServiceGrpc.APIServiceFutureStub getFutureStub() {
+        return futureStub;
+    }
+
+    /**
+     * Get an async stub that authenticates as a tenant. Stubs share the client's channel.
+     *
+     * @param tenantId The tenant ID
+     * @return The async stub
+     */
+    public APIServiceGrpc.APIServiceStub getAsyncStub(String tenantId) {
+        return asyncStub.withCallCredentials(tenants.getCredentials(tenantId));
+    }
+
+    /**
+     * Get a blocking stub that authenticates as a tenant. Stubs share the client's channel.
+     *
+     * @param tenantId The tenant ID
+     * @return The blocking stub
+     */
+    public APIServiceGrpc.APIServiceBlockingStub getBlockingStub(String tenantId) {
+        return blockingStub.withCallCredentials(tenants.getCredentials(tenantId));
+    }
+
+    /**
+     * Get a future stub that authenticates as a tenant. Stubs share the client's channel.
+     *
+     * @param tenantId The tenant ID
+     * @return The future stub
+     */
+    public APIServiceGrpc.APIServiceFutureStub getFutureStub(String tenantId) {
+        return futureStub.withCallCredentials(tenants.getCredentials(tenantId));
+    }
+
+    /**
+     * Add a tenant whose calls go over this client's channel with their own credentials.
+     *
+     * @param tenantId ID the tenant is referred to by
+     * @param credentialsPath Path to the tenant's credentials JSON file
+     * @return The tenant's JWT credentials
+     * @throws IOException If the credentials cannot be read or the first token cannot be fetched
+     */
+    public JwtCredentials addTenant(String tenantId, String credentialsPath) throws IOException {
+        JwtCredentials tenantCredentials = tenants.addTenant(tenantId, credentialsPath);
+        tenantCalls.remove(tenantId);
+        return tenantCredentials;
+    }
+
+    /**
+     * Remove a tenant, stopping its token refresh and dropping its call state.
+     *
+     * @param tenantId The tenant ID
+     */
+    public void removeTenant(String tenantId) {
+        tenants.removeTenant(tenantId);
+        tenantCalls.remove(tenantId);
+    }
+
+    /**
+     * Get the registry of tenant credentials.
+     *
+     * @return The tenant registry
+     */
+    public TenantRegistry getTenants() {
+        return tenants;
+    }
+
     /**
      * Get the JWT credentials for error handling.
      *
@@ -108,18 +261,249 @@ public class BearRoboticsClient {
      * @return A StreamingClient builder
      */
     public <TRequest, TResponse> StreamingClient.Builder<TRequest, TResponse> createStreamingClient() {
-        return new StreamingClient.Builder<TRequest, TResponse>().credentials(credentials);
+        return new StreamingClient.Builder<TRequest, TResponse>()
+                .credentials(credentials)
+                .immediateFailover(multiEndpoint);
+    }
+
+    /**
+     * Create a streaming client for a tenant, calling the RPC on a stub that authenticates as the
+     * tenant, e.g. {@code createStreamingClient("acme", stub -> stub::subscribeRobotStatus)}.
+     * Authentication errors refresh that tenant's token.
+     *
+     * @param tenantId The tenant ID
+     * @param rpcMethod Selects the RPC on the tenant's async stub
+     * @param <TRequest> The request type
+     * @param <TResponse> The response type
+     * @return A StreamingClient builder with the RPC set
+     */
+    public <TRequest, TResponse> StreamingClient.Builder<TRequest, TResponse> createStreamingClient(
+            String tenantId, Function<APIServiceGrpc.APIServiceStub, StreamingRpcMethod<TRequest, TResponse>> rpcMethod) {
+        JwtCredentials tenantCredentials = tenants.getCredentials(tenantId);
+        return this.<TRequest, TResponse>createStreamingClient()
+                .credentials(tenantCredentials)
+                .rpcMethod(rpcMethod.apply(asyncStub.withCallCredentials(tenantCredentials)));
+    }
+
+    /**
+     * Create a streaming client whose callbacks run on the lane for a priority class,
+     * so e.g. e-stop callbacks are never queued behind pose updates.
+     *
+     * @param priority The priority class of the stream
+     * @param <TRequest> The request type
+     * @param <TResponse> The response type
+     * @return A StreamingClient builder
+     */
+    public <TRequest, TResponse> StreamingClient.Builder<TRequest, TResponse> createStreamingClient(
+            StreamPriority priority) {
+        return this.<TRequest, TResponse>createStreamingClient().callbackExecutor(dispatcher.lane(priority));
+    }
+
+    /**
+     * Get the dispatcher running prioritized stream callbacks, for its per-lane latency metrics.
+     *
+     * @return The priority dispatcher
+     */
+    public PriorityDispatcher getDispatcher() {
+        return dispatcher;
     }
 
     /**
      * Create a unary client for any unary RPC with retry logic.
+     * Calls share the client's adaptive concurrency limit and, when given a {@code robotId}, fail fast
+     * while that robot's circuit breaker is open. Each attempt has a 30-second deadline unless changed
+     * with {@code deadline(...)}; calls with an explicit {@code rpcName} can instead opt in to
+     * deadlines from that RPC's observed latency with {@code deadlines(client.getDeadlines())};
+     * idempotent reads can then additionally be {@code hedged(true)}. Mark commands that must not be
+     * repeated with {@code idempotent(false)}.
      *
      * @param <TRequest> The request type
      * @param <TResponse> The response type
      * @return A UnaryClient builder
      */
     public <TRequest, TResponse> UnaryClient.Builder<TRequest, TResponse> createUnaryClient() {
-        return new UnaryClient.Builder<TRequest, TResponse>().credentials(credentials);
+        return new UnaryClient.Builder<TRequest, TResponse>()
+                .credentials(credentials)
+                .limiter(limiter)
+                .circuitBreakers(circuitBreakers);
+    }
+
+    /**
+     * Create a unary client for a tenant, calling the RPC on a stub that authenticates as the tenant,
+     * e.g. {@code createUnaryClient("acme", stub -> stub::getRobotStatus)}. Calls use the tenant's own
+     * concurrency limit and circuit breakers, and can opt in to the tenant's deadlines with
+     * {@code deadlines(client.getDeadlines("acme"))}. Authentication errors refresh that tenant's token.
+     *
+     * @param tenantId The tenant ID
+     * @param rpcMethod Selects the RPC on the tenant's blocking stub
+     * @param <TRequest> The request type
+     * @param <TResponse> The response type
+     * @return A UnaryClient builder with the RPC set
+     */
+    public <TRequest, TResponse> UnaryClient.Builder<TRequest, TResponse> createUnaryClient(
+            String tenantId, Function<APIServiceGrpc.APIServiceBlockingStub, UnaryRpcMethod<TRequest, TResponse>> rpcMethod) {
+        JwtCredentials tenantCredentials = tenants.getCredentials(tenantId);
+        TenantCalls calls = tenantCalls(tenantId);
+        return new UnaryClient.Builder<TRequest, TResponse>()
+                .credentials(tenantCredentials)
+                .limiter(calls.limiter)
+                .circuitBreakers(calls.circuitBreakers)
+                .rpcMethod(rpcMethod.apply(blockingStub.withCallCredentials(tenantCredentials)));
+    }
+
+    /**
+     * Get the concurrency limiter shared by unary clients, for its current limit and queue metrics.
+     *
+     * @return The concurrency limiter
+     */
+    public ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Get the adaptive deadlines for unary clients to opt in to with {@code deadlines(...)}, and for
+     * current deadlines and the hedge count.
+     *
+     * @return The adaptive deadlines
+     */
+    public AdaptiveDeadlines getDeadlines() {
+        return deadlines;
+    }
+
+    /**
+     * Get a tenant's concurrency limiter, for its current limit and queue metrics.
+     *
+     * @param tenantId The tenant ID
+     * @return The tenant's concurrency limiter
+     */
+    public ConcurrencyLimiter getLimiter(String tenantId) {
+        return tenantCalls(tenantId).limiter;
+    }
+
+    /**
+     * Get a tenant's adaptive deadlines for its unary clients to opt in to.
+     *
+     * @param tenantId The tenant ID
+     * @return The tenant's adaptive deadlines
+     */
+    public AdaptiveDeadlines getDeadlines(String tenantId) {
+        return tenantCalls(tenantId).deadlines;
+    }
+
+    /**
+     * Get a tenant's per-robot circuit breakers.
+     *
+     * @param tenantId The tenant ID
+     * @return The tenant's circuit breaker registry
+     */
+    public CircuitBreakerRegistry getCircuitBreakers(String tenantId) {
+        return tenantCalls(tenantId).circuitBreakers;
+    }
+
+    private TenantCalls tenantCalls(String tenantId) {
+        // Fails for unknown tenants
+        tenants.getCredentials(tenantId);
+        return tenantCalls.computeIfAbsent(tenantId, id -> new TenantCalls(unaryCallExecutor));
+    }
+
+    /**
+     * Get the per-robot circuit breakers, e.g. to feed them connection states from an existing stream
+     * with {@link CircuitBreakerRegistry#onRobotStatus}.
+     *
+     * @return The circuit breaker registry
+     */
+    public CircuitBreakerRegistry getCircuitBreakers() {
+        return circuitBreakers;
+    }
+
+    /**
+     * Start a {@code SubscribeOnlineStatus} stream that keeps the circuit breakers of the selected
+     * robots in sync with their connection state.
+     *
+     * @param selector The robots to track
+     * @return The started streaming client
+     * @throws InterruptedException If interrupted while starting the stream
+     */
+    public StreamingClient<SubscribeOnlineStatusRequest, SubscribeOnlineStatusResponse> trackOnlineStatus(
+            RobotSelector selector) throws InterruptedException {
+        return startStream(
+                asyncStub::subscribeOnlineStatus,
+                SubscribeOnlineStatusRequest.newBuilder().setSelector(selector).build(),
+                new StreamObserver<SubscribeOnlineStatusResponse>() {
+                    @Override
+                    public void onNext(SubscribeOnlineStatusResponse response) {
+                        circuitBreakers.onOnlineStatus(response);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        logger.warning("Online status stream failed: " + t.getMessage());
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        logger.info("Online status stream completed");
+                    }
+                },
+                "OnlineStatus",
+                StreamPriority.STATUS);
+    }
+
+    /**
+     * Start a {@code SubscribeRobotStatus} stream that keeps a fleet state store up to date.
+     * Events older than the stored state, e.g. replays after a reconnect, are discarded before
+     * they reach the observer.
+     *
+     * @param selector The robots to track
+     * @param store The store, started so its snapshot is loaded
+     * @param observer Observer for accepted events, or null
+     * @return The started streaming client
+     * @throws InterruptedException If interrupted while starting the stream
+     */
+    public StreamingClient<SubscribeRobotStatusRequest, SubscribeRobotStatusResponse> trackFleetState(
+            RobotSelector selector,
+            FleetStateStore store,
+            StreamObserver<SubscribeRobotStatusResponse> observer) throws InterruptedException {
+        return startStream(
+                asyncStub::subscribeRobotStatus,
+                SubscribeRobotStatusRequest.newBuilder().setSelector(selector).build(),
+                new StreamObserver<SubscribeRobotStatusResponse>() {
+                    @Override
+                    public void onNext(SubscribeRobotStatusResponse response) {
+                        if (store.onRobotStatus(response) && observer != null) {
+                            observer.onNext(response);
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        logger.warning("Fleet state stream failed: " + t.getMessage());
+                        if (observer != null) {
+                            observer.onError(t);
+                        }
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        logger.info("Fleet state stream completed");
+                        if (observer != null) {
+                            observer.onCompleted();
+                        }
+                    }
+                },
+                "FleetState",
+                StreamPriority.STATUS);
+    }
+
+    /**
+     * Create a command executor that orders commands per robot. Commands pass through the client's
+     * concurrency limiter and circuit breakers like its unary calls.
+     *
+     * @param maxInFlight Maximum number of unacknowledged commands per robot
+     * @return A RobotCommandExecutor
+     */
+    public RobotCommandExecutor createCommandExecutor(int maxInFlight) {
+        return new RobotCommandExecutor(maxInFlight, credentials, limiter, circuitBreakers, 10_000);
     }
 
     /**
@@ -139,6 +523,28 @@ public class BearRoboticsClient {
             TRequest request,
             StreamObserver<TResponse> observer,
             String streamName) throws InterruptedException {
+        return startStream(rpcMethod, request, observer, streamName, null);
+    }
+
+    /**
+     * Create and start a streaming client whose callbacks run on the lane for a priority class.
+     *
+     * @param rpcMethod The streaming RPC method to call
+     * @param request The request to send
+     * @param observer Stream observer for handling responses, errors, and completion
+     * @param streamName Name of the stream for logging
+     * @param priority The priority class of the stream, or null to run callbacks on the gRPC thread
+     * @param <TRequest> The request type
+     * @param <TResponse> The response type
+     * @return The configured and started streaming client
+     * @throws InterruptedException If interrupted while starting the stream
+     */
+    public <TRequest, TResponse> StreamingClient<TRequest, TResponse> startStream(
+            StreamingRpcMethod<TRequest, TResponse> rpcMethod,
+            TRequest request,
+            StreamObserver<TResponse> observer,
+            String streamName,
+            StreamPriority priority) throws InterruptedException {
 
         StreamingClient<TRequest, TResponse> client = new StreamingClient.Builder<TRequest, TResponse>()
                 .rpcMethod(rpcMethod)
@@ -146,6 +552,8 @@ public class BearRoboticsClient {
                 .observer(observer)
                 .streamName(streamName)
                 .credentials(credentials)
+                .callbackExecutor(priority != null ? dispatcher.lane(priority) : null)
+                .immediateFailover(multiEndpoint)
                 .build();
 
         // Start streaming in a separate thread
@@ -181,12 +589,31 @@ public class BearRoboticsClient {
         // Signal running threads to stop
         running.set(false);
 
-        // Shutdown auth service
+        // Shutdown auth service and the tenants' token refresh
         authService.shutdown();
+        tenants.shutdown();
+        tenantCalls.clear();
+
+        // Run callbacks that are already queued, then stop the dispatch lanes
+        dispatcher.shutdown();
 
         // Shutdown channel
         channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+        unaryCallExecutor.shutdown();
         logger.info("Bear Robotics gRPC client shutdown completed");
     }
+
+    /**
+     * The unary call state of one tenant.
+     */
+    private static final class TenantCalls {
+        private final ConcurrencyLimiter limiter;
+        private final CircuitBreakerRegistry circuitBreakers = new CircuitBreakerRegistry.Builder().build();
+        private final AdaptiveDeadlines deadlines = new AdaptiveDeadlines.Builder().build();
+
+        TenantCalls(Executor callExecutor) {
+            this.limiter = new ConcurrencyLimiter.Builder().callExecutor(callExecutor).build();
+        }
+    }
 }
 
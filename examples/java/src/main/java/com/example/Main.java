@@ -231,6 +231,7 @@ public class Main {
                 .rpcMethod(req -> client.getBlockingStub().createMission(req))
                 .request(request)
                 .rpcName("CreateMission")
+                .idempotent(false)
                 .maxRetries(5)
                 .retryDelay(2000)
                 .build();
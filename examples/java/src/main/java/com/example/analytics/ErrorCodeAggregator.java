@@ -0,0 +1,564 @@
+package com.example.analytics;
+
+import com.example.BearRoboticsClient;
+import com.example.metrics.CountMinSketch;
+import com.example.metrics.SpaceSaving;
+import com.example.streaming.StreamPriority;
+import com.example.streaming.StreamingClient;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import bearrobotics.api.v1.core.Errors.ErrorCode;
+import bearrobotics.api.v1.core.Errors.ErrorCodesWithMetadata;
+import bearrobotics.api.v1.core.FleetSelector.RobotSelector;
+import bearrobotics.api.v1.core.Metadata.EventMetadata;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeErrorCodesRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeErrorCodesResponse;
+
+/**
+ * Fleet-wide error code counts, hot codes and threshold alerts over time windows, in bounded memory.
+ *
+ * {@code SubscribeErrorCodes} re-lists a robot's active codes on every event, so a code is counted
+ * once each time it appears on a robot, not on every report. Counts are kept in a ring of
+ * sub-windows, each holding a {@link CountMinSketch} of per-code counts, a {@link SpaceSaving} summary
+ * of its most frequent codes and exact per-severity counts. The sliding window is the whole ring; the
+ * tumbling window is the last completed sub-window. Hot codes are the union of the sub-windows'
+ * summaries, ranked by their sliding counts. Memory depends only on the sketch and summary sizes, not
+ * on how many distinct codes occur.
+ *
+ * An alert is raised when a code's sliding count, or a severity's, reaches its threshold, and not
+ * again for the same code or severity until its count has dropped below the threshold. Per robot, the
+ * first and last time each code was seen is kept for the most recently seen codes.
+ *
+ * Windows follow event timestamps: queries are answered as of the latest event seen. A timestamp
+ * ahead of the local receive time is clamped to it, so a robot whose clock runs ahead cannot slide the
+ * window past every other robot's events.
+ */
+public class ErrorCodeAggregator {
+    private static final Logger logger = Logger.getLogger(ErrorCodeAggregator.class.getName());
+
+    private static final int SEVERITIES = ErrorCode.Severity.values().length;
+    private static final long UNSET = Long.MIN_VALUE;
+
+    private final long windowMs;
+    private final long slotMs;
+    private final int topCapacity;
+    private final int maxCodesPerRobot;
+    private final long codeThreshold;
+    private final Map<ErrorCode.Severity, Long> severityThresholds;
+    private final Consumer<ErrorCodeAlert> alertListener;
+
+    // Guarded by this
+    private final Slot[] slots;
+    private final Map<String, RobotErrors> robots = new HashMap<>();
+    private final Map<Integer, String> messages;
+    private final Set<Integer> alertedCodes = new HashSet<>();
+    private final Set<ErrorCode.Severity> alertedSeverities = new HashSet<>();
+    private long newestIndex = UNSET;
+    private long raised;
+    private long alerts;
+
+    private ErrorCodeAggregator(Builder builder) {
+        this.windowMs = builder.windowMs;
+        this.slotMs = builder.windowMs / builder.subWindows;
+        this.topCapacity = builder.topCapacity;
+        this.maxCodesPerRobot = builder.maxCodesPerRobot;
+        this.codeThreshold = builder.codeThreshold;
+        this.severityThresholds = new EnumMap<>(builder.severityThresholds);
+        this.alertListener = builder.alertListener;
+        this.slots = new Slot[builder.subWindows];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(builder.sketchWidth, builder.sketchDepth, builder.topCapacity);
+        }
+        int maxMessages = builder.topCapacity * 4;
+        this.messages = new LinkedHashMap<Integer, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                return size() > maxMessages;
+            }
+        };
+    }
+
+    /**
+     * Starts {@code SubscribeErrorCodes} for a selector and feeds it into the aggregator.
+     *
+     * @param client The client
+     * @param selector The robots to aggregate error codes of
+     * @return The started streaming client
+     * @throws InterruptedException If interrupted while starting the stream
+     */
+    public StreamingClient<SubscribeErrorCodesRequest, SubscribeErrorCodesResponse> attach(
+            BearRoboticsClient client, RobotSelector selector) throws InterruptedException {
+        return client.startStream(client.getAsyncStub()::subscribeErrorCodes,
+                SubscribeErrorCodesRequest.newBuilder().setSelector(selector).build(),
+                observer(), "ErrorCodeAggregator", StreamPriority.STATUS);
+    }
+
+    /**
+     * Creates an observer for {@code SubscribeErrorCodes}.
+     *
+     * @return The observer
+     */
+    public StreamObserver<SubscribeErrorCodesResponse> observer() {
+        return new StreamObserver<SubscribeErrorCodesResponse>() {
+            @Override
+            public void onNext(SubscribeErrorCodesResponse response) {
+                onErrorCodes(response);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                logger.warning("Error code stream for aggregation failed: " + t.getMessage());
+            }
+
+            @Override
+            public void onCompleted() {
+                logger.info("Error code stream for aggregation completed");
+            }
+        };
+    }
+
+    /**
+     * Counts the codes of an error codes event that are new on their robot.
+     *
+     * @param response The event
+     */
+    public void onErrorCodes(SubscribeErrorCodesResponse response) {
+        for (Map.Entry<String, ErrorCodesWithMetadata> entry : response.getErrorCodesMap().entrySet()) {
+            onErrorCodes(entry.getKey(), entry.getValue().getCodesList(), entry.getValue().getMetadata());
+        }
+    }
+
+    /**
+     * Counts the codes of one robot that were not active in its previous event.
+     *
+     * @param robotId The robot ID
+     * @param codes The robot's active codes
+     * @param metadata The event metadata
+     */
+    public void onErrorCodes(String robotId, List<ErrorCode> codes, EventMetadata metadata) {
+        onErrorCodes(robotId, codes, metadata, System.currentTimeMillis());
+    }
+
+    /**
+     * Counts the codes of one robot that were not active in its previous event, received at a point in time.
+     *
+     * @param robotId The robot ID
+     * @param codes The robot's active codes
+     * @param metadata The event metadata
+     * @param receivedMs When the event was received, on the local clock; later event timestamps are clamped to it
+     */
+    public void onErrorCodes(String robotId, List<ErrorCode> codes, EventMetadata metadata, long receivedMs) {
+        long eventMs = metadata.getTimestamp().getSeconds() * 1000 + metadata.getTimestamp().getNanos() / 1_000_000;
+        long timeMs = Math.min(eventMs, receivedMs);
+        List<ErrorCodeAlert> fired = new ArrayList<>();
+        synchronized (this) {
+            Slot slot = slotFor(timeMs);
+            RobotErrors robot = robots.computeIfAbsent(robotId, id -> new RobotErrors());
+            Set<Integer> active = new HashSet<>();
+            for (ErrorCode error : codes) {
+                int code = error.getCode();
+                if (!active.add(code)) {
+                    continue;
+                }
+                long[] seen = robot.seen.get(code);
+                if (seen == null) {
+                    robot.seen.put(code, new long[] {timeMs, timeMs});
+                } else {
+                    seen[1] = Math.max(seen[1], timeMs);
+                }
+                if (robot.active.contains(code) || slot == null) {
+                    continue;
+                }
+                raised++;
+                messages.put(code, error.getMessage());
+                slot.codes.add(code, 1);
+                slot.top.add(code, 1);
+                slot.severities[severityIndex(error.getSeverity())]++;
+                checkThresholds(robotId, error, timeMs, fired);
+            }
+            robot.active = active;
+        }
+        // Notify outside the lock
+        for (ErrorCodeAlert alert : fired) {
+            try {
+                alertListener.accept(alert);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Error code alert listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Estimates how many times a code was raised within the sliding window.
+     *
+     * @param code The error code
+     * @return The estimate, never below the true count
+     */
+    public synchronized long getCount(int code) {
+        long count = 0;
+        for (Slot slot : slots) {
+            if (inWindow(slot)) {
+                count += slot.codes.estimate(code);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Estimates how many times a code was raised within the last completed tumbling window.
+     *
+     * @param code The error code
+     * @return The estimate, never below the true count
+     */
+    public synchronized long getTumblingCount(int code) {
+        Slot slot = completedSlot();
+        return slot == null ? 0 : slot.codes.estimate(code);
+    }
+
+    /**
+     * Counts the errors of a severity raised within the sliding window.
+     *
+     * @param severity The severity
+     * @return The count
+     */
+    public synchronized long getSeverityCount(ErrorCode.Severity severity) {
+        long count = 0;
+        for (Slot slot : slots) {
+            if (inWindow(slot)) {
+                count += slot.severities[severityIndex(severity)];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the errors of a severity raised within the last completed tumbling window.
+     *
+     * @param severity The severity
+     * @return The count
+     */
+    public synchronized long getTumblingSeverityCount(ErrorCode.Severity severity) {
+        Slot slot = completedSlot();
+        return slot == null ? 0 : slot.severities[severityIndex(severity)];
+    }
+
+    /**
+     * Gets the most frequently raised codes within the sliding window.
+     *
+     * @param limit Maximum number of codes, at most the configured top-K capacity
+     * @return The codes, most frequent first
+     * @throws IllegalArgumentException If limit is negative
+     */
+    public synchronized List<HotCode> getTopCodes(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        Set<Integer> candidates = new HashSet<>();
+        for (Slot slot : slots) {
+            if (inWindow(slot)) {
+                for (SpaceSaving.Entry entry : slot.top.top(topCapacity)) {
+                    candidates.add((int) entry.getKey());
+                }
+            }
+        }
+        List<HotCode> hot = new ArrayList<>(candidates.size());
+        for (int code : candidates) {
+            hot.add(new HotCode(code, getCount(code), messages.get(code)));
+        }
+        hot.sort((a, b) -> Long.compare(b.count, a.count));
+        return hot.size() > limit ? new ArrayList<>(hot.subList(0, limit)) : hot;
+    }
+
+    /**
+     * Gets when a robot first reported a code, among its most recently seen codes.
+     *
+     * @param robotId The robot ID
+     * @param code The error code
+     * @return The timestamp, or -1 if not known
+     */
+    public synchronized long getFirstSeenMs(String robotId, int code) {
+        RobotErrors robot = robots.get(robotId);
+        long[] seen = robot == null ? null : robot.seen.get(code);
+        return seen == null ? -1 : seen[0];
+    }
+
+    /**
+     * Gets when a robot last reported a code, among its most recently seen codes.
+     *
+     * @param robotId The robot ID
+     * @param code The error code
+     * @return The timestamp, or -1 if not known
+     */
+    public synchronized long getLastSeenMs(String robotId, int code) {
+        RobotErrors robot = robots.get(robotId);
+        long[] seen = robot == null ? null : robot.seen.get(code);
+        return seen == null ? -1 : seen[1];
+    }
+
+    /**
+     * Gets the codes active on a robot as of its latest event.
+     *
+     * @param robotId The robot ID
+     * @return The codes
+     */
+    public synchronized Set<Integer> getActiveCodes(String robotId) {
+        RobotErrors robot = robots.get(robotId);
+        return robot == null ? Set.of() : Set.copyOf(robot.active);
+    }
+
+    /**
+     * Gets the number of codes counted, i.e. raised on a robot.
+     *
+     * @return The raised count
+     */
+    public synchronized long getRaisedCount() {
+        return raised;
+    }
+
+    /**
+     * Gets the number of alerts raised.
+     *
+     * @return The alert count
+     */
+    public synchronized long getAlertCount() {
+        return alerts;
+    }
+
+    /**
+     * Returns the slot for a timestamp, starting a new sub-window if the timestamp is past the newest
+     * one. Must hold the lock.
+     *
+     * @param timeMs The timestamp
+     * @return The slot, or null if the timestamp is older than the window
+     */
+    private Slot slotFor(long timeMs) {
+        long index = Math.floorDiv(timeMs, slotMs);
+        if (newestIndex != UNSET && index <= newestIndex - slots.length) {
+            return null;
+        }
+        Slot slot = slots[(int) Math.floorMod(index, (long) slots.length)];
+        if (slot.index != index) {
+            slot.clear(index);
+        }
+        if (newestIndex == UNSET || index > newestIndex) {
+            newestIndex = index;
+            rearm();
+        }
+        return slot;
+    }
+
+    /**
+     * Re-arms alerts whose counts dropped below their thresholds. Must hold the lock.
+     */
+    private void rearm() {
+        Iterator<Integer> codes = alertedCodes.iterator();
+        while (codes.hasNext()) {
+            if (getCount(codes.next()) < codeThreshold) {
+                codes.remove();
+            }
+        }
+        alertedSeverities.removeIf(severity -> getSeverityCount(severity) < severityThresholds.get(severity));
+    }
+
+    /**
+     * Raises the alerts an error tips over their thresholds. Must hold the lock.
+     */
+    private void checkThresholds(String robotId, ErrorCode error, long timeMs, List<ErrorCodeAlert> fired) {
+        if (codeThreshold > 0 && !alertedCodes.contains(error.getCode())) {
+            long count = getCount(error.getCode());
+            if (count >= codeThreshold) {
+                alertedCodes.add(error.getCode());
+                alerts++;
+                fired.add(new ErrorCodeAlert(ErrorCodeAlert.Kind.CODE, error.getCode(), error.getSeverity(),
+                        error.getMessage(), robotId, count, codeThreshold, windowMs, timeMs));
+            }
+        }
+        Long severityThreshold = severityThresholds.get(error.getSeverity());
+        if (severityThreshold != null && !alertedSeverities.contains(error.getSeverity())) {
+            long count = getSeverityCount(error.getSeverity());
+            if (count >= severityThreshold) {
+                alertedSeverities.add(error.getSeverity());
+                alerts++;
+                fired.add(new ErrorCodeAlert(ErrorCodeAlert.Kind.SEVERITY, error.getCode(), error.getSeverity(),
+                        error.getMessage(), robotId, count, severityThreshold, windowMs, timeMs));
+            }
+        }
+    }
+
+    // Must hold the lock
+    private boolean inWindow(Slot slot) {
+        return newestIndex != UNSET && slot.index != UNSET && slot.index > newestIndex - slots.length;
+    }
+
+    // Must hold the lock
+    private Slot completedSlot() {
+        if (newestIndex == UNSET) {
+            return null;
+        }
+        Slot slot = slots[(int) Math.floorMod(newestIndex - 1, (long) slots.length)];
+        return slot.index == newestIndex - 1 ? slot : null;
+    }
+
+    private static int severityIndex(ErrorCode.Severity severity) {
+        return severity == ErrorCode.Severity.UNRECOGNIZED ? 0 : severity.getNumber();
+    }
+
+    /**
+     * A frequently raised error code.
+     */
+    public static class HotCode {
+        private final int code;
+        private final long count;
+        private final String message;
+
+        HotCode(int code, long count, String message) {
+            this.code = code;
+            this.count = count;
+            this.message = message;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        /**
+         * @return Estimated count within the sliding window
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return The latest message reported with the code, or null if no longer kept
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return code + "x" + count;
+        }
+    }
+
+    /**
+     * Counts of one sub-window.
+     */
+    private static class Slot {
+        private final CountMinSketch codes;
+        private final SpaceSaving top;
+        private final long[] severities = new long[SEVERITIES];
+        private long index = UNSET;
+
+        Slot(int sketchWidth, int sketchDepth, int topCapacity) {
+            this.codes = new CountMinSketch(sketchWidth, sketchDepth);
+            this.top = new SpaceSaving(topCapacity);
+        }
+
+        void clear(long index) {
+            codes.clear();
+            top.clear();
+            Arrays.fill(severities, 0);
+            this.index = index;
+        }
+    }
+
+    /**
+     * Active codes and first/last seen times of one robot.
+     */
+    private final class RobotErrors {
+        private Set<Integer> active = new HashSet<>();
+        private final Map<Integer, long[]> seen = new LinkedHashMap<Integer, long[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, long[]> eldest) {
+                return size() > maxCodesPerRobot;
+            }
+        };
+    }
+
+    public static class Builder {
+        private long windowMs = TimeUnit.MINUTES.toMillis(10);
+        private int subWindows = 10;
+        private int sketchWidth = 2048;
+        private int sketchDepth = 4;
+        private int topCapacity = 64;
+        private int maxCodesPerRobot = 64;
+        private long codeThreshold;
+        private final Map<ErrorCode.Severity, Long> severityThresholds = new EnumMap<>(ErrorCode.Severity.class);
+        private Consumer<ErrorCodeAlert> alertListener = alert -> logger.warning(alert.toString());
+
+        /**
+         * Sets the sliding window and the number of tumbling sub-windows it is made of.
+         */
+        public Builder window(long windowMs, int subWindows) {
+            this.windowMs = windowMs;
+            this.subWindows = subWindows;
+            return this;
+        }
+
+        public Builder sketch(int width, int depth) {
+            this.sketchWidth = width;
+            this.sketchDepth = depth;
+            return this;
+        }
+
+        public Builder topCapacity(int topCapacity) {
+            this.topCapacity = topCapacity;
+            return this;
+        }
+
+        public Builder maxCodesPerRobot(int maxCodesPerRobot) {
+            this.maxCodesPerRobot = maxCodesPerRobot;
+            return this;
+        }
+
+        /**
+         * Alerts when any single code is raised this many times within the sliding window.
+         */
+        public Builder codeThreshold(long threshold) {
+            this.codeThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Alerts when errors of a severity are raised this many times within the sliding window.
+         */
+        public Builder severityThreshold(ErrorCode.Severity severity, long threshold) {
+            this.severityThresholds.put(severity, threshold);
+            return this;
+        }
+
+        public Builder onAlert(Consumer<ErrorCodeAlert> alertListener) {
+            this.alertListener = alertListener;
+            return this;
+        }
+
+        public ErrorCodeAggregator build() {
+            if (subWindows < 1 || windowMs < subWindows) {
+                throw new IllegalArgumentException("windowMs must be at least subWindows, which must be at least 1");
+            }
+            if (topCapacity < 1 || maxCodesPerRobot < 1) {
+                throw new IllegalArgumentException("topCapacity and maxCodesPerRobot must be at least 1");
+            }
+            if (alertListener == null) {
+                throw new IllegalArgumentException("alertListener is required");
+            }
+            return new ErrorCodeAggregator(this);
+        }
+    }
+}
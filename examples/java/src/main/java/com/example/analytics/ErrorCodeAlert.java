@@ -0,0 +1,97 @@
+package com.example.analytics;
+
+import bearrobotics.api.v1.core.Errors.ErrorCode;
+
+/**
+ * Raised by {@link ErrorCodeAggregator} when an error code or severity crosses its threshold.
+ */
+public class ErrorCodeAlert {
+    /**
+     * What crossed the threshold.
+     */
+    public enum Kind {
+        CODE,
+        SEVERITY
+    }
+
+    private final Kind kind;
+    private final int code;
+    private final ErrorCode.Severity severity;
+    private final String message;
+    private final String robotId;
+    private final long count;
+    private final long threshold;
+    private final long windowMs;
+    private final long timeMs;
+
+    ErrorCodeAlert(Kind kind, int code, ErrorCode.Severity severity, String message, String robotId,
+                   long count, long threshold, long windowMs, long timeMs) {
+        this.kind = kind;
+        this.code = code;
+        this.severity = severity;
+        this.message = message;
+        this.robotId = robotId;
+        this.count = count;
+        this.threshold = threshold;
+        this.windowMs = windowMs;
+        this.timeMs = timeMs;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return The error code that crossed the threshold, or the code that tipped a severity over it
+     */
+    public int getCode() {
+        return code;
+    }
+
+    public ErrorCode.Severity getSeverity() {
+        return severity;
+    }
+
+    /**
+     * @return Message of the error that tipped the count over the threshold
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return The robot that raised the error tipping the count over the threshold
+     */
+    public String getRobotId() {
+        return robotId;
+    }
+
+    /**
+     * @return Estimated count within the window
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getThreshold() {
+        return threshold;
+    }
+
+    public long getWindowMs() {
+        return windowMs;
+    }
+
+    /**
+     * @return Timestamp of the event that tipped the count over the threshold
+     */
+    public long getTimeMs() {
+        return timeMs;
+    }
+
+    @Override
+    public String toString() {
+        return "ErrorCodeAlert{" + kind + (kind == Kind.CODE ? " " + code : " " + severity)
+                + " raised " + count + " times in " + windowMs + "ms (threshold " + threshold + "), last on "
+                + robotId + ": " + message + "}";
+    }
+}
@@ -0,0 +1,454 @@
+package com.example.analytics;
+
+import com.example.BearRoboticsClient;
+import com.example.metrics.WindowedCounter;
+import com.example.metrics.WindowedHistogram;
+import com.example.streaming.StreamPriority;
+import com.example.streaming.StreamingClient;
+import io.grpc.stub.StreamObserver;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import bearrobotics.api.v1.core.FleetSelector.RobotSelector;
+import bearrobotics.api.v1.core.MissionStatus.MissionState;
+import bearrobotics.api.v1.core.MissionStatus.MissionType;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeMissionStatusRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeMissionStatusResponse;
+
+/**
+ * Live mission KPIs computed incrementally from {@code SubscribeMissionStatus}.
+ *
+ * Each mission is followed through its states and goal index changes as events arrive, and when a
+ * mission starts, moves to its next goal or ends, the elapsed times are recorded into sliding-window
+ * histograms for the fleet, the robot's location, the robot and the mission type. KPIs are read from
+ * those aggregates at any time without touching past events:
+ * <ul>
+ *   <li>started, succeeded, failed and canceled counts, and the failure rate</li>
+ *   <li>mission duration, from first {@code STATE_RUNNING} to the end state</li>
+ *   <li>goal dwell time, between {@code current_goal_index} changes while the mission is active</li>
+ *   <li>queueing delay, from the mission first appearing on the robot to first running</li>
+ *   <li>total paused time per mission</li>
+ * </ul>
+ *
+ * Memory is bounded: each aggregate is a fixed ring of sub-window histograms, aggregates idle for a
+ * whole window are dropped, and missions are forgotten once they leave the robot's mission list or go
+ * unreported for the mission age limit. An aggregate holds up to four histograms of about 4 KB per
+ * sub-window, allocated as values land in them, so about 190 KB with the default 12 sub-windows. There
+ * is one aggregate for the fleet and for each location, mission type and robot active within the window,
+ * so per-robot aggregates dominate: budget about 190 KB per active robot, or use fewer sub-windows.
+ *
+ * Missions already running when the robot is first seen count toward outcomes but not toward times,
+ * which would otherwise be cut short. Times are event timestamps, on the robots' clock, and so is
+ * expiry: missions and idle aggregates are swept as events arrive, and a caller whose fleet may go
+ * quiet should also call {@link #sweep} periodically.
+ */
+public class MissionAnalytics {
+    private static final Logger logger = Logger.getLogger(MissionAnalytics.class.getName());
+
+    /** Fleet-wide KPIs are kept under this key of {@link Dimension#FLEET}. */
+    public static final String FLEET = "fleet";
+
+    /**
+     * Ways KPIs are grouped.
+     */
+    public enum Dimension {
+        FLEET,
+        LOCATION,
+        ROBOT,
+        MISSION_TYPE
+    }
+
+    private static final long UNSET = Long.MIN_VALUE;
+
+    private final long windowMs;
+    private final int subWindows;
+    private final long maxMissionAgeMs;
+
+    private final Map<Dimension, ConcurrentMap<String, Aggregate>> aggregates = new HashMap<>();
+    private final ConcurrentMap<String, String> locations = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private final Map<String, Map<String, MissionTracker>> missions = new HashMap<>();
+    private long lastSweepMs = UNSET;
+
+    /**
+     * Creates analytics over a one hour window sliding in 5 minute steps, forgetting missions after a day.
+     */
+    public MissionAnalytics() {
+        this(TimeUnit.HOURS.toMillis(1), 12, TimeUnit.DAYS.toMillis(1));
+    }
+
+    /**
+     * Creates analytics.
+     *
+     * @param windowMs Length of the KPI window
+     * @param subWindows Number of steps the window slides in
+     * @param maxMissionAgeMs How long a mission is followed without being reported
+     */
+    public MissionAnalytics(long windowMs, int subWindows, long maxMissionAgeMs) {
+        if (subWindows < 1 || windowMs < subWindows) {
+            throw new IllegalArgumentException("windowMs must be at least subWindows, which must be at least 1");
+        }
+        this.windowMs = windowMs;
+        this.subWindows = subWindows;
+        this.maxMissionAgeMs = maxMissionAgeMs;
+        for (Dimension dimension : Dimension.values()) {
+            aggregates.put(dimension, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Starts {@code SubscribeMissionStatus} for a selector and feeds it into the analytics.
+     *
+     * @param client The client
+     * @param selector The robots to compute KPIs for
+     * @return The started streaming client
+     * @throws InterruptedException If interrupted while starting the stream
+     */
+    public StreamingClient<SubscribeMissionStatusRequest, SubscribeMissionStatusResponse> attach(
+            BearRoboticsClient client, RobotSelector selector) throws InterruptedException {
+        return client.startStream(client.getAsyncStub()::subscribeMissionStatus,
+                SubscribeMissionStatusRequest.newBuilder().setSelector(selector).build(),
+                observer(), "MissionAnalytics", StreamPriority.STATUS);
+    }
+
+    /**
+     * Creates an observer for {@code SubscribeMissionStatus}.
+     *
+     * @return The observer
+     */
+    public StreamObserver<SubscribeMissionStatusResponse> observer() {
+        return new StreamObserver<SubscribeMissionStatusResponse>() {
+            @Override
+            public void onNext(SubscribeMissionStatusResponse response) {
+                onMissionStatus(response);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                logger.warning("Mission status stream for analytics failed: " + t.getMessage());
+            }
+
+            @Override
+            public void onCompleted() {
+                logger.info("Mission status stream for analytics completed");
+            }
+        };
+    }
+
+    /**
+     * Sets the location a robot's KPIs are grouped under, e.g. from {@code ListRobotIDs}.
+     *
+     * @param robotId The robot ID
+     * @param locationId The location ID
+     */
+    public void setLocation(String robotId, String locationId) {
+        locations.put(robotId, locationId);
+    }
+
+    /**
+     * Follows the missions of a mission status event.
+     *
+     * @param response The event
+     */
+    public synchronized void onMissionStatus(SubscribeMissionStatusResponse response) {
+        String robotId = response.getRobotId();
+        long timeMs = response.getMetadata().getTimestamp().getSeconds() * 1000
+                + response.getMetadata().getTimestamp().getNanos() / 1_000_000;
+        List<MissionState> states = response.hasMissionStates()
+                ? response.getMissionStates().getMissionsList()
+                : List.of(response.getMissionState());
+        boolean firstEvent = !missions.containsKey(robotId);
+        Map<String, MissionTracker> robotMissions = missions.computeIfAbsent(robotId, id -> new HashMap<>());
+        Set<String> listed = new HashSet<>();
+        for (MissionState state : states) {
+            if (state.getMissionId().isEmpty()) {
+                continue;
+            }
+            listed.add(state.getMissionId());
+            MissionTracker tracker = robotMissions.get(state.getMissionId());
+            if (tracker == null) {
+                tracker = new MissionTracker(typeOf(state.getMissionType()), timeMs, firstEvent);
+                // A mission first seen in an end state ended before it could be followed
+                tracker.ended = isEnd(state.getState());
+                robotMissions.put(state.getMissionId(), tracker);
+            }
+            tracker.lastSeenMs = timeMs;
+            advance(robotId, tracker, state, timeMs);
+        }
+        if (response.hasMissionStates()) {
+            robotMissions.keySet().retainAll(listed);
+        }
+        maybeSweep(timeMs);
+    }
+
+    /**
+     * Gets the fleet-wide KPIs over the window ending now.
+     *
+     * @return The KPIs
+     */
+    public MissionKpis getFleetKpis() {
+        return getKpis(Dimension.FLEET, FLEET);
+    }
+
+    /**
+     * Gets the KPIs of one group over the window ending now.
+     *
+     * @param dimension How the group is keyed
+     * @param key Location ID, robot ID, mission type name such as {@code SERVI_TYPE_SERVING}, or {@link #FLEET}
+     * @return The KPIs, empty if nothing was recorded for the group within the window
+     */
+    public MissionKpis getKpis(Dimension dimension, String key) {
+        return getKpis(dimension, key, System.currentTimeMillis());
+    }
+
+    /**
+     * Gets the KPIs of one group over the window ending at a point in time.
+     *
+     * @param dimension How the group is keyed
+     * @param key The group key
+     * @param nowMs End of the window
+     * @return The KPIs
+     */
+    public MissionKpis getKpis(Dimension dimension, String key, long nowMs) {
+        Aggregate aggregate = aggregates.get(dimension).get(key);
+        if (aggregate == null) {
+            aggregate = new Aggregate();
+        }
+        return aggregate.snapshot(nowMs);
+    }
+
+    /**
+     * Gets the groups of a dimension with KPIs.
+     *
+     * @param dimension The dimension
+     * @return The group keys
+     */
+    public Set<String> getKeys(Dimension dimension) {
+        return Set.copyOf(aggregates.get(dimension).keySet());
+    }
+
+    /**
+     * Gets the number of missions being followed, ended ones still listed by their robot included.
+     *
+     * @return The mission count
+     */
+    public synchronized int getTrackedMissionCount() {
+        int count = 0;
+        for (Map<String, MissionTracker> robotMissions : missions.values()) {
+            count += robotMissions.size();
+        }
+        return count;
+    }
+
+    /**
+     * Applies a mission's latest state to its tracker and records the times of any transitions.
+     */
+    // Must hold the lock
+    private void advance(String robotId, MissionTracker tracker, MissionState state, long timeMs) {
+        MissionState.State current = state.getState();
+        if (tracker.ended || current == tracker.state) {
+            if (!tracker.ended && current == MissionState.State.STATE_RUNNING) {
+                changeGoal(robotId, tracker, state.getCurrentGoalIndex(), timeMs);
+            }
+            return;
+        }
+        MissionState.State previous = tracker.state;
+        tracker.state = current;
+        if (previous == MissionState.State.STATE_PAUSED && tracker.pausedSinceMs != UNSET) {
+            tracker.pausedMs += timeMs - tracker.pausedSinceMs;
+            tracker.pausedSinceMs = UNSET;
+        }
+        switch (current) {
+            case STATE_RUNNING:
+                if (tracker.runningSinceMs == UNSET) {
+                    tracker.runningSinceMs = timeMs;
+                    tracker.goalIndex = state.getCurrentGoalIndex();
+                    tracker.goalSinceMs = tracker.partial ? UNSET : timeMs;
+                    record(robotId, tracker, timeMs, aggregate -> {
+                        aggregate.started.increment(timeMs);
+                        if (!tracker.partial) {
+                            aggregate.queueDelays.record(timeMs - tracker.firstSeenMs, timeMs);
+                        }
+                    });
+                } else {
+                    changeGoal(robotId, tracker, state.getCurrentGoalIndex(), timeMs);
+                }
+                break;
+            case STATE_PAUSED:
+                tracker.pausedSinceMs = timeMs;
+                changeGoal(robotId, tracker, state.getCurrentGoalIndex(), timeMs);
+                break;
+            case STATE_SUCCEEDED:
+            case STATE_FAILED:
+            case STATE_CANCELED:
+                end(robotId, tracker, current, timeMs);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Records the dwell time of the previous goal when a running mission moves to another goal.
+     */
+    // Must hold the lock
+    private void changeGoal(String robotId, MissionTracker tracker, int goalIndex, long timeMs) {
+        if (tracker.runningSinceMs == UNSET || goalIndex == tracker.goalIndex) {
+            return;
+        }
+        long since = tracker.goalSinceMs;
+        if (since != UNSET) {
+            record(robotId, tracker, timeMs, aggregate -> aggregate.goalDwellTimes.record(timeMs - since, timeMs));
+        }
+        tracker.goalIndex = goalIndex;
+        tracker.goalSinceMs = timeMs;
+    }
+
+    // Must hold the lock
+    private void end(String robotId, MissionTracker tracker, MissionState.State outcome, long timeMs) {
+        tracker.ended = true;
+        boolean ran = tracker.runningSinceMs != UNSET;
+        boolean timed = ran && !tracker.partial;
+        long goalSince = tracker.goalSinceMs;
+        record(robotId, tracker, timeMs, aggregate -> {
+            if (outcome == MissionState.State.STATE_SUCCEEDED) {
+                aggregate.succeeded.increment(timeMs);
+            } else if (outcome == MissionState.State.STATE_FAILED) {
+                aggregate.failed.increment(timeMs);
+            } else {
+                aggregate.canceled.increment(timeMs);
+            }
+            if (ran && goalSince != UNSET) {
+                aggregate.goalDwellTimes.record(timeMs - goalSince, timeMs);
+            }
+            if (timed) {
+                aggregate.durations.record(timeMs - tracker.runningSinceMs, timeMs);
+                aggregate.pausedTimes.record(tracker.pausedMs, timeMs);
+            }
+        });
+    }
+
+    /**
+     * Applies a recording to the fleet, location, robot and mission type aggregates of a mission.
+     */
+    // Must hold the lock
+    private void record(String robotId, MissionTracker tracker, long timeMs, Consumer<Aggregate> recording) {
+        recording.accept(aggregate(Dimension.FLEET, FLEET, timeMs));
+        String locationId = locations.get(robotId);
+        if (locationId != null) {
+            recording.accept(aggregate(Dimension.LOCATION, locationId, timeMs));
+        }
+        recording.accept(aggregate(Dimension.ROBOT, robotId, timeMs));
+        recording.accept(aggregate(Dimension.MISSION_TYPE, tracker.type, timeMs));
+    }
+
+    // Must hold the lock
+    private Aggregate aggregate(Dimension dimension, String key, long timeMs) {
+        Aggregate aggregate = aggregates.get(dimension).computeIfAbsent(key, k -> new Aggregate());
+        aggregate.lastRecordMs = Math.max(aggregate.lastRecordMs, timeMs);
+        return aggregate;
+    }
+
+    /**
+     * Drops missions unreported for the mission age limit and aggregates with nothing recorded within
+     * the window ending at a point in time. Sweeps also run as events arrive, but only then; call this
+     * periodically, e.g. from a timer with {@link System#currentTimeMillis()}, so a quiet fleet releases
+     * its memory too.
+     *
+     * @param nowMs The current time, on the robots' clock
+     */
+    public synchronized void sweep(long nowMs) {
+        lastSweepMs = nowMs;
+        for (Map<String, MissionTracker> robotMissions : missions.values()) {
+            robotMissions.values().removeIf(tracker -> nowMs - tracker.lastSeenMs > maxMissionAgeMs);
+        }
+        for (ConcurrentMap<String, Aggregate> groups : aggregates.values()) {
+            groups.values().removeIf(aggregate -> nowMs - aggregate.lastRecordMs > windowMs);
+        }
+    }
+
+    /**
+     * Sweeps at most once per sub-window of event time.
+     */
+    // Must hold the lock
+    private void maybeSweep(long timeMs) {
+        if (lastSweepMs == UNSET || timeMs - lastSweepMs >= windowMs / subWindows) {
+            sweep(timeMs);
+        }
+    }
+
+    private static boolean isEnd(MissionState.State state) {
+        return state == MissionState.State.STATE_SUCCEEDED
+                || state == MissionState.State.STATE_FAILED
+                || state == MissionState.State.STATE_CANCELED;
+    }
+
+    private static String typeOf(MissionType type) {
+        switch (type.getTypeCase()) {
+            case BASE_TYPE:
+                return type.getBaseType().name();
+            case SERVI_TYPE:
+                return type.getServiType().name();
+            case CARTI_TYPE:
+                return type.getCartiType().name();
+            default:
+                return "TYPE_UNKNOWN";
+        }
+    }
+
+    /**
+     * Sliding-window counts and times of one group.
+     */
+    private final class Aggregate {
+        private final WindowedCounter started = new WindowedCounter(windowMs, subWindows);
+        private final WindowedCounter succeeded = new WindowedCounter(windowMs, subWindows);
+        private final WindowedCounter failed = new WindowedCounter(windowMs, subWindows);
+        private final WindowedCounter canceled = new WindowedCounter(windowMs, subWindows);
+        private final WindowedHistogram durations = new WindowedHistogram(windowMs, subWindows);
+        private final WindowedHistogram goalDwellTimes = new WindowedHistogram(windowMs, subWindows);
+        private final WindowedHistogram queueDelays = new WindowedHistogram(windowMs, subWindows);
+        private final WindowedHistogram pausedTimes = new WindowedHistogram(windowMs, subWindows);
+        // Guarded by the analytics' lock; event time of the newest recording
+        private long lastRecordMs = UNSET;
+
+        MissionKpis snapshot(long nowMs) {
+            return new MissionKpis(windowMs, started.get(nowMs), succeeded.get(nowMs), failed.get(nowMs),
+                    canceled.get(nowMs), durations.snapshot(nowMs), goalDwellTimes.snapshot(nowMs),
+                    queueDelays.snapshot(nowMs), pausedTimes.snapshot(nowMs));
+        }
+    }
+
+    /**
+     * Lifecycle of one mission on one robot. Guarded by the analytics' lock.
+     */
+    private static class MissionTracker {
+        private final String type;
+        private final long firstSeenMs;
+        // Already under way when first seen, so its times are incomplete
+        private final boolean partial;
+        private MissionState.State state = MissionState.State.STATE_UNKNOWN;
+        private long lastSeenMs;
+        private long runningSinceMs = UNSET;
+        private long pausedSinceMs = UNSET;
+        private long pausedMs;
+        private int goalIndex;
+        private long goalSinceMs = UNSET;
+        private boolean ended;
+
+        MissionTracker(String type, long firstSeenMs, boolean partial) {
+            this.type = type;
+            this.firstSeenMs = firstSeenMs;
+            this.partial = partial;
+        }
+    }
+}
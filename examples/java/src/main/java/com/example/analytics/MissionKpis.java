@@ -0,0 +1,103 @@
+package com.example.analytics;
+
+import com.example.metrics.LatencyHistogram;
+
+/**
+ * Mission KPIs of one location, robot, mission type or the whole fleet over a sliding window.
+ *
+ * Durations are in milliseconds, with the precision of {@link LatencyHistogram}.
+ */
+public class MissionKpis {
+    private final long windowMs;
+    private final long started;
+    private final long succeeded;
+    private final long failed;
+    private final long canceled;
+    private final LatencyHistogram durations;
+    private final LatencyHistogram goalDwellTimes;
+    private final LatencyHistogram queueDelays;
+    private final LatencyHistogram pausedTimes;
+
+    MissionKpis(long windowMs, long started, long succeeded, long failed, long canceled,
+                LatencyHistogram durations, LatencyHistogram goalDwellTimes,
+                LatencyHistogram queueDelays, LatencyHistogram pausedTimes) {
+        this.windowMs = windowMs;
+        this.started = started;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.canceled = canceled;
+        this.durations = durations;
+        this.goalDwellTimes = goalDwellTimes;
+        this.queueDelays = queueDelays;
+        this.pausedTimes = pausedTimes;
+    }
+
+    public long getWindowMs() {
+        return windowMs;
+    }
+
+    /**
+     * @return Number of missions that started running
+     */
+    public long getStarted() {
+        return started;
+    }
+
+    public long getSucceeded() {
+        return succeeded;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getCanceled() {
+        return canceled;
+    }
+
+    /**
+     * @return Failed missions as a fraction of ended missions, or 0 if none ended
+     */
+    public double getFailureRate() {
+        long ended = succeeded + failed + canceled;
+        return ended == 0 ? 0 : (double) failed / ended;
+    }
+
+    /**
+     * @return Time from a mission starting to run until it ended, pauses included
+     */
+    public LatencyHistogram getDurations() {
+        return durations;
+    }
+
+    /**
+     * @return Time a running mission spent on each goal before moving to the next one or ending
+     */
+    public LatencyHistogram getGoalDwellTimes() {
+        return goalDwellTimes;
+    }
+
+    /**
+     * @return Time from a mission being assigned to a robot until it started running
+     */
+    public LatencyHistogram getQueueDelays() {
+        return queueDelays;
+    }
+
+    /**
+     * @return Total time each ended mission spent paused
+     */
+    public LatencyHistogram getPausedTimes() {
+        return pausedTimes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MissionKpis{started=%d, succeeded=%d, failed=%d, canceled=%d, failureRate=%.3f, "
+                        + "duration p50/p90/p99=%d/%d/%dms, dwell p50/p90=%d/%dms, queue p50/p90=%d/%dms}",
+                started, succeeded, failed, canceled, getFailureRate(),
+                durations.getValueAtPercentile(50), durations.getValueAtPercentile(90), durations.getValueAtPercentile(99),
+                goalDwellTimes.getValueAtPercentile(50), goalDwellTimes.getValueAtPercentile(90),
+                queueDelays.getValueAtPercentile(50), queueDelays.getValueAtPercentile(90));
+    }
+}
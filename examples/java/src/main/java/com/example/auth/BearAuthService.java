@@ -12,6 +12,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -26,8 +27,10 @@ public class BearAuthService {
     private static final MediaType JSON = MediaType.parse("application/json");
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
-    // Token refresh scheduler
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    // Token refresh scheduler, possibly shared with other auth services
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsResources;
+    private ScheduledFuture<?> refreshTask;
 
     // How often to refresh the token (30 minutes)
     private static final long TOKEN_REFRESH_INTERVAL = 30 * 60 * 1000; // 30 minutes
@@ -41,11 +44,7 @@ public class BearAuthService {
     // Token listeners to notify when token is refreshed
     private TokenRefreshListener tokenListener;
 
-    private final OkHttpClient httpClient = new OkHttpClient.Builder()
-            .connectTimeout(30, TimeUnit.SECONDS)
-            .readTimeout(30, TimeUnit.SECONDS)
-            .writeTimeout(30, TimeUnit.SECONDS)
-            .build();
+    private final OkHttpClient httpClient;
 
     /**
      * Interface for components that need to be notified when the token is refreshed.
@@ -61,6 +60,33 @@ public class BearAuthService {
      * @throws IOException If there's an error reading the credentials file
      */
     public BearAuthService(String credentialsFilePath) throws IOException {
+        this(credentialsFilePath, newHttpClient(), Executors.newScheduledThreadPool(1), true);
+    }
+
+    /**
+     * Initializes the auth service with an HTTP client and refresh scheduler shared with other
+     * auth services, e.g. one per tenant. Scheduled refreshes only start an asynchronous token fetch
+     * on the HTTP client, so a slow auth call for one service never delays another's refresh on the
+     * shared scheduler. {@link #shutdown()} then only stops this service's refreshes and leaves the
+     * shared resources running.
+     *
+     * @param credentialsFilePath Path to the credentials JSON file
+     * @param httpClient HTTP client used to fetch tokens
+     * @param scheduler Scheduler running the periodic token refresh
+     * @throws IOException If there's an error reading the credentials file
+     */
+    public BearAuthService(String credentialsFilePath, OkHttpClient httpClient, ScheduledExecutorService scheduler)
+            throws IOException {
+        this(credentialsFilePath, httpClient, scheduler, false);
+    }
+
+    private BearAuthService(String credentialsFilePath,
+                            OkHttpClient httpClient,
+                            ScheduledExecutorService scheduler,
+                            boolean ownsResources) throws IOException {
+        this.httpClient = httpClient;
+        this.scheduler = scheduler;
+        this.ownsResources = ownsResources;
         loadCredentials(credentialsFilePath);
         // Get initial token
         fetchNewToken();
@@ -68,6 +94,19 @@ public class BearAuthService {
         startTokenRefreshScheduler();
     }
 
+    /**
+     * Creates an HTTP client configured for the auth API.
+     *
+     * @return The HTTP client
+     */
+    public static OkHttpClient newHttpClient() {
+        return new OkHttpClient.Builder()
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .writeTimeout(30, TimeUnit.SECONDS)
+                .build();
+    }
+
     /**
      * Sets a listener to be notified when the token is refreshed.
      *
@@ -141,6 +180,55 @@ public class BearAuthService {
      * @throws IOException If there's an error in the API call
      */
     private synchronized void fetchNewToken() throws IOException {
+        logger.info("Fetching new JWT token...");
+
+        // Execute the request
+        try (Response response = httpClient.newCall(tokenRequest()).execute()) {
+            updateToken(readToken(response));
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error fetching JWT token", e);
+            throw new IOException("Failed to obtain JWT token", e);
+        }
+    }
+
+    /**
+     * Fetches a new JWT token without blocking the calling thread; the token is replaced when the
+     * response arrives. Failures are logged, and the current token stays in use.
+     */
+    private void fetchNewTokenAsync() {
+        Request request;
+        try {
+            request = tokenRequest();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Scheduled token refresh failed", e);
+            return;
+        }
+
+        logger.info("Fetching new JWT token...");
+        httpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                logger.log(Level.SEVERE, "Scheduled token refresh failed", e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    updateToken(readToken(response));
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Scheduled token refresh failed", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Builds the request for a new token.
+     *
+     * @return The request
+     * @throws IOException If the request body cannot be written
+     */
+    private Request tokenRequest() throws IOException {
         // Create request body
         ObjectNode requestBody = objectMapper.createObjectNode();
         requestBody.put("api_key", apiKey);
@@ -153,40 +241,48 @@ public class BearAuthService {
 
         // Build the request
         RequestBody body = RequestBody.create(requestBodyJson, JSON);
-        Request request = new Request.Builder()
+        return new Request.Builder()
                 .url(AUTH_URL)
                 .post(body)
                 .build();
+    }
 
-        logger.info("Fetching new JWT token...");
-
-        // Execute the request
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Failed to obtain JWT token: " +
-                        response.code() + " " + response.message());
-            }
+    /**
+     * Reads the token from an auth API response.
+     *
+     * @param response The response
+     * @return The token
+     * @throws IOException If the request failed or the body is empty
+     */
+    private static String readToken(Response response) throws IOException {
+        if (!response.isSuccessful()) {
+            throw new IOException("Failed to obtain JWT token: " +
+                    response.code() + " " + response.message());
+        }
 
-            if (response.body() == null) {
-                throw new IOException("Empty response received from auth API");
-            }
+        if (response.body() == null) {
+            throw new IOException("Empty response received from auth API");
+        }
 
-            // The response body is a plain string containing the JWT token
-            String newToken = response.body().string();
+        // The response body is a plain string containing the JWT token
+        return response.body().string();
+    }
 
-            // Update token and refresh time
-            this.jwtToken = newToken;
-            this.lastTokenRefreshTime = System.currentTimeMillis();
+    /**
+     * Replaces the token and notifies the listener.
+     *
+     * @param newToken The new token
+     */
+    private synchronized void updateToken(String newToken) {
+        // Update token and refresh time
+        this.jwtToken = newToken;
+        this.lastTokenRefreshTime = System.currentTimeMillis();
 
-            logger.info("JWT token obtained successfully. Will refresh in 30 minutes.");
+        logger.info("JWT token obtained successfully. Will refresh in 30 minutes.");
 
-            // Notify listener if registered
-            if (tokenListener != null) {
-                tokenListener.onTokenRefreshed(newToken);
-            }
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Error fetching JWT token", e);
-            throw new IOException("Failed to obtain JWT token", e);
+        // Notify listener if registered
+        if (tokenListener != null) {
+            tokenListener.onTokenRefreshed(newToken);
         }
     }
 
@@ -195,13 +291,10 @@ public class BearAuthService {
      */
     private void startTokenRefreshScheduler() {
         // Schedule token refresh at a fixed rate of 30 minutes
-        scheduler.scheduleAtFixedRate(() -> {
-            try {
-                logger.info("Scheduled token refresh triggered (every 30 minutes)");
-                fetchNewToken();
-            } catch (Exception e) {
-                logger.log(Level.SEVERE, "Scheduled token refresh failed", e);
-            }
+        refreshTask = scheduler.scheduleAtFixedRate(() -> {
+            logger.info("Scheduled token refresh triggered (every 30 minutes)");
+            // Never blocks the scheduler, which may be shared with other auth services
+            fetchNewTokenAsync();
         }, TOKEN_REFRESH_INTERVAL, TOKEN_REFRESH_INTERVAL, TimeUnit.MILLISECONDS);
 
         logger.info("Token refresh scheduler started - will refresh token every 30 minutes");
@@ -218,10 +311,13 @@ public class BearAuthService {
     }
 
     /**
-     * Shuts down the token refresh scheduler.
+     * Stops refreshing the token, and shuts down the token refresh scheduler if it is not shared.
      */
     public void shutdown() {
-        scheduler.shutdown();
+        refreshTask.cancel(false);
+        if (ownsResources) {
+            scheduler.shutdown();
+        }
         logger.info("Token refresh scheduler stopped");
     }
 }
@@ -0,0 +1,128 @@
+package com.example.auth;
+
+import okhttp3.OkHttpClient;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.logging.Logger;
+
+/**
+ * Credentials for several tenants, e.g. one per distributor, each loaded from its own
+ * {@code credentials.json}.
+ *
+ * Every tenant has its own {@link BearAuthService} and {@link JwtCredentials}, so tokens are
+ * fetched, refreshed and invalidated independently. All tenants share one refresh thread, which
+ * only starts asynchronous token fetches, so a slow or unreachable auth call for one tenant never
+ * delays another tenant's refresh. All tenants share one HTTP client and connection pool for the
+ * auth API, and calls pick a tenant's credentials per call over the same gRPC channel.
+ */
+public class TenantRegistry {
+    private static final Logger logger = Logger.getLogger(TenantRegistry.class.getName());
+
+    private final OkHttpClient httpClient = BearAuthService.newHttpClient();
+    private final ScheduledExecutorService refreshScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "TenantRegistry-TokenRefresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ConcurrentMap<String, Tenant> tenants = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an auth service that uses the registry's shared HTTP client and refresh thread
+     * without registering it as a tenant.
+     *
+     * @param credentialsPath Path to the credentials JSON file
+     * @return The auth service
+     * @throws IOException If the credentials cannot be read or the first token cannot be fetched
+     */
+    public BearAuthService newAuthService(String credentialsPath) throws IOException {
+        return new BearAuthService(credentialsPath, httpClient, refreshScheduler);
+    }
+
+    /**
+     * Adds a tenant, fetching its first token. Replaces any tenant with the same ID.
+     *
+     * @param tenantId ID the tenant is referred to by
+     * @param credentialsPath Path to the tenant's credentials JSON file
+     * @return The tenant's credentials
+     * @throws IOException If the credentials cannot be read or the first token cannot be fetched
+     */
+    public JwtCredentials addTenant(String tenantId, String credentialsPath) throws IOException {
+        BearAuthService authService = newAuthService(credentialsPath);
+        Tenant tenant = new Tenant(authService, new JwtCredentials(authService));
+        Tenant previous = tenants.put(tenantId, tenant);
+        if (previous != null) {
+            previous.authService.shutdown();
+        }
+        logger.info("Tenant " + tenantId + " added (" + tenants.size() + " tenants)");
+        return tenant.credentials;
+    }
+
+    /**
+     * Removes a tenant and stops refreshing its token.
+     *
+     * @param tenantId The tenant ID
+     */
+    public void removeTenant(String tenantId) {
+        Tenant tenant = tenants.remove(tenantId);
+        if (tenant != null) {
+            tenant.authService.shutdown();
+            logger.info("Tenant " + tenantId + " removed");
+        }
+    }
+
+    /**
+     * Gets a tenant's credentials.
+     *
+     * @param tenantId The tenant ID
+     * @return The credentials
+     * @throws IllegalArgumentException If the tenant is unknown
+     */
+    public JwtCredentials getCredentials(String tenantId) {
+        Tenant tenant = tenants.get(tenantId);
+        if (tenant == null) {
+            throw new IllegalArgumentException("Unknown tenant: " + tenantId);
+        }
+        return tenant.credentials;
+    }
+
+    /**
+     * Gets the IDs of all tenants.
+     *
+     * @return A snapshot of the tenant IDs
+     */
+    public Set<String> getTenantIds() {
+        return new TreeSet<>(tenants.keySet());
+    }
+
+    /**
+     * Stops refreshing all tenants' tokens and releases the shared HTTP client and refresh thread.
+     */
+    public void shutdown() {
+        for (Tenant tenant : tenants.values()) {
+            tenant.authService.shutdown();
+        }
+        tenants.clear();
+        refreshScheduler.shutdown();
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    /**
+     * The auth state of one tenant.
+     */
+    private static final class Tenant {
+        private final BearAuthService authService;
+        private final JwtCredentials credentials;
+
+        Tenant(BearAuthService authService, JwtCredentials credentials) {
+            this.authService = authService;
+            this.credentials = credentials;
+        }
+    }
+}
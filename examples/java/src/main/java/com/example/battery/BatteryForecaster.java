@@ -0,0 +1,543 @@
+package com.example.battery;
+
+import com.example.BearRoboticsClient;
+import com.example.streaming.StreamPriority;
+import com.example.streaming.StreamingClient;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import bearrobotics.api.v1.core.FleetSelector.RobotSelector;
+import bearrobotics.api.v1.core.Metadata.EventMetadata;
+import bearrobotics.api.v1.core.MissionStatus.MissionState;
+import bearrobotics.api.v1.core.MissionStatus.MissionStates;
+import bearrobotics.api.v1.core.RobotStatus.BatteryState;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeBatteryStatusRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeBatteryStatusResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeMissionStatusRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeMissionStatusResponse;
+
+/**
+ * Online per-robot battery model forecasting when each robot reaches a charge threshold.
+ *
+ * While a robot discharges, its charge is regressed on the time it spent idle and the time it spent
+ * on missions since it left the charger, {@code charge = c0 + rIdle*tIdle + rActive*tActive}, with
+ * recursive least squares and a forgetting factor, so each battery event costs a constant amount of
+ * work and the model tracks batteries aging or workloads changing. Regressing the level rather than
+ * differences between events absorbs the 1% steps of {@code charge_percent}. The drain rate used for
+ * forecasts mixes the idle and mission rates by the robot's recent share of mission time. While a
+ * robot charges, a second regression learns its charge rate, used to estimate charging times.
+ *
+ * Rates learned in one discharge carry over to the next; only the starting level is reset. Until a
+ * robot has data, the configured prior rates apply. Times are event timestamps, on the robots' clock.
+ */
+public class BatteryForecaster {
+    private static final Logger logger = Logger.getLogger(BatteryForecaster.class.getName());
+
+    private static final double MS_PER_HOUR = TimeUnit.HOURS.toMillis(1);
+    // Initial variances: the starting level is unknown, rates start at the priors
+    private static final double LEVEL_VARIANCE = 1e4;
+    private static final double RATE_VARIANCE = 1e2;
+    // Half-life of the share of mission time, in hours
+    private static final double ACTIVITY_HALF_LIFE_HOURS = 0.5;
+
+    private final double forgettingFactor;
+    private final double idleDrainPerHour;
+    private final double activeDrainPerHour;
+    private final double chargeRatePerHour;
+    private final ConcurrentMap<String, Model> models = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a forecaster with a forgetting factor of 0.995, prior drain rates of 3%/h idle and
+     * 15%/h on missions, and a prior charge rate of 60%/h.
+     */
+    public BatteryForecaster() {
+        this(0.995, 3, 15, 60);
+    }
+
+    /**
+     * Creates a forecaster.
+     *
+     * @param forgettingFactor Weight kept by past events at each update, in (0, 1]
+     * @param idleDrainPerHour Prior charge percent lost per idle hour
+     * @param activeDrainPerHour Prior charge percent lost per hour on missions
+     * @param chargeRatePerHour Prior charge percent gained per hour on the charger
+     */
+    public BatteryForecaster(double forgettingFactor, double idleDrainPerHour, double activeDrainPerHour,
+                             double chargeRatePerHour) {
+        if (forgettingFactor <= 0 || forgettingFactor > 1) {
+            throw new IllegalArgumentException("forgettingFactor must be in (0, 1]");
+        }
+        this.forgettingFactor = forgettingFactor;
+        this.idleDrainPerHour = idleDrainPerHour;
+        this.activeDrainPerHour = activeDrainPerHour;
+        this.chargeRatePerHour = chargeRatePerHour;
+    }
+
+    /**
+     * Registers a callback run with the robot ID after each update of a robot's forecast.
+     *
+     * @param listener The callback; must not block
+     */
+    public void addListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Starts the battery and mission status streams for a selector and feeds them into the forecaster.
+     *
+     * @param client The client
+     * @param selector The robots to forecast
+     * @return The started streaming clients
+     * @throws InterruptedException If interrupted while starting the streams
+     */
+    public List<StreamingClient<?, ?>> attach(BearRoboticsClient client, RobotSelector selector) throws InterruptedException {
+        List<StreamingClient<?, ?>> streams = new ArrayList<>();
+        streams.add(client.startStream(client.getAsyncStub()::subscribeBatteryStatus,
+                SubscribeBatteryStatusRequest.newBuilder().setSelector(selector).build(),
+                batteryObserver(), "BatteryForecaster-Battery", StreamPriority.STATUS));
+        streams.add(client.startStream(client.getAsyncStub()::subscribeMissionStatus,
+                SubscribeMissionStatusRequest.newBuilder().setSelector(selector).build(),
+                missionObserver(), "BatteryForecaster-Mission", StreamPriority.STATUS));
+        return streams;
+    }
+
+    /**
+     * Creates an observer for {@code SubscribeBatteryStatus}.
+     *
+     * @return The observer
+     */
+    public StreamObserver<SubscribeBatteryStatusResponse> batteryObserver() {
+        return new ForecastObserver<SubscribeBatteryStatusResponse>("Battery status") {
+            @Override
+            public void onNext(SubscribeBatteryStatusResponse response) {
+                onBatteryStatus(response.getRobotId(), response.getBatteryState(), response.getMetadata());
+            }
+        };
+    }
+
+    /**
+     * Creates an observer for {@code SubscribeMissionStatus}, marking robots with a running mission
+     * as active.
+     *
+     * @return The observer
+     */
+    public StreamObserver<SubscribeMissionStatusResponse> missionObserver() {
+        return new ForecastObserver<SubscribeMissionStatusResponse>("Mission status") {
+            @Override
+            public void onNext(SubscribeMissionStatusResponse response) {
+                MissionState current = response.getMissionState();
+                if (response.hasMissionStates()) {
+                    MissionStates states = response.getMissionStates();
+                    int index = states.getCurrentMissionIndex();
+                    current = index >= 0 && index < states.getMissionsCount()
+                            ? states.getMissions(index) : MissionState.getDefaultInstance();
+                }
+                setActive(response.getRobotId(), current.getState() == MissionState.State.STATE_RUNNING,
+                        timestampMs(response.getMetadata()));
+            }
+        };
+    }
+
+    /**
+     * Updates a robot's model with a battery event.
+     *
+     * @param robotId The robot ID
+     * @param battery The battery state
+     * @param metadata The event metadata
+     */
+    public void onBatteryStatus(String robotId, BatteryState battery, EventMetadata metadata) {
+        Model model = models.computeIfAbsent(robotId, id -> new Model());
+        synchronized (model) {
+            model.update(battery, timestampMs(metadata));
+        }
+        notifyListeners(robotId);
+    }
+
+    /**
+     * Sets whether a robot is on a mission, which drains its battery faster.
+     *
+     * @param robotId The robot ID
+     * @param active true while the robot runs a mission
+     * @param timeMs Time of the change
+     */
+    public void setActive(String robotId, boolean active, long timeMs) {
+        Model model = models.computeIfAbsent(robotId, id -> new Model());
+        boolean changed;
+        synchronized (model) {
+            changed = model.active != active;
+            model.advance(timeMs);
+            model.active = active;
+        }
+        if (changed) {
+            notifyListeners(robotId);
+        }
+    }
+
+    /**
+     * Forecasts when a robot's charge drops to a threshold, at its current drain rate.
+     *
+     * @param robotId The robot ID
+     * @param thresholdPercent The charge percent
+     * @return Time from the robot's latest event to the threshold, 0 if already below it,
+     *         {@code Long.MAX_VALUE} if the robot is not discharging, or -1 if the robot is unknown
+     */
+    public long getTimeToThresholdMs(String robotId, double thresholdPercent) {
+        Model model = models.get(robotId);
+        if (model == null) {
+            return -1;
+        }
+        synchronized (model) {
+            if (!model.hasBattery) {
+                return -1;
+            }
+            if (model.state != BatteryState.State.STATE_DISCHARGING) {
+                return Long.MAX_VALUE;
+            }
+            double remaining = model.level() - thresholdPercent;
+            double drain = model.drainPerHour();
+            if (remaining <= 0) {
+                return 0;
+            }
+            return drain <= 0 ? Long.MAX_VALUE : (long) (remaining / drain * MS_PER_HOUR);
+        }
+    }
+
+    /**
+     * Estimates how long a robot needs on the charger to reach a charge percent.
+     *
+     * @param robotId The robot ID
+     * @param targetPercent The charge percent to reach
+     * @return The charging time, or -1 if the robot is unknown
+     */
+    public long getTimeToChargeMs(String robotId, double targetPercent) {
+        Model model = models.get(robotId);
+        if (model == null) {
+            return -1;
+        }
+        synchronized (model) {
+            if (!model.hasBattery) {
+                return -1;
+            }
+            double missing = targetPercent - model.chargePercent;
+            return missing <= 0 ? 0 : (long) (missing / Math.max(1, model.chargeRate()) * MS_PER_HOUR);
+        }
+    }
+
+    /**
+     * Gets a robot's current drain rate, mixing its idle and mission rates by its recent mission time.
+     *
+     * @param robotId The robot ID
+     * @return Charge percent lost per hour, or NaN if the robot is unknown
+     */
+    public double getDrainPerHour(String robotId) {
+        Model model = models.get(robotId);
+        if (model == null) {
+            return Double.NaN;
+        }
+        synchronized (model) {
+            return model.drainPerHour();
+        }
+    }
+
+    /**
+     * Gets a robot's learned charge rate.
+     *
+     * @param robotId The robot ID
+     * @return Charge percent gained per hour on the charger, or NaN if the robot is unknown
+     */
+    public double getChargeRatePerHour(String robotId) {
+        Model model = models.get(robotId);
+        if (model == null) {
+            return Double.NaN;
+        }
+        synchronized (model) {
+            return model.chargeRate();
+        }
+    }
+
+    /**
+     * Gets a robot's latest reported battery state.
+     *
+     * @param robotId The robot ID
+     * @return The battery state, or null if none was reported
+     */
+    public BatteryState getBatteryState(String robotId) {
+        Model model = models.get(robotId);
+        if (model == null) {
+            return null;
+        }
+        synchronized (model) {
+            return model.hasBattery ? model.battery : null;
+        }
+    }
+
+    /**
+     * @param robotId The robot ID
+     * @return true if the robot runs a mission as of its latest mission event
+     */
+    public boolean isActive(String robotId) {
+        Model model = models.get(robotId);
+        if (model == null) {
+            return false;
+        }
+        synchronized (model) {
+            return model.active;
+        }
+    }
+
+    /**
+     * Gets the time of a robot's latest battery or mission event.
+     *
+     * @param robotId The robot ID
+     * @return The timestamp, or -1 if the robot is unknown
+     */
+    public long getLastUpdateMs(String robotId) {
+        Model model = models.get(robotId);
+        if (model == null) {
+            return -1;
+        }
+        synchronized (model) {
+            return model.lastMs;
+        }
+    }
+
+    public Set<String> getRobotIds() {
+        return Set.copyOf(models.keySet());
+    }
+
+    /**
+     * Forgets a robot.
+     *
+     * @param robotId The robot ID
+     */
+    public void remove(String robotId) {
+        models.remove(robotId);
+    }
+
+    private void notifyListeners(String robotId) {
+        for (Consumer<String> listener : listeners) {
+            try {
+                listener.accept(robotId);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Battery forecast listener failed for robot " + robotId, e);
+            }
+        }
+    }
+
+    private static long timestampMs(EventMetadata metadata) {
+        return metadata.getTimestamp().getSeconds() * 1000 + metadata.getTimestamp().getNanos() / 1_000_000;
+    }
+
+    /**
+     * Recursive least squares over a fixed number of features, updated in place without allocating.
+     */
+    private static class Rls {
+        private final int n;
+        private final double[] theta;
+        private final double[] p;
+        // Scratch space for an update
+        private final double[] px;
+        private final double[] gain;
+
+        Rls(int n) {
+            this.n = n;
+            this.theta = new double[n];
+            this.p = new double[n * n];
+            this.px = new double[n];
+            this.gain = new double[n];
+        }
+
+        /**
+         * Restarts with given estimates and independent variances.
+         */
+        void reset(double[] estimates, double[] variances) {
+            for (int i = 0; i < n; i++) {
+                theta[i] = estimates[i];
+                for (int j = 0; j < n; j++) {
+                    p[i * n + j] = i == j ? variances[i] : 0;
+                }
+            }
+        }
+
+        double predict(double[] x) {
+            double y = 0;
+            for (int i = 0; i < n; i++) {
+                y += theta[i] * x[i];
+            }
+            return y;
+        }
+
+        void update(double[] x, double y, double lambda) {
+            double denominator = lambda;
+            for (int i = 0; i < n; i++) {
+                double sum = 0;
+                for (int j = 0; j < n; j++) {
+                    sum += p[i * n + j] * x[j];
+                }
+                px[i] = sum;
+                denominator += x[i] * sum;
+            }
+            double error = y - predict(x);
+            for (int i = 0; i < n; i++) {
+                gain[i] = px[i] / denominator;
+                theta[i] += gain[i] * error;
+            }
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    p[i * n + j] = (p[i * n + j] - gain[i] * px[j]) / lambda;
+                }
+            }
+        }
+    }
+
+    /**
+     * Battery model of one robot. Guarded by its own monitor.
+     */
+    private final class Model {
+        // Discharge: charge = c0 + rIdle * idleHours + rActive * activeHours, with negative rates
+        private final Rls discharge = new Rls(3);
+        // Charge: charge = c0 + rate * hours
+        private final Rls charge = new Rls(2);
+        private final double[] dischargeFeatures = new double[3];
+        private final double[] chargeFeatures = new double[2];
+        private final double[] estimates = new double[3];
+        private final double[] variances = new double[3];
+
+        private BatteryState battery = BatteryState.getDefaultInstance();
+        private BatteryState.State state = BatteryState.State.STATE_UNKNOWN;
+        private boolean hasBattery;
+        private int chargePercent;
+        private boolean active;
+        private double activeShare;
+        private double idleHours;
+        private double activeHours;
+        private double chargeHours;
+        private long lastMs = -1;
+        private boolean learnedDischarge;
+        private boolean learnedCharge;
+
+        Model() {
+            estimates[1] = -idleDrainPerHour;
+            estimates[2] = -activeDrainPerHour;
+            charge.theta[1] = chargeRatePerHour;
+        }
+
+        /**
+         * Accumulates the time since the previous event as idle, mission or charging time.
+         */
+        void advance(long timeMs) {
+            if (lastMs >= 0 && timeMs > lastMs) {
+                double hours = (timeMs - lastMs) / MS_PER_HOUR;
+                if (state == BatteryState.State.STATE_CHARGING) {
+                    chargeHours += hours;
+                } else if (active) {
+                    activeHours += hours;
+                } else {
+                    idleHours += hours;
+                }
+                double decay = Math.pow(0.5, hours / ACTIVITY_HALF_LIFE_HOURS);
+                activeShare = activeShare * decay + (active ? 1 - decay : 0);
+            }
+            if (timeMs > lastMs) {
+                lastMs = timeMs;
+            }
+        }
+
+        void update(BatteryState battery, long timeMs) {
+            advance(timeMs);
+            BatteryState.State previous = state;
+            this.battery = battery;
+            this.state = battery.getState();
+            this.chargePercent = battery.getChargePercent();
+            this.hasBattery = true;
+            if (state == BatteryState.State.STATE_DISCHARGING) {
+                if (previous != BatteryState.State.STATE_DISCHARGING) {
+                    // New discharge: keep the learned rates, restart the level
+                    estimates[0] = chargePercent;
+                    estimates[1] = learnedDischarge ? discharge.theta[1] : -idleDrainPerHour;
+                    estimates[2] = learnedDischarge ? discharge.theta[2] : -activeDrainPerHour;
+                    variances[0] = LEVEL_VARIANCE;
+                    variances[1] = RATE_VARIANCE;
+                    variances[2] = RATE_VARIANCE;
+                    discharge.reset(estimates, variances);
+                    idleHours = 0;
+                    activeHours = 0;
+                }
+                dischargeFeatures[0] = 1;
+                dischargeFeatures[1] = idleHours;
+                dischargeFeatures[2] = activeHours;
+                discharge.update(dischargeFeatures, chargePercent, forgettingFactor);
+                learnedDischarge |= idleHours + activeHours > 0;
+            } else if (state == BatteryState.State.STATE_CHARGING) {
+                if (previous != BatteryState.State.STATE_CHARGING) {
+                    estimates[0] = chargePercent;
+                    estimates[1] = learnedCharge ? charge.theta[1] : chargeRatePerHour;
+                    variances[0] = LEVEL_VARIANCE;
+                    variances[1] = RATE_VARIANCE;
+                    charge.reset(estimates, variances);
+                    chargeHours = 0;
+                }
+                chargeFeatures[0] = 1;
+                chargeFeatures[1] = chargeHours;
+                charge.update(chargeFeatures, chargePercent, forgettingFactor);
+                learnedCharge |= chargeHours > 0;
+            }
+        }
+
+        /**
+         * Estimated charge at the latest event, from the regression rather than the rounded report.
+         */
+        double level() {
+            if (!learnedDischarge) {
+                return chargePercent;
+            }
+            dischargeFeatures[0] = 1;
+            dischargeFeatures[1] = idleHours;
+            dischargeFeatures[2] = activeHours;
+            return discharge.predict(dischargeFeatures);
+        }
+
+        double drainPerHour() {
+            double idleRate = learnedDischarge ? -discharge.theta[1] : idleDrainPerHour;
+            double activeRate = learnedDischarge ? -discharge.theta[2] : activeDrainPerHour;
+            double share = Math.max(activeShare, active ? 0.5 : 0);
+            return Math.max(0, idleRate) * (1 - share) + Math.max(0, activeRate) * share;
+        }
+
+        double chargeRate() {
+            return learnedCharge ? charge.theta[1] : chargeRatePerHour;
+        }
+    }
+
+    /**
+     * Logs stream termination; events are handled by each observer's onNext.
+     */
+    private abstract static class ForecastObserver<T> implements StreamObserver<T> {
+        private final String name;
+
+        ForecastObserver(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            logger.warning(name + " stream for battery forecasts failed: " + t.getMessage());
+        }
+
+        @Override
+        public void onCompleted() {
+            logger.info(name + " stream for battery forecasts completed");
+        }
+    }
+}
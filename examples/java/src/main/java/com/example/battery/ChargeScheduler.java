@@ -0,0 +1,628 @@
+package com.example.battery;
+
+import com.example.BearRoboticsClient;
+import com.example.rules.RuleAction;
+import com.example.rules.RuleActions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import bearrobotics.api.v1.core.RobotStatus.BatteryState;
+import bearrobotics.api.v1.core.RobotStatus.RobotState;
+
+/**
+ * Sends robots to charge with {@code ChargeRobot}, staggered so chargers stay busy evenly instead of
+ * every robot queueing at them at once after a rush.
+ *
+ * Each location keeps its discharging robots ordered by their deadline, the time the
+ * {@link BatteryForecaster} predicts they reach the low threshold. Whenever a forecast changes, only
+ * that robot is moved in the order and the head of its location is re-checked: the first robots are
+ * assigned to the location's chargers in deadline order, each charging for its forecast charging time,
+ * and as soon as any of them would start later than its deadline minus a safety margin, the most
+ * urgent idle robot is sent to charge. Congestion ahead thus pulls charging forward, while robots
+ * keep working when chargers will have room in time. Dispatches per location are spaced by a minimum
+ * interval, and a timer wakes each location when its next dispatch falls due, so dispatches happen on
+ * time between battery events without scanning the fleet.
+ *
+ * Robots on a mission are only interrupted once they reach their own deadline. Deadlines are event
+ * timestamps plus forecasts and are compared with the local clock, so robot clocks should be in sync.
+ */
+public class ChargeScheduler {
+    private static final Logger logger = Logger.getLogger(ChargeScheduler.class.getName());
+
+    private static final String DEFAULT_LOCATION = "";
+
+    private final BatteryForecaster forecaster;
+    private final RuleAction chargeAction;
+    private final int chargersPerLocation;
+    private final Map<String, Integer> chargers;
+    private final double lowPercent;
+    private final double targetPercent;
+    private final double maxStartPercent;
+    private final long marginMs;
+    private final long minSpacingMs;
+    private final long dispatchTimeoutMs;
+    private final int lookahead;
+
+    // Guarded by this
+    private final Map<String, Robot> robots = new HashMap<>();
+    private final Map<String, Location> locations = new HashMap<>();
+    private boolean shutdown;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ChargeScheduler-Timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong evaluations = new AtomicLong();
+
+    /**
+     * Scheduling status of a robot.
+     */
+    private enum Status {
+        // Discharging, ordered by deadline
+        WAITING,
+        // Sent to charge, holding a charger until it reports charging or the dispatch times out
+        DISPATCHED,
+        // On a charger
+        CHARGING,
+        // Not discharging and not on a charger, or no forecast yet
+        IDLE
+    }
+
+    /**
+     * A robot known to the scheduler.
+     */
+    private static class Robot {
+        final String id;
+        Location location;
+        Status status = Status.IDLE;
+        long deadlineMs;
+        long chargeMs;
+        long chargeEndMs;
+        long dispatchedMs;
+        int chargePercent;
+        boolean active;
+
+        Robot(String id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Robots and chargers of one location.
+     */
+    private static class Location {
+        final String id;
+        final int chargers;
+        final TreeSet<Robot> waiting = new TreeSet<>(Comparator.<Robot>comparingLong(robot -> robot.deadlineMs)
+                .thenComparing(robot -> robot.id));
+        final List<Robot> occupying = new ArrayList<>();
+        long lastDispatchMs = Long.MIN_VALUE;
+        ScheduledFuture<?> wakeup;
+        long wakeupMs = Long.MAX_VALUE;
+
+        Location(String id, int chargers) {
+            this.id = id;
+            this.chargers = chargers;
+        }
+    }
+
+    private ChargeScheduler(Builder builder) {
+        this.forecaster = builder.forecaster;
+        this.chargeAction = builder.chargeAction;
+        this.chargersPerLocation = builder.chargersPerLocation;
+        this.chargers = new HashMap<>(builder.chargers);
+        this.lowPercent = builder.lowPercent;
+        this.targetPercent = builder.targetPercent;
+        this.maxStartPercent = builder.maxStartPercent;
+        this.marginMs = builder.marginMs;
+        this.minSpacingMs = builder.minSpacingMs;
+        this.dispatchTimeoutMs = builder.dispatchTimeoutMs;
+        this.lookahead = builder.lookahead;
+        forecaster.addListener(this::onForecast);
+    }
+
+    /**
+     * Assigns a robot to a location, whose chargers it shares. Robots start in a default location.
+     * Ignored after {@link #shutdown}.
+     *
+     * @param robotId The robot ID
+     * @param locationId The location ID
+     */
+    public void setLocation(String robotId, String locationId) {
+        List<Robot> dispatches;
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+            Robot robot = robots.computeIfAbsent(robotId, Robot::new);
+            Location previous = robot.location;
+            Location next = location(locationId);
+            if (previous == next) {
+                return;
+            }
+            if (previous != null) {
+                previous.waiting.remove(robot);
+                previous.occupying.remove(robot);
+            }
+            robot.location = next;
+            if (robot.status == Status.WAITING) {
+                next.waiting.add(robot);
+            } else if (robot.status == Status.DISPATCHED || robot.status == Status.CHARGING) {
+                next.occupying.add(robot);
+            }
+            dispatches = new ArrayList<>();
+            long nowMs = System.currentTimeMillis();
+            if (previous != null) {
+                evaluate(previous, nowMs, dispatches);
+            }
+            evaluate(next, nowMs, dispatches);
+        }
+        dispatch(dispatches);
+    }
+
+    /**
+     * Gets the discharging robots of a location, most urgent first.
+     *
+     * @param locationId The location ID
+     * @return The robot IDs
+     */
+    public synchronized List<String> getQueue(String locationId) {
+        Location location = locations.get(locationId);
+        List<String> queue = new ArrayList<>();
+        if (location != null) {
+            for (Robot robot : location.waiting) {
+                queue.add(robot.id);
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Gets the robots on or on their way to a location's chargers.
+     *
+     * @param locationId The location ID
+     * @return The robot IDs
+     */
+    public synchronized List<String> getCharging(String locationId) {
+        Location location = locations.get(locationId);
+        List<String> charging = new ArrayList<>();
+        if (location != null) {
+            for (Robot robot : location.occupying) {
+                charging.add(robot.id);
+            }
+        }
+        return charging;
+    }
+
+    /**
+     * Gets the time a discharging robot is forecast to reach the low threshold.
+     *
+     * @param robotId The robot ID
+     * @return The deadline, or -1 if the robot is not discharging
+     */
+    public synchronized long getDeadlineMs(String robotId) {
+        Robot robot = robots.get(robotId);
+        return robot != null && robot.status == Status.WAITING ? robot.deadlineMs : -1;
+    }
+
+    public long getDispatched() {
+        return dispatched.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return Number of dispatched robots that did not start charging in time
+     */
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    /**
+     * @return Number of times a location's head of queue was re-checked
+     */
+    public long getEvaluations() {
+        return evaluations.get();
+    }
+
+    /**
+     * Stops the timer; later forecast updates and location changes are ignored.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+        }
+        timer.shutdownNow();
+    }
+
+    /**
+     * Moves a robot in its location's order after its forecast changed and re-checks the location.
+     */
+    private void onForecast(String robotId) {
+        BatteryState battery = forecaster.getBatteryState(robotId);
+        if (battery == null) {
+            return;
+        }
+        List<Robot> dispatches = new ArrayList<>();
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+            long nowMs = System.currentTimeMillis();
+            Robot robot = robots.computeIfAbsent(robotId, Robot::new);
+            if (robot.location == null) {
+                robot.location = location(DEFAULT_LOCATION);
+            }
+            Location location = robot.location;
+            location.waiting.remove(robot);
+            robot.chargePercent = battery.getChargePercent();
+            robot.active = forecaster.isActive(robotId);
+            robot.chargeMs = Math.max(0, forecaster.getTimeToChargeMs(robotId, targetPercent));
+            switch (battery.getState()) {
+                case STATE_CHARGING:
+                case STATE_FULL:
+                    if (robot.status != Status.CHARGING && robot.status != Status.DISPATCHED) {
+                        location.occupying.add(robot);
+                    }
+                    robot.status = Status.CHARGING;
+                    robot.chargeEndMs = nowMs + robot.chargeMs;
+                    break;
+                case STATE_DISCHARGING:
+                    if (robot.status == Status.DISPATCHED && nowMs - robot.dispatchedMs < dispatchTimeoutMs) {
+                        // Still on its way to the charger
+                        break;
+                    }
+                    location.occupying.remove(robot);
+                    long timeToLowMs = forecaster.getTimeToThresholdMs(robotId, lowPercent);
+                    if (timeToLowMs < 0 || timeToLowMs == Long.MAX_VALUE) {
+                        robot.status = Status.IDLE;
+                        break;
+                    }
+                    robot.status = Status.WAITING;
+                    robot.deadlineMs = forecaster.getLastUpdateMs(robotId) + timeToLowMs;
+                    location.waiting.add(robot);
+                    break;
+                default:
+                    if (robot.status != Status.DISPATCHED) {
+                        location.occupying.remove(robot);
+                        robot.status = Status.IDLE;
+                    }
+                    break;
+            }
+            evaluate(location, nowMs, dispatches);
+        }
+        dispatch(dispatches);
+    }
+
+    /**
+     * Re-checks a location when its timer fires.
+     */
+    private void onWakeup(Location location) {
+        List<Robot> dispatches = new ArrayList<>();
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+            location.wakeup = null;
+            location.wakeupMs = Long.MAX_VALUE;
+            evaluate(location, System.currentTimeMillis(), dispatches);
+        }
+        dispatch(dispatches);
+    }
+
+    /**
+     * Decides whether the head of a location's queue must go charging now, and when to check again.
+     * Looks at most at the first {@code lookahead} robots. Must hold the lock.
+     */
+    private void evaluate(Location location, long nowMs, List<Robot> dispatches) {
+        evaluations.incrementAndGet();
+        expireDispatches(location, nowMs);
+
+        // Times each charger frees up: the earliest ends of the robots holding chargers
+        long[] free = new long[location.chargers];
+        Arrays.fill(free, nowMs);
+        long[] ends = new long[location.occupying.size()];
+        for (int i = 0; i < ends.length; i++) {
+            Robot robot = location.occupying.get(i);
+            ends[i] = robot.status == Status.DISPATCHED
+                    ? nowMs + robot.chargeMs : Math.max(nowMs, robot.chargeEndMs);
+        }
+        Arrays.sort(ends);
+        int held = Math.min(ends.length, free.length);
+        for (int i = 0; i < held; i++) {
+            free[free.length - held + i] = ends[i];
+        }
+        // With more robots than chargers, the extra ones are already queued at the chargers
+        for (int i = held; i < ends.length; i++) {
+            Arrays.sort(free);
+            free[0] += ends[i] - nowMs;
+        }
+
+        // Assign the most urgent robots to chargers in deadline order and find the least slack
+        long leastSlackMs = Long.MAX_VALUE;
+        int seen = 0;
+        for (Robot robot : location.waiting) {
+            if (seen++ == lookahead) {
+                break;
+            }
+            Arrays.sort(free);
+            long startMs = free[0];
+            free[0] = startMs + robot.chargeMs;
+            leastSlackMs = Math.min(leastSlackMs, robot.deadlineMs - marginMs - startMs);
+        }
+
+        long nextMs = Long.MAX_VALUE;
+        if (leastSlackMs != Long.MAX_VALUE) {
+            long dueMs = leastSlackMs <= 0 ? nowMs : nowMs + leastSlackMs;
+            long spacedMs = location.lastDispatchMs == Long.MIN_VALUE
+                    ? dueMs : Math.max(dueMs, location.lastDispatchMs + minSpacingMs);
+            if (spacedMs <= nowMs && location.occupying.size() < location.chargers) {
+                Robot robot = pick(location, nowMs);
+                if (robot != null) {
+                    location.waiting.remove(robot);
+                    location.occupying.add(robot);
+                    robot.status = Status.DISPATCHED;
+                    robot.dispatchedMs = nowMs;
+                    location.lastDispatchMs = nowMs;
+                    dispatches.add(robot);
+                    // Re-check right after the spacing for the robots behind it
+                    nextMs = location.waiting.isEmpty() ? Long.MAX_VALUE : nowMs + minSpacingMs;
+                } else {
+                    // Only robots on missions are due; their next forecast re-checks sooner
+                    nextMs = nowMs + Math.max(minSpacingMs, 1000);
+                }
+            } else if (spacedMs > nowMs) {
+                nextMs = spacedMs;
+            }
+            // With all chargers held, a charger freeing up or a dispatch timing out re-checks
+        }
+        for (Robot robot : location.occupying) {
+            if (robot.status == Status.DISPATCHED) {
+                nextMs = Math.min(nextMs, robot.dispatchedMs + dispatchTimeoutMs);
+            }
+        }
+        schedule(location, nextMs, nowMs);
+    }
+
+    /**
+     * Picks the most urgent robot that may leave for a charger. Must hold the lock.
+     */
+    private Robot pick(Location location, long nowMs) {
+        int seen = 0;
+        for (Robot robot : location.waiting) {
+            if (seen++ == lookahead) {
+                break;
+            }
+            if (robot.chargePercent > maxStartPercent) {
+                continue;
+            }
+            if (!robot.active || robot.deadlineMs - marginMs <= nowMs) {
+                return robot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Frees the chargers held by dispatched robots that never reported charging. Must hold the lock.
+     */
+    private void expireDispatches(Location location, long nowMs) {
+        for (int i = location.occupying.size() - 1; i >= 0; i--) {
+            Robot robot = location.occupying.get(i);
+            if (robot.status == Status.DISPATCHED && nowMs - robot.dispatchedMs >= dispatchTimeoutMs) {
+                timedOut.incrementAndGet();
+                logger.warning("Robot " + robot.id + " did not start charging within " + dispatchTimeoutMs + "ms");
+                location.occupying.remove(i);
+                robot.status = Status.IDLE;
+            }
+        }
+    }
+
+    /**
+     * Moves a location's wake-up timer. Must hold the lock.
+     */
+    private void schedule(Location location, long atMs, long nowMs) {
+        if (atMs == location.wakeupMs) {
+            return;
+        }
+        if (location.wakeup != null) {
+            location.wakeup.cancel(false);
+            location.wakeup = null;
+        }
+        location.wakeupMs = atMs;
+        if (atMs != Long.MAX_VALUE) {
+            try {
+                location.wakeup = timer.schedule(() -> onWakeup(location), Math.max(0, atMs - nowMs), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shut down; nothing is re-checked any more
+                location.wakeupMs = Long.MAX_VALUE;
+                logger.fine("Charge scheduler timer stopped, not waking location " + location.id);
+            }
+        }
+    }
+
+    /**
+     * Sends robots to charge, outside the lock. A failed command puts the robot back in its queue.
+     */
+    private void dispatch(List<Robot> robots) {
+        for (Robot robot : robots) {
+            logger.info("Sending robot " + robot.id + " at " + robot.chargePercent + "% to charge");
+            dispatched.incrementAndGet();
+            BatteryState battery = forecaster.getBatteryState(robot.id);
+            RobotState state = battery == null
+                    ? RobotState.getDefaultInstance() : RobotState.newBuilder().setBattery(battery).build();
+            try {
+                chargeAction.execute(robot.id, state).whenComplete((result, error) -> {
+                    if (error != null) {
+                        logger.warning("ChargeRobot failed for robot " + robot.id + ": " + error.getMessage());
+                        release(robot);
+                    }
+                });
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "ChargeRobot failed for robot " + robot.id, e);
+                release(robot);
+            }
+        }
+    }
+
+    /**
+     * Returns a robot whose dispatch failed to its queue.
+     */
+    private void release(Robot robot) {
+        failed.incrementAndGet();
+        synchronized (this) {
+            if (robot.status != Status.DISPATCHED || shutdown) {
+                return;
+            }
+            robot.location.occupying.remove(robot);
+            robot.status = Status.IDLE;
+        }
+        // Re-queues the robot from its latest forecast
+        onForecast(robot.id);
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private Location location(String locationId) {
+        return locations.computeIfAbsent(locationId,
+                id -> new Location(id, chargers.getOrDefault(id, chargersPerLocation)));
+    }
+
+    public static class Builder {
+        private BatteryForecaster forecaster;
+        private RuleAction chargeAction;
+        private int chargersPerLocation = 2;
+        private final Map<String, Integer> chargers = new HashMap<>();
+        private double lowPercent = 20;
+        private double targetPercent = 90;
+        private double maxStartPercent = 80;
+        private long marginMs = TimeUnit.MINUTES.toMillis(10);
+        private long minSpacingMs = TimeUnit.MINUTES.toMillis(2);
+        private long dispatchTimeoutMs = TimeUnit.MINUTES.toMillis(5);
+        private int lookahead = 32;
+
+        public Builder forecaster(BatteryForecaster forecaster) {
+            this.forecaster = forecaster;
+            return this;
+        }
+
+        /**
+         * Sends robots to charge with {@code ChargeRobot} through the client, with
+         * {@link RuleActions#chargeRobot}. The command is not idempotent, so it is not retried once it
+         * may have reached the robot; a failed dispatch returns the robot to its queue instead.
+         */
+        public Builder client(BearRoboticsClient client) {
+            this.chargeAction = RuleActions.chargeRobot(client);
+            return this;
+        }
+
+        public Builder chargeAction(RuleAction chargeAction) {
+            this.chargeAction = chargeAction;
+            return this;
+        }
+
+        public Builder chargersPerLocation(int chargersPerLocation) {
+            this.chargersPerLocation = chargersPerLocation;
+            return this;
+        }
+
+        /**
+         * Overrides the number of chargers of one location.
+         */
+        public Builder chargers(String locationId, int count) {
+            this.chargers.put(locationId, count);
+            return this;
+        }
+
+        /**
+         * Charge percent robots must not drop below before charging.
+         */
+        public Builder lowPercent(double lowPercent) {
+            this.lowPercent = lowPercent;
+            return this;
+        }
+
+        /**
+         * Charge percent a charge is expected to reach, used to forecast charging times.
+         */
+        public Builder targetPercent(double targetPercent) {
+            this.targetPercent = targetPercent;
+            return this;
+        }
+
+        /**
+         * Robots above this charge percent are never sent to charge.
+         */
+        public Builder maxStartPercent(double maxStartPercent) {
+            this.maxStartPercent = maxStartPercent;
+            return this;
+        }
+
+        public Builder margin(long margin, TimeUnit unit) {
+            this.marginMs = unit.toMillis(margin);
+            return this;
+        }
+
+        public Builder minSpacing(long spacing, TimeUnit unit) {
+            this.minSpacingMs = unit.toMillis(spacing);
+            return this;
+        }
+
+        /**
+         * How long a dispatched robot holds a charger before it reports charging.
+         */
+        public Builder dispatchTimeout(long timeout, TimeUnit unit) {
+            this.dispatchTimeoutMs = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Number of most urgent robots per location checked on each update.
+         */
+        public Builder lookahead(int lookahead) {
+            this.lookahead = lookahead;
+            return this;
+        }
+
+        public ChargeScheduler build() {
+            if (forecaster == null) {
+                throw new IllegalArgumentException("forecaster is required");
+            }
+            if (chargeAction == null) {
+                throw new IllegalArgumentException("client or chargeAction is required");
+            }
+            if (chargersPerLocation < 1 || chargers.values().stream().anyMatch(count -> count < 1)) {
+                throw new IllegalArgumentException("Every location needs at least 1 charger");
+            }
+            if (lookahead < 1) {
+                throw new IllegalArgumentException("lookahead must be at least 1");
+            }
+            if (marginMs < 0 || minSpacingMs < 0 || dispatchTimeoutMs <= 0) {
+                throw new IllegalArgumentException("margin and minSpacing must not be negative, dispatchTimeout must be positive");
+            }
+            return new ChargeScheduler(this);
+        }
+    }
+}
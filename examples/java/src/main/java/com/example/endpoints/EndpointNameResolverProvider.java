@@ -0,0 +1,209 @@
+package com.example.endpoints;
+
+import io.grpc.Attributes;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+import io.grpc.NameResolverRegistry;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+/**
+ * Name resolver for a fixed list of equivalent API endpoints, e.g. several on-prem relays.
+ *
+ * Targets have the form {@code bear-endpoints:///relay-1.local:443,relay-2.local:443}. Each endpoint
+ * is resolved through DNS into its own address group, carrying the endpoint as its TLS authority so
+ * every relay is verified against its own certificate. The load balancer then treats each endpoint
+ * as one backend. Endpoints that fail to resolve are left out until the next refresh. A malformed
+ * endpoint, such as one with a non-numeric port, fails resolution with {@code INVALID_ARGUMENT}.
+ */
+public class EndpointNameResolverProvider extends NameResolverProvider {
+    private static final Logger logger = Logger.getLogger(EndpointNameResolverProvider.class.getName());
+
+    /**
+     * URI scheme handled by this provider.
+     */
+    public static final String SCHEME = "bear-endpoints";
+
+    private static final int DEFAULT_PORT = 443;
+    private static boolean registered;
+
+    /**
+     * Registers the provider with the default registry, once per process.
+     */
+    public static synchronized void register() {
+        if (!registered) {
+            NameResolverRegistry.getDefaultRegistry().register(new EndpointNameResolverProvider());
+            registered = true;
+        }
+    }
+
+    /**
+     * Builds the channel target for a list of endpoints.
+     *
+     * @param endpoints Endpoints as {@code host:port}, or {@code host} for port 443
+     * @return The target
+     */
+    public static String target(List<String> endpoints) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("At least one endpoint is required");
+        }
+        return SCHEME + ":///" + String.join(",", endpoints);
+    }
+
+    @Override
+    protected boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    protected int priority() {
+        return 5;
+    }
+
+    @Override
+    public String getDefaultScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public NameResolver newNameResolver(URI targetUri, NameResolver.Args args) {
+        if (!SCHEME.equals(targetUri.getScheme())) {
+            return null;
+        }
+        String path = targetUri.getPath();
+        if (path == null || path.length() < 2) {
+            throw new IllegalArgumentException("No endpoints in target " + targetUri);
+        }
+        List<String> endpoints = Arrays.asList(path.substring(1).split(","));
+        return new Resolver(endpoints, args);
+    }
+
+    /**
+     * Resolves the endpoints of one channel.
+     */
+    private static final class Resolver extends NameResolver {
+        private final List<String> endpoints;
+        private final Executor executor;
+        private final SynchronizationContext syncContext;
+        private Listener2 listener;
+        private boolean resolving;
+        private boolean shutdown;
+
+        Resolver(List<String> endpoints, NameResolver.Args args) {
+            this.endpoints = endpoints;
+            this.executor = args.getOffloadExecutor() != null ? args.getOffloadExecutor() : Runnable::run;
+            this.syncContext = args.getSynchronizationContext();
+        }
+
+        @Override
+        public String getServiceAuthority() {
+            return endpoints.get(0);
+        }
+
+        @Override
+        public void start(Listener2 listener) {
+            this.listener = listener;
+            resolve();
+        }
+
+        @Override
+        public void refresh() {
+            resolve();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        // Called in the synchronization context
+        private void resolve() {
+            if (resolving || shutdown) {
+                return;
+            }
+            resolving = true;
+            executor.execute(() -> {
+                // DNS lookups block, so they run on the offload executor
+                List<EquivalentAddressGroup> groups = new ArrayList<>();
+                Status error = null;
+                try {
+                    for (String endpoint : endpoints) {
+                        EquivalentAddressGroup group = lookup(endpoint);
+                        if (group != null) {
+                            groups.add(group);
+                        }
+                    }
+                    if (groups.isEmpty()) {
+                        error = Status.UNAVAILABLE.withDescription("None of the endpoints " + endpoints + " resolved");
+                    }
+                } catch (IllegalArgumentException e) {
+                    // A malformed port, e.g. relay-1.local:44x, will not resolve on a refresh either
+                    error = Status.INVALID_ARGUMENT.withDescription("Invalid endpoint in " + endpoints + ": " + e.getMessage())
+                            .withCause(e);
+                } catch (RuntimeException e) {
+                    error = Status.UNAVAILABLE.withDescription("Failed to resolve " + endpoints).withCause(e);
+                }
+                Status failure = error;
+                syncContext.execute(() -> {
+                    try {
+                        if (shutdown) {
+                            return;
+                        }
+                        if (failure != null) {
+                            listener.onError(failure);
+                        } else {
+                            listener.onResult(ResolutionResult.newBuilder().setAddresses(groups).build());
+                        }
+                    } finally {
+                        resolving = false;
+                    }
+                });
+            });
+        }
+
+        /**
+         * Resolves one endpoint.
+         *
+         * @return The endpoint's address group, or null if its host did not resolve
+         * @throws IllegalArgumentException If the endpoint's port is malformed or out of range
+         */
+        private EquivalentAddressGroup lookup(String endpoint) {
+            String host = endpoint;
+            int port = DEFAULT_PORT;
+            int colon = endpoint.lastIndexOf(':');
+            if (colon > 0 && endpoint.indexOf(']') < colon) {
+                host = endpoint.substring(0, colon);
+                port = Integer.parseInt(endpoint.substring(colon + 1));
+            }
+            if (host.startsWith("[") && host.endsWith("]")) {
+                host = host.substring(1, host.length() - 1);
+            }
+            try {
+                List<SocketAddress> addresses = new ArrayList<>();
+                for (InetAddress address : InetAddress.getAllByName(host)) {
+                    addresses.add(new InetSocketAddress(address, port));
+                }
+                Attributes attributes = Attributes.newBuilder()
+                        .set(EquivalentAddressGroup.ATTR_AUTHORITY_OVERRIDE, endpoint)
+                        .build();
+                return new EquivalentAddressGroup(Collections.unmodifiableList(addresses), attributes);
+            } catch (UnknownHostException e) {
+                logger.warning("Endpoint " + endpoint + " did not resolve: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.endpoints;
+
+import io.grpc.ManagedChannelBuilder;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates channels balanced over several equivalent API endpoints.
+ *
+ * The channel keeps a connection to every endpoint and spreads calls over the ready ones with
+ * {@code round_robin}; a call never waits on the reconnect timer of a broken endpoint while another
+ * one is ready. Around the balancer sits {@code outlier_detection}, which ejects endpoints that fail
+ * a much larger share of their calls than the others (for example a relay whose upstream is down
+ * but which still accepts connections) for an increasing time, never more than half of them at once.
+ */
+public final class MultiEndpointChannels {
+
+    private MultiEndpointChannels() {
+    }
+
+    /**
+     * Creates a channel builder for a list of endpoints. Transport security and credentials are left to the caller.
+     *
+     * @param endpoints Endpoints as {@code host:port}, or {@code host} for port 443
+     * @return The channel builder
+     */
+    public static ManagedChannelBuilder<?> forEndpoints(List<String> endpoints) {
+        EndpointNameResolverProvider.register();
+        return ManagedChannelBuilder.forTarget(EndpointNameResolverProvider.target(endpoints))
+                .defaultServiceConfig(serviceConfig());
+    }
+
+    /**
+     * Gets the service config selecting round-robin with outlier ejection.
+     *
+     * @return The service config as parsed JSON
+     */
+    public static Map<String, ?> serviceConfig() {
+        return serviceConfig("10s");
+    }
+
+    /**
+     * Gets the service config selecting round-robin with outlier ejection, evaluated at the given interval.
+     *
+     * @param interval How often endpoints are checked for ejection, as a duration string, e.g. {@code "10s"}
+     * @return The service config as parsed JSON
+     */
+    static Map<String, ?> serviceConfig(String interval) {
+        Map<String, Object> failurePercentageEjection = new LinkedHashMap<>();
+        failurePercentageEjection.put("threshold", 50.0);
+        failurePercentageEjection.put("enforcementPercentage", 100.0);
+        failurePercentageEjection.put("minimumHosts", 2.0);
+        failurePercentageEjection.put("requestVolume", 20.0);
+
+        Map<String, Object> outlierDetection = new LinkedHashMap<>();
+        outlierDetection.put("interval", interval);
+        outlierDetection.put("baseEjectionTime", "30s");
+        outlierDetection.put("maxEjectionTime", "300s");
+        outlierDetection.put("maxEjectionPercent", 50.0);
+        outlierDetection.put("failurePercentageEjection", failurePercentageEjection);
+        outlierDetection.put("childPolicy",
+                Collections.singletonList(Collections.singletonMap("round_robin", Collections.emptyMap())));
+
+        return Collections.singletonMap("loadBalancingConfig",
+                Collections.singletonList(Collections.singletonMap("outlier_detection_experimental", outlierDetection)));
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.export;
+
+/**
+ * Physical types and encodings of segment columns.
+ */
+public enum ColumnType {
+    /**
+     * 64-bit integers stored as zigzag varint deltas from the previous row: timestamps, sequence numbers.
+     */
+    DELTA_LONG,
+
+    /**
+     * 64-bit integers stored as zigzag varints: small values such as percentages and signal levels.
+     */
+    LONG,
+
+    /**
+     * Doubles stored as the XOR of their bits with the previous row's, so slowly changing values
+     * become runs of zero bytes.
+     */
+    DOUBLE,
+
+    /**
+     * Strings stored once in a dictionary and referenced per row by varint code: robot IDs, enum names.
+     */
+    DICTIONARY
+}
@@ -0,0 +1,336 @@
+package com.example.export;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads segment files written by {@link SegmentWriter}.
+ *
+ * The file is memory-mapped and only its header is parsed on open; each column is decompressed and
+ * decoded when it is read, straight into a primitive array, so a scan touches only the columns it
+ * needs and runs as a tight loop over arrays. Dictionary columns can be read as codes plus the
+ * dictionary, so filters and group-bys on robot IDs or enum values compare ints instead of strings.
+ */
+public class SegmentReader {
+    private final Path path;
+    private final ByteBuffer buffer;
+    private final String table;
+    private final int rowCount;
+    private final Map<String, ColumnChunk> columns = new LinkedHashMap<>();
+
+    private SegmentReader(Path path, ByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        try {
+            if (buffer.getInt() != SegmentWriter.MAGIC) {
+                throw new IOException("Not a segment file: " + path);
+            }
+            int version = buffer.get();
+            if (version != SegmentWriter.VERSION) {
+                throw new IOException("Unsupported segment version " + version + ": " + path);
+            }
+            this.table = readString(buffer);
+            this.rowCount = buffer.getInt();
+            int columnCount = buffer.getInt();
+            for (int i = 0; i < columnCount; i++) {
+                String name = readString(buffer);
+                ColumnType type = ColumnType.values()[buffer.get()];
+                int encodedLength = buffer.getInt();
+                int compressedLength = buffer.getInt();
+                if (encodedLength < 0 || compressedLength < 0) {
+                    throw new IOException("Corrupt column " + name + " in segment file: " + path);
+                }
+                columns.put(name, new ColumnChunk(type, buffer.position(), compressedLength, encodedLength));
+                buffer.position(buffer.position() + compressedLength);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException | ArrayIndexOutOfBoundsException
+                 | NegativeArraySizeException e) {
+            throw new IOException("Truncated or corrupt segment file: " + path, e);
+        }
+    }
+
+    /**
+     * Opens a segment file.
+     *
+     * @param path The file
+     * @return The reader
+     * @throws IOException If the file cannot be read or is not a valid segment
+     */
+    public static SegmentReader open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new SegmentReader(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Gets the table the segment belongs to.
+     *
+     * @return The table name
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * Gets the number of rows.
+     *
+     * @return The row count
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Gets the column names in schema order.
+     *
+     * @return The column names
+     */
+    public List<String> getColumnNames() {
+        return Collections.unmodifiableList(new ArrayList<>(columns.keySet()));
+    }
+
+    /**
+     * Gets the type of a column.
+     *
+     * @param column The column name
+     * @return The column type
+     * @throws IllegalArgumentException If the column does not exist
+     */
+    public ColumnType getColumnType(String column) {
+        return chunk(column).type;
+    }
+
+    /**
+     * Reads an integer column.
+     *
+     * @param column Name of a {@link ColumnType#DELTA_LONG} or {@link ColumnType#LONG} column
+     * @return One value per row
+     * @throws IOException If the column data is corrupt
+     */
+    public long[] readLongs(String column) throws IOException {
+        ColumnChunk chunk = chunk(column);
+        if (chunk.type != ColumnType.DELTA_LONG && chunk.type != ColumnType.LONG) {
+            throw new IllegalArgumentException("Column " + column + " is not an integer column");
+        }
+        ByteBuffer data = decompress(chunk);
+        long[] values = new long[rowCount];
+        try {
+            if (chunk.type == ColumnType.DELTA_LONG) {
+                long previous = 0;
+                for (int i = 0; i < rowCount; i++) {
+                    previous += unzigzag(readVarLong(data));
+                    values[i] = previous;
+                }
+            } else {
+                for (int i = 0; i < rowCount; i++) {
+                    values[i] = unzigzag(readVarLong(data));
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw corrupt(column, e);
+        }
+        return values;
+    }
+
+    /**
+     * Reads a floating-point column.
+     *
+     * @param column Name of a {@link ColumnType#DOUBLE} column
+     * @return One value per row
+     * @throws IOException If the column data is corrupt
+     */
+    public double[] readDoubles(String column) throws IOException {
+        ColumnChunk chunk = chunk(column);
+        if (chunk.type != ColumnType.DOUBLE) {
+            throw new IllegalArgumentException("Column " + column + " is not a double column");
+        }
+        ByteBuffer data = decompress(chunk);
+        long[] bits = new long[rowCount];
+        try {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                for (int i = 0; i < rowCount; i++) {
+                    bits[i] |= (data.get() & 0xFFL) << shift;
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw corrupt(column, e);
+        }
+        double[] values = new double[rowCount];
+        long previous = 0;
+        for (int i = 0; i < rowCount; i++) {
+            previous ^= bits[i];
+            values[i] = Double.longBitsToDouble(previous);
+        }
+        return values;
+    }
+
+    /**
+     * Reads the dictionary of a dictionary column. Code 0 is always the empty string.
+     *
+     * @param column Name of a {@link ColumnType#DICTIONARY} column
+     * @return The dictionary, indexed by code
+     * @throws IOException If the column data is corrupt
+     */
+    public String[] readDictionary(String column) throws IOException {
+        return readDictionary(column, decompress(dictionaryChunk(column)));
+    }
+
+    /**
+     * Reads the per-row codes of a dictionary column.
+     *
+     * @param column Name of a {@link ColumnType#DICTIONARY} column
+     * @return One dictionary code per row
+     * @throws IOException If the column data is corrupt
+     */
+    public int[] readCodes(String column) throws IOException {
+        ByteBuffer data = decompress(dictionaryChunk(column));
+        readDictionary(column, data);
+        int[] codes = new int[rowCount];
+        try {
+            for (int i = 0; i < rowCount; i++) {
+                codes[i] = (int) readVarLong(data);
+            }
+        } catch (BufferUnderflowException e) {
+            throw corrupt(column, e);
+        }
+        return codes;
+    }
+
+    /**
+     * Reads a dictionary column as strings.
+     *
+     * @param column Name of a {@link ColumnType#DICTIONARY} column
+     * @return One value per row
+     * @throws IOException If the column data is corrupt
+     */
+    public String[] readStrings(String column) throws IOException {
+        ByteBuffer data = decompress(dictionaryChunk(column));
+        String[] dictionary = readDictionary(column, data);
+        String[] values = new String[rowCount];
+        try {
+            for (int i = 0; i < rowCount; i++) {
+                values[i] = dictionary[(int) readVarLong(data)];
+            }
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw corrupt(column, e);
+        }
+        return values;
+    }
+
+    private ColumnChunk chunk(String column) {
+        ColumnChunk chunk = columns.get(column);
+        if (chunk == null) {
+            throw new IllegalArgumentException("Unknown column: " + column);
+        }
+        return chunk;
+    }
+
+    private ColumnChunk dictionaryChunk(String column) {
+        ColumnChunk chunk = chunk(column);
+        if (chunk.type != ColumnType.DICTIONARY) {
+            throw new IllegalArgumentException("Column " + column + " is not a dictionary column");
+        }
+        return chunk;
+    }
+
+    /**
+     * Inflates a column.
+     *
+     * @param chunk The column's location in the file
+     * @return The encoded column
+     * @throws IOException If the column data is corrupt
+     */
+    private ByteBuffer decompress(ColumnChunk chunk) throws IOException {
+        ByteBuffer compressed = buffer.duplicate();
+        compressed.position(chunk.offset).limit(chunk.offset + chunk.compressedLength);
+        byte[] encoded = new byte[chunk.encodedLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int n = 0;
+            while (n < encoded.length && !inflater.finished()) {
+                int inflated = inflater.inflate(encoded, n, encoded.length - n);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+            if (n != encoded.length) {
+                throw new IOException("Truncated column in " + path);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt column in " + path, e);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(encoded);
+    }
+
+    private String[] readDictionary(String column, ByteBuffer data) throws IOException {
+        try {
+            String[] dictionary = new String[(int) readVarLong(data)];
+            for (int i = 0; i < dictionary.length; i++) {
+                byte[] bytes = new byte[(int) readVarLong(data)];
+                data.get(bytes);
+                dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return dictionary;
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw corrupt(column, e);
+        }
+    }
+
+    private IOException corrupt(String column, RuntimeException cause) {
+        return new IOException("Corrupt column " + column + " in " + path, cause);
+    }
+
+    private static long readVarLong(ByteBuffer data) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = data.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Location and sizes of one column in the file.
+     */
+    private static final class ColumnChunk {
+        private final ColumnType type;
+        private final int offset;
+        private final int compressedLength;
+        private final int encodedLength;
+
+        ColumnChunk(ColumnType type, int offset, int compressedLength, int encodedLength) {
+            this.type = type;
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.encodedLength = encodedLength;
+        }
+    }
+}
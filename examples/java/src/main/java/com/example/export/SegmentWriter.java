@@ -0,0 +1,368 @@
+package com.example.export;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * In-memory buffer of one segment, written out as a columnar segment file.
+ *
+ * Rows are appended into one primitive array per column. On write, rows are ordered by the schema's
+ * sort columns (typically robot ID, then timestamp) so the delta and XOR encodings see each robot's
+ * consecutive values next to each other, and every column is encoded and Deflate-compressed on its
+ * own so a reader only decompresses the columns it scans. The file is written under a temporary name
+ * and moved into place, so readers never see a partial segment.
+ *
+ * File layout, integers big-endian, strings as an int length followed by UTF-8 bytes:
+ * <pre>
+ * magic "BRSG" (int), version (byte), table name, row count (int), column count (int)
+ * per column: name, type ordinal (byte), encoded length (int), compressed length (int), compressed bytes
+ * </pre>
+ * Column encodings are described on {@link ColumnType}. Not thread-safe.
+ */
+public class SegmentWriter {
+    static final int MAGIC = 0x42525347;
+    static final int VERSION = 1;
+
+    private final Schema schema;
+    private final long[][] longs;
+    private final double[][] doubles;
+    private final int[][] codes;
+    private final List<Map<String, Integer>> dictionaries = new ArrayList<>();
+    private int rowCount;
+
+    /**
+     * Creates an empty segment.
+     *
+     * @param schema The table schema
+     * @param initialCapacity Number of rows to allocate space for up front
+     */
+    public SegmentWriter(Schema schema, int initialCapacity) {
+        this.schema = schema;
+        int columnCount = schema.names.size();
+        this.longs = new long[columnCount][];
+        this.doubles = new double[columnCount][];
+        this.codes = new int[columnCount][];
+        int capacity = Math.max(initialCapacity, 16);
+        for (int i = 0; i < columnCount; i++) {
+            switch (schema.types.get(i)) {
+                case DELTA_LONG:
+                case LONG:
+                    longs[i] = new long[capacity];
+                    dictionaries.add(null);
+                    break;
+                case DOUBLE:
+                    doubles[i] = new double[capacity];
+                    dictionaries.add(null);
+                    break;
+                default:
+                    codes[i] = new int[capacity];
+                    // Code 0 is the empty string, the value of unset cells
+                    Map<String, Integer> dictionary = new HashMap<>();
+                    dictionary.put("", 0);
+                    dictionaries.add(dictionary);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Gets the schema.
+     *
+     * @return The schema
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Gets the number of completed rows.
+     *
+     * @return The row count
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Sets an integer cell of the current row.
+     *
+     * @param column Index of a {@link ColumnType#DELTA_LONG} or {@link ColumnType#LONG} column
+     * @param value The value
+     */
+    public void setLong(int column, long value) {
+        long[] values = longs[column];
+        if (values == null) {
+            throw new IllegalArgumentException("Column " + schema.names.get(column) + " is not an integer column");
+        }
+        values[rowCount] = value;
+    }
+
+    /**
+     * Sets a floating-point cell of the current row.
+     *
+     * @param column Index of a {@link ColumnType#DOUBLE} column
+     * @param value The value
+     */
+    public void setDouble(int column, double value) {
+        double[] values = doubles[column];
+        if (values == null) {
+            throw new IllegalArgumentException("Column " + schema.names.get(column) + " is not a double column");
+        }
+        values[rowCount] = value;
+    }
+
+    /**
+     * Sets a string cell of the current row.
+     *
+     * @param column Index of a {@link ColumnType#DICTIONARY} column
+     * @param value The value
+     */
+    public void setString(int column, String value) {
+        int[] values = codes[column];
+        if (values == null) {
+            throw new IllegalArgumentException("Column " + schema.names.get(column) + " is not a dictionary column");
+        }
+        Map<String, Integer> dictionary = dictionaries.get(column);
+        values[rowCount] = dictionary.computeIfAbsent(value, key -> dictionary.size());
+    }
+
+    /**
+     * Completes the current row. Cells that were not set are zero or the empty string.
+     */
+    public void endRow() {
+        rowCount++;
+        // Keep room for the next row in every column, set or not
+        for (int i = 0; i < longs.length; i++) {
+            if (longs[i] != null && longs[i].length == rowCount) {
+                longs[i] = Arrays.copyOf(longs[i], rowCount * 2);
+            } else if (doubles[i] != null && doubles[i].length == rowCount) {
+                doubles[i] = Arrays.copyOf(doubles[i], rowCount * 2);
+            } else if (codes[i] != null && codes[i].length == rowCount) {
+                codes[i] = Arrays.copyOf(codes[i], rowCount * 2);
+            }
+        }
+    }
+
+    /**
+     * Writes the completed rows to a segment file, replacing any existing file.
+     *
+     * @param path The file to write
+     * @throws IOException If the file cannot be written
+     */
+    public void write(Path path) throws IOException {
+        int[] order = sortOrder();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Deflater deflater = new Deflater();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            writeString(out, schema.table);
+            out.writeInt(rowCount);
+            out.writeInt(schema.names.size());
+            for (int i = 0; i < schema.names.size(); i++) {
+                byte[] encoded = encode(i, order);
+                deflater.reset();
+                deflater.setInput(encoded);
+                deflater.finish();
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(encoded.length / 4 + 64);
+                byte[] chunk = new byte[8192];
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(chunk);
+                    compressed.write(chunk, 0, n);
+                }
+                writeString(out, schema.names.get(i));
+                out.writeByte(schema.types.get(i).ordinal());
+                out.writeInt(encoded.length);
+                out.writeInt(compressed.size());
+                compressed.writeTo(out);
+            }
+        } finally {
+            deflater.end();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Orders the rows by the schema's sort columns.
+     *
+     * @return Row indexes in output order
+     */
+    private int[] sortOrder() {
+        Integer[] order = new Integer[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            order[i] = i;
+        }
+        Comparator<Integer> comparator = null;
+        for (String name : schema.sortColumns) {
+            int column = schema.indexOf(name);
+            Comparator<Integer> next;
+            if (longs[column] != null) {
+                long[] values = longs[column];
+                next = Comparator.comparingLong(row -> values[row]);
+            } else if (doubles[column] != null) {
+                double[] values = doubles[column];
+                next = Comparator.comparingDouble(row -> values[row]);
+            } else {
+                // Clusters equal strings; codes are in first-seen order, which is as good as any
+                int[] values = codes[column];
+                next = Comparator.comparingInt(row -> values[row]);
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        if (comparator != null) {
+            Arrays.sort(order, comparator);
+        }
+        int[] result = new int[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    /**
+     * Encodes one column before compression.
+     *
+     * @param column The column index
+     * @param order Row indexes in output order
+     * @return The encoded column
+     */
+    private byte[] encode(int column, int[] order) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(rowCount * 2 + 16);
+        switch (schema.types.get(column)) {
+            case DELTA_LONG: {
+                long previous = 0;
+                for (int row : order) {
+                    long value = longs[column][row];
+                    writeVarLong(out, zigzag(value - previous));
+                    previous = value;
+                }
+                break;
+            }
+            case LONG:
+                for (int row : order) {
+                    writeVarLong(out, zigzag(longs[column][row]));
+                }
+                break;
+            case DOUBLE: {
+                // XOR with the previous value, then split into byte planes so equal high bytes form runs
+                long[] xored = new long[rowCount];
+                long previous = 0;
+                for (int i = 0; i < rowCount; i++) {
+                    long bits = Double.doubleToLongBits(doubles[column][order[i]]);
+                    xored[i] = bits ^ previous;
+                    previous = bits;
+                }
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    for (long value : xored) {
+                        out.write((int) (value >>> shift));
+                    }
+                }
+                break;
+            }
+            default: {
+                Map<String, Integer> dictionary = dictionaries.get(column);
+                String[] entries = new String[dictionary.size()];
+                for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+                    entries[entry.getValue()] = entry.getKey();
+                }
+                writeVarLong(out, entries.length);
+                for (String entry : entries) {
+                    byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+                    writeVarLong(out, bytes.length);
+                    out.write(bytes, 0, bytes.length);
+                }
+                for (int row : order) {
+                    writeVarLong(out, codes[column][row]);
+                }
+                break;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Name, columns and row order of a table. Not modified once segments are created from it.
+     */
+    public static class Schema {
+        private final String table;
+        private final List<String> names = new ArrayList<>();
+        private final List<ColumnType> types = new ArrayList<>();
+        private final Map<String, Integer> indexes = new LinkedHashMap<>();
+        private final List<String> sortColumns = new ArrayList<>();
+
+        public Schema(String table) {
+            this.table = table;
+        }
+
+        public Schema column(String name, ColumnType type) {
+            if (indexes.putIfAbsent(name, names.size()) != null) {
+                throw new IllegalArgumentException("Duplicate column: " + name);
+            }
+            names.add(name);
+            types.add(type);
+            return this;
+        }
+
+        /**
+         * Sets the columns rows are ordered by when a segment is written.
+         */
+        public Schema sortBy(String... columns) {
+            for (String column : columns) {
+                indexOf(column);
+                sortColumns.add(column);
+            }
+            return this;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        /**
+         * Gets the index of a column.
+         *
+         * @param name The column name
+         * @return The index
+         * @throws IllegalArgumentException If the column does not exist
+         */
+        public int indexOf(String name) {
+            Integer index = indexes.get(name);
+            if (index == null) {
+                throw new IllegalArgumentException("Unknown column: " + name);
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package com.example.export;
+
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import bearrobotics.api.v1.core.Metadata.EventMetadata;
+import bearrobotics.api.v1.core.MissionStatus.MissionState;
+import bearrobotics.api.v1.core.MissionStatus.MissionStates;
+import bearrobotics.api.v1.core.NetworkStatus.NetworkStateWithMetadata;
+import bearrobotics.api.v1.core.NetworkStatus.Wifi;
+import bearrobotics.api.v1.core.PoseOuterClass.Pose;
+import bearrobotics.api.v1.core.PoseOuterClass.PoseWithMetadata;
+import bearrobotics.api.v1.core.RobotStatus.BatteryState;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeBatteryStatusResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeMissionStatusResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeNetworkStatusResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotPoseResponse;
+
+/**
+ * Exports robot telemetry from streaming subscriptions to rolling columnar segment files.
+ *
+ * Attach the observers from {@link #batteryObserver()}, {@link #poseObserver()}, {@link #missionObserver()}
+ * and {@link #networkObserver()} to {@code StreamingClient}s. Each event becomes a row of the matching
+ * table, buffered per table, location and UTC hour of the event timestamp, and written as
+ * <pre>
+ * directory/table/location=LOCATION/hour=yyyy-MM-ddTHH/FIRST_ROW_MILLIS-N.seg
+ * </pre>
+ * so queries can prune by table, location and time from the path alone. A segment is written once it
+ * reaches the row limit, reaches the age limit, or its hour is over; writing happens on a background
+ * thread, never in stream callbacks. Mission status is recorded only when a robot's current mission
+ * or its state changes.
+ *
+ * Every table starts with {@code timestamp_ms}, {@code sequence_number} and {@code robot_id}; rows are
+ * stored by robot, then time. Read segments with {@link SegmentReader}.
+ */
+public class TelemetryExportSink {
+    private static final Logger logger = Logger.getLogger(TelemetryExportSink.class.getName());
+    private static final DateTimeFormatter HOUR = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH").withZone(ZoneOffset.UTC);
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+
+    // Common columns; each table's own columns follow in schema order
+    private static final int TIMESTAMP = 0;
+    private static final int SEQUENCE = 1;
+    private static final int ROBOT = 2;
+
+    private static final SegmentWriter.Schema BATTERY = telemetrySchema("battery")
+            .column("charge_percent", ColumnType.LONG)
+            .column("state", ColumnType.DICTIONARY)
+            .column("charge_method", ColumnType.DICTIONARY);
+    private static final SegmentWriter.Schema POSE = telemetrySchema("pose")
+            .column("x_meters", ColumnType.DOUBLE)
+            .column("y_meters", ColumnType.DOUBLE)
+            .column("heading_radians", ColumnType.DOUBLE);
+    private static final SegmentWriter.Schema MISSION = telemetrySchema("mission")
+            .column("mission_id", ColumnType.DICTIONARY)
+            .column("state", ColumnType.DICTIONARY);
+    private static final SegmentWriter.Schema NETWORK = telemetrySchema("network")
+            .column("ssid", ColumnType.DICTIONARY)
+            .column("signal_level_dbm", ColumnType.LONG)
+            .column("link_quality", ColumnType.LONG);
+
+    private final Path directory;
+    private final Function<String, String> locationOf;
+    private final int maxRowsPerSegment;
+    private final long maxSegmentAgeMs;
+    private final ScheduledExecutorService executor;
+
+    // Guarded by this
+    private final Map<String, OpenSegment> open = new HashMap<>();
+    private final Map<String, String> lastMission = new HashMap<>();
+    private long segmentCounter;
+    private boolean shutdown;
+
+    private final AtomicLong writtenRows = new AtomicLong();
+    private final AtomicLong writtenSegments = new AtomicLong();
+    private final AtomicLong failedRows = new AtomicLong();
+
+    /**
+     * Creates a sink writing segments of up to 100000 rows or 10 minutes.
+     *
+     * @param directory Root directory of the export
+     * @param locationOf Maps a robot ID to its location ID, e.g. {@code id -> "my-location"} for a sink
+     *                   attached to streams of one location; null results are exported as {@code unknown}
+     */
+    public TelemetryExportSink(Path directory, Function<String, String> locationOf) {
+        this(directory, locationOf, 100_000, TimeUnit.MINUTES.toMillis(10));
+    }
+
+    /**
+     * Creates a sink.
+     *
+     * @param directory Root directory of the export
+     * @param locationOf Maps a robot ID to its location ID; null results are exported as {@code unknown}
+     * @param maxRowsPerSegment Rows after which a segment is written
+     * @param maxSegmentAgeMs Time after the first row after which a segment is written, bounding the data
+     *                        lost if the process dies
+     */
+    public TelemetryExportSink(Path directory,
+                               Function<String, String> locationOf,
+                               int maxRowsPerSegment,
+                               long maxSegmentAgeMs) {
+        this.directory = directory;
+        this.locationOf = locationOf;
+        this.maxRowsPerSegment = maxRowsPerSegment;
+        this.maxSegmentAgeMs = maxSegmentAgeMs;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TelemetryExportSink-Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkIntervalMs = Math.max(100, Math.min(maxSegmentAgeMs / 4, 10_000));
+        executor.scheduleAtFixedRate(this::rollExpired, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates an observer for {@code SubscribeBatteryStatus} streams.
+     *
+     * @return The observer
+     */
+    public StreamObserver<SubscribeBatteryStatusResponse> batteryObserver() {
+        return new ExportObserver<SubscribeBatteryStatusResponse>() {
+            @Override
+            public void onNext(SubscribeBatteryStatusResponse response) {
+                BatteryState battery = response.getBatteryState();
+                synchronized (TelemetryExportSink.this) {
+                    OpenSegment segment = startRow(BATTERY, response.getRobotId(), response.getMetadata());
+                    if (segment == null) {
+                        return;
+                    }
+                    segment.writer.setLong(3, battery.getChargePercent());
+                    segment.writer.setString(4, battery.getState().name());
+                    segment.writer.setString(5, battery.getChargeMethod().name());
+                    endRow(segment);
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates an observer for {@code SubscribeRobotPose} streams.
+     *
+     * @return The observer
+     */
+    public StreamObserver<SubscribeRobotPoseResponse> poseObserver() {
+        return new ExportObserver<SubscribeRobotPoseResponse>() {
+            @Override
+            public void onNext(SubscribeRobotPoseResponse response) {
+                synchronized (TelemetryExportSink.this) {
+                    for (Map.Entry<String, PoseWithMetadata> entry : response.getPosesMap().entrySet()) {
+                        OpenSegment segment = startRow(POSE, entry.getKey(), entry.getValue().getMetadata());
+                        if (segment == null) {
+                            return;
+                        }
+                        Pose pose = entry.getValue().getPose();
+                        segment.writer.setDouble(3, pose.getXMeters());
+                        segment.writer.setDouble(4, pose.getYMeters());
+                        segment.writer.setDouble(5, pose.getHeadingRadians());
+                        endRow(segment);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates an observer for {@code SubscribeMissionStatus} streams that records mission state transitions.
+     *
+     * @return The observer
+     */
+    public StreamObserver<SubscribeMissionStatusResponse> missionObserver() {
+        return new ExportObserver<SubscribeMissionStatusResponse>() {
+            @Override
+            public void onNext(SubscribeMissionStatusResponse response) {
+                MissionState mission = currentMission(response);
+                String robotId = response.getRobotId();
+                synchronized (TelemetryExportSink.this) {
+                    String key = mission.getMissionId() + '/' + mission.getState().name();
+                    if (key.equals(lastMission.put(robotId, key))) {
+                        return;
+                    }
+                    OpenSegment segment = startRow(MISSION, robotId, response.getMetadata());
+                    if (segment == null) {
+                        return;
+                    }
+                    segment.writer.setString(3, mission.getMissionId());
+                    segment.writer.setString(4, mission.getState().name());
+                    endRow(segment);
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates an observer for {@code SubscribeNetworkStatus} streams. Robots without a Wi-Fi
+     * connection are recorded with an empty SSID.
+     *
+     * @return The observer
+     */
+    public StreamObserver<SubscribeNetworkStatusResponse> networkObserver() {
+        return new ExportObserver<SubscribeNetworkStatusResponse>() {
+            @Override
+            public void onNext(SubscribeNetworkStatusResponse response) {
+                synchronized (TelemetryExportSink.this) {
+                    for (Map.Entry<String, NetworkStateWithMetadata> entry : response.getNetworkStatesMap().entrySet()) {
+                        OpenSegment segment = startRow(NETWORK, entry.getKey(), entry.getValue().getMetadata());
+                        if (segment == null) {
+                            return;
+                        }
+                        if (entry.getValue().hasConnectedWifi()) {
+                            Wifi wifi = entry.getValue().getConnectedWifi();
+                            segment.writer.setString(3, wifi.getSsid());
+                            segment.writer.setLong(4, wifi.getSignalLevelDbm());
+                            segment.writer.setLong(5, wifi.getLinkQuality());
+                        }
+                        endRow(segment);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Gets the number of rows written to segment files.
+     *
+     * @return The written row count
+     */
+    public long getWrittenRowCount() {
+        return writtenRows.get();
+    }
+
+    /**
+     * Gets the number of segment files written.
+     *
+     * @return The segment count
+     */
+    public long getWrittenSegmentCount() {
+        return writtenSegments.get();
+    }
+
+    /**
+     * Gets the number of rows lost because their segment could not be written.
+     *
+     * @return The failed row count
+     */
+    public long getFailedRowCount() {
+        return failedRows.get();
+    }
+
+    /**
+     * Writes all buffered rows and stops the writer thread. Events arriving afterwards are ignored.
+     *
+     * @throws InterruptedException If interrupted while waiting for segments to be written
+     */
+    public void shutdown() throws InterruptedException {
+        synchronized (this) {
+            shutdown = true;
+            for (OpenSegment segment : open.values()) {
+                submit(segment);
+            }
+            open.clear();
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            logger.warning("Telemetry export did not finish writing segments");
+        }
+    }
+
+    /**
+     * Gets the current mission of a robot from a mission status event.
+     *
+     * @param response The event
+     * @return The current mission, or the deprecated single mission state if the list has none
+     */
+    private static MissionState currentMission(SubscribeMissionStatusResponse response) {
+        MissionStates states = response.getMissionStates();
+        int index = states.getCurrentMissionIndex();
+        if (index >= 0 && index < states.getMissionsCount()) {
+            return states.getMissions(index);
+        }
+        if (response.hasMissionStates()) {
+            return MissionState.getDefaultInstance();
+        }
+        return response.getMissionState();
+    }
+
+    /**
+     * Starts a row in the open segment of the event's table, location and hour and fills the common columns.
+     * Must hold the lock.
+     *
+     * @param schema The table
+     * @param robotId The robot the event belongs to
+     * @param metadata The event metadata
+     * @return The segment, or null after shutdown
+     */
+    private OpenSegment startRow(SegmentWriter.Schema schema, String robotId, EventMetadata metadata) {
+        if (shutdown) {
+            return null;
+        }
+        long timestampMs = metadata.hasTimestamp()
+                ? metadata.getTimestamp().getSeconds() * 1000 + metadata.getTimestamp().getNanos() / 1_000_000
+                : System.currentTimeMillis();
+        String location = locationOf.apply(robotId);
+        if (location == null || location.isEmpty()) {
+            location = "unknown";
+        }
+        long hourStartMs = Math.floorDiv(timestampMs, HOUR_MS) * HOUR_MS;
+        String key = schema.getTable() + '/' + location + '/' + hourStartMs;
+        OpenSegment segment = open.get(key);
+        if (segment == null) {
+            Path partition = directory.resolve(schema.getTable())
+                    .resolve("location=" + sanitize(location))
+                    .resolve("hour=" + HOUR.format(Instant.ofEpochMilli(hourStartMs)));
+            segment = new OpenSegment(key, partition, timestampMs, System.currentTimeMillis(), hourStartMs + HOUR_MS,
+                    new SegmentWriter(schema, Math.min(maxRowsPerSegment, 4096)));
+            open.put(key, segment);
+        }
+        segment.writer.setLong(TIMESTAMP, timestampMs);
+        segment.writer.setLong(SEQUENCE, metadata.getSequenceNumber());
+        segment.writer.setString(ROBOT, robotId);
+        return segment;
+    }
+
+    /**
+     * Completes a row started by {@link #startRow} and rolls the segment when it is full.
+     * Must hold the lock.
+     *
+     * @param segment The segment
+     */
+    private void endRow(OpenSegment segment) {
+        segment.writer.endRow();
+        if (segment.writer.getRowCount() >= maxRowsPerSegment) {
+            open.remove(segment.key);
+            submit(segment);
+        }
+    }
+
+    /**
+     * Rolls segments past their age limit or whose hour is over. Runs on the writer thread.
+     */
+    private void rollExpired() {
+        long now = System.currentTimeMillis();
+        List<OpenSegment> expired = new ArrayList<>();
+        synchronized (this) {
+            Iterator<OpenSegment> it = open.values().iterator();
+            while (it.hasNext()) {
+                OpenSegment segment = it.next();
+                if (now - segment.createdAtMs >= maxSegmentAgeMs || now >= segment.hourEndMs) {
+                    it.remove();
+                    expired.add(segment);
+                }
+            }
+        }
+        for (OpenSegment segment : expired) {
+            write(segment);
+        }
+    }
+
+    // Must hold the lock
+    private void submit(OpenSegment segment) {
+        executor.execute(() -> write(segment));
+    }
+
+    /**
+     * Writes a closed segment to its partition directory. Runs on the writer thread.
+     *
+     * @param segment The segment
+     */
+    private void write(OpenSegment segment) {
+        int rows = segment.writer.getRowCount();
+        if (rows == 0) {
+            return;
+        }
+        long number;
+        synchronized (this) {
+            number = segmentCounter++;
+        }
+        Path path = segment.partition.resolve(segment.firstRowMs + "-" + number + ".seg");
+        try {
+            Files.createDirectories(segment.partition);
+            segment.writer.write(path);
+            writtenRows.addAndGet(rows);
+            writtenSegments.incrementAndGet();
+            logger.fine("Wrote " + rows + " rows to " + path);
+        } catch (IOException e) {
+            failedRows.addAndGet(rows);
+            logger.log(Level.SEVERE, "Failed to write telemetry segment " + path, e);
+        }
+    }
+
+    private static SegmentWriter.Schema telemetrySchema(String table) {
+        return new SegmentWriter.Schema(table)
+                .column("timestamp_ms", ColumnType.DELTA_LONG)
+                .column("sequence_number", ColumnType.DELTA_LONG)
+                .column("robot_id", ColumnType.DICTIONARY)
+                .sortBy("robot_id", "timestamp_ms");
+    }
+
+    /**
+     * Makes a location ID safe to use as a directory name.
+     */
+    private static String sanitize(String value) {
+        return value.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * Observer ignoring stream termination; the streaming client reconnects on errors.
+     */
+    private abstract static class ExportObserver<T> implements StreamObserver<T> {
+        @Override
+        public void onError(Throwable t) {
+            logger.log(Level.FINE, "Telemetry export stream failed", t);
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+
+    /**
+     * A segment still receiving rows.
+     */
+    private static final class OpenSegment {
+        private final String key;
+        private final Path partition;
+        private final long firstRowMs;
+        private final long createdAtMs;
+        private final long hourEndMs;
+        private final SegmentWriter writer;
+
+        OpenSegment(String key, Path partition, long firstRowMs, long createdAtMs, long hourEndMs, SegmentWriter writer) {
+            this.key = key;
+            this.partition = partition;
+            this.firstRowMs = firstRowMs;
+            this.createdAtMs = createdAtMs;
+            this.hourEndMs = hourEndMs;
+            this.writer = writer;
+        }
+    }
+}
@@ -0,0 +1,694 @@
+package com.example.heatmap;
+
+import com.example.BearRoboticsClient;
+import com.example.streaming.StreamPriority;
+import com.example.streaming.StreamingClient;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import bearrobotics.api.v1.core.Errors.ErrorCode;
+import bearrobotics.api.v1.core.Errors.ErrorCodesWithMetadata;
+import bearrobotics.api.v1.core.FleetSelector.RobotSelector;
+import bearrobotics.api.v1.core.MapOuterClass;
+import bearrobotics.api.v1.core.Metadata.EventMetadata;
+import bearrobotics.api.v1.core.NetworkStatus.NetworkStateWithMetadata;
+import bearrobotics.api.v1.core.NetworkStatus.Wifi;
+import bearrobotics.api.v1.core.PoseOuterClass.Pose;
+import bearrobotics.api.v1.core.PoseOuterClass.PoseWithMetadata;
+import bearrobotics.api.v1.core.RobotStatus.NavigationState;
+import bearrobotics.api.v1.core.RobotStatus.RobotState;
+import bearrobotics.api.v1.core.RobotStatus.StuckState;
+import bearrobotics.api.v1.services.cloud.ApiService.GetCurrentMapRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.GetCurrentMapResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeErrorCodesRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeErrorCodesResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeNavigationStatusRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeNavigationStatusResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeNetworkStatusRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeNetworkStatusResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotPoseRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotPoseResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusResponse;
+
+/**
+ * Builds per-map heatmaps of Wi-Fi signal, stuck events and error codes from the live streams.
+ *
+ * Each network, navigation and error code event is joined to the robot's latest pose, converted to map
+ * pixels with the map's {@code origin} and {@code resolution}, and added to a {@link HeatmapGrid} cell,
+ * so heatmaps are current as events arrive and reading a tile costs one pass over its cells. Events are
+ * dropped when the robot's map is not known yet or its pose is further than the pose age limit from the
+ * event's timestamp.
+ *
+ * Layers:
+ * <ul>
+ *   <li>{@link #WIFI_SIGNAL} and {@link #WIFI_LINK_QUALITY}: decay-weighted means of every network event</li>
+ *   <li>{@link #STUCK} and {@link #stuckLayer}: decayed counts of transitions into {@code STATE_STUCK}</li>
+ *   <li>{@link #ERRORS} and {@link #errorLayer}: decayed counts of error codes appearing on a robot</li>
+ * </ul>
+ */
+public class HeatmapEngine {
+    private static final Logger logger = Logger.getLogger(HeatmapEngine.class.getName());
+
+    /** Mean Wi-Fi signal level in dBm. */
+    public static final String WIFI_SIGNAL = "wifi_signal_dbm";
+    /** Mean Wi-Fi link quality, 0 to 70. */
+    public static final String WIFI_LINK_QUALITY = "wifi_link_quality";
+    /** Robots getting stuck, for any reason. */
+    public static final String STUCK = "stuck";
+    /** Error codes raised, of any code. */
+    public static final String ERRORS = "errors";
+
+    private static final long MAP_RETRY_MIN_MS = 1000;
+    private static final long MAP_RETRY_MAX_MS = 60_000;
+
+    private final int cellPixels;
+    private final long halfLifeMs;
+    private final long maxPoseAgeMs;
+
+    private final ConcurrentMap<String, MapFrame> maps = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, RobotContext> robots = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<String, HeatmapGrid>> layers = new ConcurrentHashMap<>();
+    private volatile BearRoboticsClient client;
+
+    private final AtomicLong accumulated = new AtomicLong();
+    private final AtomicLong droppedNoMap = new AtomicLong();
+    private final AtomicLong droppedNoPose = new AtomicLong();
+
+    /**
+     * Creates an engine with 10 map pixels per cell, a one hour half-life and a 5 second pose age limit.
+     */
+    public HeatmapEngine() {
+        this(10, TimeUnit.HOURS.toMillis(1), 5000);
+    }
+
+    /**
+     * Creates an engine.
+     *
+     * @param cellPixels Map pixels along each side of a heatmap cell
+     * @param halfLifeMs Time for an event's weight to halve, or 0 to keep events at full weight
+     * @param maxPoseAgeMs Largest time between an event and the pose it is placed at
+     */
+    public HeatmapEngine(int cellPixels, long halfLifeMs, long maxPoseAgeMs) {
+        if (cellPixels < 1) {
+            throw new IllegalArgumentException("cellPixels must be at least 1");
+        }
+        this.cellPixels = cellPixels;
+        this.halfLifeMs = halfLifeMs;
+        this.maxPoseAgeMs = maxPoseAgeMs;
+    }
+
+    /**
+     * Names the layer counting robots stuck for a given reason.
+     *
+     * @param reason The stuck reason
+     * @return The layer name
+     */
+    public static String stuckLayer(StuckState.Reason reason) {
+        return STUCK + "/" + reason.name();
+    }
+
+    /**
+     * Names the layer counting one error code.
+     *
+     * @param code The error code
+     * @return The layer name
+     */
+    public static String errorLayer(int code) {
+        return ERRORS + "/" + code;
+    }
+
+    /**
+     * Starts the pose, network, navigation and error code streams for a selector and feeds them into
+     * the engine. The current map of each robot is fetched with {@code GetCurrentMap} the first time
+     * the robot is seen; call {@link #refreshMap} after switching a robot's map.
+     *
+     * @param client The client
+     * @param selector The robots to build heatmaps from
+     * @return The started streaming clients
+     * @throws InterruptedException If interrupted while starting the streams
+     */
+    public List<StreamingClient<?, ?>> attach(BearRoboticsClient client, RobotSelector selector) throws InterruptedException {
+        this.client = client;
+        List<StreamingClient<?, ?>> streams = new ArrayList<>();
+        streams.add(client.startStream(client.getAsyncStub()::subscribeRobotPose,
+                SubscribeRobotPoseRequest.newBuilder().setSelector(selector).build(),
+                poseObserver(), "Heatmap-Pose", StreamPriority.TELEMETRY));
+        streams.add(client.startStream(client.getAsyncStub()::subscribeNetworkStatus,
+                SubscribeNetworkStatusRequest.newBuilder().setSelector(selector).build(),
+                networkObserver(), "Heatmap-Network", StreamPriority.TELEMETRY));
+        streams.add(client.startStream(client.getAsyncStub()::subscribeNavigationStatus,
+                SubscribeNavigationStatusRequest.newBuilder().setSelector(selector).build(),
+                navigationObserver(), "Heatmap-Navigation", StreamPriority.STATUS));
+        streams.add(client.startStream(client.getAsyncStub()::subscribeErrorCodes,
+                SubscribeErrorCodesRequest.newBuilder().setSelector(selector).build(),
+                errorCodesObserver(), "Heatmap-ErrorCodes", StreamPriority.STATUS));
+        return streams;
+    }
+
+    /**
+     * Registers a map's origin and resolution. Needed for every map robots report events on.
+     *
+     * @param map The map
+     */
+    public void setMap(MapOuterClass.Map map) {
+        if (map.getResolution() <= 0) {
+            logger.warning("Map " + map.getMapId() + " has no resolution, events on it are dropped");
+            return;
+        }
+        maps.put(map.getMapId(), new MapFrame(map));
+    }
+
+    /**
+     * Sets the map a robot is on. A pose recorded on a different map is discarded.
+     *
+     * @param robotId The robot ID
+     * @param mapId The map ID, registered with {@link #setMap}
+     */
+    public void setRobotMap(String robotId, String mapId) {
+        RobotContext context = context(robotId);
+        synchronized (context) {
+            if (context.mapId != null && !context.mapId.equals(mapId)) {
+                context.hasPose = false;
+            }
+            context.mapId = mapId;
+        }
+    }
+
+    /**
+     * Registers a robot's current map and places the robot on it.
+     *
+     * @param robotId The robot ID
+     * @param response The {@code GetCurrentMap} response
+     */
+    public void onCurrentMap(String robotId, GetCurrentMapResponse response) {
+        setMap(response.getMap());
+        setRobotMap(robotId, response.getMap().getMapId());
+    }
+
+    /**
+     * Fetches a robot's current map with {@code GetCurrentMap}. Requires {@link #attach}.
+     *
+     * A pose received while the fetch is in flight is kept, since the robot reports it on the map being
+     * fetched; an older pose is discarded if the robot turns out to be on a different map.
+     *
+     * @param robotId The robot ID
+     */
+    public void refreshMap(String robotId) {
+        BearRoboticsClient client = this.client;
+        if (client == null) {
+            throw new IllegalStateException("refreshMap requires attach");
+        }
+        RobotContext context = context(robotId);
+        long poseVersion;
+        synchronized (context) {
+            if (context.fetchingMap) {
+                return;
+            }
+            context.fetchingMap = true;
+            poseVersion = context.poseVersion;
+        }
+        client.<GetCurrentMapRequest, GetCurrentMapResponse>createUnaryClient()
+                .rpcMethod(request -> client.getBlockingStub().getCurrentMap(request))
+                .request(GetCurrentMapRequest.newBuilder().setRobotId(robotId).build())
+                .rpcName("GetCurrentMap")
+                .robotId(robotId)
+                .deadlines(client.getDeadlines())
+                .build()
+                .call()
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        long delayMs;
+                        synchronized (context) {
+                            context.fetchingMap = false;
+                            context.mapFailures = Math.min(context.mapFailures + 1, 16);
+                            delayMs = Math.min(MAP_RETRY_MAX_MS, MAP_RETRY_MIN_MS << (context.mapFailures - 1));
+                            context.mapRetryAtMs = System.currentTimeMillis() + delayMs;
+                        }
+                        logger.warning("Failed to get current map of robot " + robotId + ", retrying in "
+                                + delayMs + " ms: " + error.getMessage());
+                        return;
+                    }
+                    setMap(response.getMap());
+                    String mapId = response.getMap().getMapId();
+                    synchronized (context) {
+                        context.fetchingMap = false;
+                        context.mapFailures = 0;
+                        if (context.mapId != null && !context.mapId.equals(mapId) && context.poseVersion == poseVersion) {
+                            context.hasPose = false;
+                        }
+                        context.mapId = mapId;
+                    }
+                });
+    }
+
+    /**
+     * Creates an observer for {@code SubscribeRobotPose}.
+     *
+     * @return The observer
+     */
+    public StreamObserver<SubscribeRobotPoseResponse> poseObserver() {
+        return new HeatmapObserver<SubscribeRobotPoseResponse>("Robot pose") {
+            @Override
+            public void onNext(SubscribeRobotPoseResponse response) {
+                for (Map.Entry<String, PoseWithMetadata> entry : response.getPosesMap().entrySet()) {
+                    onPose(entry.getKey(), entry.getValue().getPose(), entry.getValue().getMetadata());
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates an observer for {@code SubscribeNetworkStatus}.
+     *
+     * @return The observer
+     */
+    public StreamObserver<SubscribeNetworkStatusResponse> networkObserver() {
+        return new HeatmapObserver<SubscribeNetworkStatusResponse>("Network status") {
+            @Override
+            public void onNext(SubscribeNetworkStatusResponse response) {
+                for (Map.Entry<String, NetworkStateWithMetadata> entry : response.getNetworkStatesMap().entrySet()) {
+                    onNetworkState(entry.getKey(), entry.getValue());
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates an observer for {@code SubscribeNavigationStatus}.
+     *
+     * @return The observer
+     */
+    public StreamObserver<SubscribeNavigationStatusResponse> navigationObserver() {
+        return new HeatmapObserver<SubscribeNavigationStatusResponse>("Navigation status") {
+            @Override
+            public void onNext(SubscribeNavigationStatusResponse response) {
+                onNavigationState(response.getRobotId(), response.getNavigationState(), response.getMetadata());
+            }
+        };
+    }
+
+    /**
+     * Creates an observer for {@code SubscribeErrorCodes}.
+     *
+     * @return The observer
+     */
+    public StreamObserver<SubscribeErrorCodesResponse> errorCodesObserver() {
+        return new HeatmapObserver<SubscribeErrorCodesResponse>("Error codes") {
+            @Override
+            public void onNext(SubscribeErrorCodesResponse response) {
+                for (Map.Entry<String, ErrorCodesWithMetadata> entry : response.getErrorCodesMap().entrySet()) {
+                    onErrorCodes(entry.getKey(), entry.getValue().getCodesList(), entry.getValue().getMetadata());
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates an observer for {@code SubscribeRobotStatus}, taking the pose, navigation state and
+     * error codes from each robot state. An alternative to the separate pose, navigation and error
+     * code streams.
+     *
+     * @return The observer
+     */
+    public StreamObserver<SubscribeRobotStatusResponse> robotStatusObserver() {
+        return new HeatmapObserver<SubscribeRobotStatusResponse>("Robot status") {
+            @Override
+            public void onNext(SubscribeRobotStatusResponse response) {
+                RobotState state = response.getRobotState();
+                if (state.hasPose()) {
+                    onPose(response.getRobotId(), state.getPose(), response.getMetadata());
+                }
+                if (state.hasNavigationState()) {
+                    onNavigationState(response.getRobotId(), state.getNavigationState(), response.getMetadata());
+                }
+                onErrorCodes(response.getRobotId(), state.getErrorCodes().getCodesList(), response.getMetadata());
+            }
+        };
+    }
+
+    /**
+     * Records a robot's pose.
+     *
+     * @param robotId The robot ID
+     * @param pose The pose on the robot's current map
+     * @param metadata The event metadata
+     */
+    public void onPose(String robotId, Pose pose, EventMetadata metadata) {
+        RobotContext context = context(robotId);
+        long timeMs = timestampMs(metadata);
+        synchronized (context) {
+            if (context.hasPose && timeMs < context.poseTimeMs) {
+                return;
+            }
+            context.x = pose.getXMeters();
+            context.y = pose.getYMeters();
+            context.poseTimeMs = timeMs;
+            context.hasPose = true;
+            context.poseVersion++;
+        }
+    }
+
+    /**
+     * Adds a network event to the Wi-Fi layers. Events without a connected network are ignored.
+     *
+     * @param robotId The robot ID
+     * @param state The network state
+     */
+    public void onNetworkState(String robotId, NetworkStateWithMetadata state) {
+        if (!state.hasConnectedWifi()) {
+            return;
+        }
+        Wifi wifi = state.getConnectedWifi();
+        long timeMs = timestampMs(state.getMetadata());
+        Placement placement = place(robotId, timeMs);
+        if (placement != null) {
+            placement.add(WIFI_SIGNAL, true, wifi.getSignalLevelDbm());
+            placement.add(WIFI_LINK_QUALITY, true, wifi.getLinkQuality());
+        }
+    }
+
+    /**
+     * Adds a navigation event to the stuck layers if the robot just became stuck.
+     *
+     * @param robotId The robot ID
+     * @param state The navigation state
+     * @param metadata The event metadata
+     */
+    public void onNavigationState(String robotId, NavigationState state, EventMetadata metadata) {
+        StuckState stuck = state.getStuckState();
+        RobotContext context = context(robotId);
+        boolean becameStuck;
+        synchronized (context) {
+            becameStuck = stuck.getState() == StuckState.State.STATE_STUCK
+                    && context.stuckState != StuckState.State.STATE_STUCK;
+            context.stuckState = stuck.getState();
+        }
+        if (!becameStuck) {
+            return;
+        }
+        Placement placement = place(robotId, timestampMs(metadata));
+        if (placement != null) {
+            placement.add(STUCK, false, 1);
+            placement.add(stuckLayer(stuck.getReason()), false, 1);
+        }
+    }
+
+    /**
+     * Adds the error codes a robot did not report in its previous event to the error layers.
+     *
+     * @param robotId The robot ID
+     * @param codes The robot's current error codes
+     * @param metadata The event metadata
+     */
+    public void onErrorCodes(String robotId, List<ErrorCode> codes, EventMetadata metadata) {
+        RobotContext context = context(robotId);
+        List<Integer> raised = new ArrayList<>();
+        synchronized (context) {
+            Set<Integer> current = new HashSet<>();
+            for (ErrorCode code : codes) {
+                if (current.add(code.getCode()) && !context.errorCodes.contains(code.getCode())) {
+                    raised.add(code.getCode());
+                }
+            }
+            context.errorCodes = current;
+        }
+        if (raised.isEmpty()) {
+            return;
+        }
+        Placement placement = place(robotId, timestampMs(metadata));
+        if (placement != null) {
+            for (int code : raised) {
+                placement.add(ERRORS, false, 1);
+                placement.add(errorLayer(code), false, 1);
+            }
+        }
+    }
+
+    /**
+     * Reads a tile as of now.
+     *
+     * @param mapId The map ID
+     * @param layer The layer name
+     * @param tileX Tile column
+     * @param tileY Tile row
+     * @return The tile, or null if it holds no data
+     */
+    public HeatmapTile getTile(String mapId, String layer, int tileX, int tileY) {
+        return getTile(mapId, layer, tileX, tileY, System.currentTimeMillis());
+    }
+
+    /**
+     * Reads a tile as of a point in time.
+     *
+     * @param mapId The map ID
+     * @param layer The layer name
+     * @param tileX Tile column
+     * @param tileY Tile row
+     * @param nowMs Time to decay the values to
+     * @return The tile, or null if it holds no data
+     */
+    public HeatmapTile getTile(String mapId, String layer, int tileX, int tileY, long nowMs) {
+        HeatmapGrid grid = grid(mapId, layer);
+        if (grid == null) {
+            return null;
+        }
+        float[] values = grid.read(tileX, tileY, nowMs);
+        return values == null ? null : new HeatmapTile(mapId, layer, tileX, tileY, cellPixels, grid.isMean(), values);
+    }
+
+    /**
+     * Reads every tile of a layer holding data, as of now.
+     *
+     * @param mapId The map ID
+     * @param layer The layer name
+     * @return The tiles
+     */
+    public List<HeatmapTile> getTiles(String mapId, String layer) {
+        List<HeatmapTile> tiles = new ArrayList<>();
+        HeatmapGrid grid = grid(mapId, layer);
+        if (grid == null) {
+            return tiles;
+        }
+        long now = System.currentTimeMillis();
+        for (int[] tile : grid.getTiles()) {
+            HeatmapTile heatmapTile = getTile(mapId, layer, tile[0], tile[1], now);
+            if (heatmapTile != null) {
+                tiles.add(heatmapTile);
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Gets the layers holding data for a map.
+     *
+     * @param mapId The map ID
+     * @return The layer names
+     */
+    public Set<String> getLayers(String mapId) {
+        ConcurrentMap<String, HeatmapGrid> grids = layers.get(mapId);
+        return grids == null ? Set.of() : Set.copyOf(grids.keySet());
+    }
+
+    /**
+     * Discards the heatmaps of a map.
+     *
+     * @param mapId The map ID
+     */
+    public void clear(String mapId) {
+        layers.remove(mapId);
+    }
+
+    /**
+     * Gets the number of samples added to the heatmaps.
+     *
+     * @return The accumulated count
+     */
+    public long getAccumulatedCount() {
+        return accumulated.get();
+    }
+
+    /**
+     * Gets the number of events dropped because the robot's map was not known.
+     *
+     * @return The dropped count
+     */
+    public long getDroppedNoMapCount() {
+        return droppedNoMap.get();
+    }
+
+    /**
+     * Gets the number of events dropped because the robot had no pose close enough in time.
+     *
+     * @return The dropped count
+     */
+    public long getDroppedNoPoseCount() {
+        return droppedNoPose.get();
+    }
+
+    private RobotContext context(String robotId) {
+        return robots.computeIfAbsent(robotId, id -> new RobotContext());
+    }
+
+    private HeatmapGrid grid(String mapId, String layer) {
+        ConcurrentMap<String, HeatmapGrid> grids = layers.get(mapId);
+        return grids == null ? null : grids.get(layer);
+    }
+
+    /**
+     * Joins an event to the robot's pose and finds the heatmap cell it falls in.
+     *
+     * @param robotId The robot ID
+     * @param timeMs Time of the event
+     * @return Where to add the event, or null if the robot's map or pose is not known
+     */
+    private Placement place(String robotId, long timeMs) {
+        RobotContext context = context(robotId);
+        String mapId;
+        boolean fetchMap;
+        double x;
+        double y;
+        synchronized (context) {
+            mapId = context.mapId;
+            // Backs off after a failed fetch instead of refetching on every event
+            fetchMap = mapId == null && !context.fetchingMap && System.currentTimeMillis() >= context.mapRetryAtMs;
+            if (context.hasPose && Math.abs(timeMs - context.poseTimeMs) <= maxPoseAgeMs) {
+                x = context.x;
+                y = context.y;
+            } else {
+                x = Double.NaN;
+                y = Double.NaN;
+            }
+        }
+        MapFrame frame = mapId == null ? null : maps.get(mapId);
+        if (frame == null) {
+            droppedNoMap.incrementAndGet();
+            if (fetchMap && client != null) {
+                refreshMap(robotId);
+            }
+            return null;
+        }
+        if (Double.isNaN(x)) {
+            droppedNoPose.incrementAndGet();
+            return null;
+        }
+        int cellX = (int) Math.floor(frame.pixelX(x, y) / cellPixels);
+        int cellY = (int) Math.floor(frame.pixelY(x, y) / cellPixels);
+        return new Placement(mapId, cellX, cellY, timeMs);
+    }
+
+    private static long timestampMs(EventMetadata metadata) {
+        if (!metadata.hasTimestamp()) {
+            return System.currentTimeMillis();
+        }
+        return metadata.getTimestamp().getSeconds() * 1000 + metadata.getTimestamp().getNanos() / 1_000_000;
+    }
+
+    /**
+     * A heatmap cell an event falls in.
+     */
+    private final class Placement {
+        private final String mapId;
+        private final int cellX;
+        private final int cellY;
+        private final long timeMs;
+
+        Placement(String mapId, int cellX, int cellY, long timeMs) {
+            this.mapId = mapId;
+            this.cellX = cellX;
+            this.cellY = cellY;
+            this.timeMs = timeMs;
+        }
+
+        void add(String layer, boolean mean, double value) {
+            layers.computeIfAbsent(mapId, id -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(layer, name -> new HeatmapGrid(mean, halfLifeMs))
+                    .add(cellX, cellY, value, timeMs);
+            accumulated.incrementAndGet();
+        }
+    }
+
+    /**
+     * Converts map coordinates in meters to map pixels, as defined by a map's origin and resolution.
+     */
+    private static class MapFrame {
+        private final double originX;
+        private final double originY;
+        private final double cos;
+        private final double sin;
+        private final double resolution;
+
+        MapFrame(MapOuterClass.Map map) {
+            this.originX = exact(map.getOrigin().getXM());
+            this.originY = exact(map.getOrigin().getYM());
+            this.cos = Math.cos(map.getOrigin().getYawRadians());
+            this.sin = Math.sin(map.getOrigin().getYawRadians());
+            this.resolution = exact(map.getResolution());
+        }
+
+        /**
+         * Widens a float to the double nearest its decimal value, so a resolution of 0.05 divides
+         * 10 meters into exactly 200 pixels rather than 199.99999.
+         */
+        private static double exact(float value) {
+            return Double.parseDouble(Float.toString(value));
+        }
+
+        double pixelX(double x, double y) {
+            return (cos * (x - originX) + sin * (y - originY)) / resolution;
+        }
+
+        double pixelY(double x, double y) {
+            return (-sin * (x - originX) + cos * (y - originY)) / resolution;
+        }
+    }
+
+    /**
+     * Latest pose, map and edge-detection state of one robot. Guarded by its own monitor.
+     */
+    private static class RobotContext {
+        private String mapId;
+        private boolean fetchingMap;
+        private int mapFailures;
+        private long mapRetryAtMs;
+        private boolean hasPose;
+        // Incremented on every accepted pose
+        private long poseVersion;
+        private double x;
+        private double y;
+        private long poseTimeMs;
+        private StuckState.State stuckState = StuckState.State.STATE_UNKNOWN;
+        private Set<Integer> errorCodes = new HashSet<>();
+    }
+
+    /**
+     * Logs stream termination; events are handled by each observer's onNext.
+     */
+    private abstract static class HeatmapObserver<T> implements StreamObserver<T> {
+        private final String name;
+
+        HeatmapObserver(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            logger.warning(name + " stream for heatmaps failed: " + t.getMessage());
+        }
+
+        @Override
+        public void onCompleted() {
+            logger.info(name + " stream for heatmaps completed");
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.heatmap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A sparse grid of exponentially decaying accumulators, stored as fixed-size tiles of primitive arrays.
+ *
+ * Decay uses forward decay: a sample at time t is added with weight {@code exp(lambda * (t - landmark))}
+ * and values are scaled by {@code exp(-lambda * (now - landmark))} when read, so adding a sample touches
+ * one cell and nothing decays in the background. The landmark is moved forward before the weights grow
+ * out of float range, which is also when tiles that have decayed to nothing are dropped.
+ *
+ * A grid is either a mean grid, where a cell holds the decay-weighted mean of its samples, or a count
+ * grid, where a cell holds the decayed number of events. Thread safe.
+ */
+public class HeatmapGrid {
+    /** Number of cells along each side of a tile. */
+    public static final int TILE_SIZE = 64;
+
+    // Largest exponent before the landmark is moved, keeping weights well inside float range
+    private static final double MAX_EXPONENT = 40;
+    // Cells lighter than this after decay read as empty, and tiles holding only such cells are dropped
+    private static final double MIN_WEIGHT = 1e-3;
+
+    private final boolean mean;
+    private final double lambdaPerMs;
+
+    // Guarded by this
+    private final Map<Long, Tile> tiles = new HashMap<>();
+    private long landmarkMs = Long.MIN_VALUE;
+
+    /**
+     * Creates a grid.
+     *
+     * @param mean true to average sample values, false to count events
+     * @param halfLifeMs Time for a sample's weight to halve, or 0 for no decay
+     */
+    public HeatmapGrid(boolean mean, long halfLifeMs) {
+        if (halfLifeMs < 0) {
+            throw new IllegalArgumentException("halfLifeMs must not be negative");
+        }
+        this.mean = mean;
+        this.lambdaPerMs = halfLifeMs == 0 ? 0 : Math.log(2) / halfLifeMs;
+    }
+
+    /**
+     * @return true if cells hold means, false if they hold event counts
+     */
+    public boolean isMean() {
+        return mean;
+    }
+
+    /**
+     * Adds a sample to a cell. For count grids the value is the number of events, usually 1.
+     *
+     * @param cellX Cell column
+     * @param cellY Cell row
+     * @param value The sample value
+     * @param timeMs Time of the sample
+     */
+    public synchronized void add(int cellX, int cellY, double value, long timeMs) {
+        if (landmarkMs == Long.MIN_VALUE) {
+            landmarkMs = timeMs;
+        }
+        double exponent = lambdaPerMs * (timeMs - landmarkMs);
+        if (exponent > MAX_EXPONENT) {
+            rebase(timeMs);
+            exponent = 0;
+        }
+        double weight = Math.exp(exponent);
+        long key = key(Math.floorDiv(cellX, TILE_SIZE), Math.floorDiv(cellY, TILE_SIZE));
+        Tile tile = tiles.get(key);
+        if (tile == null) {
+            tile = new Tile(mean);
+            tiles.put(key, tile);
+        }
+        int index = Math.floorMod(cellY, TILE_SIZE) * TILE_SIZE + Math.floorMod(cellX, TILE_SIZE);
+        if (mean) {
+            tile.sums[index] += (float) (value * weight);
+            tile.weights[index] += (float) weight;
+        } else {
+            tile.sums[index] += (float) (value * weight);
+        }
+    }
+
+    /**
+     * Reads a tile as of a point in time.
+     *
+     * @param tileX Tile column
+     * @param tileY Tile row
+     * @param nowMs Time to decay the values to
+     * @return The cell values, row by row from the tile's lowest row, or null if the tile has no data.
+     *         Empty cells are NaN in mean grids and 0 in count grids.
+     */
+    public synchronized float[] read(int tileX, int tileY, long nowMs) {
+        Tile tile = tiles.get(key(tileX, tileY));
+        if (tile == null) {
+            return null;
+        }
+        double scale = scale(nowMs);
+        float[] values = new float[TILE_SIZE * TILE_SIZE];
+        for (int i = 0; i < values.length; i++) {
+            if (mean) {
+                values[i] = tile.weights[i] * scale >= MIN_WEIGHT ? tile.sums[i] / tile.weights[i] : Float.NaN;
+            } else {
+                values[i] = (float) (tile.sums[i] * scale);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return The column and row of every tile holding data, as {@code {tileX, tileY}} pairs
+     */
+    public synchronized List<int[]> getTiles() {
+        List<int[]> result = new ArrayList<>(tiles.size());
+        for (long key : tiles.keySet()) {
+            result.add(new int[] {(int) (key >> 32), (int) key});
+        }
+        return result;
+    }
+
+    /**
+     * Discards all samples.
+     */
+    public synchronized void clear() {
+        tiles.clear();
+        landmarkMs = Long.MIN_VALUE;
+    }
+
+    // Must hold the lock
+    private double scale(long nowMs) {
+        return landmarkMs == Long.MIN_VALUE ? 1 : Math.exp(-lambdaPerMs * (nowMs - landmarkMs));
+    }
+
+    /**
+     * Moves the landmark to a later time, rescaling every cell and dropping tiles that decayed away.
+     */
+    // Must hold the lock
+    private void rebase(long newLandmarkMs) {
+        float scale = (float) scale(newLandmarkMs);
+        Iterator<Tile> iterator = tiles.values().iterator();
+        while (iterator.hasNext()) {
+            Tile tile = iterator.next();
+            float[] weights = mean ? tile.weights : tile.sums;
+            boolean live = false;
+            for (int i = 0; i < weights.length; i++) {
+                if (mean) {
+                    tile.weights[i] *= scale;
+                }
+                tile.sums[i] *= scale;
+                live |= weights[i] >= MIN_WEIGHT;
+            }
+            if (!live) {
+                iterator.remove();
+            }
+        }
+        landmarkMs = newLandmarkMs;
+    }
+
+    private static long key(int tileX, int tileY) {
+        return ((long) tileX << 32) | (tileY & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Accumulators for one tile; weights are only kept for mean grids.
+     */
+    private static class Tile {
+        final float[] sums = new float[TILE_SIZE * TILE_SIZE];
+        final float[] weights;
+
+        Tile(boolean mean) {
+            this.weights = mean ? new float[TILE_SIZE * TILE_SIZE] : null;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.heatmap;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A square block of heatmap cells for one layer of one map, as of the time it was read.
+ *
+ * Cell (0, 0) is the tile's lowest-left cell and covers map pixels starting at
+ * ({@link #getPixelX()}, {@link #getPixelY()}), counted from the map origin with rows increasing with
+ * y, as in the map frame. Map images are stored top row first, so a renderer placing a tile on the map
+ * image flips the row: {@code imageRow = imageHeight - 1 - pixelY}.
+ */
+public class HeatmapTile {
+    private final String mapId;
+    private final String layer;
+    private final int tileX;
+    private final int tileY;
+    private final int cellPixels;
+    private final boolean mean;
+    private final float[] values;
+
+    HeatmapTile(String mapId, String layer, int tileX, int tileY, int cellPixels, boolean mean, float[] values) {
+        this.mapId = mapId;
+        this.layer = layer;
+        this.tileX = tileX;
+        this.tileY = tileY;
+        this.cellPixels = cellPixels;
+        this.mean = mean;
+        this.values = values;
+    }
+
+    public String getMapId() {
+        return mapId;
+    }
+
+    public String getLayer() {
+        return layer;
+    }
+
+    public int getTileX() {
+        return tileX;
+    }
+
+    public int getTileY() {
+        return tileY;
+    }
+
+    /**
+     * @return Number of cells along each side
+     */
+    public int getSize() {
+        return HeatmapGrid.TILE_SIZE;
+    }
+
+    /**
+     * @return Number of map pixels along each side of a cell
+     */
+    public int getCellPixels() {
+        return cellPixels;
+    }
+
+    /**
+     * @return Map pixel column of the tile's left edge
+     */
+    public int getPixelX() {
+        return tileX * HeatmapGrid.TILE_SIZE * cellPixels;
+    }
+
+    /**
+     * @return Map pixel row of the tile's bottom edge
+     */
+    public int getPixelY() {
+        return tileY * HeatmapGrid.TILE_SIZE * cellPixels;
+    }
+
+    /**
+     * @return true if cells hold decay-weighted means, false if they hold decayed event counts
+     */
+    public boolean isMean() {
+        return mean;
+    }
+
+    /**
+     * Returns one cell.
+     *
+     * @param x Cell column within the tile
+     * @param y Cell row within the tile, 0 being the lowest
+     * @return The value; NaN for an empty cell of a mean layer
+     */
+    public float get(int x, int y) {
+        return values[y * HeatmapGrid.TILE_SIZE + x];
+    }
+
+    /**
+     * @return A copy of the cell values, row by row from the lowest row
+     */
+    public float[] getValues() {
+        return values.clone();
+    }
+
+    /**
+     * Renders the tile, one image pixel per cell, top row first. Values are mapped from blue at
+     * {@code min} to red at {@code max}; empty cells are transparent.
+     *
+     * @param min Value drawn blue
+     * @param max Value drawn red
+     * @return The image, e.g. for {@code ImageIO.write(image, "png", file)}
+     */
+    public BufferedImage toImage(float min, float max) {
+        int size = HeatmapGrid.TILE_SIZE;
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        float range = max > min ? max - min : 1;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                float value = get(x, y);
+                if (Float.isNaN(value) || (!mean && value <= 0)) {
+                    continue;
+                }
+                float level = Math.max(0, Math.min(1, (value - min) / range));
+                int red = Math.round(255 * level);
+                int blue = 255 - red;
+                int green = Math.round(255 * (1 - Math.abs(2 * level - 1)));
+                image.setRGB(x, size - 1 - y, 0xC0000000 | (red << 16) | (green << 8) | blue);
+            }
+        }
+        return image;
+    }
+
+    @Override
+    public String toString() {
+        return "HeatmapTile{map=" + mapId + ", layer=" + layer + ", tile=" + tileX + "," + tileY + "}";
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch: approximate counts of any number of distinct keys in fixed memory.
+ *
+ * Each key is hashed into one counter per row and an estimate is the smallest of its counters, so an
+ * estimate never undercounts and overcounts by at most {@code e / width} of the total with probability
+ * {@code 1 - exp(-depth)}. Not thread safe.
+ */
+public class CountMinSketch {
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL, 0xBF58476D1CE4E5B9L
+    };
+
+    private final int depth;
+    private final int mask;
+    private final long[] counters;
+    private long total;
+
+    /**
+     * Creates a sketch.
+     *
+     * @param width Counters per row, rounded up to a power of two
+     * @param depth Number of rows, from 1 to 8
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width < 1 || depth < 1 || depth > SEEDS.length) {
+            throw new IllegalArgumentException("width must be positive and depth between 1 and " + SEEDS.length);
+        }
+        int rowWidth = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        this.depth = depth;
+        this.mask = rowWidth - 1;
+        this.counters = new long[rowWidth * depth];
+    }
+
+    /**
+     * Adds to a key's count.
+     *
+     * @param key The key
+     * @param count The amount to add, not negative
+     */
+    public void add(long key, long count) {
+        int width = mask + 1;
+        for (int row = 0; row < depth; row++) {
+            counters[row * width + index(key, row)] += count;
+        }
+        total += count;
+    }
+
+    /**
+     * Estimates a key's count.
+     *
+     * @param key The key
+     * @return The estimate, at least the true count
+     */
+    public long estimate(long key) {
+        int width = mask + 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[row * width + index(key, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * @return Sum of all counts added
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Resets all counts to 0.
+     */
+    public void clear() {
+        Arrays.fill(counters, 0);
+        total = 0;
+    }
+
+    private int index(long key, int row) {
+        long hash = (key + row) * SEEDS[row];
+        hash ^= hash >>> 29;
+        hash *= 0xBF58476D1CE4E5B9L;
+        hash ^= hash >>> 32;
+        return (int) hash & mask;
+    }
+}
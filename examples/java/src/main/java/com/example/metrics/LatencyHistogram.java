@@ -0,0 +1,140 @@
+package com.example.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of non-negative values, typically latencies in nanoseconds.
+ *
+ * Each power of two is split into 8 linear sub-buckets, so recorded values are kept to within
+ * 12.5% and the whole range of a {@code long} fits in a fixed array of counters. Recording is a
+ * single atomic increment, cheap enough for per-event hot paths; percentile queries scan the buckets.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value The value
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(bucketOf(v));
+        total.incrementAndGet();
+        long previous = max.get();
+        while (v > previous && !max.compareAndSet(previous, v)) {
+            previous = max.get();
+        }
+    }
+
+    /**
+     * Gets the number of recorded values.
+     *
+     * @return The count
+     */
+    public long getCount() {
+        return total.get();
+    }
+
+    /**
+     * Gets the largest recorded value.
+     *
+     * @return The maximum, or 0 if nothing was recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets an upper bound of the value below which the given fraction of recorded values fall.
+     *
+     * @param percentile The percentile, from 0 to 100
+     * @return The value at the percentile, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = total.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Gets the number of recorded values greater than a threshold, to bucket precision.
+     *
+     * @param threshold The threshold
+     * @return The number of values above the threshold
+     */
+    public long getCountAbove(long threshold) {
+        long above = 0;
+        for (int i = bucketOf(Math.max(0, threshold)) + 1; i < BUCKETS; i++) {
+            above += counts.get(i);
+        }
+        return above;
+    }
+
+    /**
+     * Adds all values recorded in another histogram to this one.
+     *
+     * @param other The histogram to add
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        total.addAndGet(other.total.get());
+        long otherMax = other.max.get();
+        long previous = max.get();
+        while (otherMax > previous && !max.compareAndSet(previous, otherMax)) {
+            previous = max.get();
+        }
+    }
+
+    /**
+     * Clears all recorded values. Values recorded concurrently with a reset may be partially kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.set(0);
+        max.set(0);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-saving summary: the most frequent keys of a stream, tracked with a fixed number of counters.
+ *
+ * When a new key arrives and all counters are taken, it replaces the key with the smallest count and
+ * inherits that count as its possible overestimate. Any key with a true count above
+ * {@code total / capacity} is guaranteed to be tracked. Counters are kept in a min-heap, so each
+ * update costs {@code O(log capacity)}. Not thread safe.
+ */
+public class SpaceSaving {
+    private final int capacity;
+    private final long[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private final Map<Long, Integer> positions = new HashMap<>();
+    private int size;
+
+    /**
+     * A tracked key with its estimated count.
+     */
+    public static class Entry {
+        private final long key;
+        private final long count;
+        private final long error;
+
+        Entry(long key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public long getKey() {
+            return key;
+        }
+
+        /**
+         * @return The estimated count, at least the true count
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return How much the count may overestimate by
+         */
+        public long getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Creates a summary.
+     *
+     * @param capacity Number of keys tracked
+     */
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+    }
+
+    /**
+     * Adds to a key's count.
+     *
+     * @param key The key
+     * @param count The amount to add, not negative
+     */
+    public void add(long key, long count) {
+        Integer position = positions.get(key);
+        if (position != null) {
+            counts[position] += count;
+            siftDown(position);
+            return;
+        }
+        if (size < capacity) {
+            keys[size] = key;
+            counts[size] = count;
+            errors[size] = 0;
+            positions.put(key, size);
+            siftUp(size++);
+            return;
+        }
+        // Replace the key with the smallest count
+        positions.remove(keys[0]);
+        errors[0] = counts[0];
+        keys[0] = key;
+        counts[0] += count;
+        positions.put(key, 0);
+        siftDown(0);
+    }
+
+    /**
+     * Gets the tracked keys, highest count first.
+     *
+     * @param limit Maximum number of entries
+     * @return The entries
+     * @throws IllegalArgumentException If limit is negative
+     */
+    public List<Entry> top(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        List<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new Entry(keys[i], counts[i], errors[i]));
+        }
+        entries.sort((a, b) -> Long.compare(b.count, a.count));
+        return entries.size() > limit ? new ArrayList<>(entries.subList(0, limit)) : entries;
+    }
+
+    /**
+     * Forgets all keys.
+     */
+    public void clear() {
+        positions.clear();
+        size = 0;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (counts[parent] <= counts[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long key = keys[a];
+        long count = counts[a];
+        long error = errors[a];
+        keys[a] = keys[b];
+        counts[a] = counts[b];
+        errors[a] = errors[b];
+        keys[b] = key;
+        counts[b] = count;
+        errors[b] = error;
+        positions.put(keys[a], a);
+        positions.put(keys[b], b);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.metrics;
+
+/**
+ * An event count over a sliding time window, kept as a ring of per-sub-window counts.
+ */
+public class WindowedCounter {
+    private final long slotMs;
+    // Guarded by this
+    private final long[] counts;
+    private final long[] slotIndexes;
+
+    /**
+     * Creates a windowed counter.
+     *
+     * @param windowMs Length of the window
+     * @param subWindows Number of steps the window slides in
+     */
+    public WindowedCounter(long windowMs, int subWindows) {
+        if (subWindows < 1 || windowMs < subWindows) {
+            throw new IllegalArgumentException("windowMs must be at least subWindows, which must be at least 1");
+        }
+        this.slotMs = windowMs / subWindows;
+        this.counts = new long[subWindows];
+        this.slotIndexes = new long[subWindows];
+    }
+
+    /**
+     * Counts an event at a point in time. Events older than the window are ignored.
+     *
+     * @param timeMs Time of the event
+     */
+    public synchronized void increment(long timeMs) {
+        long index = Math.floorDiv(timeMs, slotMs);
+        int slot = (int) Math.floorMod(index, (long) counts.length);
+        if (slotIndexes[slot] != index) {
+            if (counts[slot] != 0 && slotIndexes[slot] > index) {
+                return;
+            }
+            counts[slot] = 0;
+            slotIndexes[slot] = index;
+        }
+        counts[slot]++;
+    }
+
+    /**
+     * Gets the number of events within the window ending at a point in time.
+     *
+     * @param nowMs End of the window
+     * @return The count
+     */
+    public synchronized long get(long nowMs) {
+        long newest = Math.floorDiv(nowMs, slotMs);
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (slotIndexes[i] > newest - counts.length && slotIndexes[i] <= newest) {
+                total += counts[i];
+            }
+        }
+        return total;
+    }
+}
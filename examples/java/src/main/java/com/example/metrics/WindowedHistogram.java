@@ -0,0 +1,68 @@
+package com.example.metrics;
+
+/**
+ * A {@link LatencyHistogram} over a sliding time window.
+ *
+ * The window is split into a ring of sub-windows, each with its own histogram; a value is recorded in
+ * the sub-window its time falls in, and a snapshot merges the sub-windows still inside the window. The
+ * window therefore slides in steps of one sub-window, and memory is bounded by the number of
+ * sub-windows: a sub-window's histogram is only allocated once a value lands in it, and is replaced
+ * when a later sub-window reuses its place in the ring.
+ */
+public class WindowedHistogram {
+    private final long slotMs;
+    // Guarded by this
+    private final LatencyHistogram[] slots;
+    private final long[] slotIndexes;
+
+    /**
+     * Creates a windowed histogram.
+     *
+     * @param windowMs Length of the window
+     * @param subWindows Number of steps the window slides in
+     */
+    public WindowedHistogram(long windowMs, int subWindows) {
+        if (subWindows < 1 || windowMs < subWindows) {
+            throw new IllegalArgumentException("windowMs must be at least subWindows, which must be at least 1");
+        }
+        this.slotMs = windowMs / subWindows;
+        this.slots = new LatencyHistogram[subWindows];
+        this.slotIndexes = new long[subWindows];
+    }
+
+    /**
+     * Records a value at a point in time. Values older than the window are ignored.
+     *
+     * @param value The value
+     * @param timeMs Time of the value
+     */
+    public synchronized void record(long value, long timeMs) {
+        long index = Math.floorDiv(timeMs, slotMs);
+        int slot = (int) Math.floorMod(index, (long) slots.length);
+        if (slots[slot] == null || slotIndexes[slot] != index) {
+            if (slots[slot] != null && slotIndexes[slot] > index) {
+                return;
+            }
+            slots[slot] = new LatencyHistogram();
+            slotIndexes[slot] = index;
+        }
+        slots[slot].record(value);
+    }
+
+    /**
+     * Merges the values recorded within the window ending at a point in time.
+     *
+     * @param nowMs End of the window
+     * @return A new histogram holding the values in the window
+     */
+    public synchronized LatencyHistogram snapshot(long nowMs) {
+        long newest = Math.floorDiv(nowMs, slotMs);
+        LatencyHistogram merged = new LatencyHistogram();
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null && slotIndexes[i] > newest - slots.length && slotIndexes[i] <= newest) {
+                merged.add(slots[i]);
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,364 @@
+package com.example.relay;
+
+import com.example.streaming.ManagedSubscription;
+import com.example.streaming.StreamingClient;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import bearrobotics.api.v1.core.FleetSelector.RobotSelector;
+
+/**
+ * Shares upstream subscriptions of one streaming RPC among any number of downstream subscribers.
+ *
+ * Subscribers selecting robots by ID are merged into a single upstream {@link ManagedSubscription}
+ * covering the union of their robots, so identical and overlapping selectors cost one stream;
+ * each event is then delivered only to the subscribers that selected its robot. Subscribers selecting
+ * a location share one upstream stream per location. Upstream streams open with the first subscriber
+ * and close with the last.
+ *
+ * The latest event of every covered robot is kept, so a new subscriber immediately receives the
+ * current state of its robots and unary reads can be answered without an upstream call. Events for
+ * robots nobody subscribes to any more, e.g. ones still in flight when a subscriber leaves, are not kept.
+ *
+ * When the server refuses a robot ID, e.g. an unknown or unauthorized one, the upstream subscription
+ * drops it and resubscribes for the remaining robots, and every subscriber that selected it
+ * is ended with the server's error instead of silently missing that robot.
+ *
+ * @param <TRequest> The request type of the streaming RPC
+ * @param <TResponse> The response type of the streaming RPC
+ */
+public class FanOutHub<TRequest, TResponse> {
+    private static final Logger logger = Logger.getLogger(FanOutHub.class.getName());
+
+    private final Supplier<StreamingClient.Builder<TRequest, TResponse>> clientFactory;
+    private final Function<RobotSelector, TRequest> requestFactory;
+    private final Function<TResponse, String> robotId;
+    private final ToLongFunction<TResponse> sequenceNumber;
+    private final ManagedSubscription<TRequest, TResponse> robotSubscription;
+
+    // Subscribers by robot for ID selectors, read lock-free by the upstream thread
+    private final ConcurrentMap<String, Set<Subscriber<TResponse>>> byRobot = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, TResponse> latest = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private final Map<String, Integer> robotRefs = new HashMap<>();
+    private final Map<String, LocationUpstream> locations = new HashMap<>();
+
+    /**
+     * Creates a hub and starts its robot ID subscription, which stays idle until a robot is selected.
+     *
+     * @param clientFactory Creates a builder configured with the RPC, e.g.
+     *                      {@code () -> client.createStreamingClient().rpcMethod(client.getAsyncStub()::subscribeRobotStatus)}
+     * @param requestFactory Creates the request for a selector
+     * @param robotId Extracts the robot ID from an event
+     * @param sequenceNumber Extracts the metadata sequence number from an event
+     * @param windowMs How long robot ID changes are collected before the upstream stream is swapped
+     */
+    public FanOutHub(Supplier<StreamingClient.Builder<TRequest, TResponse>> clientFactory,
+                     Function<RobotSelector, TRequest> requestFactory,
+                     Function<TResponse, String> robotId,
+                     ToLongFunction<TResponse> sequenceNumber,
+                     long windowMs) {
+        this.clientFactory = clientFactory;
+        this.requestFactory = requestFactory;
+        this.robotId = robotId;
+        this.sequenceNumber = sequenceNumber;
+        this.robotSubscription = new ManagedSubscription<>(clientFactory.get(), requestFactory,
+                new UpstreamObserver() {
+                    @Override
+                    public void onNext(TResponse response) {
+                        String id = robotId.apply(response);
+                        // Checked atomically with the cleanup in release, so a late event is not kept
+                        latest.compute(id, (key, old) -> byRobot.containsKey(key) ? response : old);
+                        Set<Subscriber<TResponse>> subscribers = byRobot.get(id);
+                        if (subscribers != null) {
+                            long sequence = sequenceNumber.applyAsLong(response);
+                            for (Subscriber<TResponse> subscriber : subscribers) {
+                                subscriber.offer(id, sequence, response);
+                            }
+                        }
+                    }
+                },
+                robotId, sequenceNumber, windowMs, this::onRobotsRejected);
+        robotSubscription.start();
+    }
+
+    /**
+     * Adds a downstream subscriber and sends it the latest event of each selected robot,
+     * unless a newer live event reached it first.
+     *
+     * @param selector The subscriber's selector
+     * @param subscriber The subscriber
+     * @throws io.grpc.StatusRuntimeException {@code INVALID_ARGUMENT} if the selector selects nothing
+     */
+    public void subscribe(RobotSelector selector, Subscriber<TResponse> subscriber) {
+        List<String> replay;
+        switch (selector.getTargetIdCase()) {
+            case ROBOT_IDS:
+                List<String> added = new ArrayList<>();
+                synchronized (this) {
+                    for (String id : new LinkedHashSet<>(selector.getRobotIds().getIdsList())) {
+                        byRobot.computeIfAbsent(id, key -> new CopyOnWriteArraySet<>()).add(subscriber);
+                        if (robotRefs.merge(id, 1, Integer::sum) == 1) {
+                            added.add(id);
+                        }
+                    }
+                }
+                if (!added.isEmpty()) {
+                    robotSubscription.addRobots(added);
+                }
+                replay = selector.getRobotIds().getIdsList();
+                break;
+            case LOCATION_ID:
+                LocationUpstream upstream;
+                synchronized (this) {
+                    upstream = locations.computeIfAbsent(selector.getLocationId(), LocationUpstream::new);
+                    upstream.subscribers.add(subscriber);
+                }
+                replay = new ArrayList<>(upstream.robots);
+                break;
+            default:
+                throw Status.INVALID_ARGUMENT.withDescription("selector must set robot_ids or location_id").asRuntimeException();
+        }
+        for (String id : replay) {
+            TResponse response = latest.get(id);
+            if (response != null) {
+                subscriber.offer(id, sequenceNumber.applyAsLong(response), response);
+            }
+        }
+    }
+
+    /**
+     * Removes a downstream subscriber, closing upstream streams nobody needs any more.
+     *
+     * @param selector The selector the subscriber subscribed with
+     * @param subscriber The subscriber
+     */
+    public void unsubscribe(RobotSelector selector, Subscriber<TResponse> subscriber) {
+        subscriber.close();
+        List<String> released = new ArrayList<>();
+        LocationUpstream closed = null;
+        synchronized (this) {
+            switch (selector.getTargetIdCase()) {
+                case ROBOT_IDS:
+                    release(selector.getRobotIds().getIdsList(), subscriber, released);
+                    break;
+                case LOCATION_ID:
+                    LocationUpstream upstream = locations.get(selector.getLocationId());
+                    if (upstream != null && upstream.subscribers.remove(subscriber) && upstream.subscribers.isEmpty()) {
+                        locations.remove(selector.getLocationId());
+                        upstream.open = false;
+                        closed = upstream;
+                        released.addAll(upstream.robots);
+                    }
+                    break;
+                default:
+                    return;
+            }
+            forgetUncovered(released);
+        }
+        if (!released.isEmpty() && selector.hasRobotIds()) {
+            robotSubscription.removeRobots(released);
+        }
+        if (closed != null) {
+            closed.stop();
+        }
+    }
+
+    /**
+     * Gets the latest event of a robot, if an upstream stream currently covers it.
+     *
+     * @param robotId The robot ID
+     * @return The latest event, or null
+     */
+    public TResponse getLatest(String robotId) {
+        return latest.get(robotId);
+    }
+
+    /**
+     * Gets the number of upstream streams currently open.
+     *
+     * @return The upstream count
+     */
+    public synchronized int getUpstreamCount() {
+        return (robotRefs.isEmpty() ? 0 : 1) + locations.size();
+    }
+
+    /**
+     * Closes every upstream stream and completes every downstream subscriber.
+     */
+    public void shutdown() {
+        List<LocationUpstream> upstreams;
+        Set<Subscriber<TResponse>> subscribers = new HashSet<>();
+        synchronized (this) {
+            upstreams = new ArrayList<>(locations.values());
+            locations.clear();
+            robotRefs.clear();
+            for (Set<Subscriber<TResponse>> set : byRobot.values()) {
+                subscribers.addAll(set);
+            }
+            byRobot.clear();
+        }
+        robotSubscription.stop();
+        for (LocationUpstream upstream : upstreams) {
+            upstream.open = false;
+            upstream.stop();
+            subscribers.addAll(upstream.subscribers);
+        }
+        for (Subscriber<TResponse> subscriber : subscribers) {
+            subscriber.complete();
+        }
+        latest.clear();
+    }
+
+    /**
+     * Ends the subscribers of robots the server refused, releasing all of their robots.
+     *
+     * @param rejected The robots dropped from the upstream subscription
+     * @param status The server's error
+     */
+    private void onRobotsRejected(Set<String> rejected, Status status) {
+        Set<Subscriber<TResponse>> failed = new HashSet<>();
+        List<String> released = new ArrayList<>();
+        synchronized (this) {
+            for (String id : rejected) {
+                Set<Subscriber<TResponse>> subscribers = byRobot.get(id);
+                if (subscribers != null) {
+                    failed.addAll(subscribers);
+                }
+            }
+            for (Subscriber<TResponse> subscriber : failed) {
+                List<String> selected = new ArrayList<>();
+                for (Map.Entry<String, Set<Subscriber<TResponse>>> entry : byRobot.entrySet()) {
+                    if (entry.getValue().contains(subscriber)) {
+                        selected.add(entry.getKey());
+                    }
+                }
+                release(selected, subscriber, released);
+            }
+            forgetUncovered(released);
+        }
+        if (!released.isEmpty()) {
+            robotSubscription.removeRobots(released);
+        }
+        for (Subscriber<TResponse> subscriber : failed) {
+            subscriber.fail(status);
+        }
+    }
+
+    // Must hold the lock
+    private void release(List<String> robotIds, Subscriber<TResponse> subscriber, List<String> released) {
+        for (String id : new LinkedHashSet<>(robotIds)) {
+            Set<Subscriber<TResponse>> subscribers = byRobot.get(id);
+            if (subscribers == null || !subscribers.remove(subscriber)) {
+                continue;
+            }
+            if (subscribers.isEmpty()) {
+                byRobot.remove(id);
+            }
+            if (robotRefs.merge(id, -1, Integer::sum) == 0) {
+                robotRefs.remove(id);
+                released.add(id);
+            }
+        }
+    }
+
+    // Must hold the lock; forgets the state of robots no upstream stream covers any more
+    private void forgetUncovered(List<String> released) {
+        for (String id : released) {
+            if (!isCovered(id)) {
+                latest.remove(id);
+            }
+        }
+    }
+
+    // Must hold the lock
+    private boolean isCovered(String id) {
+        if (robotRefs.containsKey(id)) {
+            return true;
+        }
+        for (LocationUpstream upstream : locations.values()) {
+            if (upstream.robots.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Observer of an upstream stream. Upstream errors are retried by the streaming client and are
+     * not passed to subscribers, whose streams stay open across upstream reconnects; refused robot IDs
+     * reach {@link #onRobotsRejected} instead.
+     */
+    private abstract class UpstreamObserver implements StreamObserver<TResponse> {
+        @Override
+        public void onError(Throwable t) {
+            logger.log(Level.WARNING, "Relay upstream stream failed; it will reconnect", t);
+        }
+
+        @Override
+        public void onCompleted() {
+            logger.info("Relay upstream stream completed");
+        }
+    }
+
+    /**
+     * The upstream stream of one location and its subscribers.
+     */
+    private final class LocationUpstream {
+        private final Set<Subscriber<TResponse>> subscribers = new CopyOnWriteArraySet<>();
+        private final Set<String> robots = ConcurrentHashMap.newKeySet();
+        private final StreamingClient<TRequest, TResponse> client;
+        // Cleared under the hub lock before the location's state is forgotten
+        private volatile boolean open = true;
+
+        LocationUpstream(String locationId) {
+            this.client = clientFactory.get()
+                    .request(requestFactory.apply(RobotSelector.newBuilder().setLocationId(locationId).build()))
+                    .observer(new UpstreamObserver() {
+                        @Override
+                        public void onNext(TResponse response) {
+                            String id = robotId.apply(response);
+                            robots.add(id);
+                            latest.compute(id, (key, old) -> open ? response : old);
+                            long sequence = sequenceNumber.applyAsLong(response);
+                            for (Subscriber<TResponse> subscriber : subscribers) {
+                                subscriber.offer(id, sequence, response);
+                            }
+                        }
+                    })
+                    .streamName("Relay-" + locationId)
+                    .build();
+            Thread streamThread = new Thread(() -> {
+                try {
+                    client.startStreaming();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "FanOutHub-" + locationId);
+            streamThread.setDaemon(true);
+            streamThread.start();
+            logger.info("Relay opened upstream stream for location " + locationId);
+        }
+
+        void stop() {
+            client.stop();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.relay;
+
+import com.example.BearRoboticsClient;
+import com.example.streaming.StreamPriority;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Grpc;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.Server;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import bearrobotics.api.v1.core.FleetSelector.RobotSelector;
+import bearrobotics.api.v1.services.cloud.APIServiceGrpc;
+import bearrobotics.api.v1.services.cloud.ApiService.GetRobotStatusRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.GetRobotStatusResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeMissionStatusRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeMissionStatusResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusResponse;
+
+/**
+ * Local gRPC server exposing the {@code APIService} streaming methods to internal consumers
+ * over a shared set of upstream subscriptions.
+ *
+ * {@code SubscribeRobotStatus} and {@code SubscribeMissionStatus} are served through a {@link FanOutHub}
+ * each, so any number of internal subscribers cost at most one upstream stream per RPC for robot ID
+ * selectors plus one per selected location. {@code GetRobotStatus} is answered from the live robot
+ * status of subscribed robots and forwarded upstream for any other robot. All other methods return
+ * {@code UNIMPLEMENTED}.
+ *
+ * The server listens without TLS or authentication and is meant for a trusted internal network;
+ * upstream calls authenticate with the client's credentials.
+ */
+public class RelayServer {
+    private static final Logger logger = Logger.getLogger(RelayServer.class.getName());
+
+    private final BearRoboticsClient client;
+    private final int subscriberBufferSize;
+    private final FanOutHub<SubscribeRobotStatusRequest, SubscribeRobotStatusResponse> robotStatus;
+    private final FanOutHub<SubscribeMissionStatusRequest, SubscribeMissionStatusResponse> missionStatus;
+    private final Server server;
+
+    /**
+     * Creates a relay server buffering events of up to 1000 robots per subscriber.
+     *
+     * @param client The client used for upstream calls
+     * @param port Port to listen on, or 0 to pick a free one
+     */
+    public RelayServer(BearRoboticsClient client, int port) {
+        this(client, port, 1000);
+    }
+
+    /**
+     * Creates a relay server.
+     *
+     * @param client The client used for upstream calls
+     * @param port Port to listen on, or 0 to pick a free one
+     * @param subscriberBufferSize Robots with an event buffered per subscriber before the longest waiting is dropped
+     */
+    public RelayServer(BearRoboticsClient client, int port, int subscriberBufferSize) {
+        this.client = client;
+        this.subscriberBufferSize = subscriberBufferSize;
+        this.robotStatus = new FanOutHub<>(
+                () -> client.<SubscribeRobotStatusRequest, SubscribeRobotStatusResponse>createStreamingClient(StreamPriority.STATUS)
+                        .rpcMethod(client.getAsyncStub()::subscribeRobotStatus)
+                        .streamName("Relay-RobotStatus"),
+                selector -> SubscribeRobotStatusRequest.newBuilder().setSelector(selector).build(),
+                SubscribeRobotStatusResponse::getRobotId,
+                response -> response.getMetadata().getSequenceNumber(),
+                200);
+        this.missionStatus = new FanOutHub<>(
+                () -> client.<SubscribeMissionStatusRequest, SubscribeMissionStatusResponse>createStreamingClient(StreamPriority.STATUS)
+                        .rpcMethod(client.getAsyncStub()::subscribeMissionStatus)
+                        .streamName("Relay-MissionStatus"),
+                selector -> SubscribeMissionStatusRequest.newBuilder().setSelector(selector).build(),
+                SubscribeMissionStatusResponse::getRobotId,
+                response -> response.getMetadata().getSequenceNumber(),
+                200);
+        this.server = Grpc.newServerBuilderForPort(port, InsecureServerCredentials.create())
+                .addService(new RelayService())
+                .build();
+    }
+
+    /**
+     * Starts listening.
+     *
+     * @throws IOException If the port cannot be bound
+     */
+    public void start() throws IOException {
+        server.start();
+        logger.info("Relay server listening on port " + server.getPort());
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return The port
+     */
+    public int getPort() {
+        return server.getPort();
+    }
+
+    /**
+     * Gets the hub serving {@code SubscribeRobotStatus}.
+     *
+     * @return The robot status hub
+     */
+    public FanOutHub<SubscribeRobotStatusRequest, SubscribeRobotStatusResponse> getRobotStatusHub() {
+        return robotStatus;
+    }
+
+    /**
+     * Gets the hub serving {@code SubscribeMissionStatus}.
+     *
+     * @return The mission status hub
+     */
+    public FanOutHub<SubscribeMissionStatusRequest, SubscribeMissionStatusResponse> getMissionStatusHub() {
+        return missionStatus;
+    }
+
+    /**
+     * Completes all subscriber streams, closes the upstream streams and stops the server.
+     *
+     * @throws InterruptedException If interrupted while waiting for the server to stop
+     */
+    public void shutdown() throws InterruptedException {
+        robotStatus.shutdown();
+        missionStatus.shutdown();
+        server.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+        logger.info("Relay server stopped");
+    }
+
+    /**
+     * Adds a downstream stream to a hub and removes it when the stream is cancelled.
+     */
+    private <TRequest, TResponse> void serve(FanOutHub<TRequest, TResponse> hub,
+                                             RobotSelector selector,
+                                             StreamObserver<TResponse> responseObserver) {
+        ServerCallStreamObserver<TResponse> call = (ServerCallStreamObserver<TResponse>) responseObserver;
+        Subscriber<TResponse> subscriber = new Subscriber<>(call, subscriberBufferSize);
+        call.setOnCancelHandler(() -> hub.unsubscribe(selector, subscriber));
+        try {
+            hub.subscribe(selector, subscriber);
+        } catch (StatusRuntimeException e) {
+            subscriber.close();
+            call.onError(e);
+        }
+    }
+
+    /**
+     * The relayed {@code APIService} methods.
+     */
+    private final class RelayService extends APIServiceGrpc.APIServiceImplBase {
+        @Override
+        public void subscribeRobotStatus(SubscribeRobotStatusRequest request,
+                                         StreamObserver<SubscribeRobotStatusResponse> responseObserver) {
+            serve(robotStatus, request.getSelector(), responseObserver);
+        }
+
+        @Override
+        public void subscribeMissionStatus(SubscribeMissionStatusRequest request,
+                                           StreamObserver<SubscribeMissionStatusResponse> responseObserver) {
+            serve(missionStatus, request.getSelector(), responseObserver);
+        }
+
+        @Override
+        public void getRobotStatus(GetRobotStatusRequest request, StreamObserver<GetRobotStatusResponse> responseObserver) {
+            SubscribeRobotStatusResponse live = robotStatus.getLatest(request.getRobotId());
+            if (live != null) {
+                responseObserver.onNext(GetRobotStatusResponse.newBuilder().setRobotState(live.getRobotState()).build());
+                responseObserver.onCompleted();
+                return;
+            }
+            Futures.addCallback(client.getFutureStub().getRobotStatus(request), new FutureCallback<GetRobotStatusResponse>() {
+                @Override
+                public void onSuccess(GetRobotStatusResponse response) {
+                    responseObserver.onNext(response);
+                    responseObserver.onCompleted();
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    responseObserver.onError(t);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+    }
+}
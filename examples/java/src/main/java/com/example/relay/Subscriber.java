@@ -0,0 +1,135 @@
+package com.example.relay;
+
+import com.example.streaming.SequenceTracker;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One downstream stream of the relay, with its own bounded buffer.
+ *
+ * Events are written only while the transport reports the subscriber ready, so a slow consumer
+ * fills its own buffer instead of the relay's memory or the upstream stream. Relayed events are
+ * status snapshots, so the buffer holds at most one event per robot: a newer event replaces the one
+ * still waiting for its robot, and every robot's latest state is eventually sent however slow the
+ * consumer is. Events are passed through a {@link SequenceTracker}, so an event older than one already
+ * offered for its robot, such as a replayed snapshot racing a live event, is dropped. Only when
+ * more robots are waiting than the buffer holds is the robot waiting longest dropped.
+ *
+ * @param <T> The event type
+ */
+public class Subscriber<T> {
+    private static final Logger logger = Logger.getLogger(Subscriber.class.getName());
+
+    private final ServerCallStreamObserver<T> observer;
+    private final int capacity;
+    private final SequenceTracker tracker = new SequenceTracker();
+    // Guarded by this; in the order the robots started waiting
+    private final Map<String, T> pending = new LinkedHashMap<>();
+    private long dropped;
+    private boolean closed;
+
+    /**
+     * Creates a subscriber. Must be called before anything is sent on the stream.
+     *
+     * @param observer The server-side stream
+     * @param capacity Maximum number of robots with an event buffered while the subscriber is not ready
+     */
+    public Subscriber(ServerCallStreamObserver<T> observer, int capacity) {
+        this.observer = observer;
+        this.capacity = capacity;
+        observer.setOnReadyHandler(this::drain);
+    }
+
+    /**
+     * Queues an event and sends as much of the buffer as the transport accepts.
+     *
+     * @param robotId The robot the event is for
+     * @param sequenceNumber The event's metadata sequence number
+     * @param event The event
+     */
+    public void offer(String robotId, long sequenceNumber, T event) {
+        synchronized (this) {
+            if (closed || !tracker.accept(robotId, sequenceNumber)) {
+                return;
+            }
+            if (pending.put(robotId, event) == null && pending.size() > capacity) {
+                Iterator<String> oldest = pending.keySet().iterator();
+                oldest.next();
+                oldest.remove();
+                dropped++;
+                if (Long.bitCount(dropped) == 1) {
+                    logger.warning("Relay subscriber is not keeping up; " + dropped + " events dropped");
+                }
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Gets the number of events dropped because the buffer was full.
+     *
+     * @return The dropped count
+     */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    /**
+     * Stops sending events, e.g. after the stream was cancelled.
+     */
+    public synchronized void close() {
+        closed = true;
+        pending.clear();
+    }
+
+    /**
+     * Ends the stream normally, discarding buffered events.
+     */
+    public void complete() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            close();
+        }
+        try {
+            observer.onCompleted();
+        } catch (RuntimeException e) {
+            logger.log(Level.FINE, "Relay subscriber already gone", e);
+        }
+    }
+
+    /**
+     * Ends the stream with an error, discarding buffered events.
+     *
+     * @param status The status to end the stream with
+     */
+    public void fail(Status status) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            close();
+        }
+        try {
+            observer.onError(status.asRuntimeException());
+        } catch (RuntimeException e) {
+            logger.log(Level.FINE, "Relay subscriber already gone", e);
+        }
+    }
+
+    private synchronized void drain() {
+        Iterator<T> events = pending.values().iterator();
+        while (!closed && observer.isReady() && events.hasNext()) {
+            T event = events.next();
+            events.remove();
+            observer.onNext(event);
+        }
+    }
+}
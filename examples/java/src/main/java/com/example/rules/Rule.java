@@ -0,0 +1,140 @@
+package com.example.rules;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import bearrobotics.api.v1.core.RobotStatus.RobotState;
+
+/**
+ * A declarative automation rule: when a condition on a robot's state holds, run an action.
+ *
+ * A rule fires at most once each time its condition becomes true. Firing can be debounced with
+ * {@code holdFor}, so the condition must hold continuously for a while (e.g. an emergency stop engaged
+ * for 30 seconds), and windowed with {@code occurrences}, so the condition must have become true a
+ * number of times within a window (e.g. mislocalized three times in ten minutes). {@code cooldown}
+ * bounds how often the rule fires per robot.
+ */
+public class Rule {
+    private final String name;
+    private final Predicate<RobotState> condition;
+    private final long holdForMs;
+    private final int occurrences;
+    private final long windowMs;
+    private final long cooldownMs;
+    private final RuleAction action;
+
+    /**
+     * Creates a rule.
+     *
+     * @param name Name used in logs
+     * @param condition Condition on the robot's merged state
+     * @param holdForMs How long the condition must hold before the rule fires
+     * @param occurrences How many times the condition must have become true within the window
+     * @param windowMs The window for {@code occurrences}
+     * @param cooldownMs Minimum time between two firings for the same robot
+     * @param action The action to run
+     */
+    public Rule(String name,
+                Predicate<RobotState> condition,
+                long holdForMs,
+                int occurrences,
+                long windowMs,
+                long cooldownMs,
+                RuleAction action) {
+        this.name = name;
+        this.condition = condition;
+        this.holdForMs = holdForMs;
+        this.occurrences = occurrences;
+        this.windowMs = windowMs;
+        this.cooldownMs = cooldownMs;
+        this.action = action;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    Predicate<RobotState> getCondition() {
+        return condition;
+    }
+
+    long getHoldForMs() {
+        return holdForMs;
+    }
+
+    int getOccurrences() {
+        return occurrences;
+    }
+
+    long getWindowMs() {
+        return windowMs;
+    }
+
+    long getCooldownMs() {
+        return cooldownMs;
+    }
+
+    RuleAction getAction() {
+        return action;
+    }
+
+    /**
+     * Builder for Rule.
+     */
+    public static class Builder {
+        private String name;
+        private Predicate<RobotState> condition;
+        private long holdForMs = 0;
+        private int occurrences = 1;
+        private long windowMs = 0;
+        private long cooldownMs = 60000;
+        private RuleAction action;
+
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder when(Predicate<RobotState> condition) {
+            this.condition = condition;
+            return this;
+        }
+
+        public Builder holdFor(long duration, TimeUnit unit) {
+            this.holdForMs = unit.toMillis(duration);
+            return this;
+        }
+
+        public Builder occurrences(int count, long window, TimeUnit unit) {
+            this.occurrences = count;
+            this.windowMs = unit.toMillis(window);
+            return this;
+        }
+
+        public Builder cooldown(long duration, TimeUnit unit) {
+            this.cooldownMs = unit.toMillis(duration);
+            return this;
+        }
+
+        public Builder then(RuleAction action) {
+            this.action = action;
+            return this;
+        }
+
+        public Rule build() {
+            if (name == null) {
+                throw new IllegalArgumentException("name is required");
+            }
+            if (condition == null) {
+                throw new IllegalArgumentException("condition is required");
+            }
+            if (action == null) {
+                throw new IllegalArgumentException("action is required");
+            }
+            if (occurrences > 1 && windowMs <= 0) {
+                throw new IllegalArgumentException("window is required for occurrences");
+            }
+            return new Rule(name, condition, holdForMs, occurrences, windowMs, cooldownMs, action);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.rules;
+
+import java.util.concurrent.CompletableFuture;
+
+import bearrobotics.api.v1.core.RobotStatus.RobotState;
+
+/**
+ * Action run when a {@link Rule} fires.
+ * Actions are started on the thread that evaluated the rule and must not block; start the work
+ * asynchronously, e.g. with {@code UnaryClient.call()}, and return its future.
+ */
+@FunctionalInterface
+public interface RuleAction {
+    /**
+     * Starts the action.
+     *
+     * @param robotId The robot the rule fired for
+     * @param state The robot's state when the rule fired
+     * @return Completes when the action is done; failures are logged by the engine
+     */
+    CompletableFuture<?> execute(String robotId, RobotState state);
+}
@@ -0,0 +1,72 @@
+package com.example.rules;
+
+import com.example.BearRoboticsClient;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+import bearrobotics.api.v1.core.AnnotationOuterClass.Goal;
+import bearrobotics.api.v1.core.RobotStatus.RobotState;
+import bearrobotics.api.v1.services.cloud.ApiService.ChargeRobotRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.ChargeRobotResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.LocalizeRobotRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.LocalizeRobotResponse;
+
+/**
+ * Common rule actions. Robot commands go through the client's unary clients, so they share its
+ * concurrency limit and circuit breakers. Commands are not idempotent, so they are not retried
+ * after a failure the robot may already have acted on.
+ */
+public final class RuleActions {
+
+    private RuleActions() {
+    }
+
+    /**
+     * Sends the robot to its charger with {@code ChargeRobot}.
+     *
+     * @param client The client
+     * @return The action
+     */
+    public static RuleAction chargeRobot(BearRoboticsClient client) {
+        return (robotId, state) -> client.<ChargeRobotRequest, ChargeRobotResponse>createUnaryClient()
+                .rpcMethod(request -> client.getBlockingStub().chargeRobot(request))
+                .request(ChargeRobotRequest.newBuilder().setRobotId(robotId).build())
+                .rpcName("ChargeRobot")
+                .robotId(robotId)
+                .idempotent(false)
+                .build()
+                .call();
+    }
+
+    /**
+     * Localizes the robot at a goal with {@code LocalizeRobot}, e.g. its home destination.
+     *
+     * @param client The client
+     * @param goal The destination or pose to localize at
+     * @return The action
+     */
+    public static RuleAction localizeRobot(BearRoboticsClient client, Goal goal) {
+        return (robotId, state) -> client.<LocalizeRobotRequest, LocalizeRobotResponse>createUnaryClient()
+                .rpcMethod(request -> client.getBlockingStub().localizeRobot(request))
+                .request(LocalizeRobotRequest.newBuilder().setRobotId(robotId).setGoal(goal).build())
+                .rpcName("LocalizeRobot")
+                .robotId(robotId)
+                .idempotent(false)
+                .build()
+                .call();
+    }
+
+    /**
+     * Passes the robot to a callback, e.g. one that pages on-call. The callback must not block.
+     *
+     * @param callback Receives the robot ID and state
+     * @return The action
+     */
+    public static RuleAction notify(BiConsumer<String, RobotState> callback) {
+        return (robotId, state) -> {
+            callback.accept(robotId, state);
+            return CompletableFuture.completedFuture(null);
+        };
+    }
+}
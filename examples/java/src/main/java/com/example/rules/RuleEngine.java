@@ -0,0 +1,496 @@
+package com.example.rules;
+
+import com.example.BearRoboticsClient;
+import com.example.streaming.StreamPriority;
+import com.example.streaming.StreamingClient;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import bearrobotics.api.v1.core.Errors.ErrorCodes;
+import bearrobotics.api.v1.core.Errors.ErrorCodesWithMetadata;
+import bearrobotics.api.v1.core.FleetSelector.RobotSelector;
+import bearrobotics.api.v1.core.RobotStatus.RobotState;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeBatteryStatusRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeBatteryStatusResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeEmergencyStopStatusRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeEmergencyStopStatusResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeErrorCodesRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeErrorCodesResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeLocalizationStatusResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusResponse;
+
+/**
+ * Evaluates {@link Rule}s against the live state of each robot and runs their actions.
+ *
+ * The engine merges the robot status, battery, emergency stop, localization and error code streams
+ * into one {@code RobotState} per robot and re-evaluates that robot's rules on every event, so a rule
+ * reacts within milliseconds of the event that makes it true instead of at the next poll. Rules with
+ * a hold time are fired by a timer, so they fire on time even if no further events arrive.
+ *
+ * Across all rules and robots, actions are limited to a configurable rate; an action over the limit
+ * is retried once a token is available, as long as its condition still holds.
+ */
+public class RuleEngine {
+    private static final Logger logger = Logger.getLogger(RuleEngine.class.getName());
+
+    private final List<Rule> rules;
+    private final double maxActionsPerSecond;
+    private final ConcurrentMap<String, RobotContext> robots = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RuleEngine-Timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Token bucket for actions, guarded by this
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    // Set by shutdown; no rule is evaluated or fired afterwards
+    private volatile boolean shutdown;
+
+    private final AtomicLong fired = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Creates an engine running at most 10 actions per second.
+     *
+     * @param rules The rules
+     */
+    public RuleEngine(List<Rule> rules) {
+        this(rules, 10);
+    }
+
+    /**
+     * Creates an engine.
+     *
+     * @param rules The rules
+     * @param maxActionsPerSecond Rate limit for actions across all rules and robots
+     */
+    public RuleEngine(List<Rule> rules, double maxActionsPerSecond) {
+        this.rules = List.copyOf(rules);
+        this.maxActionsPerSecond = maxActionsPerSecond;
+        this.tokens = Math.max(1, maxActionsPerSecond);
+    }
+
+    /**
+     * Starts the robot status, battery, emergency stop and error code streams for a selector and feeds
+     * them into the engine. Localization status is subscribed per robot; use {@link #localizationObserver}.
+     *
+     * @param client The client
+     * @param selector The robots to evaluate rules for
+     * @return The started streaming clients
+     * @throws InterruptedException If interrupted while starting the streams
+     */
+    public List<StreamingClient<?, ?>> attach(BearRoboticsClient client, RobotSelector selector) throws InterruptedException {
+        List<StreamingClient<?, ?>> streams = new ArrayList<>();
+        streams.add(client.startStream(client.getAsyncStub()::subscribeRobotStatus,
+                SubscribeRobotStatusRequest.newBuilder().setSelector(selector).build(),
+                robotStatusObserver(), "Rules-RobotStatus", StreamPriority.STATUS));
+        streams.add(client.startStream(client.getAsyncStub()::subscribeBatteryStatus,
+                SubscribeBatteryStatusRequest.newBuilder().setSelector(selector).build(),
+                batteryObserver(), "Rules-Battery", StreamPriority.TELEMETRY));
+        streams.add(client.startStream(client.getAsyncStub()::subscribeEmergencyStopStatus,
+                SubscribeEmergencyStopStatusRequest.newBuilder().setSelector(selector).build(),
+                emergencyStopObserver(), "Rules-EmergencyStop", StreamPriority.SAFETY));
+        streams.add(client.startStream(client.getAsyncStub()::subscribeErrorCodes,
+                SubscribeErrorCodesRequest.newBuilder().setSelector(selector).build(),
+                errorCodesObserver(), "Rules-ErrorCodes", StreamPriority.SAFETY));
+        return streams;
+    }
+
+    /**
+     * Creates an observer for {@code SubscribeRobotStatus}; each event replaces the robot's state.
+     *
+     * @return The observer
+     */
+    public StreamObserver<SubscribeRobotStatusResponse> robotStatusObserver() {
+        return new EngineObserver<SubscribeRobotStatusResponse>("Robot status") {
+            @Override
+            public void onNext(SubscribeRobotStatusResponse response) {
+                RobotState state = response.getRobotState();
+                update(response.getRobotId(), builder -> builder.clear().mergeFrom(state));
+            }
+        };
+    }
+
+    /**
+     * Creates an observer for {@code SubscribeBatteryStatus}.
+     *
+     * @return The observer
+     */
+    public StreamObserver<SubscribeBatteryStatusResponse> batteryObserver() {
+        return new EngineObserver<SubscribeBatteryStatusResponse>("Battery status") {
+            @Override
+            public void onNext(SubscribeBatteryStatusResponse response) {
+                update(response.getRobotId(), builder -> builder.setBattery(response.getBatteryState()));
+            }
+        };
+    }
+
+    /**
+     * Creates an observer for {@code SubscribeEmergencyStopStatus}.
+     *
+     * @return The observer
+     */
+    public StreamObserver<SubscribeEmergencyStopStatusResponse> emergencyStopObserver() {
+        return new EngineObserver<SubscribeEmergencyStopStatusResponse>("Emergency stop status") {
+            @Override
+            public void onNext(SubscribeEmergencyStopStatusResponse response) {
+                update(response.getRobotId(), builder -> builder.setEmergencyStop(response.getEStopState()));
+            }
+        };
+    }
+
+    /**
+     * Creates an observer for {@code SubscribeErrorCodes}.
+     *
+     * @return The observer
+     */
+    public StreamObserver<SubscribeErrorCodesResponse> errorCodesObserver() {
+        return new EngineObserver<SubscribeErrorCodesResponse>("Error codes") {
+            @Override
+            public void onNext(SubscribeErrorCodesResponse response) {
+                for (Map.Entry<String, ErrorCodesWithMetadata> entry : response.getErrorCodesMap().entrySet()) {
+                    ErrorCodes codes = ErrorCodes.newBuilder().addAllCodes(entry.getValue().getCodesList()).build();
+                    update(entry.getKey(), builder -> builder.setErrorCodes(codes));
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates an observer for the {@code SubscribeLocalizationStatus} stream of one robot.
+     *
+     * @param robotId The robot the stream was opened for
+     * @return The observer
+     */
+    public StreamObserver<SubscribeLocalizationStatusResponse> localizationObserver(String robotId) {
+        return new EngineObserver<SubscribeLocalizationStatusResponse>("Localization status") {
+            @Override
+            public void onNext(SubscribeLocalizationStatusResponse response) {
+                update(robotId, builder -> builder.setLocalizationState(response.getLocalizationState()));
+            }
+        };
+    }
+
+    /**
+     * Gets the merged state of a robot.
+     *
+     * @param robotId The robot ID
+     * @return The state, or null if no event was received for the robot
+     */
+    public RobotState getState(String robotId) {
+        RobotContext context = robots.get(robotId);
+        if (context == null) {
+            return null;
+        }
+        synchronized (context) {
+            return context.state;
+        }
+    }
+
+    /**
+     * Forgets a robot's state and cancels its pending rule timers.
+     *
+     * @param robotId The robot ID
+     */
+    public void forget(String robotId) {
+        RobotContext context = robots.remove(robotId);
+        if (context != null) {
+            synchronized (context) {
+                for (RuleState ruleState : context.rules) {
+                    ruleState.reset();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of actions started.
+     *
+     * @return The fired count
+     */
+    public long getFiredCount() {
+        return fired.get();
+    }
+
+    /**
+     * Gets the number of times an action was delayed by the rate limit.
+     *
+     * @return The rate-limited count
+     */
+    public long getRateLimitedCount() {
+        return rateLimited.get();
+    }
+
+    /**
+     * Gets the number of actions that failed.
+     *
+     * @return The failed count
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Stops all rule timers. Observers keep merging state but no action fires after this.
+     */
+    public void shutdown() {
+        shutdown = true;
+        timer.shutdownNow();
+        for (RobotContext context : robots.values()) {
+            synchronized (context) {
+                for (RuleState ruleState : context.rules) {
+                    ruleState.reset();
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies an event to a robot's state and evaluates the robot's rules.
+     *
+     * @param robotId The robot ID
+     * @param change Applies the event to a builder of the current state
+     */
+    private void update(String robotId, Consumer<RobotState.Builder> change) {
+        RobotContext context = robots.computeIfAbsent(robotId, id -> new RobotContext());
+        List<Runnable> actions = new ArrayList<>();
+        synchronized (context) {
+            RobotState.Builder builder = context.state.toBuilder();
+            change.accept(builder);
+            context.state = builder.build();
+            if (shutdown) {
+                return;
+            }
+            long now = nowMs();
+            for (int i = 0; i < rules.size(); i++) {
+                evaluate(robotId, context, i, now, actions);
+            }
+        }
+        // Start actions outside the lock
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    /**
+     * Tracks a rule's condition for a robot and fires it when due. Must hold the context's lock.
+     *
+     * @param robotId The robot ID
+     * @param context The robot's context
+     * @param index The rule index
+     * @param now The current time
+     * @param actions Receives the actions to start
+     */
+    private void evaluate(String robotId, RobotContext context, int index, long now, List<Runnable> actions) {
+        Rule rule = rules.get(index);
+        RuleState ruleState = context.rules[index];
+        boolean holds;
+        try {
+            holds = rule.getCondition().test(context.state);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Condition of rule " + rule.getName() + " failed for robot " + robotId, e);
+            holds = false;
+        }
+        if (holds == ruleState.active) {
+            return;
+        }
+        ruleState.reset();
+        ruleState.active = holds;
+        if (!holds) {
+            return;
+        }
+        ruleState.since = now;
+        if (rule.getOccurrences() > 1) {
+            ruleState.edges.addLast(now);
+            while (ruleState.edges.size() > rule.getOccurrences()
+                    || now - ruleState.edges.peekFirst() > rule.getWindowMs()) {
+                ruleState.edges.pollFirst();
+            }
+        }
+        if (rule.getHoldForMs() > 0) {
+            schedule(robotId, context, index, rule.getHoldForMs());
+        } else {
+            fireIfDue(robotId, context, index, now, actions);
+        }
+    }
+
+    /**
+     * Fires a rule whose condition holds, unless it already fired in this period, its window or
+     * cooldown is not satisfied, or the rate limit defers it. Must hold the context's lock.
+     */
+    private void fireIfDue(String robotId, RobotContext context, int index, long now, List<Runnable> actions) {
+        Rule rule = rules.get(index);
+        RuleState ruleState = context.rules[index];
+        if (shutdown || !ruleState.active || ruleState.fired || now - ruleState.since < rule.getHoldForMs()) {
+            return;
+        }
+        if (rule.getOccurrences() > 1) {
+            while (!ruleState.edges.isEmpty() && now - ruleState.edges.peekFirst() > rule.getWindowMs()) {
+                ruleState.edges.pollFirst();
+            }
+            if (ruleState.edges.size() < rule.getOccurrences()) {
+                return;
+            }
+        }
+        if (ruleState.lastFired != Long.MIN_VALUE && now - ruleState.lastFired < rule.getCooldownMs()) {
+            ruleState.fired = true;
+            logger.fine("Rule " + rule.getName() + " for robot " + robotId + " is cooling down");
+            return;
+        }
+        long waitMs = acquireToken();
+        if (waitMs > 0) {
+            rateLimited.incrementAndGet();
+            logger.fine("Rule " + rule.getName() + " for robot " + robotId + " deferred by the action rate limit");
+            schedule(robotId, context, index, waitMs);
+            return;
+        }
+        ruleState.fired = true;
+        ruleState.lastFired = now;
+        ruleState.edges.clear();
+        RobotState state = context.state;
+        fired.incrementAndGet();
+        actions.add(() -> run(rule, robotId, state));
+    }
+
+    /**
+     * Re-checks a rule after a delay, if its condition has not changed in between. Must hold the context's lock.
+     */
+    private void schedule(String robotId, RobotContext context, int index, long delayMs) {
+        RuleState ruleState = context.rules[index];
+        long generation = ruleState.generation;
+        if (timer.isShutdown()) {
+            return;
+        }
+        ruleState.timer = timer.schedule(() -> {
+            List<Runnable> actions = new ArrayList<>();
+            synchronized (context) {
+                if (ruleState.generation != generation || robots.get(robotId) != context) {
+                    return;
+                }
+                ruleState.timer = null;
+                fireIfDue(robotId, context, index, nowMs(), actions);
+            }
+            for (Runnable action : actions) {
+                action.run();
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts an action and logs its outcome.
+     */
+    private void run(Rule rule, String robotId, RobotState state) {
+        logger.info("Rule " + rule.getName() + " fired for robot " + robotId);
+        try {
+            rule.getAction().execute(robotId, state).whenComplete((result, error) -> {
+                if (error != null) {
+                    failed.incrementAndGet();
+                    logger.warning("Action of rule " + rule.getName() + " failed for robot " + robotId + ": " + error.getMessage());
+                }
+            });
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            logger.log(Level.WARNING, "Action of rule " + rule.getName() + " failed for robot " + robotId, e);
+        }
+    }
+
+    /**
+     * Takes a token from the action rate limit.
+     *
+     * @return 0 if a token was taken, otherwise the time until one is available
+     */
+    private synchronized long acquireToken() {
+        long nowNanos = System.nanoTime();
+        double capacity = Math.max(1, maxActionsPerSecond);
+        tokens = Math.min(capacity, tokens + (nowNanos - lastRefillNanos) / 1e9 * maxActionsPerSecond);
+        lastRefillNanos = nowNanos;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / maxActionsPerSecond * 1000));
+    }
+
+    private static long nowMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * Observer logging stream termination; the streaming client reconnects on errors.
+     */
+    private abstract static class EngineObserver<T> implements StreamObserver<T> {
+        private final String name;
+
+        EngineObserver(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            logger.warning(name + " stream for rules failed: " + t.getMessage());
+        }
+
+        @Override
+        public void onCompleted() {
+            logger.info(name + " stream for rules completed");
+        }
+    }
+
+    /**
+     * Merged state and rule tracking of one robot. Guarded by its own monitor.
+     */
+    private final class RobotContext {
+        private RobotState state = RobotState.getDefaultInstance();
+        private final RuleState[] rules = new RuleState[RuleEngine.this.rules.size()];
+
+        RobotContext() {
+            for (int i = 0; i < rules.length; i++) {
+                rules[i] = new RuleState();
+            }
+        }
+    }
+
+    /**
+     * Tracking of one rule for one robot.
+     */
+    private static final class RuleState {
+        private final ArrayDeque<Long> edges = new ArrayDeque<>();
+        private boolean active;
+        private boolean fired;
+        private long since;
+        private long lastFired = Long.MIN_VALUE;
+        private long generation;
+        private ScheduledFuture<?> timer;
+
+        /**
+         * Ends the current period: cancels a pending timer and allows the rule to fire again.
+         */
+        void reset() {
+            generation++;
+            fired = false;
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package com.example.state;
+
+import com.google.protobuf.Descriptors.EnumDescriptor;
+import com.google.protobuf.ProtocolMessageEnum;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+import bearrobotics.api.v1.core.Errors.ErrorCode;
+import bearrobotics.api.v1.core.Localization.LocalizationState;
+import bearrobotics.api.v1.core.MissionStatus.MissionState;
+import bearrobotics.api.v1.core.RobotStatus.BatteryState;
+import bearrobotics.api.v1.core.RobotStatus.EmergencyStopState;
+import bearrobotics.api.v1.core.RobotStatus.RobotConnection;
+import bearrobotics.api.v1.core.RobotStatus.RobotState;
+import bearrobotics.api.v1.core.RobotStatus.StuckState;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusResponse;
+
+/**
+ * Secondary indexes over the live state of the fleet, for predicate queries such as
+ * "robots at location X below 20% charge without a running mission".
+ *
+ * Every robot gets a dense slot number and each index is a set of bitmaps over slots: one per value
+ * of each indexed enum field, one per location, one per error severity and error code present, and
+ * one per charge percent (0-100) so a charge range is the union of its buckets. Indexes are updated
+ * incrementally from each robot status event by clearing the robot's bits for its previous values
+ * and setting those for the new ones. A query intersects a handful of bitmaps, so it costs a few
+ * word operations per 64 robots instead of a scan over every robot's protobuf.
+ *
+ * Updates and queries may run concurrently; queries see each update entirely or not at all.
+ */
+public class FleetIndex {
+    private static final int CHARGE_BUCKETS = 101;
+    private static final int NONE = -1;
+
+    /**
+     * Enum fields of {@code RobotState} with a bitmap index.
+     */
+    public enum Field {
+        CONNECTION(RobotConnection.State.getDescriptor(), state -> state.getConnection().getStateValue()),
+        BATTERY_STATE(BatteryState.State.getDescriptor(), state -> state.getBattery().getStateValue()),
+        EMERGENCY_STOP(EmergencyStopState.Emergency.getDescriptor(), state -> state.getEmergencyStop().getEmergencyValue()),
+        MISSION_STATE(MissionState.State.getDescriptor(), state -> state.getMission().getStateValue()),
+        STUCK_STATE(StuckState.State.getDescriptor(), state -> state.getNavigationState().getStuckState().getStateValue()),
+        LOCALIZATION_STATE(LocalizationState.State.getDescriptor(), state -> state.getLocalizationState().getStateValue());
+
+        private final EnumDescriptor type;
+        private final ToIntFunction<RobotState> extractor;
+
+        Field(EnumDescriptor type, ToIntFunction<RobotState> extractor) {
+            this.type = type;
+            this.extractor = extractor;
+        }
+    }
+
+    private static final Field[] FIELDS = Field.values();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final List<String> robotIds = new ArrayList<>();
+    private final List<Integer> freeSlots = new ArrayList<>();
+    // Robots with a state; a robot only given a location does not match queries yet
+    private final BitSet present = new BitSet();
+    private final List<Map<Integer, BitSet>> enumIndexes = new ArrayList<>();
+    private final Map<String, BitSet> byLocation = new HashMap<>();
+    private final Map<Integer, BitSet> bySeverity = new HashMap<>();
+    private final Map<Integer, BitSet> byErrorCode = new HashMap<>();
+    private final BitSet[] byCharge = new BitSet[CHARGE_BUCKETS];
+
+    // Indexed values per slot, so an update knows which bits to clear
+    private int[][] enumValues = new int[FIELDS.length][16];
+    private int[] chargeValues = new int[16];
+    private String[] locations = new String[16];
+    private int[][] errorSeverities = new int[16][];
+    private int[][] errorCodes = new int[16][];
+
+    public FleetIndex() {
+        for (int i = 0; i < FIELDS.length; i++) {
+            enumIndexes.add(new HashMap<>());
+        }
+        for (int i = 0; i < CHARGE_BUCKETS; i++) {
+            byCharge[i] = new BitSet();
+        }
+    }
+
+    /**
+     * Indexes the state from a robot status event.
+     *
+     * @param response The event
+     */
+    public void onRobotStatus(SubscribeRobotStatusResponse response) {
+        update(response.getRobotId(), response.getRobotState());
+    }
+
+    /**
+     * Indexes a robot's state, replacing its previous state.
+     *
+     * @param robotId The robot ID
+     * @param state The robot's current state
+     */
+    public void update(String robotId, RobotState state) {
+        int[] severities = new int[state.getErrorCodes().getCodesCount()];
+        int[] codes = new int[severities.length];
+        for (int i = 0; i < severities.length; i++) {
+            ErrorCode error = state.getErrorCodes().getCodes(i);
+            severities[i] = error.getSeverityValue();
+            codes[i] = error.getCode();
+        }
+        lock.writeLock().lock();
+        try {
+            int slot = slotFor(robotId);
+            for (int f = 0; f < FIELDS.length; f++) {
+                int value = FIELDS[f].extractor.applyAsInt(state);
+                int previous = enumValues[f][slot];
+                if (value != previous) {
+                    clear(enumIndexes.get(f), previous, slot);
+                    enumIndexes.get(f).computeIfAbsent(value, key -> new BitSet()).set(slot);
+                    enumValues[f][slot] = value;
+                }
+            }
+            int charge = Math.max(0, Math.min(CHARGE_BUCKETS - 1, state.getBattery().getChargePercent()));
+            if (chargeValues[slot] != NONE) {
+                byCharge[chargeValues[slot]].clear(slot);
+            }
+            byCharge[charge].set(slot);
+            chargeValues[slot] = charge;
+            replace(bySeverity, errorSeverities, slot, severities);
+            replace(byErrorCode, errorCodes, slot, codes);
+            present.set(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the location a robot belongs to. Robot states carry no location, so this usually comes
+     * from the location selector of the stream that delivered the robot.
+     *
+     * @param robotId The robot ID
+     * @param locationId The location ID, or null to clear it
+     */
+    public void setLocation(String robotId, String locationId) {
+        lock.writeLock().lock();
+        try {
+            int slot = slotFor(robotId);
+            if (locations[slot] != null) {
+                clear(byLocation, locations[slot], slot);
+            }
+            if (locationId != null) {
+                byLocation.computeIfAbsent(locationId, key -> new BitSet()).set(slot);
+            }
+            locations[slot] = locationId;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a robot from all indexes.
+     *
+     * @param robotId The robot ID
+     */
+    public void remove(String robotId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(robotId);
+            if (slot == null) {
+                return;
+            }
+            for (int f = 0; f < FIELDS.length; f++) {
+                clear(enumIndexes.get(f), enumValues[f][slot], slot);
+            }
+            if (chargeValues[slot] != NONE) {
+                byCharge[chargeValues[slot]].clear(slot);
+            }
+            if (locations[slot] != null) {
+                clear(byLocation, locations[slot], slot);
+            }
+            replace(bySeverity, errorSeverities, slot, new int[0]);
+            replace(byErrorCode, errorCodes, slot, new int[0]);
+            present.clear(slot);
+            robotIds.set(slot, null);
+            freeSlots.add(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of indexed robots.
+     *
+     * @return The robot count
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Starts a query matching all indexed robots; each condition narrows it down.
+     *
+     * @return The query
+     */
+    public Query query() {
+        return new Query();
+    }
+
+    // Must hold the write lock
+    private int slotFor(String robotId) {
+        Integer existing = slots.get(robotId);
+        if (existing != null) {
+            return existing;
+        }
+        int slot;
+        if (freeSlots.isEmpty()) {
+            slot = robotIds.size();
+            robotIds.add(robotId);
+            if (slot == chargeValues.length) {
+                grow(slot * 2);
+            }
+        } else {
+            slot = freeSlots.remove(freeSlots.size() - 1);
+            robotIds.set(slot, robotId);
+        }
+        slots.put(robotId, slot);
+        for (int f = 0; f < FIELDS.length; f++) {
+            enumValues[f][slot] = NONE;
+        }
+        chargeValues[slot] = NONE;
+        locations[slot] = null;
+        errorSeverities[slot] = new int[0];
+        errorCodes[slot] = new int[0];
+        return slot;
+    }
+
+    // Must hold the write lock
+    private void grow(int capacity) {
+        for (int f = 0; f < FIELDS.length; f++) {
+            enumValues[f] = Arrays.copyOf(enumValues[f], capacity);
+        }
+        chargeValues = Arrays.copyOf(chargeValues, capacity);
+        locations = Arrays.copyOf(locations, capacity);
+        errorSeverities = Arrays.copyOf(errorSeverities, capacity);
+        errorCodes = Arrays.copyOf(errorCodes, capacity);
+    }
+
+    /**
+     * Moves a slot of a multi-valued index from its previous values to new ones. Must hold the write lock.
+     *
+     * @param index The index
+     * @param values The indexed values per slot
+     * @param slot The slot
+     * @param next The new values
+     */
+    private static void replace(Map<Integer, BitSet> index, int[][] values, int slot, int[] next) {
+        for (int value : values[slot]) {
+            clear(index, value, slot);
+        }
+        for (int value : next) {
+            index.computeIfAbsent(value, key -> new BitSet()).set(slot);
+        }
+        values[slot] = next;
+    }
+
+    // Must hold the write lock
+    private static <K> void clear(Map<K, BitSet> index, K key, int slot) {
+        BitSet bits = index.get(key);
+        if (bits != null) {
+            bits.clear(slot);
+            if (bits.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    /**
+     * A conjunction of conditions over the indexes. Conditions are only recorded until the query is
+     * run by {@link #robotIds()} or {@link #count()}, so a query can be built once and run repeatedly.
+     */
+    public final class Query {
+        private final List<Consumer<BitSet>> conditions = new ArrayList<>();
+
+        private Query() {
+        }
+
+        /**
+         * Matches robots at a location.
+         */
+        public Query location(String locationId) {
+            conditions.add(result -> and(result, byLocation.get(locationId)));
+            return this;
+        }
+
+        /**
+         * Matches robots whose field has one of the values.
+         */
+        public Query where(Field field, ProtocolMessageEnum... values) {
+            int[] numbers = numbers(field, values);
+            conditions.add(result -> result.and(union(enumIndexes.get(field.ordinal()), numbers)));
+            return this;
+        }
+
+        /**
+         * Matches robots whose field has none of the values.
+         */
+        public Query whereNot(Field field, ProtocolMessageEnum... values) {
+            int[] numbers = numbers(field, values);
+            conditions.add(result -> result.andNot(union(enumIndexes.get(field.ordinal()), numbers)));
+            return this;
+        }
+
+        /**
+         * Matches robots whose charge percent is within a range, both ends inclusive.
+         */
+        public Query chargeBetween(int minPercent, int maxPercent) {
+            int min = Math.max(0, minPercent);
+            int max = Math.min(CHARGE_BUCKETS - 1, maxPercent);
+            conditions.add(result -> {
+                BitSet union = new BitSet();
+                for (int percent = min; percent <= max; percent++) {
+                    union.or(byCharge[percent]);
+                }
+                result.and(union);
+            });
+            return this;
+        }
+
+        /**
+         * Matches robots whose charge percent is below a threshold.
+         */
+        public Query chargeBelow(int percent) {
+            return chargeBetween(0, percent - 1);
+        }
+
+        /**
+         * Matches robots reporting at least one error of one of the severities.
+         */
+        public Query errorSeverity(ErrorCode.Severity... severities) {
+            int[] numbers = new int[severities.length];
+            for (int i = 0; i < severities.length; i++) {
+                numbers[i] = severities[i].getNumber();
+            }
+            conditions.add(result -> result.and(union(bySeverity, numbers)));
+            return this;
+        }
+
+        /**
+         * Matches robots reporting an error code.
+         */
+        public Query errorCode(int code) {
+            conditions.add(result -> and(result, byErrorCode.get(code)));
+            return this;
+        }
+
+        /**
+         * Runs the query.
+         *
+         * @return IDs of the matching robots
+         */
+        public List<String> robotIds() {
+            lock.readLock().lock();
+            try {
+                BitSet result = evaluate();
+                List<String> ids = new ArrayList<>(result.cardinality());
+                for (int slot = result.nextSetBit(0); slot >= 0; slot = result.nextSetBit(slot + 1)) {
+                    ids.add(robotIds.get(slot));
+                }
+                return ids;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Runs the query, counting matches without collecting them.
+         *
+         * @return The number of matching robots
+         */
+        public int count() {
+            lock.readLock().lock();
+            try {
+                return evaluate().cardinality();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // Must hold the read lock
+        private BitSet evaluate() {
+            BitSet result = (BitSet) present.clone();
+            for (Consumer<BitSet> condition : conditions) {
+                if (result.isEmpty()) {
+                    break;
+                }
+                condition.accept(result);
+            }
+            return result;
+        }
+
+        private void and(BitSet result, BitSet bits) {
+            if (bits == null) {
+                result.clear();
+            } else {
+                result.and(bits);
+            }
+        }
+
+        private BitSet union(Map<Integer, BitSet> index, int[] values) {
+            if (values.length == 1) {
+                BitSet bits = index.get(values[0]);
+                return bits == null ? new BitSet() : bits;
+            }
+            BitSet union = new BitSet();
+            for (int value : values) {
+                BitSet bits = index.get(value);
+                if (bits != null) {
+                    union.or(bits);
+                }
+            }
+            return union;
+        }
+
+        private int[] numbers(Field field, ProtocolMessageEnum[] values) {
+            int[] numbers = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                if (values[i].getDescriptorForType() != field.type) {
+                    throw new IllegalArgumentException(values[i] + " is not a value of " + field);
+                }
+                numbers[i] = values[i].getNumber();
+            }
+            return numbers;
+        }
+    }
+}
@@ -0,0 +1,546 @@
+package com.example.state;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import bearrobotics.api.v1.core.Metadata.EventMetadata;
+import bearrobotics.api.v1.core.RobotStatus.RobotState;
+import bearrobotics.api.v1.services.cloud.ApiService.GetCurrentMapResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusResponse;
+
+/**
+ * Latest known state of every robot, checkpointed to a snapshot file so a restarted process starts
+ * with the fleet's last state instead of an empty view.
+ *
+ * For each robot the store keeps the last {@code RobotState}, the last sequence number and event
+ * time per stream, and the current map and annotation IDs. A checkpoint is written periodically when
+ * anything changed, by writing a temporary file through its channel and renaming it over the snapshot,
+ * so a crash never leaves a torn snapshot; a CRC guards against corruption. The snapshot is encoded
+ * into one reused buffer, and no file is memory-mapped, since a mapped file cannot be replaced on Windows.
+ *
+ * On {@link #start()} the snapshot is loaded and every entry is marked stale. Live events then
+ * reconcile with it: an event is accepted if its sequence number is newer than the stored one, or 0
+ * (counter reset) while the stored one is not already 0, as in {@link com.example.streaming.SequenceTracker}. While a stream position is
+ * still stale, an event with a later timestamp is accepted even if its sequence number is lower,
+ * since the robot may have restarted its counter while this process was down. Older replays are
+ * discarded either way.
+ */
+public class FleetStateStore {
+    private static final Logger logger = Logger.getLogger(FleetStateStore.class.getName());
+    private static final int MAGIC = 0x42524653;
+    private static final int VERSION = 1;
+
+    /**
+     * Stream name under which {@link #onRobotStatus} tracks sequence numbers.
+     */
+    public static final String ROBOT_STATUS = "RobotStatus";
+
+    private final Path file;
+    private final long checkpointIntervalMs;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "FleetStateStore-Checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile long snapshotTimeMs = -1;
+    // Guarded by this; reused across checkpoints and grown as needed
+    private ByteBuffer checkpointBuffer = ByteBuffer.allocate(0);
+
+    /**
+     * Creates a store checkpointing every 5 seconds.
+     *
+     * @param file The snapshot file
+     */
+    public FleetStateStore(Path file) {
+        this(file, 5000);
+    }
+
+    /**
+     * Creates a store.
+     *
+     * @param file The snapshot file
+     * @param checkpointIntervalMs Interval between checkpoints; bounds how much is lost on a crash
+     */
+    public FleetStateStore(Path file, long checkpointIntervalMs) {
+        this.file = file;
+        this.checkpointIntervalMs = checkpointIntervalMs;
+    }
+
+    /**
+     * Loads the snapshot, if there is a readable one, and starts periodic checkpoints.
+     * A missing or corrupt snapshot is not an error; the store then starts empty.
+     *
+     * @return The number of robots loaded from the snapshot
+     */
+    public int start() {
+        int loaded = 0;
+        try {
+            loaded = load();
+        } catch (NoSuchFileException e) {
+            logger.info("No fleet state snapshot at " + file);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Ignoring unreadable fleet state snapshot " + file, e);
+        }
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Fleet state checkpoint failed", e);
+            }
+        }, checkpointIntervalMs, checkpointIntervalMs, TimeUnit.MILLISECONDS);
+        return loaded;
+    }
+
+    /**
+     * Records a robot status event if it is newer than the stored state.
+     *
+     * @param response The event
+     * @return true if the event was accepted, false if it is a duplicate or older than the stored state
+     */
+    public boolean onRobotStatus(SubscribeRobotStatusResponse response) {
+        Entry entry = entries.computeIfAbsent(response.getRobotId(), id -> new Entry());
+        synchronized (entry) {
+            if (!entry.advance(ROBOT_STATUS, response.getMetadata())) {
+                return false;
+            }
+            entry.state = response.getRobotState();
+            entry.stale = false;
+        }
+        dirty.set(true);
+        return true;
+    }
+
+    /**
+     * Records the position of an event of any stream, e.g. to discard replays after a reconnect.
+     *
+     * @param stream Name identifying the stream, e.g. the RPC name
+     * @param robotId The robot the event belongs to
+     * @param metadata The event metadata
+     * @return true if the event is newer than the stored position and should be processed
+     */
+    public boolean accept(String stream, String robotId, EventMetadata metadata) {
+        Entry entry = entries.computeIfAbsent(robotId, id -> new Entry());
+        boolean accepted;
+        synchronized (entry) {
+            accepted = entry.advance(stream, metadata);
+        }
+        if (accepted) {
+            dirty.set(true);
+        }
+        return accepted;
+    }
+
+    /**
+     * Records the map and annotation a robot uses, e.g. after {@code SwitchMap}.
+     *
+     * @param robotId The robot ID
+     * @param mapId The map ID
+     * @param annotationId The annotation ID
+     */
+    public void setMap(String robotId, String mapId, String annotationId) {
+        Entry entry = entries.computeIfAbsent(robotId, id -> new Entry());
+        synchronized (entry) {
+            entry.mapId = mapId;
+            entry.annotationId = annotationId;
+        }
+        dirty.set(true);
+    }
+
+    /**
+     * Records the map and annotation from a {@code GetCurrentMap} response.
+     *
+     * @param robotId The robot the map was requested for
+     * @param response The response
+     */
+    public void onCurrentMap(String robotId, GetCurrentMapResponse response) {
+        setMap(robotId, response.getMap().getMapId(), response.getMap().getAnnotation().getAnnotationId());
+    }
+
+    /**
+     * Gets the last known state of a robot.
+     *
+     * @param robotId The robot ID
+     * @return The state, or null if none is known
+     */
+    public RobotState getRobotState(String robotId) {
+        Entry entry = entries.get(robotId);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            return entry.state;
+        }
+    }
+
+    /**
+     * Checks whether a robot's state comes from the snapshot and has not been confirmed by a live event yet.
+     *
+     * @param robotId The robot ID
+     * @return true if the state is stale
+     */
+    public boolean isStale(String robotId) {
+        Entry entry = entries.get(robotId);
+        if (entry == null) {
+            return false;
+        }
+        synchronized (entry) {
+            return entry.stale;
+        }
+    }
+
+    /**
+     * Gets the map a robot uses.
+     *
+     * @param robotId The robot ID
+     * @return The map ID, or null if unknown
+     */
+    public String getMapId(String robotId) {
+        Entry entry = entries.get(robotId);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            return entry.mapId;
+        }
+    }
+
+    /**
+     * Gets the annotation a robot uses.
+     *
+     * @param robotId The robot ID
+     * @return The annotation ID, or null if unknown
+     */
+    public String getAnnotationId(String robotId) {
+        Entry entry = entries.get(robotId);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            return entry.annotationId;
+        }
+    }
+
+    /**
+     * Gets the last accepted sequence number of a stream for a robot.
+     *
+     * @param stream The stream name
+     * @param robotId The robot ID
+     * @return The sequence number, or -1 if none is known
+     */
+    public long getSequenceNumber(String stream, String robotId) {
+        Entry entry = entries.get(robotId);
+        if (entry == null) {
+            return -1;
+        }
+        synchronized (entry) {
+            Position position = entry.positions.get(stream);
+            return position == null ? -1 : position.sequenceNumber;
+        }
+    }
+
+    /**
+     * Gets the IDs of all robots with stored state.
+     *
+     * @return A snapshot of the robot IDs
+     */
+    public Set<String> getRobotIds() {
+        return new TreeSet<>(entries.keySet());
+    }
+
+    /**
+     * Gets the time the loaded snapshot was written, to judge how old stale entries can be.
+     *
+     * @return Epoch milliseconds, or -1 if no snapshot was loaded
+     */
+    public long getSnapshotTimeMs() {
+        return snapshotTimeMs;
+    }
+
+    /**
+     * Forgets a robot, e.g. after it left the fleet.
+     *
+     * @param robotId The robot ID
+     */
+    public void remove(String robotId) {
+        if (entries.remove(robotId) != null) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Writes a checkpoint now if anything changed since the last one.
+     *
+     * @throws IOException If the snapshot cannot be written
+     */
+    public synchronized void checkpoint() throws IOException {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        List<Record> records = new ArrayList<>(entries.size());
+        int size = 4 + 1 + 8 + 4;
+        for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+            Record record;
+            synchronized (mapEntry.getValue()) {
+                record = new Record(mapEntry.getKey(), mapEntry.getValue());
+            }
+            records.add(record);
+            size += record.size();
+        }
+        size += 4;
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (checkpointBuffer.capacity() < size) {
+                checkpointBuffer = ByteBuffer.allocate(Math.max(size, checkpointBuffer.capacity() * 2));
+            }
+            ByteBuffer buffer = checkpointBuffer.clear().limit(size);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                buffer.putInt(MAGIC);
+                buffer.put((byte) VERSION);
+                buffer.putLong(System.currentTimeMillis());
+                buffer.putInt(records.size());
+                for (Record record : records) {
+                    record.writeTo(buffer);
+                }
+                CRC32 crc = new CRC32();
+                crc.update(buffer.duplicate().flip());
+                buffer.putInt((int) crc.getValue());
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            dirty.set(true);
+            throw e;
+        }
+        logger.fine("Checkpointed state of " + records.size() + " robots to " + file);
+    }
+
+    /**
+     * Stops periodic checkpoints and writes a final one.
+     *
+     * @throws IOException If the final checkpoint cannot be written
+     */
+    public void shutdown() throws IOException {
+        scheduler.shutdownNow();
+        checkpoint();
+    }
+
+    /**
+     * Loads the snapshot into the store, marking every loaded entry stale.
+     * Robots that already received live events keep their live state.
+     *
+     * @return The number of robots loaded
+     * @throws IOException If the snapshot cannot be read or is corrupt
+     */
+    private int load() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        int loaded = 0;
+        try {
+            ByteBuffer body = buffer.duplicate().limit(buffer.limit() - 4);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if (buffer.getInt(buffer.limit() - 4) != (int) crc.getValue()) {
+                throw new IOException("Checksum mismatch");
+            }
+            if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+                throw new IOException("Not a fleet state snapshot");
+            }
+            long savedAtMs = buffer.getLong();
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                String robotId = readString(buffer);
+                Entry entry = Record.readEntry(buffer);
+                if (entries.putIfAbsent(robotId, entry) == null) {
+                    loaded++;
+                }
+            }
+            snapshotTimeMs = savedAtMs;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Truncated fleet state snapshot", e);
+        }
+        logger.info("Loaded stale state of " + loaded + " robots from " + file);
+        return loaded;
+    }
+
+    private static void writeString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Same rule as SequenceTracker: a reset to 0 is accepted once
+    private static boolean isNewer(long sequenceNumber, long previous) {
+        return sequenceNumber == 0 ? previous != 0 : sequenceNumber > previous;
+    }
+
+    private static long timestampMs(EventMetadata metadata) {
+        return metadata.getTimestamp().getSeconds() * 1000 + metadata.getTimestamp().getNanos() / 1_000_000;
+    }
+
+    /**
+     * Last accepted event of one stream for one robot.
+     */
+    private static final class Position {
+        private final long sequenceNumber;
+        private final long timestampMs;
+        private final boolean stale;
+
+        Position(long sequenceNumber, long timestampMs, boolean stale) {
+            this.sequenceNumber = sequenceNumber;
+            this.timestampMs = timestampMs;
+            this.stale = stale;
+        }
+    }
+
+    /**
+     * State of one robot. Guarded by its own monitor.
+     */
+    private static final class Entry {
+        private final Map<String, Position> positions = new HashMap<>();
+        private RobotState state;
+        private String mapId;
+        private String annotationId;
+        private boolean stale;
+
+        /**
+         * Moves a stream's position to an event if the event is newer.
+         *
+         * @param stream The stream name
+         * @param metadata The event metadata
+         * @return true if the event is newer and the position moved
+         */
+        boolean advance(String stream, EventMetadata metadata) {
+            long sequenceNumber = metadata.getSequenceNumber();
+            long timestampMs = timestampMs(metadata);
+            Position position = positions.get(stream);
+            if (position != null && !isNewer(sequenceNumber, position.sequenceNumber)
+                    && !(position.stale && timestampMs > position.timestampMs)) {
+                return false;
+            }
+            positions.put(stream, new Position(sequenceNumber, timestampMs, false));
+            return true;
+        }
+    }
+
+    /**
+     * Copy of an entry taken for a checkpoint, with its strings and state already serialized.
+     */
+    private static final class Record {
+        private final byte[] robotId;
+        private final byte[] mapId;
+        private final byte[] annotationId;
+        private final byte[] state;
+        private final List<byte[]> streams = new ArrayList<>();
+        private final List<Position> positions = new ArrayList<>();
+
+        // Must hold the entry's lock
+        Record(String robotId, Entry entry) {
+            this.robotId = robotId.getBytes(StandardCharsets.UTF_8);
+            this.mapId = entry.mapId == null ? null : entry.mapId.getBytes(StandardCharsets.UTF_8);
+            this.annotationId = entry.annotationId == null ? null : entry.annotationId.getBytes(StandardCharsets.UTF_8);
+            this.state = entry.state == null ? null : entry.state.toByteArray();
+            for (Map.Entry<String, Position> position : entry.positions.entrySet()) {
+                streams.add(position.getKey().getBytes(StandardCharsets.UTF_8));
+                positions.add(position.getValue());
+            }
+        }
+
+        int size() {
+            int size = 4 + robotId.length + 1 + 4 + 16 * positions.size();
+            size += mapId == null ? 0 : 4 + mapId.length;
+            size += annotationId == null ? 0 : 4 + annotationId.length;
+            size += state == null ? 0 : 4 + state.length;
+            for (byte[] stream : streams) {
+                size += 4 + stream.length;
+            }
+            return size;
+        }
+
+        /**
+         * Writes the record: robot ID, presence flags, optional map ID, annotation ID and state,
+         * then the stream positions.
+         */
+        void writeTo(ByteBuffer buffer) {
+            writeString(buffer, robotId);
+            buffer.put((byte) ((mapId != null ? 1 : 0) | (annotationId != null ? 2 : 0) | (state != null ? 4 : 0)));
+            if (mapId != null) {
+                writeString(buffer, mapId);
+            }
+            if (annotationId != null) {
+                writeString(buffer, annotationId);
+            }
+            if (state != null) {
+                writeString(buffer, state);
+            }
+            buffer.putInt(streams.size());
+            for (int i = 0; i < streams.size(); i++) {
+                writeString(buffer, streams.get(i));
+                buffer.putLong(positions.get(i).sequenceNumber);
+                buffer.putLong(positions.get(i).timestampMs);
+            }
+        }
+
+        /**
+         * Reads a record written by {@link #writeTo} after its robot ID, as a stale entry.
+         */
+        static Entry readEntry(ByteBuffer buffer) throws InvalidProtocolBufferException {
+            Entry entry = new Entry();
+            entry.stale = true;
+            int flags = buffer.get();
+            if ((flags & 1) != 0) {
+                entry.mapId = readString(buffer);
+            }
+            if ((flags & 2) != 0) {
+                entry.annotationId = readString(buffer);
+            }
+            if ((flags & 4) != 0) {
+                byte[] state = new byte[buffer.getInt()];
+                buffer.get(state);
+                entry.state = RobotState.parseFrom(state);
+            }
+            int streamCount = buffer.getInt();
+            for (int i = 0; i < streamCount; i++) {
+                String stream = readString(buffer);
+                entry.positions.put(stream, new Position(buffer.getLong(), buffer.getLong(), true));
+            }
+            return entry;
+        }
+    }
+}
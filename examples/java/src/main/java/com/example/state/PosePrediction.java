@@ -0,0 +1,96 @@
+package com.example.state;
+
+import bearrobotics.api.v1.core.PoseOuterClass.Pose;
+
+/**
+ * A predicted pose with error bounds, filled in by {@link PosePredictor}.
+ *
+ * Instances are mutable so a caller predicting many poses per frame can reuse one and allocate nothing.
+ */
+public class PosePrediction {
+    private double xMeters;
+    private double yMeters;
+    private double headingRadians;
+    private double positionErrorMeters;
+    private double headingErrorRadians;
+    private long ageMs;
+    private boolean extrapolated;
+
+    /**
+     * @return Predicted x coordinate in meters
+     */
+    public double getXMeters() {
+        return xMeters;
+    }
+
+    /**
+     * @return Predicted y coordinate in meters
+     */
+    public double getYMeters() {
+        return yMeters;
+    }
+
+    /**
+     * @return Predicted heading in radians, from -pi to pi
+     */
+    public double getHeadingRadians() {
+        return headingRadians;
+    }
+
+    /**
+     * @return Radius around the predicted position the robot is within, given the predictor's limits
+     */
+    public double getPositionErrorMeters() {
+        return positionErrorMeters;
+    }
+
+    /**
+     * @return Largest difference between the predicted and the actual heading, at most pi
+     */
+    public double getHeadingErrorRadians() {
+        return headingErrorRadians;
+    }
+
+    /**
+     * @return Time from the last pose update to the predicted instant
+     */
+    public long getAgeMs() {
+        return ageMs;
+    }
+
+    /**
+     * @return true if the pose was moved along the robot's twist, false if the twist was unknown or
+     *         stale and the last pose was held
+     */
+    public boolean isExtrapolated() {
+        return extrapolated;
+    }
+
+    /**
+     * @return The predicted pose as a message
+     */
+    public Pose toPose() {
+        return Pose.newBuilder()
+                .setXMeters((float) xMeters)
+                .setYMeters((float) yMeters)
+                .setHeadingRadians((float) headingRadians)
+                .build();
+    }
+
+    void set(double xMeters, double yMeters, double headingRadians, double positionErrorMeters,
+             double headingErrorRadians, long ageMs, boolean extrapolated) {
+        this.xMeters = xMeters;
+        this.yMeters = yMeters;
+        this.headingRadians = headingRadians;
+        this.positionErrorMeters = positionErrorMeters;
+        this.headingErrorRadians = headingErrorRadians;
+        this.ageMs = ageMs;
+        this.extrapolated = extrapolated;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PosePrediction{x=%.3f, y=%.3f, heading=%.3f, error=%.3fm/%.3frad, age=%dms}",
+                xMeters, yMeters, headingRadians, positionErrorMeters, headingErrorRadians, ageMs);
+    }
+}
@@ -0,0 +1,338 @@
+package com.example.state;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+import bearrobotics.api.v1.core.Metadata.EventMetadata;
+import bearrobotics.api.v1.core.PoseOuterClass.Pose;
+import bearrobotics.api.v1.core.PoseOuterClass.PoseWithMetadata;
+import bearrobotics.api.v1.core.RobotStatus.RobotState;
+import bearrobotics.api.v1.core.TwistOuterClass.Twist;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotPoseResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusResponse;
+
+/**
+ * Predicts where each robot is between pose updates by dead reckoning from its last pose and twist.
+ *
+ * The robot is assumed to keep its last linear and angular velocity, so it moves along a circular arc
+ * (a straight line when it is not turning). The error bound grows with the time since the last pose
+ * from the limits the robot can deviate by: the pose's own error, the distance covered by the largest
+ * acceleration ({@code a*t^2/2}), and the lateral drift from the largest angular acceleration
+ * ({@code v*alpha*t^3/6}). Predictions further than the horizon are held at the horizon while the bound
+ * keeps growing at the largest speed, and a robot without a twist close in time to its pose is
+ * assumed to be anywhere within the largest speed of its last pose.
+ *
+ * Per-robot state lives in primitive arrays indexed by a dense slot, and predictions are written to a
+ * caller-owned {@link PosePrediction} under an optimistic read, so predicting allocates nothing and
+ * does not block pose updates. Times are event timestamps, on the robots' clock.
+ */
+public class PosePredictor {
+    // Layout of a slot in the state array
+    private static final int X = 0;
+    private static final int Y = 1;
+    private static final int HEADING = 2;
+    private static final int SPEED = 3;
+    private static final int HEADING_RATE = 4;
+    private static final int STRIDE = 5;
+    // Layout of a slot in the times array
+    private static final int POSE_TIME = 0;
+    private static final int TWIST_TIME = 1;
+    private static final int TIME_STRIDE = 2;
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final double poseErrorMeters;
+    private final double maxSpeed;
+    private final double maxAcceleration;
+    private final double maxAngularAcceleration;
+    private final long horizonMs;
+    private final long maxTwistAgeMs;
+
+    private final StampedLock lock = new StampedLock();
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+
+    // Replaced when growing; written under the write lock
+    private double[] state = new double[16 * STRIDE];
+    private long[] times = new long[16 * TIME_STRIDE];
+    private int size;
+
+    private PosePredictor(Builder builder) {
+        this.poseErrorMeters = builder.poseErrorMeters;
+        this.maxSpeed = builder.maxSpeed;
+        this.maxAcceleration = builder.maxAcceleration;
+        this.maxAngularAcceleration = builder.maxAngularAcceleration;
+        this.horizonMs = builder.horizonMs;
+        this.maxTwistAgeMs = builder.maxTwistAgeMs;
+        Arrays.fill(times, NONE);
+    }
+
+    /**
+     * Records the pose and twist from a robot status event.
+     *
+     * @param response The event
+     */
+    public void onRobotStatus(SubscribeRobotStatusResponse response) {
+        RobotState robotState = response.getRobotState();
+        long timeMs = timestampMs(response.getMetadata());
+        if (robotState.hasPose()) {
+            updatePose(response.getRobotId(), robotState.getPose(), timeMs);
+        }
+        if (robotState.hasTwist()) {
+            updateTwist(response.getRobotId(), robotState.getTwist(), timeMs);
+        }
+    }
+
+    /**
+     * Records the poses from a robot pose event.
+     *
+     * @param response The event
+     */
+    public void onRobotPose(SubscribeRobotPoseResponse response) {
+        for (Map.Entry<String, PoseWithMetadata> entry : response.getPosesMap().entrySet()) {
+            updatePose(entry.getKey(), entry.getValue().getPose(), timestampMs(entry.getValue().getMetadata()));
+        }
+    }
+
+    /**
+     * Records a robot's pose. Poses older than the last one are ignored.
+     *
+     * @param robotId The robot ID
+     * @param pose The pose
+     * @param timeMs Time of the pose
+     */
+    public void updatePose(String robotId, Pose pose, long timeMs) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotFor(robotId);
+            int t = slot * TIME_STRIDE;
+            if (times[t + POSE_TIME] != NONE && timeMs < times[t + POSE_TIME]) {
+                return;
+            }
+            int s = slot * STRIDE;
+            state[s + X] = pose.getXMeters();
+            state[s + Y] = pose.getYMeters();
+            state[s + HEADING] = pose.getHeadingRadians();
+            times[t + POSE_TIME] = timeMs;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Records a robot's twist. Twists older than the last one are ignored.
+     *
+     * @param robotId The robot ID
+     * @param twist The twist
+     * @param timeMs Time of the twist
+     */
+    public void updateTwist(String robotId, Twist twist, long timeMs) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotFor(robotId);
+            int t = slot * TIME_STRIDE;
+            if (times[t + TWIST_TIME] != NONE && timeMs < times[t + TWIST_TIME]) {
+                return;
+            }
+            int s = slot * STRIDE;
+            state[s + SPEED] = twist.getLinearVelocity();
+            // Positive angular velocity turns clockwise, while headings increase counter-clockwise
+            state[s + HEADING_RATE] = -twist.getAngularVelocity();
+            times[t + TWIST_TIME] = timeMs;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Predicts a robot's pose at an instant. Instants before the last pose return the last pose.
+     *
+     * @param robotId The robot ID
+     * @param atMs The instant, on the robot's clock
+     * @param out Receives the prediction
+     * @return true if predicted, false if no pose was recorded for the robot
+     */
+    public boolean predict(String robotId, long atMs, PosePrediction out) {
+        Integer slot = slots.get(robotId);
+        if (slot == null) {
+            return false;
+        }
+        int s = slot * STRIDE;
+        int t = slot * TIME_STRIDE;
+        double x;
+        double y;
+        double heading;
+        double speed;
+        double headingRate;
+        long poseTime;
+        long twistTime;
+        long stamp = lock.tryOptimisticRead();
+        double[] stateArray = state;
+        long[] timesArray = times;
+        if (stamp != 0 && s + STRIDE <= stateArray.length && t + TIME_STRIDE <= timesArray.length) {
+            x = stateArray[s + X];
+            y = stateArray[s + Y];
+            heading = stateArray[s + HEADING];
+            speed = stateArray[s + SPEED];
+            headingRate = stateArray[s + HEADING_RATE];
+            poseTime = timesArray[t + POSE_TIME];
+            twistTime = timesArray[t + TWIST_TIME];
+        } else {
+            stamp = 0;
+            x = y = heading = speed = headingRate = 0;
+            poseTime = twistTime = NONE;
+        }
+        if (stamp == 0 || !lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                x = state[s + X];
+                y = state[s + Y];
+                heading = state[s + HEADING];
+                speed = state[s + SPEED];
+                headingRate = state[s + HEADING_RATE];
+                poseTime = times[t + POSE_TIME];
+                twistTime = times[t + TWIST_TIME];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (poseTime == NONE) {
+            return false;
+        }
+        long ageMs = Math.max(0, atMs - poseTime);
+        boolean moving = twistTime != NONE && Math.abs(twistTime - poseTime) <= maxTwistAgeMs;
+        if (!moving) {
+            double dt = ageMs / 1000.0;
+            out.set(x, y, heading, poseErrorMeters + maxSpeed * dt,
+                    Math.min(Math.PI, 0.5 * maxAngularAcceleration * dt * dt), ageMs, false);
+            return true;
+        }
+        double dt = Math.min(ageMs, horizonMs) / 1000.0;
+        double beyond = Math.max(0, ageMs - horizonMs) / 1000.0;
+        double turned = headingRate * dt;
+        double predictedX;
+        double predictedY;
+        if (Math.abs(turned) < 1e-6) {
+            predictedX = x + speed * dt * Math.cos(heading);
+            predictedY = y + speed * dt * Math.sin(heading);
+        } else {
+            double radius = speed / headingRate;
+            predictedX = x + radius * (Math.sin(heading + turned) - Math.sin(heading));
+            predictedY = y - radius * (Math.cos(heading + turned) - Math.cos(heading));
+        }
+        double positionError = poseErrorMeters
+                + 0.5 * maxAcceleration * dt * dt
+                + Math.abs(speed) * maxAngularAcceleration * dt * dt * dt / 6
+                + maxSpeed * beyond;
+        double headingError = beyond > 0 ? Math.PI : Math.min(Math.PI, 0.5 * maxAngularAcceleration * dt * dt);
+        out.set(predictedX, predictedY, normalize(heading + turned), positionError, headingError, ageMs, true);
+        return true;
+    }
+
+    /**
+     * Predicts a robot's pose now, assuming the robot's clock matches this host's.
+     *
+     * @param robotId The robot ID
+     * @return The prediction, or null if no pose was recorded for the robot
+     */
+    public PosePrediction predictNow(String robotId) {
+        PosePrediction prediction = new PosePrediction();
+        return predict(robotId, System.currentTimeMillis(), prediction) ? prediction : null;
+    }
+
+    /**
+     * Forgets a robot. Its slot is not reused.
+     *
+     * @param robotId The robot ID
+     */
+    public void remove(String robotId) {
+        long stamp = lock.writeLock();
+        try {
+            Integer slot = slots.get(robotId);
+            if (slot != null) {
+                times[slot * TIME_STRIDE + POSE_TIME] = NONE;
+                times[slot * TIME_STRIDE + TWIST_TIME] = NONE;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns a robot's slot, assigning one and growing the arrays if needed. Must hold the write lock.
+     */
+    private int slotFor(String robotId) {
+        Integer slot = slots.get(robotId);
+        if (slot != null) {
+            return slot;
+        }
+        if ((size + 1) * TIME_STRIDE > times.length) {
+            int capacity = times.length / TIME_STRIDE * 2;
+            double[] grownState = Arrays.copyOf(state, capacity * STRIDE);
+            long[] grownTimes = Arrays.copyOf(times, capacity * TIME_STRIDE);
+            Arrays.fill(grownTimes, times.length, grownTimes.length, NONE);
+            state = grownState;
+            times = grownTimes;
+        }
+        slots.put(robotId, size);
+        return size++;
+    }
+
+    private static double normalize(double radians) {
+        return Math.atan2(Math.sin(radians), Math.cos(radians));
+    }
+
+    private static long timestampMs(EventMetadata metadata) {
+        return metadata.getTimestamp().getSeconds() * 1000 + metadata.getTimestamp().getNanos() / 1_000_000;
+    }
+
+    public static class Builder {
+        private double poseErrorMeters = 0.05;
+        private double maxSpeed = 1.2;
+        private double maxAcceleration = 1.0;
+        private double maxAngularAcceleration = 3.0;
+        private long horizonMs = 2000;
+        private long maxTwistAgeMs = 1000;
+
+        public Builder poseErrorMeters(double poseErrorMeters) {
+            this.poseErrorMeters = poseErrorMeters;
+            return this;
+        }
+
+        public Builder maxSpeed(double maxSpeed) {
+            this.maxSpeed = maxSpeed;
+            return this;
+        }
+
+        public Builder maxAcceleration(double maxAcceleration) {
+            this.maxAcceleration = maxAcceleration;
+            return this;
+        }
+
+        public Builder maxAngularAcceleration(double maxAngularAcceleration) {
+            this.maxAngularAcceleration = maxAngularAcceleration;
+            return this;
+        }
+
+        public Builder horizonMs(long horizonMs) {
+            this.horizonMs = horizonMs;
+            return this;
+        }
+
+        public Builder maxTwistAgeMs(long maxTwistAgeMs) {
+            this.maxTwistAgeMs = maxTwistAgeMs;
+            return this;
+        }
+
+        public PosePredictor build() {
+            if (poseErrorMeters < 0 || maxSpeed < 0 || maxAcceleration < 0 || maxAngularAcceleration < 0) {
+                throw new IllegalArgumentException("Error limits must not be negative");
+            }
+            if (horizonMs < 0 || maxTwistAgeMs < 0) {
+                throw new IllegalArgumentException("horizonMs and maxTwistAgeMs must not be negative");
+            }
+            return new PosePredictor(this);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.streaming;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import bearrobotics.api.v1.core.Webhook.FieldFilter;
+import bearrobotics.api.v1.core.Webhook.FilterOperator;
+
+/**
+ * Client-side evaluation of a {@link FieldFilter} on streamed events, with the same semantics as
+ * webhook filters: the event matches when the value at {@code field} is one of {@code values}.
+ *
+ * The field path is resolved relative to the streamed response message, so a
+ * {@code SubscribeMissionStatusResponse} is filtered with a path like {@code mission_state.state}.
+ * Filters written for webhooks can be reused: the path is compiled with
+ * {@link FieldPath#compileWebhookPath}, which drops the leading {@code state.} segment and maps
+ * payload names such as {@code current_mission} onto the streamed message.
+ *
+ * The path is compiled once into a {@link FieldPath} accessor chain and the filter values are
+ * pre-resolved to enum numbers, numbers, or strings, so evaluating an event does no reflection
+ * or descriptor lookups.
+ *
+ * @param <T> The message type the filter is evaluated against
+ */
+public final class CompiledFieldFilter<T extends Message> implements Predicate<T> {
+    private final FieldPath fieldPath;
+
+    // Pre-resolved match sets; only the one for the leaf kind is populated
+    private final long enumMask;
+    private final int[] enumNumbers;
+    private final long[] longValues;
+    private final double[] doubleValues;
+    private final boolean matchTrue;
+    private final boolean matchFalse;
+    private final Set<String> stringValues;
+
+    private CompiledFieldFilter(FieldPath fieldPath, List<String> values) {
+        this.fieldPath = fieldPath;
+
+        long mask = 0;
+        int[] numbers = null;
+        long[] longs = null;
+        double[] doubles = null;
+        boolean acceptTrue = false;
+        boolean acceptFalse = false;
+        Set<String> strings = null;
+
+        switch (fieldPath.getLeafKind()) {
+            case ENUM:
+                numbers = new int[values.size()];
+                boolean fitsMask = true;
+                for (int i = 0; i < values.size(); i++) {
+                    Descriptors.EnumValueDescriptor value = fieldPath.getLeafField().getEnumType().findValueByName(values.get(i));
+                    if (value == null) {
+                        throw new IllegalArgumentException("'" + values.get(i) + "' is not a value of enum "
+                                + fieldPath.getLeafField().getEnumType().getFullName());
+                    }
+                    numbers[i] = value.getNumber();
+                    fitsMask &= numbers[i] >= 0 && numbers[i] < Long.SIZE;
+                }
+                if (fitsMask) {
+                    for (int number : numbers) {
+                        mask |= 1L << number;
+                    }
+                    numbers = null;
+                } else {
+                    Arrays.sort(numbers);
+                }
+                break;
+            case INT:
+            case LONG:
+                longs = new long[values.size()];
+                for (int i = 0; i < values.size(); i++) {
+                    longs[i] = parseLong(values.get(i));
+                }
+                Arrays.sort(longs);
+                break;
+            case FLOAT:
+            case DOUBLE:
+                doubles = new double[values.size()];
+                for (int i = 0; i < values.size(); i++) {
+                    doubles[i] = parseDouble(values.get(i), fieldPath.getLeafKind() == FieldPath.LeafKind.FLOAT);
+                }
+                Arrays.sort(doubles);
+                break;
+            case BOOL:
+                for (String value : values) {
+                    if ("true".equals(value)) {
+                        acceptTrue = true;
+                    } else if ("false".equals(value)) {
+                        acceptFalse = true;
+                    } else {
+                        throw new IllegalArgumentException("'" + value + "' is not a valid bool for " + fieldPath);
+                    }
+                }
+                break;
+            case STRING:
+                strings = new HashSet<>(values);
+                break;
+            case TIMESTAMP:
+                longs = new long[values.size()];
+                for (int i = 0; i < values.size(); i++) {
+                    longs[i] = parseTimestampNanos(values.get(i));
+                }
+                Arrays.sort(longs);
+                break;
+            default:
+                throw new IllegalStateException("Unhandled leaf kind " + fieldPath.getLeafKind());
+        }
+
+        this.enumMask = mask;
+        this.enumNumbers = numbers;
+        this.longValues = longs;
+        this.doubleValues = doubles;
+        this.matchTrue = acceptTrue;
+        this.matchFalse = acceptFalse;
+        this.stringValues = strings;
+    }
+
+    /**
+     * Compiles a field filter against the type of the given message.
+     *
+     * @param filter The field filter, as used for webhook subscriptions
+     * @param prototype Any instance of the streamed message type, e.g. {@code SubscribeMissionStatusResponse.getDefaultInstance()}
+     * @param <T> The message type
+     * @return The compiled filter
+     * @throws IllegalArgumentException If the operator is unsupported, the path does not resolve to a scalar,
+     *         or a value does not match the field type
+     */
+    public static <T extends Message> CompiledFieldFilter<T> compile(FieldFilter filter, T prototype) {
+        if (filter.getOperator() != FilterOperator.FILTER_OPERATOR_IN) {
+            throw new IllegalArgumentException("Unsupported filter operator: " + filter.getOperator());
+        }
+        if (filter.getValuesCount() == 0) {
+            throw new IllegalArgumentException("Filter on '" + filter.getField() + "' requires at least one value");
+        }
+
+        return new CompiledFieldFilter<>(FieldPath.compileWebhookPath(filter.getField(), prototype), filter.getValuesList());
+    }
+
+    /**
+     * Gets the compiled field path.
+     *
+     * @return The field path
+     */
+    public FieldPath getFieldPath() {
+        return fieldPath;
+    }
+
+    @Override
+    public boolean test(T message) {
+        Object holder = fieldPath.resolve(message);
+        if (holder == null) {
+            // A path into an unset message resolves to an empty value, which never matches
+            return false;
+        }
+
+        switch (fieldPath.getLeafKind()) {
+            case ENUM:
+                int number = fieldPath.readEnumNumber(holder);
+                if (enumNumbers == null) {
+                    return number >= 0 && number < Long.SIZE && (enumMask & (1L << number)) != 0;
+                }
+                return Arrays.binarySearch(enumNumbers, number) >= 0;
+            case INT:
+                return Arrays.binarySearch(longValues, fieldPath.readInt(holder)) >= 0;
+            case LONG:
+                return Arrays.binarySearch(longValues, fieldPath.readLong(holder)) >= 0;
+            case FLOAT:
+                return Arrays.binarySearch(doubleValues, fieldPath.readFloat(holder)) >= 0;
+            case DOUBLE:
+                return Arrays.binarySearch(doubleValues, fieldPath.readDouble(holder)) >= 0;
+            case BOOL:
+                return fieldPath.readBool(holder) ? matchTrue : matchFalse;
+            case STRING:
+                return stringValues.contains(fieldPath.readString(holder));
+            case TIMESTAMP:
+                Timestamp timestamp = fieldPath.readTimestamp(holder);
+                return Arrays.binarySearch(longValues, timestamp.getSeconds() * 1_000_000_000L + timestamp.getNanos()) >= 0;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledFieldFilter{" + fieldPath + "}";
+    }
+
+    private long parseLong(String value) {
+        try {
+            switch (fieldPath.getLeafField().getType()) {
+                case UINT32:
+                case FIXED32:
+                    // Unsigned 32-bit values are read back as the signed int with the same bits
+                    return (int) Long.parseLong(value);
+                case UINT64:
+                case FIXED64:
+                    return Long.parseUnsignedLong(value);
+                default:
+                    long parsed = Long.parseLong(value);
+                    if (fieldPath.getLeafKind() == FieldPath.LeafKind.INT
+                            && (parsed < Integer.MIN_VALUE || parsed > Integer.MAX_VALUE)) {
+                        throw new IllegalArgumentException("'" + value + "' is out of range for " + fieldPath);
+                    }
+                    return parsed;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + value + "' is not a valid number for " + fieldPath, e);
+        }
+    }
+
+    private double parseDouble(String value, boolean singlePrecision) {
+        try {
+            // Float fields are compared at float precision so "0.1" matches the stored 0.1f
+            return singlePrecision ? Float.parseFloat(value) : Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + value + "' is not a valid number for " + fieldPath, e);
+        }
+    }
+
+    private long parseTimestampNanos(String value) {
+        try {
+            Instant instant = Instant.parse(value);
+            return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("'" + value + "' is not a valid RFC 3339 timestamp for " + fieldPath, e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.streaming;
+
+import io.grpc.stub.StreamObserver;
+
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Stream observer that drops duplicate and out-of-date events by robot ID and sequence number.
+ *
+ * Pass the same instance to every source delivering the same kind of event, e.g. a
+ * {@link StreamingClient} and a {@code WebhookReceiver}, so the wrapped observer sees each event once.
+ *
+ * @param <T> The event type
+ */
+public class DeduplicatingObserver<T> implements StreamObserver<T> {
+    private final StreamObserver<T> delegate;
+    private final Function<T, String> robotId;
+    private final ToLongFunction<T> sequenceNumber;
+    private final SequenceTracker tracker;
+
+    /**
+     * Creates a deduplicating observer with its own sequence tracker.
+     *
+     * @param delegate The observer to forward new events to
+     * @param robotId Extracts the robot ID from an event
+     * @param sequenceNumber Extracts the sequence number from an event
+     */
+    public DeduplicatingObserver(StreamObserver<T> delegate,
+                                 Function<T, String> robotId,
+                                 ToLongFunction<T> sequenceNumber) {
+        this(delegate, robotId, sequenceNumber, new SequenceTracker());
+    }
+
+    /**
+     * Creates a deduplicating observer with a shared sequence tracker.
+     *
+     * @param delegate The observer to forward new events to
+     * @param robotId Extracts the robot ID from an event
+     * @param sequenceNumber Extracts the sequence number from an event
+     * @param tracker The sequence tracker to record events in
+     */
+    public DeduplicatingObserver(StreamObserver<T> delegate,
+                                 Function<T, String> robotId,
+                                 ToLongFunction<T> sequenceNumber,
+                                 SequenceTracker tracker) {
+        this.delegate = delegate;
+        this.robotId = robotId;
+        this.sequenceNumber = sequenceNumber;
+        this.tracker = tracker;
+    }
+
+    @Override
+    public void onNext(T event) {
+        if (tracker.accept(robotId.apply(event), sequenceNumber.applyAsLong(event))) {
+            delegate.onNext(event);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        delegate.onError(t);
+    }
+
+    @Override
+    public void onCompleted() {
+        delegate.onCompleted();
+    }
+
+    /**
+     * Gets the sequence tracker used by this observer.
+     *
+     * @return The sequence tracker
+     */
+    public SequenceTracker getTracker() {
+        return tracker;
+    }
+}
@@ -0,0 +1,585 @@
+package com.example.streaming;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A "."-separated protobuf field path compiled against a message type.
+ * Paths use the snake_case proto field names, e.g. {@code mission_state.state}, and may index
+ * into repeated fields with a numeric segment, e.g. {@code mission_states.missions.0.mission_id}.
+ *
+ * The path is resolved once, using the message {@link Descriptors}, into a chain of method handles
+ * bound to the generated accessors. Reading the value on a live event does no descriptor or
+ * name lookups. A path that runs through an unset message or past the end of a list resolves
+ * to no value, the same way webhook filters treat a {@code null} message. Scalar leaves always
+ * have a value: an unset optional scalar reads as its default, as in webhook payloads, which are
+ * delivered with defaults filled in.
+ *
+ * Paths written for webhooks are compiled with {@link #compileWebhookPath}, which maps the
+ * webhook payload's field names onto the streamed message.
+ */
+public final class FieldPath {
+
+    /**
+     * The kind of scalar value found at the end of a path.
+     */
+    public enum LeafKind {
+        ENUM,
+        INT,
+        LONG,
+        FLOAT,
+        DOUBLE,
+        BOOL,
+        STRING,
+        TIMESTAMP
+    }
+
+    private static final String STATE_PREFIX = "state.";
+
+    /**
+     * Webhook payload fields that are named differently on the streamed message, by message type:
+     * the first path segment of a webhook path is replaced with the streamed path.
+     */
+    private static final Map<String, Map<String, String>> WEBHOOK_ALIASES = Map.of(
+            "bearrobotics.api.v1.services.cloud.SubscribeMissionStatusResponse", Map.of(
+                    "current_mission", "mission_state",
+                    "missions", "mission_states.missions",
+                    "current_mission_index", "mission_states.current_mission_index"));
+
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType INDEXED_OBJECT_GETTER = MethodType.methodType(Object.class, Object.class, int.class);
+    private static final MethodType INT_GETTER = MethodType.methodType(int.class, Object.class);
+    private static final MethodType BOOLEAN_GETTER = MethodType.methodType(boolean.class, Object.class);
+
+    private final String path;
+    private final Step[] steps;
+    private final Step leaf;
+    private final Descriptors.FieldDescriptor leafField;
+    private final LeafKind leafKind;
+    private final String[] enumNames;
+
+    private FieldPath(String path, Step[] steps, Step leaf, Descriptors.FieldDescriptor leafField, LeafKind leafKind) {
+        this.path = path;
+        this.steps = steps;
+        this.leaf = leaf;
+        this.leafField = leafField;
+        this.leafKind = leafKind;
+        this.enumNames = leafKind == LeafKind.ENUM ? enumNames(leafField.getEnumType()) : null;
+    }
+
+    /**
+     * Compiles a field path against the type of the given message.
+     *
+     * @param path The "."-separated snake_case field path
+     * @param prototype Any instance of the message type, e.g. {@code SubscribeMissionStatusResponse.getDefaultInstance()}
+     * @return The compiled field path
+     * @throws IllegalArgumentException If the path does not resolve to a scalar field of the message
+     */
+    public static FieldPath compile(String path, Message prototype) {
+        if (path == null || path.isEmpty()) {
+            throw new IllegalArgumentException("Field path is required");
+        }
+
+        String[] segments = path.split("\\.");
+        List<Step> steps = new ArrayList<>();
+        Descriptors.Descriptor descriptor = prototype.getDescriptorForType();
+        Class<?> type = prototype.getClass();
+
+        int i = 0;
+        while (i < segments.length) {
+            Descriptors.FieldDescriptor field = descriptor.findFieldByName(segments[i]);
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown field '" + segments[i] + "' in path '" + path
+                        + "' for message " + descriptor.getFullName());
+            }
+            if (field.isMapField()) {
+                throw new IllegalArgumentException("Map field '" + segments[i] + "' in path '" + path
+                        + "' is not supported; only scalar leaves can be addressed");
+            }
+
+            int index = -1;
+            if (field.isRepeated()) {
+                if (i + 1 >= segments.length || !isIndex(segments[i + 1])) {
+                    throw new IllegalArgumentException("Repeated field '" + segments[i] + "' in path '" + path
+                            + "' must be followed by an index");
+                }
+                index = Integer.parseInt(segments[i + 1]);
+                i++;
+            }
+            boolean last = i == segments.length - 1;
+
+            if (field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+                boolean timestamp = field.getMessageType().getFullName().equals(Timestamp.getDescriptor().getFullName());
+                Step step = Step.forField(type, field, index, false);
+                if (last) {
+                    if (!timestamp) {
+                        throw new IllegalArgumentException("Path '" + path + "' resolves to message "
+                                + field.getMessageType().getFullName() + "; only scalar leaves can be addressed");
+                    }
+                    return new FieldPath(path, steps.toArray(new Step[0]), step, field, LeafKind.TIMESTAMP);
+                }
+                steps.add(step);
+                descriptor = field.getMessageType();
+                type = step.valueType;
+            } else {
+                if (!last) {
+                    throw new IllegalArgumentException("Path '" + path + "' continues past scalar field '"
+                            + field.getName() + "'");
+                }
+                LeafKind kind = leafKind(field);
+                Step step = Step.forField(type, field, index, kind == LeafKind.ENUM);
+                return new FieldPath(path, steps.toArray(new Step[0]), step, field, kind);
+            }
+            i++;
+        }
+
+        throw new IllegalArgumentException("Path '" + path + "' does not end in a scalar field");
+    }
+
+    /**
+     * Compiles a path written against a webhook payload, e.g. {@code state.current_mission.state},
+     * against the type of the streamed message. The leading {@code state.} segment is dropped, since
+     * the streamed message is the payload, and webhook field names that differ on the streamed
+     * message are mapped, e.g. {@code current_mission} to {@code mission_state} and {@code missions}
+     * to {@code mission_states.missions} for {@code SubscribeMissionStatusResponse}.
+     *
+     * @param path The "."-separated snake_case webhook field path
+     * @param prototype Any instance of the streamed message type
+     * @return The compiled field path
+     * @throws IllegalArgumentException If the path does not resolve to a scalar field of the message
+     */
+    public static FieldPath compileWebhookPath(String path, Message prototype) {
+        if (path == null || path.isEmpty()) {
+            throw new IllegalArgumentException("Field path is required");
+        }
+        Descriptors.Descriptor descriptor = prototype.getDescriptorForType();
+        String streamPath = path;
+        if (streamPath.startsWith(STATE_PREFIX) && descriptor.findFieldByName("state") == null) {
+            streamPath = streamPath.substring(STATE_PREFIX.length());
+        }
+        Map<String, String> aliases = WEBHOOK_ALIASES.get(descriptor.getFullName());
+        if (aliases != null) {
+            int dot = streamPath.indexOf('.');
+            String first = dot < 0 ? streamPath : streamPath.substring(0, dot);
+            String alias = aliases.get(first);
+            if (alias != null && descriptor.findFieldByName(first) == null) {
+                streamPath = alias + (dot < 0 ? "" : streamPath.substring(dot));
+            }
+        }
+        return compile(streamPath, prototype);
+    }
+
+    /**
+     * Gets the path this instance was compiled from.
+     *
+     * @return The field path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the kind of scalar value at the end of the path.
+     *
+     * @return The leaf kind
+     */
+    public LeafKind getLeafKind() {
+        return leafKind;
+    }
+
+    /**
+     * Gets the descriptor of the leaf field.
+     *
+     * @return The leaf field descriptor
+     */
+    public Descriptors.FieldDescriptor getLeafField() {
+        return leafField;
+    }
+
+    /**
+     * Walks the path down to the message holding the leaf field.
+     *
+     * @param message The root message
+     * @return The message holding the leaf, or null if the path runs through an unset message,
+     *         an out-of-range index, or ends in an unset timestamp
+     */
+    public Object resolve(Object message) {
+        Object current = message;
+        for (Step step : steps) {
+            current = step.get(current);
+            if (current == null) {
+                return null;
+            }
+        }
+        return leaf.isPresent(current) ? current : null;
+    }
+
+    /**
+     * Reads an enum leaf as its number.
+     *
+     * @param holder The message returned by {@link #resolve(Object)}
+     * @return The enum number
+     */
+    public int readEnumNumber(Object holder) {
+        return leaf.getInt(holder);
+    }
+
+    /**
+     * Reads an int32-family leaf.
+     *
+     * @param holder The message returned by {@link #resolve(Object)}
+     * @return The value
+     */
+    public int readInt(Object holder) {
+        return leaf.getInt(holder);
+    }
+
+    /**
+     * Reads an int64-family leaf.
+     *
+     * @param holder The message returned by {@link #resolve(Object)}
+     * @return The value
+     */
+    public long readLong(Object holder) {
+        return leaf.getLong(holder);
+    }
+
+    /**
+     * Reads a float leaf.
+     *
+     * @param holder The message returned by {@link #resolve(Object)}
+     * @return The value
+     */
+    public float readFloat(Object holder) {
+        return leaf.getFloat(holder);
+    }
+
+    /**
+     * Reads a double leaf.
+     *
+     * @param holder The message returned by {@link #resolve(Object)}
+     * @return The value
+     */
+    public double readDouble(Object holder) {
+        return leaf.getDouble(holder);
+    }
+
+    /**
+     * Reads a bool leaf.
+     *
+     * @param holder The message returned by {@link #resolve(Object)}
+     * @return The value
+     */
+    public boolean readBool(Object holder) {
+        return leaf.getBoolean(holder);
+    }
+
+    /**
+     * Reads a string leaf.
+     *
+     * @param holder The message returned by {@link #resolve(Object)}
+     * @return The value
+     */
+    public String readString(Object holder) {
+        return (String) leaf.getObject(holder);
+    }
+
+    /**
+     * Reads a timestamp leaf.
+     *
+     * @param holder The message returned by {@link #resolve(Object)}
+     * @return The value
+     */
+    public Timestamp readTimestamp(Object holder) {
+        return (Timestamp) leaf.getObject(holder);
+    }
+
+    /**
+     * Reads the leaf and renders it as text, the way webhook payloads render scalars:
+     * enums by name, timestamps in RFC 3339, and numbers in their decimal form.
+     *
+     * @param message The root message
+     * @return The rendered value, or an empty string if the path resolves to no value
+     */
+    public String readAsText(Object message) {
+        Object holder = resolve(message);
+        if (holder == null) {
+            return "";
+        }
+        switch (leafKind) {
+            case ENUM:
+                return enumName(readEnumNumber(holder));
+            case INT:
+                return isUnsigned(leafField) ? Integer.toUnsignedString(readInt(holder)) : Integer.toString(readInt(holder));
+            case LONG:
+                return isUnsigned(leafField) ? Long.toUnsignedString(readLong(holder)) : Long.toString(readLong(holder));
+            case FLOAT:
+                return Float.toString(readFloat(holder));
+            case DOUBLE:
+                return Double.toString(readDouble(holder));
+            case BOOL:
+                return Boolean.toString(readBool(holder));
+            case STRING:
+                return readString(holder);
+            case TIMESTAMP:
+                Timestamp timestamp = readTimestamp(holder);
+                return Instant.ofEpochSecond(timestamp.getSeconds(), timestamp.getNanos()).toString();
+            default:
+                throw new IllegalStateException("Unhandled leaf kind " + leafKind);
+        }
+    }
+
+    /**
+     * Gets the name of an enum value of the leaf field.
+     *
+     * @param number The enum number
+     * @return The enum value name, or the number itself if it is not a known value
+     */
+    public String enumName(int number) {
+        if (enumNames != null && number >= 0 && number < enumNames.length && enumNames[number] != null) {
+            return enumNames[number];
+        }
+        Descriptors.EnumValueDescriptor value = leafField.getEnumType().findValueByNumber(number);
+        return value != null ? value.getName() : Integer.toString(number);
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+    private static boolean isIndex(String segment) {
+        if (segment.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isUnsigned(Descriptors.FieldDescriptor field) {
+        switch (field.getType()) {
+            case UINT32:
+            case FIXED32:
+            case UINT64:
+            case FIXED64:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static LeafKind leafKind(Descriptors.FieldDescriptor field) {
+        switch (field.getJavaType()) {
+            case ENUM:
+                return LeafKind.ENUM;
+            case INT:
+                return LeafKind.INT;
+            case LONG:
+                return LeafKind.LONG;
+            case FLOAT:
+                return LeafKind.FLOAT;
+            case DOUBLE:
+                return LeafKind.DOUBLE;
+            case BOOLEAN:
+                return LeafKind.BOOL;
+            case STRING:
+                return LeafKind.STRING;
+            default:
+                throw new IllegalArgumentException("Field '" + field.getName() + "' of type " + field.getType()
+                        + " is not a supported scalar leaf");
+        }
+    }
+
+    private static String[] enumNames(Descriptors.EnumDescriptor enumType) {
+        int max = -1;
+        for (Descriptors.EnumValueDescriptor value : enumType.getValues()) {
+            max = Math.max(max, value.getNumber());
+        }
+        // Sparse or very large enums fall back to the descriptor lookup in enumName()
+        if (max < 0 || max > 1024) {
+            return null;
+        }
+        String[] names = new String[max + 1];
+        for (Descriptors.EnumValueDescriptor value : enumType.getValues()) {
+            if (value.getNumber() >= 0 && names[value.getNumber()] == null) {
+                names[value.getNumber()] = value.getName();
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Converts a snake_case field name into the capitalized name used by the generated Java accessors,
+     * following the same rules as protoc: the letter after an underscore or a digit is upper-cased.
+     *
+     * @param fieldName The proto field name, e.g. {@code e_stop_state}
+     * @return The accessor name without prefix, e.g. {@code EStopState}
+     */
+    public static String javaName(String fieldName) {
+        StringBuilder result = new StringBuilder(fieldName.length());
+        boolean capitalizeNext = true;
+        for (int i = 0; i < fieldName.length(); i++) {
+            char c = fieldName.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                result.append(capitalizeNext ? Character.toUpperCase(c) : c);
+                capitalizeNext = false;
+            } else if (c >= 'A' && c <= 'Z') {
+                result.append(c);
+                capitalizeNext = false;
+            } else if (c >= '0' && c <= '9') {
+                result.append(c);
+                capitalizeNext = true;
+            } else {
+                capitalizeNext = true;
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * One hop of the accessor chain: reads a single field, optionally at a list index,
+     * through method handles bound to the generated accessors.
+     */
+    private static final class Step {
+        private final MethodHandle getter;
+        private final MethodHandle hasser;
+        private final MethodHandle counter;
+        private final int index;
+        private final Class<?> valueType;
+
+        private Step(MethodHandle getter, MethodHandle hasser, MethodHandle counter, int index, Class<?> valueType) {
+            this.getter = getter;
+            this.hasser = hasser;
+            this.counter = counter;
+            this.index = index;
+            this.valueType = valueType;
+        }
+
+        static Step forField(Class<?> owner, Descriptors.FieldDescriptor field, int index, boolean enumNumber) {
+            String name = javaName(field.getName());
+            String getterName = "get" + name + (enumNumber ? "Value" : "");
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                Method getter;
+                MethodHandle counter = null;
+                MethodHandle hasser = null;
+                if (field.isRepeated()) {
+                    getter = owner.getMethod(getterName, int.class);
+                    counter = lookup.unreflect(owner.getMethod("get" + name + "Count")).asType(INT_GETTER);
+                } else {
+                    getter = owner.getMethod(getterName);
+                    // Scalars read as their default when unset, like the webhook payload
+                    if (field.hasPresence() && field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+                        hasser = lookup.unreflect(owner.getMethod("has" + name)).asType(BOOLEAN_GETTER);
+                    }
+                }
+
+                MethodHandle handle = lookup.unreflect(getter);
+                Class<?> returnType = getter.getReturnType();
+                if (!returnType.isPrimitive()) {
+                    handle = handle.asType(field.isRepeated() ? INDEXED_OBJECT_GETTER : OBJECT_GETTER);
+                } else {
+                    handle = field.isRepeated()
+                            ? handle.asType(MethodType.methodType(returnType, Object.class, int.class))
+                            : handle.asType(MethodType.methodType(returnType, Object.class));
+                }
+                return new Step(handle, hasser, counter, index, returnType);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalArgumentException("Cannot bind accessor for field '" + field.getFullName()
+                        + "' on " + owner.getName(), e);
+            }
+        }
+
+        boolean isPresent(Object holder) {
+            try {
+                if (counter != null) {
+                    return index < (int) counter.invokeExact(holder);
+                }
+                return hasser == null || (boolean) hasser.invokeExact(holder);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        Object get(Object holder) {
+            if (!isPresent(holder)) {
+                return null;
+            }
+            try {
+                return counter != null
+                        ? (Object) getter.invokeExact(holder, index)
+                        : (Object) getter.invokeExact(holder);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        Object getObject(Object holder) {
+            return get(holder);
+        }
+
+        int getInt(Object holder) {
+            try {
+                return counter != null ? (int) getter.invokeExact(holder, index) : (int) getter.invokeExact(holder);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        long getLong(Object holder) {
+            try {
+                return counter != null ? (long) getter.invokeExact(holder, index) : (long) getter.invokeExact(holder);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        float getFloat(Object holder) {
+            try {
+                return counter != null ? (float) getter.invokeExact(holder, index) : (float) getter.invokeExact(holder);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        double getDouble(Object holder) {
+            try {
+                return counter != null ? (double) getter.invokeExact(holder, index) : (double) getter.invokeExact(holder);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        boolean getBoolean(Object holder) {
+            try {
+                return counter != null ? (boolean) getter.invokeExact(holder, index) : (boolean) getter.invokeExact(holder);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        private static RuntimeException rethrow(Throwable t) {
+            if (t instanceof RuntimeException) {
+                return (RuntimeException) t;
+            }
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            return new IllegalStateException("Field accessor failed", t);
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package com.example.streaming;
+
+import com.google.protobuf.Any;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.rpc.ResourceInfo;
+import io.grpc.Status;
+import io.grpc.protobuf.StatusProto;
+import io.grpc.stub.StreamObserver;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import bearrobotics.api.v1.core.FleetSelector.RobotSelector;
+
+/**
+ * A subscription whose set of robots can change while it runs.
+ *
+ * Robots are added and removed at any time; changes are collected for a short window and then applied
+ * with a single {@link StreamingClient#updateRequest} call, which opens a stream with the new
+ * {@code RobotSelector} and switches to it once it delivers, so membership churn costs one stream swap
+ * per window instead of a reconnect per robot.
+ *
+ * Removed robots stop being delivered immediately, even while the old stream is still open. Events
+ * are also passed through a {@link SequenceTracker}, so events replayed by the new stream that the
+ * old one already delivered are suppressed.
+ *
+ * When the server refuses a selector, e.g. with {@code NOT_FOUND} for an unknown robot, the robots the
+ * error names in a {@code google.rpc.ResourceInfo} detail are dropped. If it names none, the robots the
+ * server has not yet accepted are bisected: half of them are held back and the subscription retries
+ * with the rest, until the refusal is narrowed down to a single robot, which is dropped. Held back
+ * robots rejoin once a selector without them has gone unrefused for {@link #ACCEPT_DELAY_MS}. This way
+ * one bad robot ID neither ends the stream for the others nor takes valid robots down with it, and only
+ * the dropped robots are reported to the rejection listener. {@code PERMISSION_DENIED} is not treated
+ * as a refusal of a robot, since it concerns the caller's credentials rather than the selector.
+ *
+ * @param <TRequest> The request type of the streaming RPC
+ * @param <TResponse> The response type of the streaming RPC
+ */
+public class ManagedSubscription<TRequest, TResponse> {
+    private static final Logger logger = Logger.getLogger(ManagedSubscription.class.getName());
+
+    // Applies batched membership changes for all managed subscriptions
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ManagedSubscription-Scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Status codes with which the server refuses a selector rather than failing the stream
+    private static final Set<Status.Code> REJECTION_CODES = EnumSet.of(
+            Status.Code.INVALID_ARGUMENT,
+            Status.Code.NOT_FOUND);
+
+    // Resource type with which an error detail names a robot
+    private static final String ROBOT_RESOURCE_TYPE = "robot";
+
+    /** How long a selector must go unrefused before its robots count as accepted by the server. */
+    static final long ACCEPT_DELAY_MS = 2_000;
+
+    private final StreamingClient.Builder<TRequest, TResponse> clientBuilder;
+    private final Function<RobotSelector, TRequest> requestFactory;
+    private final long windowMs;
+    private final Set<String> members = ConcurrentHashMap.newKeySet();
+    private final SequenceTracker tracker = new SequenceTracker();
+    private final StreamObserver<TResponse> memberObserver;
+    private final AtomicLong swaps = new AtomicLong();
+    private final BiConsumer<Set<String>, Status> rejectionListener;
+
+    private StreamingClient<TRequest, TResponse> client;
+    private Set<String> subscribed = Collections.emptySet();
+    // Robots that were in a selector the server did not refuse; the others are the suspects of a refusal
+    private final Set<String> accepted = new TreeSet<>();
+    // Suspects held back from the selector while the other half is tried
+    private final Set<String> withheld = new TreeSet<>();
+    // Incremented by every selector change and refusal, so a stale acceptance check is ignored
+    private long generation;
+    private ScheduledFuture<?> pendingApply;
+    private boolean stopped = true;
+
+    /**
+     * Creates a managed subscription. Nothing is subscribed until {@link #start()} is called.
+     *
+     * @param clientBuilder Builder configured with everything except the request and observer,
+     *                      e.g. {@code client.createStreamingClient().rpcMethod(stub::subscribeRobotStatus)};
+     *                      it is copied, not modified
+     * @param requestFactory Creates the request for a selector,
+     *                       e.g. {@code selector -> SubscribeRobotStatusRequest.newBuilder().setSelector(selector).build()}
+     * @param observer Observer receiving events for member robots
+     * @param robotId Extracts the robot ID from an event
+     * @param sequenceNumber Extracts the metadata sequence number from an event
+     * @param windowMs How long membership changes are collected before they are applied
+     */
+    public ManagedSubscription(StreamingClient.Builder<TRequest, TResponse> clientBuilder,
+                               Function<RobotSelector, TRequest> requestFactory,
+                               StreamObserver<TResponse> observer,
+                               Function<TResponse, String> robotId,
+                               ToLongFunction<TResponse> sequenceNumber,
+                               long windowMs) {
+        this(clientBuilder, requestFactory, observer, robotId, sequenceNumber, windowMs, null);
+    }
+
+    /**
+     * Creates a managed subscription that reports robots dropped because the server refused them.
+     * Nothing is subscribed until {@link #start()} is called.
+     *
+     * @param clientBuilder Builder configured with everything except the request and observer,
+     *                      e.g. {@code client.createStreamingClient().rpcMethod(stub::subscribeRobotStatus)};
+     *                      it is copied, not modified
+     * @param requestFactory Creates the request for a selector,
+     *                       e.g. {@code selector -> SubscribeRobotStatusRequest.newBuilder().setSelector(selector).build()}
+     * @param observer Observer receiving events for member robots
+     * @param robotId Extracts the robot ID from an event
+     * @param sequenceNumber Extracts the metadata sequence number from an event
+     * @param windowMs How long membership changes are collected before they are applied
+     * @param rejectionListener Receives the robots removed from the subscription and the server's error,
+     *                          or null
+     */
+    public ManagedSubscription(StreamingClient.Builder<TRequest, TResponse> clientBuilder,
+                               Function<RobotSelector, TRequest> requestFactory,
+                               StreamObserver<TResponse> observer,
+                               Function<TResponse, String> robotId,
+                               ToLongFunction<TResponse> sequenceNumber,
+                               long windowMs,
+                               BiConsumer<Set<String>, Status> rejectionListener) {
+        this.clientBuilder = clientBuilder;
+        this.rejectionListener = rejectionListener;
+        this.requestFactory = requestFactory;
+        this.windowMs = windowMs;
+        StreamObserver<TResponse> deduplicating = new DeduplicatingObserver<>(observer, robotId, sequenceNumber, tracker);
+        this.memberObserver = new StreamObserver<TResponse>() {
+            @Override
+            public void onNext(TResponse response) {
+                if (members.contains(robotId.apply(response))) {
+                    deduplicating.onNext(response);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                Status status = Status.fromThrowable(t);
+                if (REJECTION_CODES.contains(status.getCode())) {
+                    Set<String> named = namedRobots(t);
+                    scheduler.execute(() -> evictRejected(status, named));
+                }
+                deduplicating.onError(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                deduplicating.onCompleted();
+            }
+        };
+    }
+
+    /**
+     * Adds robots to the subscription. Their events are delivered after the next swap.
+     *
+     * @param robotIds The robots to add
+     */
+    public void addRobots(Collection<String> robotIds) {
+        if (members.addAll(robotIds)) {
+            scheduleApply();
+        }
+    }
+
+    /**
+     * Removes robots from the subscription. Their events stop being delivered immediately.
+     *
+     * @param robotIds The robots to remove
+     */
+    public void removeRobots(Collection<String> robotIds) {
+        if (members.removeAll(robotIds)) {
+            scheduleApply();
+        }
+    }
+
+    /**
+     * Gets the robots currently in the subscription.
+     *
+     * @return A snapshot of the member robot IDs
+     */
+    public Set<String> getRobotIds() {
+        return new TreeSet<>(members);
+    }
+
+    /**
+     * Gets the number of times the stream was swapped for a new selector.
+     *
+     * @return The swap count
+     */
+    public long getSwapCount() {
+        return swaps.get();
+    }
+
+    /**
+     * Starts the subscription with the current members, or as soon as the first robot is added.
+     */
+    public synchronized void start() {
+        stopped = false;
+        apply();
+    }
+
+    /**
+     * Stops the subscription.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        if (pendingApply != null) {
+            pendingApply.cancel(false);
+            pendingApply = null;
+        }
+        if (client != null) {
+            client.stop();
+            client = null;
+        }
+        subscribed = Collections.emptySet();
+        withheld.clear();
+        generation++;
+    }
+
+    /**
+     * Drops the robots a refused selector is blamed on, or holds back half of the suspects when the
+     * error names none, and resubscribes with the others.
+     *
+     * @param status The server's error
+     * @param named The robots the error names in its details
+     */
+    private void evictRejected(Status status, Set<String> named) {
+        Set<String> rejected = new TreeSet<>();
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            generation++;
+            rejected.addAll(named);
+            rejected.retainAll(members);
+            if (rejected.isEmpty()) {
+                Set<String> suspects = new TreeSet<>(subscribed);
+                suspects.removeAll(accepted);
+                suspects.retainAll(members);
+                if (suspects.isEmpty()) {
+                    logger.warning("Managed subscription refused (" + status + ") but no robot could be blamed");
+                    return;
+                }
+                if (suspects.size() == 1) {
+                    rejected.addAll(suspects);
+                } else {
+                    List<String> ordered = List.copyOf(suspects);
+                    Set<String> held = new TreeSet<>(ordered.subList(ordered.size() / 2, ordered.size()));
+                    withheld.addAll(held);
+                    logger.info("Managed subscription refused (" + status + "); retrying without " + held);
+                }
+            }
+            if (!rejected.isEmpty()) {
+                members.removeAll(rejected);
+                withheld.removeAll(rejected);
+                for (String id : rejected) {
+                    tracker.reset(id);
+                }
+                logger.warning("Managed subscription dropped robots " + rejected + " refused by the server: " + status);
+            }
+
+            // The refused request may have ended the active call; start over with the remaining robots
+            if (client != null) {
+                client.stop();
+                client = null;
+            }
+            subscribed = Collections.emptySet();
+            apply();
+        }
+        if (rejectionListener != null && !rejected.isEmpty()) {
+            rejectionListener.accept(Collections.unmodifiableSet(rejected), status);
+        }
+    }
+
+    /**
+     * Marks the robots of a selector as accepted once it has gone unrefused, and lets held back robots rejoin.
+     *
+     * @param checked The generation the selector was applied in
+     */
+    private synchronized void acceptSubscribed(long checked) {
+        if (stopped || checked != generation) {
+            return;
+        }
+        accepted.addAll(subscribed);
+        if (!withheld.isEmpty()) {
+            withheld.clear();
+            apply();
+        }
+    }
+
+    /**
+     * Gets the robot IDs an error names in {@code google.rpc.ResourceInfo} details.
+     */
+    private static Set<String> namedRobots(Throwable t) {
+        com.google.rpc.Status details = StatusProto.fromThrowable(t);
+        if (details == null) {
+            return Collections.emptySet();
+        }
+        Set<String> named = new TreeSet<>();
+        for (Any detail : details.getDetailsList()) {
+            if (!detail.is(ResourceInfo.class)) {
+                continue;
+            }
+            try {
+                ResourceInfo resource = detail.unpack(ResourceInfo.class);
+                if (ROBOT_RESOURCE_TYPE.equalsIgnoreCase(resource.getResourceType())) {
+                    named.add(resource.getResourceName());
+                }
+            } catch (InvalidProtocolBufferException e) {
+                logger.log(Level.FINE, "Ignoring malformed error detail", e);
+            }
+        }
+        return named;
+    }
+
+    private synchronized void scheduleApply() {
+        if (stopped || pendingApply != null) {
+            return;
+        }
+        pendingApply = scheduler.schedule(() -> {
+            synchronized (this) {
+                pendingApply = null;
+                apply();
+            }
+        }, windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Must hold the lock
+    private void apply() {
+        if (stopped) {
+            return;
+        }
+        Set<String> target = new TreeSet<>(members);
+        target.removeAll(withheld);
+        if (target.isEmpty() && !withheld.isEmpty()) {
+            // Every remaining robot is held back; try them all again
+            withheld.clear();
+            target.addAll(members);
+        }
+        if (target.equals(subscribed)) {
+            return;
+        }
+        if (target.isEmpty()) {
+            // An empty selector is not a valid subscription; keep the stream and let the member filter drop events
+            logger.info("Managed subscription has no robots; events are suppressed until robots are added");
+            return;
+        }
+
+        TRequest request = requestFactory.apply(RobotSelector.newBuilder()
+                .setRobotIds(RobotSelector.RobotIDs.newBuilder().addAllIds(target))
+                .build());
+        if (client == null) {
+            client = new StreamingClient.Builder<>(clientBuilder).request(request).observer(memberObserver).build();
+            StreamingClient<TRequest, TResponse> started = client;
+            Thread streamThread = new Thread(() -> {
+                try {
+                    started.startStreaming();
+                } catch (InterruptedException e) {
+                    logger.log(Level.INFO, "Managed subscription thread interrupted", e);
+                    Thread.currentThread().interrupt();
+                }
+            }, "ManagedSubscription-Stream");
+            streamThread.setDaemon(true);
+            streamThread.start();
+        } else {
+            client.updateRequest(request);
+            swaps.incrementAndGet();
+        }
+        logger.info("Managed subscription now covers " + target.size() + " robots");
+        subscribed = target;
+        long applied = ++generation;
+        scheduler.schedule(() -> acceptSubscribed(applied), ACCEPT_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.streaming;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.FieldMask;
+import com.google.protobuf.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Field-level differences between two messages of the same type, expressed as a {@link FieldMask}.
+ *
+ * A path in the mask names a field whose value changed; the changed values travel in a partial
+ * message holding only the masked fields, and a masked field that is absent from the partial message
+ * was cleared. This is the update-mask convention of Google APIs, so consumers can apply a diff with
+ * any field mask merge that replaces masked fields.
+ */
+public final class MessageDiff {
+
+    private MessageDiff() {
+    }
+
+    /**
+     * Computes the paths of the fields that differ.
+     *
+     * Singular message fields present on both sides are compared field by field up to {@code maxDepth}
+     * levels; deeper differences, repeated fields and maps are reported at the deepest level reached.
+     * When every field of a sub-message changed, the sub-message's own path is reported instead of
+     * one path per field.
+     *
+     * @param previous The earlier message
+     * @param current The later message, of the same type
+     * @param maxDepth Number of path segments to descend, at least 1
+     * @return The changed paths, empty if the messages are equal
+     */
+    public static FieldMask diff(Message previous, Message current, int maxDepth) {
+        if (previous.getDescriptorForType() != current.getDescriptorForType()) {
+            throw new IllegalArgumentException("Cannot diff " + previous.getDescriptorForType().getFullName()
+                    + " with " + current.getDescriptorForType().getFullName());
+        }
+        List<String> paths = new ArrayList<>();
+        if (!previous.equals(current)) {
+            diff("", previous, current, Math.max(1, maxDepth), paths);
+        }
+        return FieldMask.newBuilder().addAllPaths(paths).build();
+    }
+
+    /**
+     * Copies the masked fields of a message into an otherwise empty message.
+     *
+     * @param message The message
+     * @param mask The fields to copy
+     * @param <T> The message type
+     * @return The partial message
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Message> T extract(T message, FieldMask mask) {
+        Message.Builder builder = message.newBuilderForType();
+        for (String path : mask.getPathsList()) {
+            copy(message, builder, path.split("\\."), 0);
+        }
+        return (T) builder.build();
+    }
+
+    /**
+     * Applies a diff: replaces the masked fields of a message with those of the partial message.
+     *
+     * @param previous The message the diff was computed against
+     * @param mask The changed paths
+     * @param changes The partial message from {@link #extract}
+     * @param <T> The message type
+     * @return The updated message
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Message> T apply(T previous, FieldMask mask, T changes) {
+        Message.Builder builder = previous.toBuilder();
+        for (String path : mask.getPathsList()) {
+            String[] parts = path.split("\\.");
+            clear(builder, parts, 0);
+            copy(changes, builder, parts, 0);
+        }
+        return (T) builder.build();
+    }
+
+    /**
+     * Collects the changed paths of two unequal messages.
+     *
+     * @param prefix Path of the messages, empty or ending with a dot
+     * @param previous The earlier message
+     * @param current The later message
+     * @param depth Remaining path segments to descend
+     * @param paths Receives the changed paths
+     * @return true if more than one field is set on either side and all of them changed
+     */
+    private static boolean diff(String prefix, Message previous, Message current, int depth, List<String> paths) {
+        int present = 0;
+        int changed = 0;
+        for (FieldDescriptor field : current.getDescriptorForType().getFields()) {
+            String path = prefix + field.getName();
+            boolean hasPrevious = isSet(previous, field);
+            boolean hasCurrent = isSet(current, field);
+            if (!hasPrevious && !hasCurrent) {
+                continue;
+            }
+            present++;
+            Object before = previous.getField(field);
+            Object after = current.getField(field);
+            if (hasPrevious == hasCurrent && before.equals(after)) {
+                continue;
+            }
+            changed++;
+            if (hasPrevious == hasCurrent && depth > 1 && !field.isRepeated()
+                    && field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+                List<String> children = new ArrayList<>();
+                if (diff(path + ".", (Message) before, (Message) after, depth - 1, children)) {
+                    paths.add(path);
+                } else {
+                    paths.addAll(children);
+                }
+            } else {
+                paths.add(path);
+            }
+        }
+        return present > 1 && changed == present;
+    }
+
+    private static boolean isSet(Message message, FieldDescriptor field) {
+        if (field.isRepeated()) {
+            return message.getRepeatedFieldCount(field) > 0;
+        }
+        if (field.hasPresence()) {
+            return message.hasField(field);
+        }
+        return !message.getField(field).equals(field.getDefaultValue());
+    }
+
+    /**
+     * Copies the field at a path from a message into a builder, if it is set.
+     */
+    private static void copy(Message source, Message.Builder target, String[] parts, int index) {
+        FieldDescriptor field = field(source.getDescriptorForType(), parts, index);
+        if (!isSet(source, field)) {
+            return;
+        }
+        if (index == parts.length - 1) {
+            target.setField(field, source.getField(field));
+        } else {
+            copy((Message) source.getField(field), target.getFieldBuilder(field), parts, index + 1);
+        }
+    }
+
+    /**
+     * Clears the field at a path in a builder.
+     */
+    private static void clear(Message.Builder target, String[] parts, int index) {
+        FieldDescriptor field = field(target.getDescriptorForType(), parts, index);
+        if (index == parts.length - 1) {
+            target.clearField(field);
+        } else if (target.hasField(field)) {
+            clear(target.getFieldBuilder(field), parts, index + 1);
+        }
+    }
+
+    /**
+     * Resolves one segment of a path.
+     *
+     * @param type The message type the segment belongs to
+     * @param parts The path segments
+     * @param index The segment to resolve
+     * @return The field
+     * @throws IllegalArgumentException If the field does not exist or cannot have sub-fields
+     */
+    private static FieldDescriptor field(Descriptor type, String[] parts, int index) {
+        FieldDescriptor field = type.findFieldByName(parts[index]);
+        if (field == null) {
+            throw new IllegalArgumentException("Unknown field " + parts[index] + " in " + type.getFullName());
+        }
+        if (index < parts.length - 1 && (field.isRepeated() || field.getJavaType() != FieldDescriptor.JavaType.MESSAGE)) {
+            throw new IllegalArgumentException("Field " + parts[index] + " is not a singular message");
+        }
+        return field;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.streaming;
+
+/**
+ * What a bounded event queue does with an event that arrives while it is full.
+ * Either way the event stream keeps flowing without blocking the gRPC transport thread,
+ * and the dropped events are counted.
+ */
+public enum OverflowPolicy {
+    /**
+     * Drop the oldest queued event to make room, so consumers see the most recent state.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Drop the arriving event, so the queued events are delivered as they were received.
+     */
+    DROP_NEWEST
+}
@@ -0,0 +1,323 @@
+package com.example.streaming;
+
+import com.example.metrics.LatencyHistogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Dispatches stream callbacks on one lane per {@link StreamPriority}.
+ *
+ * Every lane has a dedicated thread, so safety callbacks never wait behind a telemetry backlog for
+ * a free thread. Scheduling between lanes is strict priority: a lane only runs a task while all
+ * higher lanes are idle, so a burst of pose updates cannot compete with an e-stop notification for CPU.
+ * Within a lane, tasks run in submission order, which keeps each stream's callbacks ordered.
+ *
+ * For every lane the dispatcher records the time from submission to the start of the callback in a
+ * {@link LatencyHistogram} and counts callbacks that started later than the lane's latency objective.
+ *
+ * Each lane holds at most {@code laneCapacity} callbacks; when a lane is full, a callback is dropped
+ * according to the {@link OverflowPolicy} and counted (see {@link #getDroppedCount}), so a starved lower
+ * lane cannot grow without bound while higher lanes stay busy. Callbacks wrapped with
+ * {@link #unsheddable}, such as a stream's {@code onError} and {@code onCompleted}, are never dropped
+ * and do not count against the capacity.
+ */
+public class PriorityDispatcher {
+    private static final Logger logger = Logger.getLogger(PriorityDispatcher.class.getName());
+
+    // How long a lower lane waits before checking again whether higher lanes have drained
+    private static final long YIELD_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final Runnable POISON = () -> { };
+    private static final int DEFAULT_LANE_CAPACITY = 10_000;
+
+    private final Lane[] lanes;
+    private final int laneCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private volatile boolean running = true;
+
+    /**
+     * Creates a dispatcher using each priority's default latency objective.
+     */
+    public PriorityDispatcher() {
+        this(new EnumMap<>(StreamPriority.class));
+    }
+
+    /**
+     * Creates a dispatcher with custom latency objectives.
+     *
+     * @param sloNanos Latency objective per priority in nanoseconds; missing priorities use their default
+     */
+    public PriorityDispatcher(Map<StreamPriority, Long> sloNanos) {
+        this(sloNanos, DEFAULT_LANE_CAPACITY, OverflowPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * Creates a dispatcher with custom latency objectives and lane bounds.
+     *
+     * @param sloNanos Latency objective per priority in nanoseconds; missing priorities use their default
+     * @param laneCapacity Maximum number of callbacks waiting on each lane
+     * @param overflowPolicy Which callback is dropped when a lane is full
+     */
+    public PriorityDispatcher(Map<StreamPriority, Long> sloNanos, int laneCapacity, OverflowPolicy overflowPolicy) {
+        if (laneCapacity < 1) {
+            throw new IllegalArgumentException("laneCapacity must be positive");
+        }
+        this.laneCapacity = laneCapacity;
+        this.overflowPolicy = overflowPolicy;
+        StreamPriority[] priorities = StreamPriority.values();
+        this.lanes = new Lane[priorities.length];
+        for (StreamPriority priority : priorities) {
+            long slo = sloNanos.getOrDefault(priority, priority.getDefaultSloNanos());
+            lanes[priority.ordinal()] = new Lane(priority, slo);
+        }
+        for (Lane lane : lanes) {
+            lane.thread.start();
+        }
+    }
+
+    /**
+     * Marks a callback that must not be dropped when its lane is full, e.g. a stream's terminal callback.
+     * Other executors run it like any other task.
+     *
+     * @param callback The callback
+     * @return The callback, marked as unsheddable
+     */
+    public static Runnable unsheddable(Runnable callback) {
+        return new Unsheddable(callback);
+    }
+
+    /**
+     * Gets the executor for a priority lane.
+     *
+     * @param priority The priority
+     * @return An executor running tasks in order on the lane's thread
+     */
+    public Executor lane(StreamPriority priority) {
+        return lanes[priority.ordinal()];
+    }
+
+    /**
+     * Gets the dispatch latency histogram of a lane, in nanoseconds.
+     *
+     * @param priority The priority
+     * @return The live histogram
+     */
+    public LatencyHistogram getLatencyHistogram(StreamPriority priority) {
+        return lanes[priority.ordinal()].latency;
+    }
+
+    /**
+     * Gets the number of callbacks on a lane that started later than its latency objective.
+     *
+     * @param priority The priority
+     * @return The SLO violation count
+     */
+    public long getSloViolations(StreamPriority priority) {
+        return lanes[priority.ordinal()].violations.get();
+    }
+
+    /**
+     * Gets the number of callbacks a lane dropped because it was full.
+     *
+     * @param priority The priority
+     * @return The dropped count
+     */
+    public long getDroppedCount(StreamPriority priority) {
+        return lanes[priority.ordinal()].dropped.get();
+    }
+
+    /**
+     * Gets the number of tasks waiting on a lane.
+     *
+     * @param priority The priority
+     * @return The backlog
+     */
+    public int getBacklog(StreamPriority priority) {
+        return lanes[priority.ordinal()].queue.size();
+    }
+
+    /**
+     * Logs p50/p99/max dispatch latency and SLO violations for every lane.
+     */
+    public void logStats() {
+        for (Lane lane : lanes) {
+            logger.info(String.format("Lane %s: %d dispatched, p50=%.2fms p99=%.2fms max=%.2fms, %d over %dms SLO, backlog %d, %d dropped",
+                    lane.priority, lane.latency.getCount(),
+                    lane.latency.getValueAtPercentile(50) / 1e6,
+                    lane.latency.getValueAtPercentile(99) / 1e6,
+                    lane.latency.getMax() / 1e6,
+                    lane.violations.get(), TimeUnit.NANOSECONDS.toMillis(lane.sloNanos), lane.queue.size(),
+                    lane.dropped.get()));
+        }
+    }
+
+    /**
+     * Stops all lanes after the tasks already submitted have run.
+     *
+     * @throws InterruptedException If interrupted while waiting for the lanes to drain
+     */
+    public void shutdown() throws InterruptedException {
+        running = false;
+        for (Lane lane : lanes) {
+            lane.offer(POISON);
+        }
+        for (Lane lane : lanes) {
+            lane.thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        logger.info("Priority dispatcher stopped");
+    }
+
+    private boolean higherLanesBusy(int ordinal) {
+        for (int i = 0; i < ordinal; i++) {
+            if (lanes[i].busy.get() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A single priority lane.
+     */
+    private final class Lane implements Executor {
+        private final StreamPriority priority;
+        private final long sloNanos;
+        private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+        // Tasks queued or running; lower lanes yield while this is non-zero
+        private final AtomicInteger busy = new AtomicInteger();
+        // Queued tasks that may be dropped; only these count against the lane capacity
+        private final AtomicInteger sheddable = new AtomicInteger();
+        private final AtomicLong dropped = new AtomicLong();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong violations = new AtomicLong();
+        private final Thread thread;
+
+        Lane(StreamPriority priority, long sloNanos) {
+            this.priority = priority;
+            this.sloNanos = sloNanos;
+            this.thread = new Thread(this::run, "PriorityDispatcher-" + priority);
+            thread.setDaemon(true);
+            // A hint only; strict priority is enforced by the yielding below
+            thread.setPriority(Thread.NORM_PRIORITY + (StreamPriority.values().length - 1 - priority.ordinal()));
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (!running) {
+                throw new RejectedExecutionException("Priority dispatcher is shut down");
+            }
+            Task task = new Task(command, System.nanoTime());
+            if (task.sheddable && sheddable.incrementAndGet() > laneCapacity && !shed()) {
+                sheddable.decrementAndGet();
+                return;
+            }
+            busy.incrementAndGet();
+            queue.offer(task);
+        }
+
+        /**
+         * Makes room for a new task according to the overflow policy.
+         *
+         * @return true if the new task may be queued
+         */
+        private boolean shed() {
+            if (dropped.getAndIncrement() == 0) {
+                logger.warning("Lane " + priority + " is full; dropping callbacks");
+            }
+            if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                return false;
+            }
+            for (Task queued : queue) {
+                // The lane thread may take the task first; then try the next one
+                if (queued.sheddable && queue.remove(queued)) {
+                    sheddable.decrementAndGet();
+                    busy.decrementAndGet();
+                    return true;
+                }
+            }
+            // The lane drained in the meantime
+            return true;
+        }
+
+        void offer(Runnable poison) {
+            queue.offer(new Task(poison, System.nanoTime()));
+        }
+
+        private void run() {
+            int ordinal = priority.ordinal();
+            while (true) {
+                Task task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (task.command == POISON) {
+                    return;
+                }
+                if (task.sheddable) {
+                    sheddable.decrementAndGet();
+                }
+
+                while (higherLanesBusy(ordinal)) {
+                    LockSupport.parkNanos(YIELD_NANOS);
+                }
+
+                long waited = System.nanoTime() - task.submittedNanos;
+                latency.record(waited);
+                if (waited > sloNanos) {
+                    violations.incrementAndGet();
+                }
+                try {
+                    task.command.run();
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, "Error in " + priority + " callback", e);
+                } finally {
+                    busy.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * A submitted callback with its submission time.
+     */
+    private static final class Task {
+        private final Runnable command;
+        private final long submittedNanos;
+        private final boolean sheddable;
+
+        Task(Runnable command, long submittedNanos) {
+            this.command = command;
+            this.submittedNanos = submittedNanos;
+            this.sheddable = command != POISON && !(command instanceof Unsheddable);
+        }
+    }
+
+    /**
+     * A callback that is never dropped.
+     */
+    private static final class Unsheddable implements Runnable {
+        private final Runnable callback;
+
+        Unsheddable(Runnable callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            callback.run();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.streaming;
+
+import com.google.protobuf.FieldMask;
+
+import bearrobotics.api.v1.core.Metadata.EventMetadata;
+import bearrobotics.api.v1.core.RobotStatus.RobotState;
+
+/**
+ * The change of one robot's state between two robot status events, produced by {@link RobotStateDiffer}.
+ *
+ * A full diff carries the complete state and is sent for the first event of a robot; any other diff
+ * carries only the changed fields, named by its field mask (see {@link MessageDiff}).
+ */
+public class RobotStateDiff {
+    private final String robotId;
+    private final EventMetadata metadata;
+    private final boolean full;
+    private final FieldMask changedFields;
+    private final RobotState changes;
+
+    /**
+     * Creates a diff.
+     *
+     * @param robotId The robot ID
+     * @param metadata Metadata of the event the diff was computed from
+     * @param full Whether the diff carries the complete state
+     * @param changedFields The changed paths; empty for a full diff
+     * @param changes The complete state for a full diff, otherwise only the changed fields
+     */
+    public RobotStateDiff(String robotId, EventMetadata metadata, boolean full, FieldMask changedFields, RobotState changes) {
+        this.robotId = robotId;
+        this.metadata = metadata;
+        this.full = full;
+        this.changedFields = changedFields;
+        this.changes = changes;
+    }
+
+    public String getRobotId() {
+        return robotId;
+    }
+
+    public EventMetadata getMetadata() {
+        return metadata;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public FieldMask getChangedFields() {
+        return changedFields;
+    }
+
+    public RobotState getChanges() {
+        return changes;
+    }
+
+    /**
+     * Reconstructs the robot's state from the state before the diff.
+     *
+     * @param previous The previous state; ignored for a full diff
+     * @return The state after the diff
+     */
+    public RobotState applyTo(RobotState previous) {
+        return full ? changes : MessageDiff.apply(previous, changedFields, changes);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.streaming;
+
+import com.google.protobuf.FieldMask;
+import io.grpc.stub.StreamObserver;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import bearrobotics.api.v1.core.RobotStatus.RobotState;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusResponse;
+
+/**
+ * Stream observer that turns full robot status events into field-level diffs.
+ *
+ * Each event is compared with the previous state of its robot; events that change nothing are
+ * suppressed, and all others are forwarded as a {@link RobotStateDiff} carrying only the changed
+ * fields, so a fan-out to dashboards sends pose or battery changes without the rest of the state.
+ * The first event of a robot is forwarded in full. Place a {@link DeduplicatingObserver} in front
+ * so replayed events are not diffed against newer state.
+ */
+public class RobotStateDiffer implements StreamObserver<SubscribeRobotStatusResponse> {
+    private final StreamObserver<RobotStateDiff> delegate;
+    private final int maxDepth;
+    private final ConcurrentMap<String, RobotState> states = new ConcurrentHashMap<>();
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    /**
+     * Creates a differ reporting changes down to the fields of top-level sub-messages,
+     * e.g. {@code battery.charge_percent}.
+     *
+     * @param delegate The observer to forward diffs to
+     */
+    public RobotStateDiffer(StreamObserver<RobotStateDiff> delegate) {
+        this(delegate, 2);
+    }
+
+    /**
+     * Creates a differ.
+     *
+     * @param delegate The observer to forward diffs to
+     * @param maxDepth Number of path segments changes are reported at; 1 reports changed top-level fields
+     */
+    public RobotStateDiffer(StreamObserver<RobotStateDiff> delegate, int maxDepth) {
+        this.delegate = delegate;
+        this.maxDepth = maxDepth;
+    }
+
+    @Override
+    public void onNext(SubscribeRobotStatusResponse response) {
+        RobotState current = response.getRobotState();
+        RobotState previous = states.put(response.getRobotId(), current);
+        if (previous == null) {
+            forwarded.incrementAndGet();
+            delegate.onNext(new RobotStateDiff(response.getRobotId(), response.getMetadata(), true,
+                    FieldMask.getDefaultInstance(), current));
+            return;
+        }
+        FieldMask mask = MessageDiff.diff(previous, current, maxDepth);
+        if (mask.getPathsCount() == 0) {
+            suppressed.incrementAndGet();
+            return;
+        }
+        forwarded.incrementAndGet();
+        delegate.onNext(new RobotStateDiff(response.getRobotId(), response.getMetadata(), false,
+                mask, MessageDiff.extract(current, mask)));
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        delegate.onError(t);
+    }
+
+    @Override
+    public void onCompleted() {
+        delegate.onCompleted();
+    }
+
+    /**
+     * Forgets all previous states, so the next event of every robot is forwarded in full,
+     * e.g. after the downstream consumer reconnected and lost its state.
+     */
+    public void reset() {
+        states.clear();
+    }
+
+    /**
+     * Gets the number of diffs forwarded.
+     *
+     * @return The forwarded count
+     */
+    public long getForwardedCount() {
+        return forwarded.get();
+    }
+
+    /**
+     * Gets the number of events suppressed because nothing changed.
+     *
+     * @return The suppressed count
+     */
+    public long getSuppressedCount() {
+        return suppressed.get();
+    }
+}
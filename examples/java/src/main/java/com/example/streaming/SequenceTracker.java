@@ -0,0 +1,78 @@
+package com.example.streaming;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the latest {@code EventMetadata.sequence_number} seen per robot.
+ *
+ * Follows the sequence rules of the API: a sequence number is valid if it is larger than
+ * the previous number for the robot, or 0 after the robot resets its counter. A reset is accepted
+ * once: a 0 while the last accepted number is already 0 is the same reset event delivered again,
+ * e.g. by both a stream and a webhook. Anything else is a duplicate or an out-of-date event and
+ * should be discarded.
+ * The tracker is thread-safe, so a stream and a webhook receiver delivering the same
+ * events can share one instance.
+ */
+public class SequenceTracker {
+    private static final long NONE = -1;
+
+    private final ConcurrentMap<String, AtomicLong> lastSequence = new ConcurrentHashMap<>();
+
+    /**
+     * Records a sequence number if it is newer than the last one accepted for the robot.
+     *
+     * @param robotId The robot the event belongs to
+     * @param sequenceNumber The event's sequence number
+     * @return true if the event is new and should be delivered, false if it is a duplicate or stale
+     */
+    public boolean accept(String robotId, long sequenceNumber) {
+        AtomicLong last = lastSequence.computeIfAbsent(robotId, id -> new AtomicLong(NONE));
+        while (true) {
+            long previous = last.get();
+            if (!isNewer(sequenceNumber, previous)) {
+                return false;
+            }
+            if (last.compareAndSet(previous, sequenceNumber)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Checks whether a sequence number would be accepted, without recording it.
+     *
+     * @param robotId The robot the event belongs to
+     * @param sequenceNumber The event's sequence number
+     * @return true if the event is newer than the last accepted one
+     */
+    public boolean isNewer(String robotId, long sequenceNumber) {
+        AtomicLong last = lastSequence.get(robotId);
+        return last == null || isNewer(sequenceNumber, last.get());
+    }
+
+    /**
+     * Gets the last accepted sequence number for a robot.
+     *
+     * @param robotId The robot ID
+     * @return The last accepted sequence number, or -1 if none was seen
+     */
+    public long lastSequence(String robotId) {
+        AtomicLong last = lastSequence.get(robotId);
+        return last != null ? last.get() : NONE;
+    }
+
+    private static boolean isNewer(long sequenceNumber, long previous) {
+        return sequenceNumber == 0 ? previous != 0 : sequenceNumber > previous;
+    }
+
+    /**
+     * Forgets the sequence state of a robot.
+     *
+     * @param robotId The robot ID
+     */
+    public void reset(String robotId) {
+        lastSequence.remove(robotId);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.streaming;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when a stream has gone silent for longer than its own history makes plausible.
+ *
+ * The detector learns each stream's expected event rate as an exponentially weighted moving average
+ * of the gaps between events, and considers the stream stalled once it has been silent for several
+ * average gaps. The threshold is clamped between a minimum (so a high-rate pose stream is not recycled
+ * on a brief hiccup) and a maximum (so a low-rate e-stop stream is still checked eventually).
+ * When a replacement stream fails to prove the old one stalled, the threshold backs off.
+ *
+ * Instances are confined to one stream and are thread-safe.
+ */
+public class StallDetector {
+    private static final double ALPHA = 0.1;
+    private static final double GAP_MULTIPLIER = 8.0;
+    private static final int MAX_BACKOFF = 16;
+
+    private final long minStallNanos;
+    private final long maxStallNanos;
+
+    private long lastEventNanos;
+    private double averageGapNanos = -1;
+    private int backoff = 1;
+
+    /**
+     * Creates a stall detector.
+     *
+     * @param minStall Shortest silence considered a stall
+     * @param maxStall Longest silence tolerated before a stall is assumed, also used before any event arrives
+     * @param unit Unit of both bounds
+     */
+    public StallDetector(long minStall, long maxStall, TimeUnit unit) {
+        if (minStall <= 0 || maxStall < minStall) {
+            throw new IllegalArgumentException("Stall bounds must satisfy 0 < minStall <= maxStall");
+        }
+        this.minStallNanos = unit.toNanos(minStall);
+        this.maxStallNanos = unit.toNanos(maxStall);
+        this.lastEventNanos = System.nanoTime();
+    }
+
+    /**
+     * Records an event arrival.
+     *
+     * @param nowNanos The arrival time from {@link System#nanoTime()}
+     */
+    public synchronized void onEvent(long nowNanos) {
+        long gap = nowNanos - lastEventNanos;
+        averageGapNanos = averageGapNanos < 0 ? gap : averageGapNanos + ALPHA * (gap - averageGapNanos);
+        lastEventNanos = nowNanos;
+        backoff = 1;
+    }
+
+    /**
+     * Forgets the learned event rate and backoff and restarts the silence timer, for a new call.
+     *
+     * @param nowNanos The current time from {@link System#nanoTime()}
+     */
+    public synchronized void reset(long nowNanos) {
+        lastEventNanos = nowNanos;
+        averageGapNanos = -1;
+        backoff = 1;
+    }
+
+    /**
+     * Records that a replacement stream delivered nothing either, so the silence was genuine,
+     * and doubles the threshold until the next event.
+     *
+     * @param nowNanos The current time from {@link System#nanoTime()}
+     */
+    public synchronized void probeFailed(long nowNanos) {
+        backoff = Math.min(backoff * 2, MAX_BACKOFF);
+        lastEventNanos = nowNanos;
+    }
+
+    /**
+     * Gets the current stall threshold.
+     *
+     * @return The longest tolerated silence in nanoseconds
+     */
+    public synchronized long getThresholdNanos() {
+        double base = averageGapNanos < 0 ? maxStallNanos : GAP_MULTIPLIER * averageGapNanos;
+        double clamped = Math.min(maxStallNanos, Math.max(minStallNanos, base));
+        return (long) Math.min(clamped * backoff, (double) maxStallNanos * MAX_BACKOFF);
+    }
+
+    /**
+     * Checks whether the stream has been silent for longer than the threshold.
+     *
+     * @param nowNanos The current time from {@link System#nanoTime()}
+     * @return true if the stream is considered stalled
+     */
+    public synchronized boolean isStalled(long nowNanos) {
+        return nowNanos - lastEventNanos > getThresholdNanos();
+    }
+}
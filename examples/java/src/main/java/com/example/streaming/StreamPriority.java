@@ -0,0 +1,39 @@
+package com.example.streaming;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Priority classes for stream callbacks, highest first.
+ * Each class is dispatched on its own lane of a {@link PriorityDispatcher}.
+ */
+public enum StreamPriority {
+    /**
+     * Events that need an immediate reaction: emergency stop, error codes, stuck state.
+     */
+    SAFETY(50),
+
+    /**
+     * Ordinary state changes: robot status, missions, online status.
+     */
+    STATUS(250),
+
+    /**
+     * High-rate telemetry: pose, battery, network and tray updates.
+     */
+    TELEMETRY(1000);
+
+    private final long defaultSloMillis;
+
+    StreamPriority(long defaultSloMillis) {
+        this.defaultSloMillis = defaultSloMillis;
+    }
+
+    /**
+     * Gets the default dispatch latency objective for the class.
+     *
+     * @return The objective in nanoseconds
+     */
+    public long getDefaultSloNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(defaultSloMillis);
+    }
+}
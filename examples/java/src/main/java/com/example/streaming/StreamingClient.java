@@ -2,12 +2,21 @@ package com.example.streaming;
 
 import com.example.auth.JwtCredentials;
 import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
 import io.grpc.stub.StreamObserver;
 
 import java.util.EnumSet;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,13 +38,37 @@ public class StreamingClient<TRequest, TResponse> {
         Status.Code.UNAUTHENTICATED     // Authentication failure - handled separately
     );
 
+    // Upper bound of the random delay before a failover, so streams dropped together do not reconnect in lockstep
+    private static final long FAILOVER_JITTER_MS = 250;
+
+    // Checks streams with stall detection enabled for silence
+    private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "StreamingClient-Watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final StreamingRpcMethod<TRequest, TResponse> rpcMethod;
-    private final TRequest request;
+    // The request of the active call; a new request only replaces it once its call is live
+    private volatile TRequest request;
     private final StreamObserver<TResponse> observer;
     private final AtomicBoolean running = new AtomicBoolean(true);
     private final String streamName;
     private final int reconnectDelaySeconds;
     private final JwtCredentials credentials;
+    private final Predicate<? super TResponse> filter;
+    private final Executor callbackExecutor;
+    private final StallDetector stallDetector;
+    private final boolean immediateFailover;
+    private final long failoverMinHealthyNanos;
+
+    // The call delivering events, and a replacement opened for it that has not delivered yet
+    private final Object attemptLock = new Object();
+    private Attempt activeAttempt;
+    private Attempt standbyAttempt;
+    private long standbyStartedNanos;
+    private volatile StreamObserver<TResponse> downstream;
+    private volatile ScheduledFuture<?> watchdogTask;
 
     /**
      * Creates a new streaming client.
@@ -70,12 +103,39 @@ public class StreamingClient<TRequest, TResponse> {
                           String streamName,
                           int reconnectDelaySeconds,
                           JwtCredentials credentials) {
-        this.rpcMethod = rpcMethod;
-        this.request = request;
-        this.observer = observer;
-        this.streamName = streamName;
-        this.reconnectDelaySeconds = reconnectDelaySeconds;
-        this.credentials = credentials;
+        this(new Builder<TRequest, TResponse>()
+                .rpcMethod(rpcMethod)
+                .request(request)
+                .observer(observer)
+                .streamName(streamName)
+                .reconnectDelay(reconnectDelaySeconds)
+                .credentials(credentials));
+    }
+
+    /**
+     * Creates a streaming client from a builder's settings; the builder has validated them.
+     * Filtering, callback executors, striping, stall detection and failover are only set through the {@link Builder}.
+     *
+     * @param builder The builder
+     */
+    StreamingClient(Builder<TRequest, TResponse> builder) {
+        this.rpcMethod = builder.rpcMethod;
+        this.request = builder.request;
+        this.observer = builder.splitter != null
+                ? new StripedObserver<>(builder.observer, builder.splitter, builder.stripes,
+                        builder.stripeCapacity, builder.stripeOverflowPolicy)
+                : builder.observer;
+        this.streamName = builder.streamName;
+        this.reconnectDelaySeconds = builder.reconnectDelaySeconds;
+        this.credentials = builder.credentials;
+        this.filter = builder.filter;
+        this.callbackExecutor = builder.callbackExecutor;
+        // Each client gets its own detector, since it learns the stream's event rate
+        this.stallDetector = builder.minStallNanos > 0
+                ? new StallDetector(builder.minStallNanos, builder.maxStallNanos, TimeUnit.NANOSECONDS)
+                : null;
+        this.immediateFailover = builder.immediateFailover;
+        this.failoverMinHealthyNanos = builder.failoverMinHealthyNanos;
     }
 
     /**
@@ -91,11 +151,21 @@ public class StreamingClient<TRequest, TResponse> {
         final CountDownLatch terminationLatch = new CountDownLatch(1);
 
         // Create the stream observer with reconnection logic
-        startStreamingWithReconnect(new StreamObserver<TResponse>() {
+        downstream = new StreamObserver<TResponse>() {
             @Override
             public void onNext(TResponse response) {
                 try {
-                    observer.onNext(response);
+                    // Drop events that do not match the client-side filter before they reach the callback
+                    if (filter != null && !filter.test(response)) {
+                        return;
+                    }
+                    dispatch(() -> {
+                        try {
+                            observer.onNext(response);
+                        } catch (Exception e) {
+                            logger.log(Level.WARNING, "Error in response callback for " + streamName, e);
+                        }
+                    });
                 } catch (Exception e) {
                     logger.log(Level.WARNING, "Error in response callback for " + streamName, e);
                 }
@@ -111,11 +181,13 @@ public class StreamingClient<TRequest, TResponse> {
                         new Object[]{t.getMessage(), code});
 
                 // Call user's error callback
-                try {
-                    observer.onError(t);
-                } catch (Exception e) {
-                    logger.log(Level.WARNING, "Error in error callback for " + streamName, e);
-                }
+                dispatchTerminal(() -> {
+                    try {
+                        observer.onError(t);
+                    } catch (Exception e) {
+                        logger.log(Level.WARNING, "Error in error callback for " + streamName, e);
+                    }
+                });
 
                 // Check if we should retry based on the status code
                 boolean shouldRetry = running.get() && RETRYABLE_STATUS_CODES.contains(code);
@@ -138,11 +210,13 @@ public class StreamingClient<TRequest, TResponse> {
                 logger.info(streamName + " streaming completed by server");
 
                 // Call user's completion callback
-                try {
-                    observer.onCompleted();
-                } catch (Exception e) {
-                    logger.log(Level.WARNING, "Error in completion callback for " + streamName, e);
-                }
+                dispatchTerminal(() -> {
+                    try {
+                        observer.onCompleted();
+                    } catch (Exception e) {
+                        logger.log(Level.WARNING, "Error in completion callback for " + streamName, e);
+                    }
+                });
 
                 // Only count down if we're shutting down
                 if (!running.get()) {
@@ -153,12 +227,24 @@ public class StreamingClient<TRequest, TResponse> {
                     terminationLatch.countDown();
                 }
             }
-        });
+        };
+        startStreamingWithReconnect(downstream, false, request);
+
+        // Check for silent streams while the subscription runs
+        if (stallDetector != null) {
+            watchdogTask = watchdog.scheduleWithFixedDelay(this::checkStall, 1, 1, TimeUnit.SECONDS);
+        }
 
         // Wait indefinitely for the application to be terminated
         logger.info(streamName + " subscription is active and will run indefinitely until application shutdown or non-retryable error");
         logger.info("Will only reconnect on status codes: UNAVAILABLE, INTERNAL, DEADLINE_EXCEEDED, UNAUTHENTICATED");
-        terminationLatch.await();
+        try {
+            terminationLatch.await();
+        } finally {
+            if (watchdogTask != null) {
+                watchdogTask.cancel(false);
+            }
+        }
     }
 
     /**
@@ -167,6 +253,73 @@ public class StreamingClient<TRequest, TResponse> {
     public void stop() {
         logger.info("Stopping " + streamName + " streaming...");
         running.set(false);
+        if (watchdogTask != null) {
+            watchdogTask.cancel(false);
+        }
+        // Cancel the calls first so no stream thread is still handing events to the stripes
+        cancelAttempts(streamName + " stopped");
+        if (observer instanceof StripedObserver) {
+            ((StripedObserver<?>) observer).shutdown();
+        }
+    }
+
+    /**
+     * Gets the number of events dropped because a stripe's queue was full.
+     *
+     * @return The dropped count, always 0 for a client that is not {@link Builder#striped striped}
+     */
+    public long getDroppedCount() {
+        return observer instanceof StripedObserver ? ((StripedObserver<?>) observer).getDroppedCount() : 0;
+    }
+
+    /**
+     * Changes the request of a running subscription without a gap in delivery.
+     * A call with the new request is opened next to the current one, and the current call is
+     * cancelled once the new call delivers its first event. Until then events keep arriving from
+     * the current call. Calling this again before the switch replaces the pending call.
+     * The new request only takes effect once its call delivers; until then reconnects use the current one.
+     * If the server refuses the new request with a status that is not retried, e.g.
+     * {@code INVALID_ARGUMENT}, the error is passed to the observer and the subscription keeps the
+     * current request.
+     *
+     * @param newRequest The request to subscribe with from now on, e.g. with a different robot selector
+     */
+    public void updateRequest(TRequest newRequest) {
+        boolean open;
+        synchronized (attemptLock) {
+            open = running.get() && activeAttempt != null && downstream != null;
+            if (!open) {
+                // Without an active call the next reconnect picks up the new request
+                this.request = newRequest;
+            }
+        }
+        if (open) {
+            logger.info("Updating " + streamName + " subscription; opening a replacement stream");
+            startStreamingWithReconnect(downstream, true, newRequest);
+        }
+    }
+
+    /**
+     * Runs a user callback on the callback executor, or directly if there is none.
+     *
+     * @param callback The callback to run
+     */
+    private void dispatch(Runnable callback) {
+        if (callbackExecutor == null) {
+            callback.run();
+        } else {
+            callbackExecutor.execute(callback);
+        }
+    }
+
+    /**
+     * Runs a terminal callback ({@code onError} or {@code onCompleted}), which a bounded
+     * {@link PriorityDispatcher} lane never drops.
+     *
+     * @param callback The callback to run
+     */
+    private void dispatchTerminal(Runnable callback) {
+        dispatch(PriorityDispatcher.unsheddable(callback));
     }
 
     /**
@@ -174,12 +327,45 @@ public class StreamingClient<TRequest, TResponse> {
      * This only reconnects for specific status codes.
      *
      * @param observer The observer to receive events
+     * @param standby Whether to open the call as a replacement for the active one
+     * @param callRequest The request to open the call with
      */
-    private void startStreamingWithReconnect(StreamObserver<TResponse> observer) {
+    private void startStreamingWithReconnect(StreamObserver<TResponse> observer, boolean standby, TRequest callRequest) {
+        Attempt attempt = new Attempt(callRequest);
+        Attempt replaced = null;
+        synchronized (attemptLock) {
+            if (standby) {
+                replaced = standbyAttempt;
+                standbyAttempt = attempt;
+                standbyStartedNanos = System.nanoTime();
+            } else {
+                activeAttempt = attempt;
+            }
+        }
+        if (replaced != null) {
+            replaced.cancel("Superseded by a newer " + streamName + " stream");
+        }
+        if (stallDetector != null && !standby) {
+            // A new call may land on another endpoint; learn its rate from scratch
+            stallDetector.reset(System.nanoTime());
+        }
+
         // Create a wrapper observer that handles reconnection
-        StreamObserver<TResponse> reconnectingObserver = new StreamObserver<TResponse>() {
+        ClientResponseObserver<TRequest, TResponse> reconnectingObserver = new ClientResponseObserver<TRequest, TResponse>() {
+            @Override
+            public void beforeStart(ClientCallStreamObserver<TRequest> requestStream) {
+                // Keep a handle on the call so it can be cancelled when it is replaced or stopped
+                attempt.call = requestStream;
+            }
+
             @Override
             public void onNext(TResponse response) {
+                if (!acceptEvent(attempt)) {
+                    return;
+                }
+                if (stallDetector != null) {
+                    stallDetector.onEvent(System.nanoTime());
+                }
                 observer.onNext(response);
             }
 
@@ -197,19 +383,70 @@ public class StreamingClient<TRequest, TResponse> {
                     }
                 }
 
+                // Calls that were replaced or are still on standby do not affect the subscription
+                Attempt replacement;
+                boolean rejected;
+                synchronized (attemptLock) {
+                    if (attempt == standbyAttempt) {
+                        standbyAttempt = null;
+                        logger.info("Replacement " + streamName + " stream failed before delivering (" + code + ")");
+                        // A new request the server refuses would be refused on every retry; tell the owner
+                        rejected = !RETRYABLE_STATUS_CODES.contains(code)
+                                && (activeAttempt == null || attempt.request != activeAttempt.request);
+                        if (!rejected) {
+                            return;
+                        }
+                        replacement = null;
+                    } else if (attempt != activeAttempt) {
+                        return;
+                    } else {
+                        rejected = false;
+                        activeAttempt = null;
+                        replacement = standbyAttempt;
+                    }
+                }
+                if (rejected) {
+                    // The current call keeps running with the previous request
+                    dispatchTerminal(() -> {
+                        try {
+                            StreamingClient.this.observer.onError(t);
+                        } catch (Exception e) {
+                            logger.log(Level.WARNING, "Error in error callback for " + streamName, e);
+                        }
+                    });
+                    return;
+                }
+
                 // Forward the error to the original observer
                 observer.onError(t);
 
                 // Attempt to reconnect only for specific status codes and if we're still running
                 if (running.get() && RETRYABLE_STATUS_CODES.contains(code)) {
+                    // A replacement call is already open; switch to it instead of reconnecting
+                    synchronized (attemptLock) {
+                        if (replacement != null && replacement == standbyAttempt) {
+                            activeAttempt = replacement;
+                            standbyAttempt = null;
+                            request = replacement.request;
+                            logger.info("Switching " + streamName + " to its replacement stream after error (" + code + ")");
+                            return;
+                        }
+                    }
                     try {
-                        logger.info("Reconnecting after error (" + code + ") in " + reconnectDelaySeconds + " seconds...");
-                        Thread.sleep(reconnectDelaySeconds * 1000); // Wait before reconnecting
+                        if (immediateFailover && code == Status.Code.UNAVAILABLE && attempt.wasHealthyFor(failoverMinHealthyNanos)) {
+                            // The endpoint went away; the balancer routes the new call to a healthy one
+                            long jitterMs = ThreadLocalRandom.current().nextLong(FAILOVER_JITTER_MS + 1);
+                            logger.info("Failing over " + streamName + " to another endpoint after error (" + code + ") in " + jitterMs + " ms");
+                            Thread.sleep(jitterMs);
+                        } else {
+                            logger.info("Reconnecting after error (" + code + ") in " + reconnectDelaySeconds + " seconds...");
+                            Thread.sleep(reconnectDelaySeconds * 1000); // Wait before reconnecting
+                        }
 
                         // Subscribe again if we're still running
                         if (running.get()) {
                             logger.info("Resubscribing to " + streamName);
-                            startStreamingWithReconnect(observer);
+                            startStreamingWithReconnect(observer, false, request);
                         }
                     } catch (InterruptedException e) {
                         logger.log(Level.WARNING, "Reconnection interrupted for " + streamName, e);
@@ -217,11 +454,24 @@ public class StreamingClient<TRequest, TResponse> {
                     }
                 } else {
                     logger.info("Not reconnecting for status code: " + code);
+                    cancelAttempts("Subscription ended");
                 }
             }
 
             @Override
             public void onCompleted() {
+                synchronized (attemptLock) {
+                    if (attempt == standbyAttempt) {
+                        standbyAttempt = null;
+                        return;
+                    }
+                    if (attempt != activeAttempt) {
+                        return;
+                    }
+                    activeAttempt = null;
+                }
+                cancelAttempts("Subscription ended");
+
                 // Forward the completion event
                 observer.onCompleted();
 
@@ -232,7 +482,7 @@ public class StreamingClient<TRequest, TResponse> {
 
         // Make the call with the reconnecting observer
         try {
-            rpcMethod.call(request, reconnectingObserver);
+            rpcMethod.call(attempt.request, reconnectingObserver);
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error starting " + streamName + " stream", e);
             // Trigger error handling through the observer
@@ -240,6 +490,139 @@ public class StreamingClient<TRequest, TResponse> {
         }
     }
 
+    /**
+     * Decides whether an event from a call is delivered. The first event from a replacement call
+     * makes it the active call and cancels the call it replaces.
+     *
+     * @param attempt The call the event arrived on
+     * @return true if the event should be delivered
+     */
+    private boolean acceptEvent(Attempt attempt) {
+        Attempt previous;
+        synchronized (attemptLock) {
+            if (attempt == activeAttempt) {
+                attempt.delivered = true;
+                return true;
+            }
+            if (attempt != standbyAttempt) {
+                return false;
+            }
+            attempt.delivered = true;
+            previous = activeAttempt;
+            activeAttempt = attempt;
+            standbyAttempt = null;
+            // A replacement opened for a new request commits it only now that it is live
+            request = attempt.request;
+        }
+        logger.info("Replacement " + streamName + " stream is live, cancelling the previous call");
+        if (previous != null) {
+            previous.cancel("Replaced by a new " + streamName + " stream");
+        }
+        return true;
+    }
+
+    /**
+     * Opens a replacement call when the active one has been silent for too long, and gives up on
+     * a replacement that has not delivered anything within the stall threshold.
+     */
+    private void checkStall() {
+        if (!running.get()) {
+            return;
+        }
+        long now = System.nanoTime();
+        Attempt silentReplacement = null;
+        Attempt outdated = null;
+        boolean stalled = false;
+        synchronized (attemptLock) {
+            if (activeAttempt == null) {
+                // Already reconnecting after an error
+                return;
+            }
+            if (standbyAttempt != null) {
+                if (now - standbyStartedNanos > stallDetector.getThresholdNanos()) {
+                    if (standbyAttempt.request == activeAttempt.request) {
+                        silentReplacement = standbyAttempt;
+                        standbyAttempt = null;
+                    } else {
+                        // The current call serves an outdated request; switch anyway and let the
+                        // detector watch the new call like any other
+                        outdated = activeAttempt;
+                        activeAttempt = standbyAttempt;
+                        standbyAttempt = null;
+                        request = activeAttempt.request;
+                    }
+                }
+            } else {
+                stalled = stallDetector.isStalled(now);
+            }
+        }
+
+        if (outdated != null) {
+            logger.info("Replacement " + streamName + " stream with the new request delivered nothing yet; switching to it");
+            stallDetector.reset(now);
+            outdated.cancel("Replaced by a new " + streamName + " stream");
+        } else if (silentReplacement != null) {
+            // The new call was just as quiet, so the stream is idle rather than stuck
+            logger.info("Replacement " + streamName + " stream delivered nothing either; keeping the current call");
+            stallDetector.probeFailed(now);
+            silentReplacement.cancel("Replacement stream not needed");
+        } else if (stalled) {
+            logger.warning(streamName + " silent for more than " + TimeUnit.NANOSECONDS.toMillis(stallDetector.getThresholdNanos())
+                    + "ms, opening a replacement stream");
+            startStreamingWithReconnect(downstream, true, request);
+        }
+    }
+
+    /**
+     * Cancels the active and replacement calls, if any.
+     *
+     * @param reason The cancellation message
+     */
+    private void cancelAttempts(String reason) {
+        Attempt active;
+        Attempt standby;
+        synchronized (attemptLock) {
+            active = activeAttempt;
+            standby = standbyAttempt;
+            standbyAttempt = null;
+        }
+        if (standby != null) {
+            standby.cancel(reason);
+        }
+        if (active != null) {
+            active.cancel(reason);
+        }
+    }
+
+    /**
+     * One call of the streaming RPC.
+     */
+    private final class Attempt {
+        private final TRequest request;
+        private volatile ClientCallStreamObserver<TRequest> call;
+        private volatile boolean delivered;
+        private final long startedNanos = System.nanoTime();
+
+        Attempt(TRequest request) {
+            this.request = request;
+        }
+
+        /**
+         * Checks whether the call delivered events and stayed open for at least the given time,
+         * so a call failing right after it opened is not reopened without the reconnect delay.
+         */
+        boolean wasHealthyFor(long minNanos) {
+            return delivered && System.nanoTime() - startedNanos >= minNanos;
+        }
+
+        void cancel(String reason) {
+            ClientCallStreamObserver<TRequest> current = call;
+            if (current != null) {
+                current.cancel(reason, null);
+            }
+        }
+    }
+
     /**
      * Builder class for easier construction of StreamingClient instances.
      */
@@ -250,6 +633,43 @@ public class StreamingClient<TRequest, TResponse> {
         private String streamName = "Generic Stream";
         private int reconnectDelaySeconds = 5;
         private JwtCredentials credentials;
+        private Predicate<? super TResponse> filter;
+        private Executor callbackExecutor;
+        private int stripes;
+        private StripedObserver.Splitter<TResponse> splitter;
+        private int stripeCapacity = 10_000;
+        private OverflowPolicy stripeOverflowPolicy = OverflowPolicy.DROP_NEWEST;
+        private long minStallNanos;
+        private long maxStallNanos;
+        private boolean immediateFailover;
+        private long failoverMinHealthyNanos = TimeUnit.SECONDS.toNanos(10);
+
+        public Builder() {
+        }
+
+        /**
+         * Creates a builder with the same settings as another one.
+         *
+         * @param other The builder to copy
+         */
+        public Builder(Builder<TRequest, TResponse> other) {
+            this.rpcMethod = other.rpcMethod;
+            this.request = other.request;
+            this.observer = other.observer;
+            this.streamName = other.streamName;
+            this.reconnectDelaySeconds = other.reconnectDelaySeconds;
+            this.credentials = other.credentials;
+            this.filter = other.filter;
+            this.callbackExecutor = other.callbackExecutor;
+            this.stripes = other.stripes;
+            this.splitter = other.splitter;
+            this.stripeCapacity = other.stripeCapacity;
+            this.stripeOverflowPolicy = other.stripeOverflowPolicy;
+            this.minStallNanos = other.minStallNanos;
+            this.maxStallNanos = other.maxStallNanos;
+            this.immediateFailover = other.immediateFailover;
+            this.failoverMinHealthyNanos = other.failoverMinHealthyNanos;
+        }
 
         public Builder<TRequest, TResponse> rpcMethod(StreamingRpcMethod<TRequest, TResponse> rpcMethod) {
             this.rpcMethod = rpcMethod;
@@ -281,6 +701,79 @@ public class StreamingClient<TRequest, TResponse> {
             return this;
         }
 
+        /**
+         * Only deliver events matching the given predicate, e.g. a {@link CompiledFieldFilter}.
+         */
+        public Builder<TRequest, TResponse> filter(Predicate<? super TResponse> filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * Run the observer's callbacks on the given executor instead of the gRPC thread,
+         * e.g. {@code dispatcher.lane(StreamPriority.SAFETY)}. The executor must run tasks in order.
+         */
+        public Builder<TRequest, TResponse> callbackExecutor(Executor executor) {
+            this.callbackExecutor = executor;
+            return this;
+        }
+
+        /**
+         * Process events on several threads, keeping each robot's events in order; see {@link StripedObserver}.
+         */
+        public Builder<TRequest, TResponse> striped(int stripes, StripedObserver.Splitter<TResponse> splitter) {
+            this.stripes = stripes;
+            this.splitter = splitter;
+            return this;
+        }
+
+        /**
+         * Bound each stripe of a {@link #striped} client to {@code capacity} waiting events, dropping
+         * events by {@code policy} beyond that. Defaults to 10,000 events and {@link OverflowPolicy#DROP_NEWEST}.
+         */
+        public Builder<TRequest, TResponse> stripeQueue(int capacity, OverflowPolicy policy) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("capacity must be positive");
+            }
+            this.stripeCapacity = capacity;
+            this.stripeOverflowPolicy = policy;
+            return this;
+        }
+
+        /**
+         * Recycle the stream when it stays silent for longer than its learned event rate allows,
+         * bounded by {@code minStall} and {@code maxStall}. Each built client gets its own detector.
+         */
+        public Builder<TRequest, TResponse> stallDetection(long minStall, long maxStall, TimeUnit unit) {
+            // Validate the bounds now rather than at build time
+            new StallDetector(minStall, maxStall, unit);
+            this.minStallNanos = unit.toNanos(minStall);
+            this.maxStallNanos = unit.toNanos(maxStall);
+            return this;
+        }
+
+        /**
+         * Reopen a stream that fails with {@code UNAVAILABLE} after delivering events for a while without
+         * waiting for the reconnect delay, only after a short random delay; for channels balanced over
+         * several endpoints. See {@link #failoverMinHealthy}.
+         */
+        public Builder<TRequest, TResponse> immediateFailover(boolean immediateFailover) {
+            this.immediateFailover = immediateFailover;
+            return this;
+        }
+
+        /**
+         * How long a stream must have been open, and have delivered events, for a failure to fail over
+         * immediately; a stream failing sooner waits for the reconnect delay. Defaults to 10 seconds.
+         */
+        public Builder<TRequest, TResponse> failoverMinHealthy(long duration, TimeUnit unit) {
+            if (duration < 0) {
+                throw new IllegalArgumentException("failoverMinHealthy must not be negative");
+            }
+            this.failoverMinHealthyNanos = unit.toNanos(duration);
+            return this;
+        }
+
         public StreamingClient<TRequest, TResponse> build() {
             if (rpcMethod == null) {
                 throw new IllegalArgumentException("rpcMethod is required");
@@ -292,7 +785,7 @@ public class StreamingClient<TRequest, TResponse> {
                 throw new IllegalArgumentException("observer is required");
             }
 
-            return new StreamingClient<>(rpcMethod, request, observer, streamName, reconnectDelaySeconds, credentials);
+            return new StreamingClient<>(this);
         }
     }
 }
@@ -0,0 +1,310 @@
+package com.example.streaming;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.MapEntry;
+import com.google.protobuf.Message;
+import io.grpc.stub.StreamObserver;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stream observer that spreads events over several threads while keeping each robot's events in order.
+ *
+ * Every event is split into per-robot parts by a {@link Splitter}: either the event itself keyed by
+ * its {@code robot_id}, or one event per key of a map field such as {@code poses} or {@code tray_states}.
+ * Each part is hashed by key onto one of N stripes, each a bounded queue drained by a single thread,
+ * so all parts for a robot are delivered to the delegate in order on the same thread while different
+ * robots are processed in parallel. The stream thread never blocks: when a stripe already holds
+ * {@code queueCapacity} events, an event for that stripe is dropped according to the
+ * {@link OverflowPolicy} and counted (see {@link #getDroppedCount()}) rather than stalling the gRPC
+ * transport thread. By default the arriving event is dropped.
+ *
+ * {@code onError} and {@code onCompleted} are never dropped; they are delivered once, after every event
+ * received before them has been processed. After {@link #shutdown()} incoming events are discarded.
+ *
+ * @param <T> The event type
+ */
+public class StripedObserver<T> implements StreamObserver<T> {
+    private static final Logger logger = Logger.getLogger(StripedObserver.class.getName());
+
+    /**
+     * Splits an event into the per-robot parts to deliver.
+     *
+     * @param <T> The event type
+     */
+    @FunctionalInterface
+    public interface Splitter<T> {
+        /**
+         * Splits an event.
+         *
+         * @param event The event received from the stream
+         * @param sink Receives each robot ID and the part of the event to deliver for it
+         */
+        void split(T event, BiConsumer<String, T> sink);
+    }
+
+    private final StreamObserver<T> delegate;
+    private final Splitter<T> splitter;
+    private final Stripe[] stripes;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Creates a striped observer with one stripe per available processor.
+     *
+     * @param delegate The observer receiving the events
+     * @param splitter Splits events into per-robot parts
+     */
+    public StripedObserver(StreamObserver<T> delegate, Splitter<T> splitter) {
+        this(delegate, splitter, Runtime.getRuntime().availableProcessors(), 10_000);
+    }
+
+    /**
+     * Creates a striped observer.
+     *
+     * @param delegate The observer receiving the events
+     * @param splitter Splits events into per-robot parts
+     * @param stripes Number of stripes (threads)
+     * @param queueCapacity Maximum number of events waiting in each stripe before new ones are dropped
+     */
+    public StripedObserver(StreamObserver<T> delegate, Splitter<T> splitter, int stripes, int queueCapacity) {
+        this(delegate, splitter, stripes, queueCapacity, OverflowPolicy.DROP_NEWEST);
+    }
+
+    /**
+     * Creates a striped observer with an overflow policy.
+     *
+     * @param delegate The observer receiving the events
+     * @param splitter Splits events into per-robot parts
+     * @param stripes Number of stripes (threads)
+     * @param queueCapacity Maximum number of events waiting in each stripe
+     * @param overflowPolicy Which event is dropped when a stripe is full
+     */
+    public StripedObserver(StreamObserver<T> delegate, Splitter<T> splitter, int stripes, int queueCapacity,
+                           OverflowPolicy overflowPolicy) {
+        if (stripes < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("stripes and queueCapacity must be positive");
+        }
+        this.delegate = delegate;
+        this.splitter = splitter;
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe(i, queueCapacity, overflowPolicy, dropped);
+        }
+    }
+
+    /**
+     * Creates a splitter that keys whole events by robot ID, for responses with a {@code robot_id} field.
+     *
+     * @param robotId Extracts the robot ID, e.g. {@code SubscribeRobotStatusResponse::getRobotId}
+     * @param <T> The event type
+     * @return The splitter
+     */
+    public static <T> Splitter<T> byRobotId(Function<T, String> robotId) {
+        return (event, sink) -> sink.accept(robotId.apply(event), event);
+    }
+
+    /**
+     * Creates a splitter that delivers one event per entry of a map field keyed by robot ID,
+     * e.g. {@code byMapKey("poses", SubscribeRobotPoseResponse.getDefaultInstance())}.
+     * Each delivered event is a copy of the original with only that entry in the map.
+     *
+     * @param mapField Proto name of the map field
+     * @param prototype Any instance of the message type
+     * @param <T> The event type
+     * @return The splitter
+     * @throws IllegalArgumentException If the field is not a map field
+     */
+    public static <T extends Message> Splitter<T> byMapKey(String mapField, T prototype) {
+        Descriptors.FieldDescriptor field = prototype.getDescriptorForType().findFieldByName(mapField);
+        if (field == null || !field.isMapField()) {
+            throw new IllegalArgumentException("'" + mapField + "' is not a map field of "
+                    + prototype.getDescriptorForType().getFullName());
+        }
+        return (event, sink) -> {
+            List<?> entries = (List<?>) event.getField(field);
+            if (entries.size() == 1) {
+                sink.accept(String.valueOf(((MapEntry<?, ?>) entries.get(0)).getKey()), event);
+                return;
+            }
+            for (Object entry : entries) {
+                Message.Builder part = event.toBuilder().clearField(field).addRepeatedField(field, entry);
+                @SuppressWarnings("unchecked")
+                T single = (T) part.build();
+                sink.accept(String.valueOf(((MapEntry<?, ?>) entry).getKey()), single);
+            }
+        };
+    }
+
+    @Override
+    public void onNext(T event) {
+        if (closed) {
+            return;
+        }
+        splitter.split(event, (robotId, part) -> stripeFor(robotId).offer(() -> delegate.onNext(part)));
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        afterAllStripes(() -> delegate.onError(t));
+    }
+
+    @Override
+    public void onCompleted() {
+        afterAllStripes(delegate::onCompleted);
+    }
+
+    /**
+     * Gets the number of events dropped because a stripe's queue was full.
+     *
+     * @return The dropped count
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Stops the stripe threads. Events still queued, and events arriving afterwards, are discarded.
+     * Cancel the upstream call before calling this so no more events are in flight.
+     */
+    public void shutdown() {
+        closed = true;
+        for (Stripe stripe : stripes) {
+            stripe.shutdown();
+        }
+    }
+
+    private Stripe stripeFor(String robotId) {
+        int hash = robotId.hashCode();
+        hash ^= hash >>> 16;
+        return stripes[Math.floorMod(hash, stripes.length)];
+    }
+
+    /**
+     * Runs a callback once every stripe has drained the events queued before it.
+     */
+    private void afterAllStripes(Runnable callback) {
+        AtomicInteger remaining = new AtomicInteger(stripes.length);
+        for (Stripe stripe : stripes) {
+            stripe.signal(() -> {
+                if (remaining.decrementAndGet() == 0) {
+                    callback.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * A single-consumer queue and its thread. Only events count against the capacity, so terminal
+     * signals can always be queued behind them.
+     */
+    private static final class Stripe {
+        private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+        private final AtomicInteger pendingEvents = new AtomicInteger();
+        private final int capacity;
+        private final OverflowPolicy overflowPolicy;
+        private final AtomicLong dropped;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        Stripe(int index, int capacity, OverflowPolicy overflowPolicy, AtomicLong dropped) {
+            this.capacity = capacity;
+            this.overflowPolicy = overflowPolicy;
+            this.dropped = dropped;
+            this.thread = new Thread(this::run, "StripedObserver-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Queues an event without blocking, dropping an event if the stripe is full.
+         * Events offered after the stripe stopped are discarded without counting.
+         */
+        void offer(Runnable event) {
+            if (!running) {
+                return;
+            }
+            if (pendingEvents.incrementAndGet() > capacity && !shed()) {
+                pendingEvents.decrementAndGet();
+                return;
+            }
+            queue.add(new Event(() -> {
+                pendingEvents.decrementAndGet();
+                event.run();
+            }));
+        }
+
+        /**
+         * Makes room for a new event according to the overflow policy.
+         *
+         * @return true if the new event may be queued
+         */
+        private boolean shed() {
+            if (dropped.getAndIncrement() == 0) {
+                logger.warning("Striped observer queue full; dropping events");
+            }
+            if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                return false;
+            }
+            for (Runnable queued : queue) {
+                // The stripe thread may take the event first; then try the next one
+                if (queued instanceof Event && queue.remove(queued)) {
+                    pendingEvents.decrementAndGet();
+                    return true;
+                }
+            }
+            return true;
+        }
+
+        void signal(Runnable callback) {
+            if (running) {
+                queue.add(callback);
+            }
+        }
+
+        void shutdown() {
+            running = false;
+            thread.interrupt();
+        }
+
+        private void run() {
+            while (running) {
+                Runnable task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, "Error in striped callback", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A queued event, as opposed to a terminal signal, which is never dropped.
+     */
+    private static final class Event implements Runnable {
+        private final Runnable delivery;
+
+        Event(Runnable delivery) {
+            this.delivery = delivery;
+        }
+
+        @Override
+        public void run() {
+            delivery.run();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.unary;
+
+import com.example.metrics.LatencyHistogram;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-RPC deadlines and hedge delays derived from observed latencies.
+ *
+ * Latencies are recorded per RPC name into a {@link LatencyHistogram} that is rotated every window,
+ * so percentiles follow the service as it speeds up or slows down. The deadline of an RPC is its
+ * p99 latency times a multiplier, clamped between a minimum and a maximum; until enough calls
+ * have been seen, the default deadline applies. The hedge delay of an RPC is its p95 latency.
+ *
+ * Hedges are paid for from a shared budget: every hedged call earns a fraction of a token and every
+ * hedge sent spends one, so hedging adds at most that fraction of extra load even when the service
+ * is slow across the board.
+ */
+public class AdaptiveDeadlines {
+    private static final int MIN_SAMPLES = 20;
+    private static final double MAX_HEDGE_TOKENS = 10.0;
+
+    private final long minDeadlineMs;
+    private final long maxDeadlineMs;
+    private final long defaultDeadlineMs;
+    private final double deadlineMultiplier;
+    private final double hedgeBudgetRatio;
+    private final long windowNanos;
+    private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<>();
+    private final AtomicLong hedges = new AtomicLong();
+    private double hedgeTokens = MAX_HEDGE_TOKENS;
+
+    /**
+     * Creates adaptive deadlines.
+     *
+     * @param minDeadlineMs Shortest deadline given to a call
+     * @param maxDeadlineMs Longest deadline given to a call
+     * @param defaultDeadlineMs Deadline used until an RPC has enough latency samples
+     * @param deadlineMultiplier Factor applied to the p99 latency, e.g. 2.0
+     * @param hedgeBudgetRatio Maximum ratio of hedges to hedged calls, e.g. 0.1
+     * @param windowMs How long latencies are collected before the histogram is rotated
+     */
+    public AdaptiveDeadlines(long minDeadlineMs,
+                             long maxDeadlineMs,
+                             long defaultDeadlineMs,
+                             double deadlineMultiplier,
+                             double hedgeBudgetRatio,
+                             long windowMs) {
+        if (minDeadlineMs <= 0 || maxDeadlineMs < minDeadlineMs) {
+            throw new IllegalArgumentException("Deadlines must satisfy 0 < minDeadlineMs <= maxDeadlineMs");
+        }
+        if (deadlineMultiplier < 1) {
+            throw new IllegalArgumentException("deadlineMultiplier must be at least 1");
+        }
+        this.minDeadlineMs = minDeadlineMs;
+        this.maxDeadlineMs = maxDeadlineMs;
+        this.defaultDeadlineMs = Math.min(maxDeadlineMs, Math.max(minDeadlineMs, defaultDeadlineMs));
+        this.deadlineMultiplier = deadlineMultiplier;
+        this.hedgeBudgetRatio = hedgeBudgetRatio;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+    }
+
+    /**
+     * Records the latency of a completed call.
+     *
+     * @param rpcName Name of the RPC
+     * @param latencyNanos How long the call took
+     */
+    public void record(String rpcName, long latencyNanos) {
+        windows.computeIfAbsent(rpcName, name -> new Window()).record(latencyNanos);
+    }
+
+    /**
+     * Gets the deadline for the next call of an RPC.
+     *
+     * @param rpcName Name of the RPC
+     * @return The deadline in milliseconds
+     */
+    public long getDeadlineMs(String rpcName) {
+        LatencyHistogram histogram = histogramFor(rpcName);
+        if (histogram == null) {
+            return defaultDeadlineMs;
+        }
+        double p99Ms = histogram.getValueAtPercentile(99) / 1e6;
+        return Math.min(maxDeadlineMs, Math.max(minDeadlineMs, (long) Math.ceil(p99Ms * deadlineMultiplier)));
+    }
+
+    /**
+     * Gets how long to wait for a call of an RPC before sending a hedge.
+     *
+     * @param rpcName Name of the RPC
+     * @return The delay in milliseconds, or -1 if the RPC does not have enough latency samples to hedge yet
+     */
+    public long getHedgeDelayMs(String rpcName) {
+        LatencyHistogram histogram = histogramFor(rpcName);
+        if (histogram == null) {
+            return -1;
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(histogram.getValueAtPercentile(95)));
+    }
+
+    /**
+     * Earns hedge budget for a call that may be hedged.
+     */
+    public synchronized void hedgeableCallStarted() {
+        hedgeTokens = Math.min(MAX_HEDGE_TOKENS, hedgeTokens + hedgeBudgetRatio);
+    }
+
+    /**
+     * Spends hedge budget for one hedge.
+     *
+     * @return true if the budget allows the hedge
+     */
+    public boolean tryAcquireHedge() {
+        synchronized (this) {
+            if (hedgeTokens < 1) {
+                return false;
+            }
+            hedgeTokens -= 1;
+        }
+        hedges.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Gets the number of hedges sent.
+     *
+     * @return The hedge count
+     */
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    /**
+     * Gets the histogram with enough samples to use: the current window's, or the previous one's
+     * right after a rotation.
+     */
+    private LatencyHistogram histogramFor(String rpcName) {
+        Window window = windows.get(rpcName);
+        return window == null ? null : window.usable();
+    }
+
+    /**
+     * Latencies of one RPC over the current and previous windows.
+     */
+    private final class Window {
+        private volatile LatencyHistogram current = new LatencyHistogram();
+        private volatile LatencyHistogram previous = new LatencyHistogram();
+        private volatile long rotateAtNanos = System.nanoTime() + windowNanos;
+
+        void record(long latencyNanos) {
+            long now = System.nanoTime();
+            if (now - rotateAtNanos >= 0) {
+                rotate(now);
+            }
+            current.record(latencyNanos);
+        }
+
+        LatencyHistogram usable() {
+            LatencyHistogram histogram = current;
+            if (histogram.getCount() >= MIN_SAMPLES) {
+                return histogram;
+            }
+            histogram = previous;
+            return histogram.getCount() >= MIN_SAMPLES ? histogram : null;
+        }
+
+        private synchronized void rotate(long now) {
+            if (now - rotateAtNanos < 0) {
+                return;
+            }
+            LatencyHistogram recycled = previous;
+            recycled.reset();
+            previous = current;
+            current = recycled;
+            rotateAtNanos = now + windowNanos;
+        }
+    }
+
+    /**
+     * Builder class for easier construction of AdaptiveDeadlines instances.
+     */
+    public static class Builder {
+        private long minDeadlineMs = 200;
+        private long maxDeadlineMs = 30_000;
+        private long defaultDeadlineMs = 10_000;
+        private double deadlineMultiplier = 2.0;
+        private double hedgeBudgetRatio = 0.1;
+        private long windowMs = 60_000;
+
+        public Builder minDeadline(long deadlineMs) {
+            this.minDeadlineMs = deadlineMs;
+            return this;
+        }
+
+        public Builder maxDeadline(long deadlineMs) {
+            this.maxDeadlineMs = deadlineMs;
+            return this;
+        }
+
+        public Builder defaultDeadline(long deadlineMs) {
+            this.defaultDeadlineMs = deadlineMs;
+            return this;
+        }
+
+        public Builder deadlineMultiplier(double multiplier) {
+            this.deadlineMultiplier = multiplier;
+            return this;
+        }
+
+        public Builder hedgeBudgetRatio(double ratio) {
+            this.hedgeBudgetRatio = ratio;
+            return this;
+        }
+
+        public Builder window(long windowMs) {
+            this.windowMs = windowMs;
+            return this;
+        }
+
+        public AdaptiveDeadlines build() {
+            return new AdaptiveDeadlines(minDeadlineMs, maxDeadlineMs, defaultDeadlineMs, deadlineMultiplier,
+                    hedgeBudgetRatio, windowMs);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.unary;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Functional interface for gRPC unary RPC methods called without blocking,
+ * e.g. {@code client.getFutureStub()::createMission}.
+ *
+ * @param <TRequest> The request type for the unary RPC
+ * @param <TResponse> The response type for the unary RPC
+ */
+@FunctionalInterface
+public interface AsyncUnaryRpcMethod<TRequest, TResponse> {
+    /**
+     * Starts the unary RPC call.
+     *
+     * @param request The request to send
+     * @return A future completed with the response, or failed with the call's status
+     */
+    ListenableFuture<TResponse> call(TRequest request);
+}
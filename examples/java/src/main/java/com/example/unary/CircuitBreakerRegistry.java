@@ -0,0 +1,442 @@
+package com.example.unary;
+
+import io.grpc.Status;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import bearrobotics.api.v1.core.RobotStatus.RobotConnection;
+import bearrobotics.api.v1.core.RobotStatus.RobotConnectionWithMetadata;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeOnlineStatusResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusResponse;
+
+/**
+ * Per-robot circuit breakers for calls that target a single robot.
+ *
+ * Each robot's breaker is fed passively from two sources. Connection states from
+ * {@code SubscribeOnlineStatus} or {@code RobotState.connection} open the breaker as soon as the
+ * robot is reported {@code STATE_DISCONNECTED}, and move it to half-open when the robot reconnects.
+ * Call outcomes open it when too many of the robot's recent calls failed with {@code UNAVAILABLE} or
+ * {@code DEADLINE_EXCEEDED}, and move it to half-open after a cool-down.
+ *
+ * While a breaker is open, calls either fail fast with {@code UNAVAILABLE} or are parked until the
+ * robot comes back, depending on the {@link OfflinePolicy}. A half-open breaker lets a single probe
+ * call through: if it succeeds the breaker closes and parked calls are released, otherwise it opens again.
+ * Parked calls are released and timed out on the common async pool, never on the thread that
+ * changed the breaker's state, since their continuations start the calls.
+ */
+public class CircuitBreakerRegistry {
+    private static final Logger logger = Logger.getLogger(CircuitBreakerRegistry.class.getName());
+
+    /**
+     * State of a robot's breaker.
+     */
+    public enum State {
+        /**
+         * Calls go through.
+         */
+        CLOSED,
+
+        /**
+         * Calls are rejected or parked.
+         */
+        OPEN,
+
+        /**
+         * A single probe call goes through to test whether the robot is reachable again.
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * What happens to calls made while a robot's breaker is open.
+     */
+    public enum OfflinePolicy {
+        /**
+         * Calls fail immediately with {@code UNAVAILABLE}.
+         */
+        FAIL_FAST,
+
+        /**
+         * Calls wait until the breaker closes, up to the park timeout.
+         */
+        PARK
+    }
+
+    private final int failureThreshold;
+    private final int windowSize;
+    private final long openDurationMs;
+    private final OfflinePolicy offlinePolicy;
+    private final long parkTimeoutMs;
+    private final ConcurrentMap<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a circuit breaker registry.
+     *
+     * @param failureThreshold Number of failures among a robot's recent calls that opens its breaker
+     * @param windowSize Number of recent calls considered, at most 64
+     * @param openDurationMs Cool-down after failures before a probe is allowed
+     * @param offlinePolicy What happens to calls while a breaker is open
+     * @param parkTimeoutMs Longest a parked call waits before failing, used with {@link OfflinePolicy#PARK}
+     */
+    public CircuitBreakerRegistry(int failureThreshold,
+                                  int windowSize,
+                                  long openDurationMs,
+                                  OfflinePolicy offlinePolicy,
+                                  long parkTimeoutMs) {
+        if (windowSize < 1 || windowSize > 64 || failureThreshold < 1 || failureThreshold > windowSize) {
+            throw new IllegalArgumentException("Window must satisfy 1 <= failureThreshold <= windowSize <= 64");
+        }
+        this.failureThreshold = failureThreshold;
+        this.windowSize = windowSize;
+        this.openDurationMs = openDurationMs;
+        this.offlinePolicy = offlinePolicy;
+        this.parkTimeoutMs = parkTimeoutMs;
+    }
+
+    /**
+     * Records a robot's connection state.
+     *
+     * @param robotId The robot ID
+     * @param state The connection state reported by the cloud
+     */
+    public void onConnectionState(String robotId, RobotConnection.State state) {
+        switch (state) {
+            case STATE_DISCONNECTED:
+                breakerFor(robotId).disconnected();
+                break;
+            case STATE_CONNECTED:
+                breakerFor(robotId).connected();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Records the connection states in a {@code SubscribeOnlineStatus} event.
+     *
+     * @param response The event
+     */
+    public void onOnlineStatus(SubscribeOnlineStatusResponse response) {
+        for (Map.Entry<String, RobotConnectionWithMetadata> entry : response.getOnlineStatesMap().entrySet()) {
+            onConnectionState(entry.getKey(), entry.getValue().getConnection().getState());
+        }
+    }
+
+    /**
+     * Records the connection state in a {@code SubscribeRobotStatus} event, if it carries one.
+     *
+     * @param response The event
+     */
+    public void onRobotStatus(SubscribeRobotStatusResponse response) {
+        if (response.getRobotState().hasConnection()) {
+            onConnectionState(response.getRobotId(), response.getRobotState().getConnection().getState());
+        }
+    }
+
+    /**
+     * Requests permission to call a robot.
+     *
+     * @param robotId The robot the call targets
+     * @return A future completed when the call may proceed, or failed with {@code UNAVAILABLE}
+     *         if the breaker is open and the call is not parked, or the park timeout passes first
+     */
+    public CompletableFuture<Void> acquire(String robotId) {
+        return breakerFor(robotId).acquire();
+    }
+
+    /**
+     * Records the outcome of a call admitted by {@link #acquire}.
+     *
+     * @param robotId The robot the call targeted
+     * @param error The failure, or null if the call succeeded
+     */
+    public void record(String robotId, Throwable error) {
+        Breaker breaker = breakers.get(robotId);
+        if (breaker == null) {
+            return;
+        }
+        if (error == null) {
+            breaker.succeeded();
+            return;
+        }
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        switch (Status.fromThrowable(cause).getCode()) {
+            case UNAVAILABLE:
+            case DEADLINE_EXCEEDED:
+                breaker.failed();
+                break;
+            case CANCELLED:
+            case RESOURCE_EXHAUSTED:
+                // Cancelled by the caller or shed by the client; says nothing about the robot
+                breaker.abandoned();
+                break;
+            default:
+                // The call reached the robot and was answered
+                breaker.succeeded();
+                break;
+        }
+    }
+
+    /**
+     * Checks whether retrying a failed call to a robot is worthwhile.
+     * Retries are pointless while the breaker is open and calls fail fast.
+     *
+     * @param robotId The robot ID
+     * @return true unless the robot's breaker is open or half-open and the policy is {@link OfflinePolicy#FAIL_FAST}
+     */
+    public boolean allowsRetry(String robotId) {
+        return offlinePolicy == OfflinePolicy.PARK || getState(robotId) == State.CLOSED;
+    }
+
+    /**
+     * Gets the state of a robot's breaker.
+     *
+     * @param robotId The robot ID
+     * @return The state; {@link State#CLOSED} for robots never seen
+     */
+    public State getState(String robotId) {
+        Breaker breaker = breakers.get(robotId);
+        return breaker == null ? State.CLOSED : breaker.state();
+    }
+
+    private Breaker breakerFor(String robotId) {
+        return breakers.computeIfAbsent(robotId, Breaker::new);
+    }
+
+    /**
+     * Runs a task on the common async pool after a delay. The JDK's delay thread only hands the
+     * task over, so a slow task never holds up other registries' timers.
+     */
+    private static void after(long delayMs, Runnable task) {
+        CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS).execute(task);
+    }
+
+    /**
+     * The breaker of one robot.
+     */
+    private final class Breaker {
+        private final String robotId;
+        private final ArrayDeque<CompletableFuture<Void>> parked = new ArrayDeque<>();
+        private State state = State.CLOSED;
+        private boolean offline;
+        private boolean probeInFlight;
+        private long outcomes;
+        private int generation;
+
+        Breaker(String robotId) {
+            this.robotId = robotId;
+        }
+
+        synchronized State state() {
+            return state;
+        }
+
+        CompletableFuture<Void> acquire() {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            synchronized (this) {
+                if (state == State.CLOSED) {
+                    future.complete(null);
+                    return future;
+                }
+                if (state == State.HALF_OPEN && !probeInFlight) {
+                    probeInFlight = true;
+                    future.complete(null);
+                    return future;
+                }
+                if (offlinePolicy == OfflinePolicy.FAIL_FAST) {
+                    future.completeExceptionally(Status.UNAVAILABLE
+                            .withDescription("Circuit open for robot " + robotId + (offline ? " (offline)" : ""))
+                            .asRuntimeException());
+                    return future;
+                }
+                parked.addLast(future);
+            }
+            after(parkTimeoutMs, () -> {
+                synchronized (this) {
+                    if (!parked.remove(future)) {
+                        return;
+                    }
+                }
+                future.completeExceptionally(Status.UNAVAILABLE
+                        .withDescription("Robot " + robotId + " did not become reachable within " + parkTimeoutMs + "ms")
+                        .asRuntimeException());
+            });
+            return future;
+        }
+
+        void disconnected() {
+            synchronized (this) {
+                offline = true;
+                if (state != State.OPEN) {
+                    logger.info("Robot " + robotId + " is offline; circuit opened");
+                    open();
+                }
+            }
+        }
+
+        void connected() {
+            synchronized (this) {
+                if (!offline) {
+                    return;
+                }
+                offline = false;
+                logger.info("Robot " + robotId + " is back online; probing");
+                state = State.HALF_OPEN;
+                probeInFlight = false;
+            }
+            releaseProbe();
+        }
+
+        void succeeded() {
+            List<CompletableFuture<Void>> released;
+            synchronized (this) {
+                if (state == State.CLOSED) {
+                    push(false);
+                    return;
+                }
+                if (state != State.HALF_OPEN) {
+                    return;
+                }
+                logger.info("Probe to robot " + robotId + " succeeded; circuit closed");
+                state = State.CLOSED;
+                probeInFlight = false;
+                outcomes = 0;
+                released = new ArrayList<>(parked);
+                parked.clear();
+            }
+            // Continuations start the calls; run them on the pool, not on the thread recording this outcome
+            for (CompletableFuture<Void> future : released) {
+                future.completeAsync(() -> null);
+            }
+        }
+
+        void failed() {
+            synchronized (this) {
+                if (state == State.CLOSED) {
+                    push(true);
+                    if (Long.bitCount(outcomes) >= failureThreshold) {
+                        logger.warning("Too many failed calls to robot " + robotId + "; circuit opened for "
+                                + openDurationMs + "ms");
+                        open();
+                    }
+                } else if (state == State.HALF_OPEN) {
+                    logger.info("Probe to robot " + robotId + " failed; circuit reopened");
+                    open();
+                }
+            }
+        }
+
+        void abandoned() {
+            synchronized (this) {
+                if (state != State.HALF_OPEN) {
+                    return;
+                }
+                probeInFlight = false;
+            }
+            releaseProbe();
+        }
+
+        // Must hold the lock
+        private void push(boolean failure) {
+            outcomes = (outcomes << 1) | (failure ? 1 : 0);
+            if (windowSize < 64) {
+                outcomes &= (1L << windowSize) - 1;
+            }
+        }
+
+        // Must hold the lock
+        private void open() {
+            state = State.OPEN;
+            probeInFlight = false;
+            outcomes = 0;
+            int openedGeneration = ++generation;
+            if (!offline) {
+                // Offline robots stay open until they reconnect; failing ones are probed after the cool-down
+                after(openDurationMs, () -> halfOpen(openedGeneration));
+            }
+        }
+
+        private void halfOpen(int openedGeneration) {
+            synchronized (this) {
+                if (generation != openedGeneration || state != State.OPEN || offline) {
+                    return;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = false;
+            }
+            releaseProbe();
+        }
+
+        /**
+         * Lets the oldest parked call through as the probe, if there is one.
+         */
+        private void releaseProbe() {
+            CompletableFuture<Void> probe;
+            synchronized (this) {
+                if (state != State.HALF_OPEN || probeInFlight || parked.isEmpty()) {
+                    return;
+                }
+                probe = parked.pollFirst();
+                probeInFlight = true;
+            }
+            CompletableFuture.runAsync(() -> {
+                if (probe.complete(null)) {
+                    return;
+                }
+                // The parked call was cancelled by its caller; pick another
+                synchronized (this) {
+                    probeInFlight = false;
+                }
+                releaseProbe();
+            });
+        }
+    }
+
+    /**
+     * Builder class for easier construction of CircuitBreakerRegistry instances.
+     */
+    public static class Builder {
+        private int failureThreshold = 5;
+        private int windowSize = 10;
+        private long openDurationMs = 30_000;
+        private OfflinePolicy offlinePolicy = OfflinePolicy.FAIL_FAST;
+        private long parkTimeoutMs = 60_000;
+
+        public Builder failureThreshold(int failures, int windowSize) {
+            this.failureThreshold = failures;
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        public Builder openDuration(long durationMs) {
+            this.openDurationMs = durationMs;
+            return this;
+        }
+
+        public Builder offlinePolicy(OfflinePolicy policy) {
+            this.offlinePolicy = policy;
+            return this;
+        }
+
+        public Builder parkTimeout(long timeoutMs) {
+            this.parkTimeoutMs = timeoutMs;
+            return this;
+        }
+
+        public CircuitBreakerRegistry build() {
+            if (offlinePolicy == null) {
+                throw new IllegalArgumentException("offlinePolicy is required");
+            }
+            return new CircuitBreakerRegistry(failureThreshold, windowSize, openDurationMs, offlinePolicy, parkTimeoutMs);
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package com.example.unary;
+
+import io.grpc.Status;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Adaptive client-side limit on the number of concurrent unary calls.
+ *
+ * The limit follows AIMD: every call that completes in normal time raises it by {@code 1/limit}
+ * (about one per round trip of the whole window), and every call that signals overload, either by
+ * failing with {@code RESOURCE_EXHAUSTED}, {@code UNAVAILABLE} or {@code DEADLINE_EXCEEDED} or by
+ * taking more than twice the smoothed latency, cuts it by a backoff factor. The limit therefore
+ * settles just below the point where the server starts queueing.
+ *
+ * Calls over the limit wait in a queue ordered by priority (lower values first) and then by deadline.
+ * A call whose deadline passes while queued, or that arrives when the queue is full, fails locally
+ * with {@code RESOURCE_EXHAUSTED} without reaching the server, so overload sheds load instead of
+ * amplifying it.
+ *
+ * Blocking calls holding a permit run on the limiter's own executor, which has one thread per
+ * permit up to the maximum limit, so they never queue behind each other or behind unrelated work.
+ * Several limiters, e.g. one per tenant, can instead share an executor that never queues tasks,
+ * such as a cached thread pool, so threads exist only for calls actually in flight.
+ */
+public class ConcurrencyLimiter {
+    private static final Logger logger = Logger.getLogger(ConcurrencyLimiter.class.getName());
+
+    /**
+     * Priority for calls that must not wait behind bulk traffic, e.g. safety commands.
+     */
+    public static final int PRIORITY_HIGH = 0;
+
+    /**
+     * Default priority.
+     */
+    public static final int PRIORITY_NORMAL = 5;
+
+    /**
+     * Priority for bulk reads and background work.
+     */
+    public static final int PRIORITY_LOW = 10;
+
+    // Expires queued calls whose deadline has passed
+    private static final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ConcurrencyLimiter-Reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final double LATENCY_ALPHA = 0.05;
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    /**
+     * How a call that held a permit ended.
+     */
+    public enum Outcome {
+        /**
+         * The call completed; its latency is used to adjust the limit.
+         */
+        SUCCESS,
+
+        /**
+         * The call failed because the server was overloaded.
+         */
+        DROPPED,
+
+        /**
+         * The call failed for a reason unrelated to load, e.g. {@code NOT_FOUND}.
+         */
+        IGNORED
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final int maxQueueSize;
+    private final Executor callExecutor;
+
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private double limit;
+    private int inFlight;
+    private double averageLatencyNanos = -1;
+
+    /**
+     * Creates a concurrency limiter.
+     *
+     * @param initialLimit Starting number of concurrent calls
+     * @param minLimit Lowest the limit may fall
+     * @param maxLimit Highest the limit may rise
+     * @param backoffRatio Factor applied to the limit on overload, e.g. 0.9
+     * @param maxQueueSize Maximum number of calls waiting for a permit
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio, int maxQueueSize) {
+        this(initialLimit, minLimit, maxLimit, backoffRatio, maxQueueSize, null);
+    }
+
+    /**
+     * Creates a concurrency limiter whose calls run on a given executor.
+     *
+     * @param initialLimit Starting number of concurrent calls
+     * @param minLimit Lowest the limit may fall
+     * @param maxLimit Highest the limit may rise
+     * @param backoffRatio Factor applied to the limit on overload, e.g. 0.9
+     * @param maxQueueSize Maximum number of calls waiting for a permit
+     * @param callExecutor Executor for calls holding a permit, which must start every task without
+     *                     queueing it, or null for a thread per permit owned by the limiter
+     */
+    public ConcurrencyLimiter(int initialLimit,
+                              int minLimit,
+                              int maxLimit,
+                              double backoffRatio,
+                              int maxQueueSize,
+                              Executor callExecutor) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio must be between 0 and 1");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.maxQueueSize = maxQueueSize;
+
+        this.callExecutor = callExecutor != null ? callExecutor : newCallExecutor(maxLimit);
+    }
+
+    private static Executor newCallExecutor(int maxLimit) {
+        // In-flight calls never exceed maxLimit, so no task ever waits for a thread
+        AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxLimit, maxLimit, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "ConcurrencyLimiter-Call-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Requests a permit to start a call.
+     *
+     * @param priority Priority of the call; lower values are served first
+     * @param deadlineNanos Time from {@link System#nanoTime()} after which the call is no longer worth starting
+     * @return A future completed with the permit, or failed with a {@code RESOURCE_EXHAUSTED} status
+     *         if the queue is full or the deadline passes first
+     */
+    public CompletableFuture<Permit> acquire(int priority, long deadlineNanos) {
+        Waiter waiter = new Waiter(priority, deadlineNanos, sequence.incrementAndGet());
+        synchronized (this) {
+            if (queue.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                waiter.future.complete(new Permit());
+                return waiter.future;
+            }
+            if (queue.size() >= maxQueueSize) {
+                rejected.incrementAndGet();
+                waiter.future.completeExceptionally(Status.RESOURCE_EXHAUSTED
+                        .withDescription("Client-side request queue is full").asRuntimeException());
+                return waiter.future;
+            }
+            queue.add(waiter);
+        }
+        long delay = deadlineNanos - System.nanoTime();
+        reaper.schedule(() -> expire(waiter), Math.max(0, delay), TimeUnit.NANOSECONDS);
+        return waiter.future;
+    }
+
+    /**
+     * Gets the executor for running calls that hold a permit. It has a thread for every permit the
+     * limiter can grant; idle threads exit after a minute.
+     *
+     * @return The call executor
+     */
+    public Executor getCallExecutor() {
+        return callExecutor;
+    }
+
+    /**
+     * Gets the current concurrency limit.
+     *
+     * @return The limit
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Gets the number of calls holding a permit.
+     *
+     * @return The in-flight count
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Gets the number of calls waiting for a permit.
+     *
+     * @return The queue length
+     */
+    public synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the number of calls failed locally because the queue was full or their deadline passed.
+     *
+     * @return The rejected count
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Classifies a call failure for {@link Permit#release}.
+     *
+     * @param t The failure
+     * @return {@link Outcome#DROPPED} for overload statuses, {@link Outcome#IGNORED} otherwise
+     */
+    public static Outcome outcomeOf(Throwable t) {
+        switch (Status.fromThrowable(t).getCode()) {
+            case RESOURCE_EXHAUSTED:
+            case UNAVAILABLE:
+            case DEADLINE_EXCEEDED:
+                return Outcome.DROPPED;
+            default:
+                return Outcome.IGNORED;
+        }
+    }
+
+    private void expire(Waiter waiter) {
+        synchronized (this) {
+            if (!queue.remove(waiter)) {
+                return;
+            }
+        }
+        rejected.incrementAndGet();
+        waiter.future.completeExceptionally(Status.RESOURCE_EXHAUSTED
+                .withDescription("Deadline passed while waiting for a client-side concurrency permit").asRuntimeException());
+    }
+
+    private void release(Outcome outcome, long latencyNanos) {
+        Waiter next;
+        synchronized (this) {
+            inFlight--;
+            double previous = limit;
+            if (outcome == Outcome.SUCCESS) {
+                boolean slow = averageLatencyNanos > 0 && latencyNanos > LATENCY_TOLERANCE * averageLatencyNanos;
+                averageLatencyNanos = averageLatencyNanos < 0
+                        ? latencyNanos : averageLatencyNanos + LATENCY_ALPHA * (latencyNanos - averageLatencyNanos);
+                if (slow) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                } else if (inFlight + 1 >= limit / 2) {
+                    // Only grow while the limit is actually being used, or it drifts up without evidence
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+            } else if (outcome == Outcome.DROPPED) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            }
+            if ((int) previous != (int) limit && outcome == Outcome.DROPPED) {
+                logger.fine("Concurrency limit lowered to " + (int) limit + " after overload");
+            }
+
+            next = null;
+            if (!queue.isEmpty() && inFlight < (int) limit) {
+                next = queue.poll();
+                inFlight++;
+            }
+        }
+        // Complete outside the lock; the waiter's continuation may start the call inline
+        if (next != null && !next.future.complete(new Permit())) {
+            // The waiter was cancelled by its caller; hand the permit on
+            new Permit().release(Outcome.IGNORED, 0);
+        }
+    }
+
+    /**
+     * Permission to run one call. Must be released exactly once when the call ends.
+     */
+    public final class Permit {
+        private final long startNanos = System.nanoTime();
+        private boolean released;
+
+        /**
+         * Releases the permit, timing the call from when the permit was granted.
+         *
+         * @param outcome How the call ended
+         */
+        public void release(Outcome outcome) {
+            release(outcome, System.nanoTime() - startNanos);
+        }
+
+        private void release(Outcome outcome, long latencyNanos) {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            ConcurrencyLimiter.this.release(outcome, latencyNanos);
+        }
+    }
+
+    /**
+     * A queued call.
+     */
+    private static final class Waiter implements Comparable<Waiter> {
+        private final int priority;
+        private final long deadlineNanos;
+        private final long sequence;
+        private final CompletableFuture<Permit> future = new CompletableFuture<>();
+
+        Waiter(int priority, long deadlineNanos, long sequence) {
+            this.priority = priority;
+            this.deadlineNanos = deadlineNanos;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            if (deadlineNanos != other.deadlineNanos) {
+                return Long.compare(deadlineNanos - other.deadlineNanos, 0);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Builder class for easier construction of ConcurrencyLimiter instances.
+     */
+    public static class Builder {
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 200;
+        private double backoffRatio = 0.9;
+        private int maxQueueSize = 1000;
+        private Executor callExecutor;
+
+        public Builder initialLimit(int limit) {
+            this.initialLimit = limit;
+            return this;
+        }
+
+        public Builder minLimit(int limit) {
+            this.minLimit = limit;
+            return this;
+        }
+
+        public Builder maxLimit(int limit) {
+            this.maxLimit = limit;
+            return this;
+        }
+
+        public Builder backoffRatio(double ratio) {
+            this.backoffRatio = ratio;
+            return this;
+        }
+
+        public Builder maxQueueSize(int size) {
+            this.maxQueueSize = size;
+            return this;
+        }
+
+        /**
+         * Run calls on an executor shared with other limiters instead of the limiter's own threads.
+         * It must start every task without queueing it, e.g. a cached thread pool.
+         */
+        public Builder callExecutor(Executor executor) {
+            this.callExecutor = executor;
+            return this;
+        }
+
+        public ConcurrencyLimiter build() {
+            return new ConcurrencyLimiter(initialLimit, minLimit, maxLimit, backoffRatio, maxQueueSize, callExecutor);
+        }
+    }
+}
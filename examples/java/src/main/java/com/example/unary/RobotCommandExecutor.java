@@ -0,0 +1,362 @@
+package com.example.unary;
+
+import com.example.auth.JwtCredentials;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Status;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Issues robot commands ({@code CreateMission}, {@code AppendMission}, {@code UpdateMission},
+ * {@code SkipGoal}, {@code ChargeRobot}, ...) with one ordered queue per robot.
+ *
+ * Commands for the same robot are sent in the order they were submitted; commands for different
+ * robots are fully independent. Up to {@code maxInFlight} commands per robot are pipelined on the
+ * channel before their acks arrive (with 1, each command waits for the previous ack). Calls are made
+ * through the future stub, so no thread is held while a command is outstanding.
+ *
+ * A command can be submitted with a supersede key: it then replaces any command for the same robot
+ * with the same key that has not been sent yet, and the replaced command's future is cancelled.
+ * Commands already sent are never withdrawn. Failed commands are not retried, since mission
+ * commands are not idempotent; the caller sees the failure through the returned future.
+ *
+ * With circuit breakers, a command waits for its robot's breaker like any call to that robot, and
+ * with a limiter it holds a permit from when it is sent until its ack arrives. A command waiting for
+ * either holds back the robot's later commands, so they still go out in submission order.
+ */
+public class RobotCommandExecutor {
+    private static final Logger logger = Logger.getLogger(RobotCommandExecutor.class.getName());
+
+    private final int maxInFlight;
+    private final JwtCredentials credentials;
+    private final ConcurrencyLimiter limiter;
+    private final CircuitBreakerRegistry circuitBreakers;
+    private final long queueTimeoutMs;
+    private final ConcurrentMap<String, RobotQueue> robots = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    /**
+     * Creates a command executor.
+     *
+     * @param maxInFlight Maximum number of unacknowledged commands per robot
+     * @param credentials JWT credentials for authentication error handling
+     */
+    public RobotCommandExecutor(int maxInFlight, JwtCredentials credentials) {
+        this(maxInFlight, credentials, null, null, 0);
+    }
+
+    /**
+     * Creates a command executor whose commands pass through a concurrency limiter and their robot's
+     * circuit breaker, like the unary calls to the API.
+     *
+     * @param maxInFlight Maximum number of unacknowledged commands per robot
+     * @param credentials JWT credentials for authentication error handling
+     * @param limiter Limiter shared by the unary calls to the API, or null for no limit
+     * @param circuitBreakers Per-robot circuit breakers, or null
+     * @param queueTimeoutMs Longest a command may wait for a permit before failing locally
+     */
+    public RobotCommandExecutor(int maxInFlight,
+                                JwtCredentials credentials,
+                                ConcurrencyLimiter limiter,
+                                CircuitBreakerRegistry circuitBreakers,
+                                long queueTimeoutMs) {
+        this.maxInFlight = maxInFlight;
+        this.credentials = credentials;
+        this.limiter = limiter;
+        this.circuitBreakers = circuitBreakers;
+        this.queueTimeoutMs = queueTimeoutMs;
+    }
+
+    /**
+     * Submits a command for a robot.
+     *
+     * @param robotId The robot the command targets
+     * @param rpcMethod The RPC to call, e.g. {@code client.getFutureStub()::createMission}
+     * @param request The request to send
+     * @param <TRequest> The request type
+     * @param <TResponse> The response type
+     * @return A future completed with the command's ack
+     */
+    public <TRequest, TResponse> CompletableFuture<TResponse> submit(String robotId,
+                                                                     AsyncUnaryRpcMethod<TRequest, TResponse> rpcMethod,
+                                                                     TRequest request) {
+        return submit(robotId, null, rpcMethod, request);
+    }
+
+    /**
+     * Submits a command for a robot, replacing any unsent command for the robot with the same key.
+     *
+     * @param robotId The robot the command targets
+     * @param supersedeKey Key identifying commands that make earlier ones obsolete, e.g. {@code "charge"}, or null
+     * @param rpcMethod The RPC to call
+     * @param request The request to send
+     * @param <TRequest> The request type
+     * @param <TResponse> The response type
+     * @return A future completed with the command's ack, or cancelled if the command is superseded
+     */
+    public <TRequest, TResponse> CompletableFuture<TResponse> submit(String robotId,
+                                                                     String supersedeKey,
+                                                                     AsyncUnaryRpcMethod<TRequest, TResponse> rpcMethod,
+                                                                     TRequest request) {
+        if (!running) {
+            CompletableFuture<TResponse> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new RejectedExecutionException("Command executor is shut down"));
+            return rejected;
+        }
+        Command<TRequest, TResponse> command = new Command<>(robotId, supersedeKey, rpcMethod, request);
+        RobotQueue queue = robots.computeIfAbsent(robotId, id -> new RobotQueue());
+        command.result.whenComplete((response, error) -> {
+            if (error instanceof CancellationException) {
+                queue.cancelled(command);
+            }
+        });
+        queue.submit(command);
+        return command.result;
+    }
+
+    /**
+     * Gets the number of commands for a robot waiting to be sent.
+     *
+     * @param robotId The robot ID
+     * @return The queued count
+     */
+    public int getQueuedCount(String robotId) {
+        RobotQueue queue = robots.get(robotId);
+        return queue == null ? 0 : queue.queuedCount();
+    }
+
+    /**
+     * Gets the number of commands for a robot sent but not yet acknowledged.
+     *
+     * @param robotId The robot ID
+     * @return The in-flight count
+     */
+    public int getInFlightCount(String robotId) {
+        RobotQueue queue = robots.get(robotId);
+        return queue == null ? 0 : queue.inFlightCount();
+    }
+
+    /**
+     * Stops accepting commands and cancels every command not sent yet.
+     * Commands already sent complete normally.
+     */
+    public void shutdown() {
+        running = false;
+        for (RobotQueue queue : robots.values()) {
+            queue.cancelQueued();
+        }
+        logger.info("Robot command executor stopped");
+    }
+
+    /**
+     * The ordered command queue of one robot.
+     */
+    private final class RobotQueue {
+        private final ArrayDeque<Command<?, ?>> queued = new ArrayDeque<>();
+        private final List<Command<?, ?>> inFlight = new ArrayList<>();
+        // Completed once the last started command was sent or failed to be admitted
+        private CompletableFuture<Void> lastSent = CompletableFuture.completedFuture(null);
+
+        void submit(Command<?, ?> command) {
+            List<Command<?, ?>> superseded = new ArrayList<>();
+            synchronized (this) {
+                if (command.supersedeKey != null) {
+                    Iterator<Command<?, ?>> it = queued.iterator();
+                    while (it.hasNext()) {
+                        Command<?, ?> previous = it.next();
+                        if (command.supersedeKey.equals(previous.supersedeKey)) {
+                            it.remove();
+                            superseded.add(previous);
+                        }
+                    }
+                }
+                queued.addLast(command);
+                pump();
+            }
+            // Complete outside the lock so callbacks cannot deadlock against new submissions
+            for (Command<?, ?> previous : superseded) {
+                logger.info("Command " + previous.supersedeKey + " for " + previous.robotId + " superseded before sending");
+                previous.result.cancel(false);
+            }
+        }
+
+        synchronized int queuedCount() {
+            return queued.size();
+        }
+
+        synchronized int inFlightCount() {
+            return inFlight.size();
+        }
+
+        void cancelled(Command<?, ?> command) {
+            ListenableFuture<?> call;
+            synchronized (this) {
+                if (queued.remove(command)) {
+                    return;
+                }
+                call = command.call;
+            }
+            if (call != null) {
+                call.cancel(true);
+            }
+        }
+
+        void cancelQueued() {
+            List<Command<?, ?>> cancelled;
+            synchronized (this) {
+                cancelled = new ArrayList<>(queued);
+                queued.clear();
+            }
+            for (Command<?, ?> command : cancelled) {
+                command.result.cancel(false);
+            }
+        }
+
+        // Must hold the lock: commands are started under it so they go out in submission order
+        private void pump() {
+            while (inFlight.size() < maxInFlight && !queued.isEmpty()) {
+                Command<?, ?> command = queued.pollFirst();
+                inFlight.add(command);
+                lastSent = command.start(this, lastSent);
+            }
+        }
+
+        void acknowledged(Command<?, ?> command) {
+            synchronized (this) {
+                inFlight.remove(command);
+                pump();
+            }
+        }
+    }
+
+    /**
+     * A submitted command and its result.
+     */
+    private final class Command<TRequest, TResponse> {
+        private final String robotId;
+        private final String supersedeKey;
+        private final AsyncUnaryRpcMethod<TRequest, TResponse> rpcMethod;
+        private final TRequest request;
+        private final CompletableFuture<TResponse> result = new CompletableFuture<>();
+        private volatile ListenableFuture<TResponse> call;
+
+        Command(String robotId, String supersedeKey, AsyncUnaryRpcMethod<TRequest, TResponse> rpcMethod, TRequest request) {
+            this.robotId = robotId;
+            this.supersedeKey = supersedeKey;
+            this.rpcMethod = rpcMethod;
+            this.request = request;
+        }
+
+        /**
+         * Sends the command once the previous command of the robot was sent and the command is admitted
+         * by the robot's breaker and the limiter.
+         *
+         * @param queue The robot's queue
+         * @param previous Completed once the previous command was sent
+         * @return A future completed once this command was sent or failed to be admitted; never fails
+         */
+        CompletableFuture<Void> start(RobotQueue queue, CompletableFuture<Void> previous) {
+            return previous.thenCompose(ignored -> admit()).handle((permit, error) -> {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    logger.log(Level.WARNING, "Command for " + robotId + " not sent: {0}", cause.getMessage());
+                    queue.acknowledged(this);
+                    result.completeExceptionally(cause);
+                } else {
+                    send(queue, permit);
+                }
+                return null;
+            });
+        }
+
+        /**
+         * Waits for the robot's breaker, then for a permit.
+         *
+         * @return A future completed with the permit, or null without a limiter
+         */
+        private CompletableFuture<ConcurrencyLimiter.Permit> admit() {
+            CompletableFuture<Void> breaker = circuitBreakers == null
+                    ? CompletableFuture.completedFuture(null) : circuitBreakers.acquire(robotId);
+            if (limiter == null) {
+                return breaker.thenApply(ignored -> null);
+            }
+            return breaker.thenCompose(ignored -> {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+                return limiter.acquire(ConcurrencyLimiter.PRIORITY_NORMAL, deadline).whenComplete((permit, error) -> {
+                    if (error != null && circuitBreakers != null) {
+                        // Shed by the client; frees the breaker's probe slot if this was the probe
+                        circuitBreakers.record(robotId, error);
+                    }
+                });
+            });
+        }
+
+        private void send(RobotQueue queue, ConcurrencyLimiter.Permit permit) {
+            if (result.isDone()) {
+                // Cancelled while waiting to be admitted
+                settle(permit, Status.CANCELLED.asRuntimeException());
+                queue.acknowledged(this);
+                return;
+            }
+            try {
+                call = rpcMethod.call(request);
+            } catch (RuntimeException e) {
+                call = Futures.immediateFailedFuture(e);
+            }
+            if (result.isCancelled()) {
+                // Cancelled while being sent, before the call was visible to cancelled()
+                call.cancel(true);
+            }
+            Futures.addCallback(call, new FutureCallback<TResponse>() {
+                @Override
+                public void onSuccess(TResponse response) {
+                    settle(permit, null);
+                    queue.acknowledged(Command.this);
+                    result.complete(response);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    settle(permit, t instanceof CancellationException ? Status.CANCELLED.asRuntimeException() : t);
+                    queue.acknowledged(Command.this);
+                    Status.Code code = Status.fromThrowable(t).getCode();
+                    if (code == Status.Code.UNAUTHENTICATED && credentials != null) {
+                        logger.warning("Authentication error detected. Token may have expired and will be refreshed.");
+                        credentials.handleAuthenticationError();
+                    }
+                    logger.log(Level.WARNING, "Command for " + robotId + " failed: {0} (Code: {1})",
+                            new Object[]{t.getMessage(), code});
+                    result.completeExceptionally(t);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+
+        /**
+         * Reports how a sent command ended to the limiter and the robot's breaker.
+         */
+        private void settle(ConcurrencyLimiter.Permit permit, Throwable error) {
+            if (permit != null) {
+                permit.release(error == null ? ConcurrencyLimiter.Outcome.SUCCESS : ConcurrencyLimiter.outcomeOf(error));
+            }
+            if (circuitBreakers != null) {
+                circuitBreakers.record(robotId, error);
+            }
+        }
+    }
+}
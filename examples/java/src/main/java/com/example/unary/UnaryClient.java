@@ -1,12 +1,21 @@
 package com.example.unary;
 
 import com.example.auth.JwtCredentials;
+import io.grpc.Context;
 import io.grpc.Status;
 
 import java.util.EnumSet;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,12 +37,32 @@ public class UnaryClient<TRequest, TResponse> {
         Status.Code.UNAUTHENTICATED     // Authentication failure - handled separately
     );
 
+    // Status codes a non-idempotent call is retried on: the server did not act on the request.
+    // DEADLINE_EXCEEDED and INTERNAL are excluded, since the request may already have taken effect.
+    private static final Set<Status.Code> NON_IDEMPOTENT_RETRYABLE_STATUS_CODES = EnumSet.of(
+        Status.Code.UNAVAILABLE,
+        Status.Code.UNAUTHENTICATED
+    );
+
+    // Runs call deadlines and hedge timers for all unary clients. Nearly every call cancels its
+    // deadline long before it fires, so cancelled timers are dropped right away instead of when due.
+    private static final ScheduledExecutorService timer = newTimer();
+
     private final UnaryRpcMethod<TRequest, TResponse> rpcMethod;
     private final TRequest request;
     private final String rpcName;
     private final int maxRetries;
     private final long retryDelayMs;
     private final JwtCredentials credentials;
+    private final ConcurrencyLimiter limiter;
+    private final int priority;
+    private final long queueTimeoutMs;
+    private final CircuitBreakerRegistry circuitBreakers;
+    private final String robotId;
+    private final AdaptiveDeadlines deadlines;
+    private final long deadlineMs;
+    private final boolean hedged;
+    private final boolean idempotent;
 
     /**
      * Creates a new unary client with default retry configuration.
@@ -66,12 +95,37 @@ public class UnaryClient<TRequest, TResponse> {
                       int maxRetries,
                       long retryDelayMs,
                       JwtCredentials credentials) {
-        this.rpcMethod = rpcMethod;
-        this.request = request;
-        this.rpcName = rpcName;
-        this.maxRetries = maxRetries;
-        this.retryDelayMs = retryDelayMs;
-        this.credentials = credentials;
+        this(new Builder<TRequest, TResponse>()
+                .rpcMethod(rpcMethod)
+                .request(request)
+                .rpcName(rpcName)
+                .maxRetries(maxRetries)
+                .retryDelay(retryDelayMs)
+                .credentials(credentials));
+    }
+
+    /**
+     * Creates a unary client from a builder's settings; the builder has validated them.
+     * Limiter, circuit breakers, deadlines, hedging and idempotency are only set through the {@link Builder}.
+     *
+     * @param builder The builder
+     */
+    UnaryClient(Builder<TRequest, TResponse> builder) {
+        this.rpcMethod = builder.rpcMethod;
+        this.request = builder.request;
+        this.rpcName = builder.rpcName != null ? builder.rpcName : "Generic RPC";
+        this.maxRetries = builder.maxRetries;
+        this.retryDelayMs = builder.retryDelayMs;
+        this.credentials = builder.credentials;
+        this.limiter = builder.limiter;
+        this.priority = builder.priority;
+        this.queueTimeoutMs = builder.queueTimeoutMs;
+        this.circuitBreakers = builder.robotId != null ? builder.circuitBreakers : null;
+        this.robotId = builder.robotId;
+        this.deadlines = builder.deadlines;
+        this.deadlineMs = builder.deadlineMs;
+        this.hedged = builder.hedged && builder.deadlines != null && builder.idempotent;
+        this.idempotent = builder.idempotent;
     }
 
     /**
@@ -111,13 +165,15 @@ public class UnaryClient<TRequest, TResponse> {
     private CompletableFuture<TResponse> callWithRetry(int attemptNumber) {
         logger.info("Attempting " + rpcName + " RPC call (attempt " + (attemptNumber + 1) + "/" + (maxRetries + 1) + ")");
 
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                return rpcMethod.call(request);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+        CompletableFuture<TResponse> attempt = circuitBreakers == null
+                ? callOnce()
+                : circuitBreakers.acquire(robotId).thenCompose(ignored -> callOnce()
+                        .whenComplete((response, error) -> circuitBreakers.record(robotId, error)));
+
+        return attempt.handle((response, throwable) -> {
+            if (throwable == null) {
+                return CompletableFuture.completedFuture(response);
             }
-        }).exceptionally(throwable -> {
             Throwable cause = throwable.getCause() != null ? throwable.getCause() : throwable;
             Status status = Status.fromThrowable(cause);
             Status.Code code = status.getCode();
@@ -134,21 +190,25 @@ public class UnaryClient<TRequest, TResponse> {
             }
 
             // Check if we should retry based on the status code and attempt count
-            boolean shouldRetry = RETRYABLE_STATUS_CODES.contains(code) && attemptNumber < maxRetries;
+            Set<Status.Code> retryable = idempotent ? RETRYABLE_STATUS_CODES : NON_IDEMPOTENT_RETRYABLE_STATUS_CODES;
+            boolean shouldRetry = retryable.contains(code) && attemptNumber < maxRetries;
+
+            // Retrying a robot whose circuit is open would only fail again after the delay
+            if (shouldRetry && circuitBreakers != null && !circuitBreakers.allowsRetry(robotId)) {
+                logger.info("Circuit for robot " + robotId + " is open. Will not retry.");
+                shouldRetry = false;
+            }
 
             if (shouldRetry) {
+                long delayMs = retryDelay(attemptNumber);
                 logger.info("Error is retryable (Status code: " + code + "). Will attempt retry " +
-                        (attemptNumber + 2) + "/" + (maxRetries + 1) + " after " + retryDelayMs + "ms delay");
+                        (attemptNumber + 2) + "/" + (maxRetries + 1) + " after " + delayMs + "ms delay");
 
-                try {
-                    Thread.sleep(retryDelayMs);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Retry interrupted", ie);
-                }
-
-                // Recursive retry call
-                return callWithRetry(attemptNumber + 1).join();
+                // This may run on a limiter or timer thread; schedule the retry instead of sleeping
+                // and waiting for it here, which would hold the thread the retry itself may need
+                Executor delayed = CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS);
+                return CompletableFuture.runAsync(() -> { }, delayed)
+                        .thenCompose(ignored -> callWithRetry(attemptNumber + 1));
             } else {
                 if (attemptNumber >= maxRetries) {
                     logger.severe("Max retries (" + maxRetries + ") exceeded for " + rpcName + " RPC. Giving up.");
@@ -156,14 +216,191 @@ public class UnaryClient<TRequest, TResponse> {
                     logger.info("Error is NOT retryable (Status code: " + code + "). Will not retry.");
                 }
 
-                // Re-throw the original exception
-                if (cause instanceof RuntimeException) {
-                    throw (RuntimeException) cause;
-                } else {
-                    throw new RuntimeException(cause);
-                }
+                // Fail with the original exception
+                return CompletableFuture.<TResponse>failedFuture(cause);
             }
+        }).thenCompose(Function.identity());
+    }
+
+    private static ScheduledExecutorService newTimer() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "UnaryClient-Timer");
+            thread.setDaemon(true);
+            return thread;
         });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Calls the RPC once, hedged if enabled.
+     *
+     * @return CompletableFuture containing the response
+     */
+    private CompletableFuture<TResponse> callOnce() {
+        return hedged ? callHedged() : callAttempt(new Attempt());
+    }
+
+    /**
+     * Calls the RPC, sending a second attempt if the first has not answered after the hedge delay
+     * and the hedge budget allows it. The first response wins and the other attempt is cancelled;
+     * the call fails only if every attempt sent fails.
+     *
+     * @return CompletableFuture containing the response
+     */
+    private CompletableFuture<TResponse> callHedged() {
+        deadlines.hedgeableCallStarted();
+        long hedgeDelayMs = deadlines.getHedgeDelayMs(rpcName);
+        Attempt primary = new Attempt();
+        if (hedgeDelayMs < 0) {
+            return callAttempt(primary);
+        }
+
+        CompletableFuture<TResponse> result = new CompletableFuture<>();
+        Attempt hedge = new Attempt();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        race(callAttempt(primary), result, outstanding);
+        ScheduledFuture<?> hedgeTimer = timer.schedule(() -> {
+            if (result.isDone() || !deadlines.tryAcquireHedge()) {
+                return;
+            }
+            outstanding.incrementAndGet();
+            logger.fine(rpcName + " has not answered after " + hedgeDelayMs + "ms; sending hedge");
+            race(callAttempt(hedge), result, outstanding);
+        }, hedgeDelayMs, TimeUnit.MILLISECONDS);
+
+        result.whenComplete((response, error) -> {
+            hedgeTimer.cancel(false);
+            primary.cancel();
+            hedge.cancel();
+        });
+        return result;
+    }
+
+    /**
+     * Completes the result with the attempt's response, or with its failure if no other attempt is outstanding.
+     */
+    private void race(CompletableFuture<TResponse> attempt, CompletableFuture<TResponse> result, AtomicInteger outstanding) {
+        attempt.whenComplete((response, error) -> {
+            if (error == null) {
+                result.complete(response);
+            } else if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(error);
+            }
+        });
+    }
+
+    /**
+     * Calls the RPC once, through the limiter if there is one.
+     *
+     * @param attempt The attempt, for its deadline and cancellation
+     * @return CompletableFuture containing the response
+     */
+    private CompletableFuture<TResponse> callAttempt(Attempt attempt) {
+        return limiter == null ? CompletableFuture.supplyAsync(() -> invoke(attempt)) : callLimited(attempt);
+    }
+
+    /**
+     * Calls the RPC once on the calling thread, within the attempt's deadline.
+     *
+     * @param attempt The attempt
+     * @return The response
+     */
+    private TResponse invoke(Attempt attempt) {
+        Context.CancellableContext context = attempt.open();
+        long start = System.nanoTime();
+        try {
+            TResponse response = context == null ? rpcMethod.call(request) : context.call(() -> rpcMethod.call(request));
+            if (deadlines != null) {
+                deadlines.record(rpcName, System.nanoTime() - start);
+            }
+            return response;
+        } catch (Exception e) {
+            if (deadlines != null && Status.fromThrowable(e).getCode() == Status.Code.DEADLINE_EXCEEDED) {
+                // A timed-out call took at least this long; recording it lets the deadline grow
+                deadlines.record(rpcName, System.nanoTime() - start);
+            }
+            throw new RuntimeException(e);
+        } finally {
+            if (context != null) {
+                // Releases the deadline timer
+                context.cancel(null);
+            }
+        }
+    }
+
+    /**
+     * Calls the RPC once after obtaining a permit from the limiter, reporting the outcome back to it.
+     *
+     * @param attempt The attempt, for its deadline and cancellation
+     * @return CompletableFuture containing the response
+     */
+    private CompletableFuture<TResponse> callLimited(Attempt attempt) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+        // Blocking calls run on the limiter's executor, which has a thread per permit
+        return limiter.acquire(priority, deadline).thenApplyAsync(permit -> {
+            try {
+                TResponse response = invoke(attempt);
+                permit.release(ConcurrencyLimiter.Outcome.SUCCESS);
+                return response;
+            } catch (RuntimeException e) {
+                permit.release(ConcurrencyLimiter.outcomeOf(e.getCause() != null ? e.getCause() : e));
+                throw e;
+            }
+        }, limiter.getCallExecutor());
+    }
+
+    /**
+     * Gets the delay before a retry: fixed without a limiter, exponential with jitter with one,
+     * so retries from many callers do not arrive in synchronized waves.
+     *
+     * @param attemptNumber The attempt that failed (0-based)
+     * @return The delay in milliseconds
+     */
+    private long retryDelay(int attemptNumber) {
+        if (limiter == null) {
+            return retryDelayMs;
+        }
+        long backoff = retryDelayMs << Math.min(attemptNumber, 6);
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    /**
+     * One attempt of a call: its gRPC context, which carries the deadline and is cancelled
+     * when the attempt loses a hedge race.
+     */
+    private final class Attempt {
+        private Context.CancellableContext context;
+        private boolean cancelled;
+
+        /**
+         * Creates the attempt's context when the attempt actually starts, so time spent queued
+         * for a permit does not count against the deadline.
+         *
+         * @return The context to run the call in, or null if there is no deadline
+         */
+        synchronized Context.CancellableContext open() {
+            if (cancelled) {
+                throw Status.CANCELLED.withDescription("Hedged attempt no longer needed").asRuntimeException();
+            }
+            long timeoutMs = deadlines != null ? deadlines.getDeadlineMs(rpcName) : deadlineMs;
+            if (timeoutMs <= 0) {
+                return null;
+            }
+            context = Context.current().withDeadlineAfter(timeoutMs, TimeUnit.MILLISECONDS, timer);
+            return context;
+        }
+
+        void cancel() {
+            Context.CancellableContext running;
+            synchronized (this) {
+                cancelled = true;
+                running = context;
+            }
+            if (running != null) {
+                running.cancel(Status.CANCELLED.withDescription("Hedged attempt lost").asRuntimeException());
+            }
+        }
     }
 
     /**
@@ -172,10 +409,19 @@ public class UnaryClient<TRequest, TResponse> {
     public static class Builder<TRequest, TResponse> {
         private UnaryRpcMethod<TRequest, TResponse> rpcMethod;
         private TRequest request;
-        private String rpcName = "Generic RPC";
+        private String rpcName;
         private int maxRetries = 3;
         private long retryDelayMs = 1000;
         private JwtCredentials credentials;
+        private ConcurrencyLimiter limiter;
+        private int priority = ConcurrencyLimiter.PRIORITY_NORMAL;
+        private long queueTimeoutMs = 10_000;
+        private CircuitBreakerRegistry circuitBreakers;
+        private String robotId;
+        private AdaptiveDeadlines deadlines;
+        private long deadlineMs = 30_000;
+        private boolean hedged;
+        private boolean idempotent = true;
 
         public Builder<TRequest, TResponse> rpcMethod(UnaryRpcMethod<TRequest, TResponse> rpcMethod) {
             this.rpcMethod = rpcMethod;
@@ -207,6 +453,75 @@ public class UnaryClient<TRequest, TResponse> {
             return this;
         }
 
+        public Builder<TRequest, TResponse> limiter(ConcurrencyLimiter limiter) {
+            this.limiter = limiter;
+            return this;
+        }
+
+        /**
+         * Priority in the limiter's queue; see {@link ConcurrencyLimiter#PRIORITY_HIGH}.
+         */
+        public Builder<TRequest, TResponse> priority(int priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        public Builder<TRequest, TResponse> queueTimeout(long timeoutMs) {
+            this.queueTimeoutMs = timeoutMs;
+            return this;
+        }
+
+        public Builder<TRequest, TResponse> circuitBreakers(CircuitBreakerRegistry circuitBreakers) {
+            this.circuitBreakers = circuitBreakers;
+            return this;
+        }
+
+        /**
+         * The robot the call targets; enables its circuit breaker if circuit breakers are set.
+         */
+        public Builder<TRequest, TResponse> robotId(String robotId) {
+            this.robotId = robotId;
+            return this;
+        }
+
+        /**
+         * Give attempts deadlines from the observed latency of this RPC, e.g.
+         * {@code client.getDeadlines()}, instead of the fixed {@link #deadline}. Requires an explicit
+         * {@link #rpcName}, which keys the statistics.
+         */
+        public Builder<TRequest, TResponse> deadlines(AdaptiveDeadlines deadlines) {
+            this.deadlines = deadlines;
+            return this;
+        }
+
+        /**
+         * Deadline of each attempt when no adaptive {@link #deadlines} are set; defaults to 30 seconds,
+         * so a call to a server that never answers does not hang forever. 0 disables the deadline.
+         */
+        public Builder<TRequest, TResponse> deadline(long deadlineMs) {
+            this.deadlineMs = deadlineMs;
+            return this;
+        }
+
+        /**
+         * Hedge slow attempts with a second one. Only enable for idempotent reads such as
+         * {@code GetRobotStatus}, {@code GetCurrentMap} or {@code GetLocationInfo}.
+         */
+        public Builder<TRequest, TResponse> hedged(boolean hedged) {
+            this.hedged = hedged;
+            return this;
+        }
+
+        /**
+         * Whether the RPC can safely be sent more than once; defaults to true. Mark commands such as
+         * {@code CreateMission} or {@code ChargeRobot} as not idempotent, so they are not retried after
+         * a timeout that the server may already have acted on.
+         */
+        public Builder<TRequest, TResponse> idempotent(boolean idempotent) {
+            this.idempotent = idempotent;
+            return this;
+        }
+
         public UnaryClient<TRequest, TResponse> build() {
             if (rpcMethod == null) {
                 throw new IllegalArgumentException("rpcMethod is required");
@@ -214,8 +529,18 @@ public class UnaryClient<TRequest, TResponse> {
             if (request == null) {
                 throw new IllegalArgumentException("request is required");
             }
+            if (deadlines != null && rpcName == null) {
+                // Latency statistics are kept per RPC name; unrelated RPCs must not share them
+                throw new IllegalArgumentException("rpcName is required with adaptive deadlines");
+            }
+            if (deadlineMs < 0) {
+                throw new IllegalArgumentException("deadline must not be negative");
+            }
+            if (hedged && !idempotent) {
+                throw new IllegalArgumentException("Only idempotent RPCs can be hedged");
+            }
 
-            return new UnaryClient<>(rpcMethod, request, rpcName, maxRetries, retryDelayMs, credentials);
+            return new UnaryClient<>(this);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,372 @@
+package com.example.webhook;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.protobuf.Message;
+import io.grpc.stub.StreamObserver;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stream observer that forwards events to an HTTP endpoint in a custom JSON shape.
+ *
+ * Each event is rendered with a compiled {@link RequestTemplate} into a reusable scratch buffer and
+ * appended to the current batch only once it rendered completely, so an event that fails to render
+ * is dropped without corrupting the batch. Events are batched and sent as one {@code POST} per batch
+ * (a JSON array, or a single object when the batch size is 1) from a dedicated sender thread over a
+ * keep-alive connection pool, so stream callbacks never wait on the network. Failed batches are retried on the same status codes webhook
+ * deliveries are retried on. Events arriving after {@link #shutdown()} are dropped.
+ *
+ * @param <T> The streamed message type
+ */
+public class ForwardingSink<T extends Message> implements StreamObserver<T> {
+    private static final Logger logger = Logger.getLogger(ForwardingSink.class.getName());
+    private static final MediaType JSON = MediaType.parse("application/json");
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final String url;
+    private final RequestTemplate template;
+    private final Map<String, String> headers;
+    private final int maxBatchSize;
+    private final int maxRetries;
+    private final OkHttpClient httpClient;
+    private final ScheduledExecutorService sender;
+
+    // Buffers are recycled between the rendering side and the sender thread
+    private final BlockingQueue<BatchBuffer> freeBuffers;
+    private BatchBuffer current;
+    private int batchCount;
+    // Each event is rendered here first, so a failed render leaves the batch untouched
+    private final BatchBuffer scratch = new BatchBuffer();
+    private JsonGenerator generator;
+    private boolean closed;
+
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Creates a forwarding sink.
+     *
+     * @param url The endpoint to post batches to
+     * @param template The compiled template used to render each event
+     * @param headers Static headers added to every request
+     * @param maxBatchSize Maximum number of events per request
+     * @param lingerMs Maximum time an event waits for its batch to fill up
+     * @param maxBuffers Number of batch buffers; when all are waiting to be sent new events are dropped
+     * @param maxRetries Maximum number of retries for a failed batch
+     */
+    public ForwardingSink(String url,
+                          RequestTemplate template,
+                          Map<String, String> headers,
+                          int maxBatchSize,
+                          long lingerMs,
+                          int maxBuffers,
+                          int maxRetries) {
+        this.url = url;
+        this.template = template;
+        this.headers = Map.copyOf(headers);
+        this.maxBatchSize = maxBatchSize;
+        this.maxRetries = maxRetries;
+        this.httpClient = new OkHttpClient.Builder()
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .writeTimeout(30, TimeUnit.SECONDS)
+                .build();
+        this.freeBuffers = new ArrayBlockingQueue<>(maxBuffers);
+        for (int i = 0; i < maxBuffers; i++) {
+            freeBuffers.add(new BatchBuffer());
+        }
+        this.sender = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ForwardingSink-Sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sender.scheduleWithFixedDelay(this::flush, lingerMs, lingerMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onNext(T event) {
+        BatchBuffer full = null;
+        synchronized (this) {
+            if (closed) {
+                dropped.incrementAndGet();
+                return;
+            }
+            try {
+                render(event);
+            } catch (IOException | RuntimeException e) {
+                // The generator may be mid-object; start the next event on a fresh one
+                generator = null;
+                dropped.incrementAndGet();
+                logger.log(Level.WARNING, "Failed to render event for " + url, e);
+                return;
+            }
+            if (current == null && !startBatch()) {
+                dropped.incrementAndGet();
+                return;
+            }
+            if (batchCount > 0) {
+                current.write(',');
+            }
+            current.write(scratch.buffer(), 0, scratch.size());
+            batchCount++;
+            if (batchCount >= maxBatchSize) {
+                full = finishBatch();
+            }
+        }
+        if (full != null) {
+            submit(full);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        // Stream errors are handled by the streaming client; keep forwarding whatever was buffered
+        flush();
+    }
+
+    @Override
+    public void onCompleted() {
+        flush();
+    }
+
+    /**
+     * Sends the current partial batch, if any.
+     */
+    public void flush() {
+        BatchBuffer batch;
+        synchronized (this) {
+            if (current == null || closed) {
+                return;
+            }
+            batch = finishBatch();
+        }
+        submit(batch);
+    }
+
+    /**
+     * Gets the number of events successfully forwarded.
+     *
+     * @return The forwarded count
+     */
+    public long getForwardedCount() {
+        return forwarded.get();
+    }
+
+    /**
+     * Gets the number of events dropped because they failed to render, the sender fell behind, a batch
+     * failed permanently or the sink was shut down.
+     *
+     * @return The dropped count
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Flushes buffered events and stops the sender.
+     *
+     * @throws InterruptedException If interrupted while waiting for pending batches
+     */
+    public void shutdown() throws InterruptedException {
+        BatchBuffer batch = null;
+        synchronized (this) {
+            if (current != null && !closed) {
+                batch = finishBatch();
+            }
+            closed = true;
+        }
+        if (batch != null) {
+            submit(batch);
+        }
+        sender.shutdown();
+        sender.awaitTermination(10, TimeUnit.SECONDS);
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+        logger.info("Forwarding sink for " + url + " stopped");
+    }
+
+    /**
+     * Renders an event into the scratch buffer. Must hold the lock.
+     */
+    private void render(T event) throws IOException {
+        scratch.reset();
+        if (generator == null) {
+            generator = jsonFactory.createGenerator(scratch, JsonEncoding.UTF8);
+            generator.setRootValueSeparator(null);
+        }
+        template.render(event, generator);
+        generator.flush();
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private boolean startBatch() {
+        current = freeBuffers.poll();
+        if (current == null) {
+            return false;
+        }
+        current.reset();
+        if (maxBatchSize > 1) {
+            current.write('[');
+        }
+        batchCount = 0;
+        return true;
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private BatchBuffer finishBatch() {
+        if (maxBatchSize > 1) {
+            current.write(']');
+        }
+        BatchBuffer batch = current;
+        batch.events = batchCount;
+        current = null;
+        return batch;
+    }
+
+    /**
+     * Hands a batch to the sender thread, dropping it if the sender has stopped.
+     */
+    private void submit(BatchBuffer batch) {
+        try {
+            sender.execute(() -> send(batch));
+        } catch (RejectedExecutionException e) {
+            dropped.addAndGet(batch.events);
+            freeBuffers.offer(batch);
+        }
+    }
+
+    private void send(BatchBuffer batch) {
+        try {
+            Request.Builder request = new Request.Builder()
+                    .url(url)
+                    .post(RequestBody.create(batch.buffer(), JSON, 0, batch.size()));
+            headers.forEach(request::header);
+
+            for (int attempt = 0; attempt <= maxRetries; attempt++) {
+                try (Response response = httpClient.newCall(request.build()).execute()) {
+                    if (response.isSuccessful()) {
+                        forwarded.addAndGet(batch.events);
+                        return;
+                    }
+                    if (!isRetryable(response.code())) {
+                        logger.warning("Forwarding to " + url + " failed permanently: " + response.code());
+                        break;
+                    }
+                    logger.info("Forwarding to " + url + " failed with " + response.code() + ", retrying");
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Forwarding to " + url + " failed, retrying", e);
+                }
+                Thread.sleep(200L << Math.min(attempt, 5));
+            }
+            dropped.addAndGet(batch.events);
+        } catch (InterruptedException e) {
+            dropped.addAndGet(batch.events);
+            Thread.currentThread().interrupt();
+        } finally {
+            freeBuffers.offer(batch);
+        }
+    }
+
+    private static boolean isRetryable(int code) {
+        return code == 408 || code == 425 || code == 429 || code >= 500;
+    }
+
+    /**
+     * Byte buffer whose backing array can be handed to the HTTP client without copying.
+     */
+    private static final class BatchBuffer extends ByteArrayOutputStream {
+        private int events;
+
+        BatchBuffer() {
+            super(16 * 1024);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
+    /**
+     * Builder class for easier construction of ForwardingSink instances.
+     */
+    public static class Builder<T extends Message> {
+        private String url;
+        private RequestTemplate template;
+        private Map<String, String> headers = Map.of();
+        private int maxBatchSize = 100;
+        private long lingerMs = 50;
+        private int maxBuffers = 8;
+        private int maxRetries = 3;
+
+        public Builder<T> url(String url) {
+            this.url = url;
+            return this;
+        }
+
+        public Builder<T> template(RequestTemplate template) {
+            this.template = template;
+            return this;
+        }
+
+        public Builder<T> headers(Map<String, String> headers) {
+            this.headers = headers;
+            return this;
+        }
+
+        public Builder<T> maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        public Builder<T> linger(long lingerMs) {
+            this.lingerMs = lingerMs;
+            return this;
+        }
+
+        public Builder<T> maxBuffers(int maxBuffers) {
+            this.maxBuffers = maxBuffers;
+            return this;
+        }
+
+        public Builder<T> maxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        public ForwardingSink<T> build() {
+            if (url == null) {
+                throw new IllegalArgumentException("url is required");
+            }
+            if (template == null) {
+                throw new IllegalArgumentException("template is required");
+            }
+            if (maxBatchSize < 1 || maxBuffers < 1 || lingerMs < 1) {
+                throw new IllegalArgumentException("maxBatchSize, maxBuffers and linger must be positive");
+            }
+
+            return new ForwardingSink<>(url, template, headers, maxBatchSize, lingerMs, maxBuffers, maxRetries);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.webhook;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads protobuf messages from a streaming Jackson parser.
+ *
+ * Accepts both the snake_case field names used by webhook payloads and the camelCase JSON names
+ * used by the REST API, enums by name or number, and timestamps in RFC 3339 form.
+ * Unknown fields and {@code null} values are skipped, so newer payloads stay readable.
+ */
+public final class ProtoJsonReader {
+    private static final String TIMESTAMP_TYPE = Timestamp.getDescriptor().getFullName();
+
+    // Field name lookup tables, built once per message type
+    private static final Map<Descriptors.Descriptor, Map<String, Descriptors.FieldDescriptor>> FIELDS =
+            new ConcurrentHashMap<>();
+
+    private ProtoJsonReader() {
+    }
+
+    /**
+     * Merges the JSON object at the parser's current token into a message builder.
+     * On return the parser is positioned on the object's closing token.
+     *
+     * @param parser The parser, positioned on a {@code START_OBJECT} token
+     * @param builder The builder to merge fields into
+     * @throws IOException If the JSON is malformed or a value does not fit its field
+     */
+    public static void merge(JsonParser parser, Message.Builder builder) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected JSON object for " + builder.getDescriptorForType().getFullName()
+                    + " but found " + parser.currentToken());
+        }
+
+        Map<String, Descriptors.FieldDescriptor> fields = fields(builder.getDescriptorForType());
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            Descriptors.FieldDescriptor field = fields.get(parser.getCurrentName());
+            JsonToken token = parser.nextToken();
+            if (field == null || token == JsonToken.VALUE_NULL) {
+                parser.skipChildren();
+                continue;
+            }
+
+            if (field.isMapField()) {
+                readMap(parser, builder, field);
+            } else if (field.isRepeated()) {
+                expect(parser, JsonToken.START_ARRAY, field);
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (parser.currentToken() == null) {
+                        throw new IOException("JSON ends inside field " + field.getFullName());
+                    }
+                    Object value = readValue(parser, builder, field);
+                    if (value != null) {
+                        builder.addRepeatedField(field, value);
+                    }
+                }
+            } else {
+                Object value = readValue(parser, builder, field);
+                if (value != null) {
+                    builder.setField(field, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a single value for a field at the parser's current token.
+     *
+     * @return The value, or null if it should be skipped (e.g. an unknown enum name)
+     */
+    private static Object readValue(JsonParser parser, Message.Builder parent, Descriptors.FieldDescriptor field)
+            throws IOException {
+        JsonToken token = parser.currentToken();
+        try {
+            switch (field.getJavaType()) {
+                case MESSAGE:
+                    if (TIMESTAMP_TYPE.equals(field.getMessageType().getFullName())) {
+                        return readTimestamp(parser.getText());
+                    }
+                    Message.Builder child = parent.newBuilderForField(field);
+                    merge(parser, child);
+                    return child.build();
+                case ENUM:
+                    Descriptors.EnumDescriptor enumType = field.getEnumType();
+                    if (token == JsonToken.VALUE_NUMBER_INT) {
+                        return enumType.findValueByNumberCreatingIfUnknown(parser.getIntValue());
+                    }
+                    return enumType.findValueByName(parser.getText());
+                case INT:
+                    return (int) (token == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : Long.parseLong(parser.getText()));
+                case LONG:
+                    if (token == JsonToken.VALUE_NUMBER_INT) {
+                        return parser.getBigIntegerValue().longValue();
+                    }
+                    return isUnsigned(field) ? Long.parseUnsignedLong(parser.getText()) : Long.parseLong(parser.getText());
+                case FLOAT:
+                    return token.isNumeric() ? parser.getFloatValue() : Float.parseFloat(parser.getText());
+                case DOUBLE:
+                    return token.isNumeric() ? parser.getDoubleValue() : Double.parseDouble(parser.getText());
+                case BOOLEAN:
+                    return token == JsonToken.VALUE_STRING ? Boolean.parseBoolean(parser.getText()) : parser.getBooleanValue();
+                case STRING:
+                    return parser.getText();
+                case BYTE_STRING:
+                    return ByteString.copyFrom(Base64.getDecoder().decode(parser.getText()));
+                default:
+                    throw new IOException("Unsupported field type " + field.getType() + " for " + field.getFullName());
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // Covers NumberFormatException and invalid Base64
+            throw new IOException("Invalid value '" + parser.getText() + "' for field " + field.getFullName(), e);
+        }
+    }
+
+    private static void readMap(JsonParser parser, Message.Builder builder, Descriptors.FieldDescriptor field)
+            throws IOException {
+        expect(parser, JsonToken.START_OBJECT, field);
+        Descriptors.FieldDescriptor keyField = field.getMessageType().findFieldByName("key");
+        Descriptors.FieldDescriptor valueField = field.getMessageType().findFieldByName("value");
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.getCurrentName();
+            parser.nextToken();
+
+            Message.Builder entry = builder.newBuilderForField(field);
+            entry.setField(keyField, mapKey(key, keyField));
+            Object value = readValue(parser, entry, valueField);
+            if (value != null) {
+                entry.setField(valueField, value);
+            }
+            builder.addRepeatedField(field, entry.build());
+        }
+    }
+
+    private static Object mapKey(String key, Descriptors.FieldDescriptor keyField) throws IOException {
+        try {
+            switch (keyField.getJavaType()) {
+                case STRING:
+                    return key;
+                case INT:
+                    return (int) Long.parseLong(key);
+                case LONG:
+                    return isUnsigned(keyField) ? Long.parseUnsignedLong(key) : Long.parseLong(key);
+                case BOOLEAN:
+                    return Boolean.parseBoolean(key);
+                default:
+                    throw new IOException("Unsupported map key type " + keyField.getType());
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid map key '" + key + "' for " + keyField.getFullName(), e);
+        }
+    }
+
+    private static Timestamp readTimestamp(String text) {
+        Instant instant = Instant.parse(text);
+        return Timestamp.newBuilder()
+                .setSeconds(instant.getEpochSecond())
+                .setNanos(instant.getNano())
+                .build();
+    }
+
+    private static void expect(JsonParser parser, JsonToken expected, Descriptors.FieldDescriptor field)
+            throws IOException {
+        if (parser.currentToken() != expected) {
+            throw new IOException("Expected " + expected + " for field " + field.getFullName()
+                    + " but found " + parser.currentToken());
+        }
+    }
+
+    private static boolean isUnsigned(Descriptors.FieldDescriptor field) {
+        return field.getType() == Descriptors.FieldDescriptor.Type.UINT64
+                || field.getType() == Descriptors.FieldDescriptor.Type.FIXED64;
+    }
+
+    private static Map<String, Descriptors.FieldDescriptor> fields(Descriptors.Descriptor descriptor) {
+        return FIELDS.computeIfAbsent(descriptor, d -> {
+            Map<String, Descriptors.FieldDescriptor> byName = new HashMap<>();
+            for (Descriptors.FieldDescriptor field : d.getFields()) {
+                byName.put(field.getName(), field);
+                byName.put(field.getJsonName(), field);
+            }
+            return byName;
+        });
+    }
+}
@@ -0,0 +1,627 @@
+package com.example.webhook;
+
+import com.example.streaming.FieldPath;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Message;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.Value;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes protobuf messages as JSON in the format webhook deliveries use: snake_case field names,
+ * every scalar field present with its default, enums by name, timestamps in RFC 3339 form, and
+ * unset nested messages as {@code null}. Unset oneof members and proto3 {@code optional} scalars are omitted.
+ *
+ * Each message type is specialized once, on first use, into a plan of field writers with pre-encoded
+ * field and enum names and method handles bound to the generated accessors. Writing a message then
+ * walks the plan straight into a Jackson {@link JsonGenerator}, without descriptor lookups, reflective
+ * field access, or intermediate strings.
+ */
+public final class ProtoJsonWriter {
+    private static final JsonFactory jsonFactory = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    private static final String TIMESTAMP_TYPE = Timestamp.getDescriptor().getFullName();
+    private static final String STRUCT_TYPE = Struct.getDescriptor().getFullName();
+    private static final String VALUE_TYPE = Value.getDescriptor().getFullName();
+    private static final String LIST_VALUE_TYPE = ListValue.getDescriptor().getFullName();
+
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType INT_GETTER = MethodType.methodType(int.class, Object.class);
+    private static final MethodType BOOLEAN_GETTER = MethodType.methodType(boolean.class, Object.class);
+
+    // Plans are shared by every writer of the same message class
+    private static final Map<Class<?>, MessagePlan> PLANS = new ConcurrentHashMap<>();
+
+    private final MessagePlan plan;
+
+    private ProtoJsonWriter(MessagePlan plan) {
+        this.plan = plan;
+    }
+
+    /**
+     * Creates a writer for a message type, building its plan if this is the first writer for the type.
+     *
+     * @param prototype Any instance of the message type, e.g. {@code SubscribeRobotStatusResponse.getDefaultInstance()}
+     * @return The writer
+     */
+    public static ProtoJsonWriter forType(Message prototype) {
+        return new ProtoJsonWriter(plan(prototype.getClass(), prototype.getDescriptorForType()));
+    }
+
+    /**
+     * Writes a message as a JSON object.
+     *
+     * @param message The message
+     * @param generator The generator to write to
+     * @throws IOException If writing fails
+     */
+    public void write(Message message, JsonGenerator generator) throws IOException {
+        plan.write(message, generator);
+    }
+
+    /**
+     * Writes the fields of a message into the JSON object the generator is currently writing,
+     * skipping one field. Used to nest a message's fields under an envelope.
+     *
+     * @param message The message
+     * @param generator The generator, positioned inside an object
+     * @param skippedField Proto name of a field to leave out, or null
+     * @throws IOException If writing fails
+     */
+    public void writeFields(Message message, JsonGenerator generator, String skippedField) throws IOException {
+        plan.writeFields(message, generator, skippedField);
+    }
+
+    /**
+     * Writes a message as UTF-8 JSON to an output stream. The stream is not closed.
+     *
+     * @param message The message
+     * @param out The stream to write to
+     * @throws IOException If writing fails
+     */
+    public void write(Message message, OutputStream out) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            plan.write(message, generator);
+        }
+    }
+
+    /**
+     * Writes a message as UTF-8 JSON into a buffer, starting at its position.
+     *
+     * @param message The message
+     * @param buffer The buffer to write to; its position is advanced past the written bytes
+     * @return The number of bytes written
+     * @throws IOException If writing fails
+     * @throws java.nio.BufferOverflowException If the buffer is too small
+     */
+    public int write(Message message, ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        write(message, new ByteBufferOutputStream(buffer));
+        return buffer.position() - start;
+    }
+
+    /**
+     * Creates a generator writing UTF-8 JSON to a stream, configured like the ones this class uses.
+     *
+     * @param out The stream to write to; it is not closed when the generator is closed
+     * @return The generator
+     * @throws IOException If the generator cannot be created
+     */
+    public static JsonGenerator createGenerator(OutputStream out) throws IOException {
+        return jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+    }
+
+    private static MessagePlan plan(Class<?> type, Descriptors.Descriptor descriptor) {
+        MessagePlan plan = PLANS.get(type);
+        if (plan != null) {
+            return plan;
+        }
+        // Plans are published fully built. Building never recurses: nested message plans are looked
+        // up when a field is first written, so recursive types need no placeholder. Threads racing
+        // on a new type may each build a plan; the first one published wins.
+        MessagePlan created = new MessagePlan(type, descriptor);
+        plan = PLANS.putIfAbsent(type, created);
+        return plan != null ? plan : created;
+    }
+
+    /**
+     * The specialized field writers of one message type.
+     */
+    private static final class MessagePlan {
+        private final FieldWriter[] fields;
+
+        MessagePlan(Class<?> type, Descriptors.Descriptor descriptor) {
+            List<FieldWriter> writers = new ArrayList<>();
+            for (Descriptors.FieldDescriptor field : descriptor.getFields()) {
+                writers.add(field.isMapField() ? MapFieldWriter.create(type, field) : ValueFieldWriter.create(type, field));
+            }
+            this.fields = writers.toArray(new FieldWriter[0]);
+        }
+
+        void write(Object message, JsonGenerator generator) throws IOException {
+            generator.writeStartObject();
+            for (FieldWriter field : fields) {
+                field.write(message, generator);
+            }
+            generator.writeEndObject();
+        }
+
+        void writeFields(Object message, JsonGenerator generator, String skippedField) throws IOException {
+            for (FieldWriter field : fields) {
+                if (!field.name().getValue().equals(skippedField)) {
+                    field.write(message, generator);
+                }
+            }
+        }
+    }
+
+    private interface FieldWriter {
+        SerializedString name();
+
+        void write(Object message, JsonGenerator generator) throws IOException;
+    }
+
+    private enum Kind {
+        INT, UINT, LONG, ULONG, FLOAT, DOUBLE, BOOL, STRING, BYTES, ENUM, TIMESTAMP, STRUCT, VALUE, LIST_VALUE, MESSAGE
+    }
+
+    /**
+     * Writes a singular or repeated field through its generated accessors.
+     */
+    private static final class ValueFieldWriter implements FieldWriter {
+        private final SerializedString name;
+        private final Kind kind;
+        private final boolean repeated;
+        private final MethodHandle getter;
+        private final MethodHandle hasser;
+        private final MethodHandle counter;
+        private final boolean nullWhenAbsent;
+        private final SerializedString[] enumNames;
+        private final Class<?> messageType;
+        private final Descriptors.Descriptor messageDescriptor;
+        // Resolved on first write
+        private volatile MessagePlan plan;
+
+        private ValueFieldWriter(Descriptors.FieldDescriptor field, Kind kind, MethodHandle getter, MethodHandle hasser,
+                                 MethodHandle counter, Class<?> messageType) {
+            this.name = new SerializedString(field.getName());
+            this.kind = kind;
+            this.repeated = field.isRepeated();
+            this.getter = getter;
+            this.hasser = hasser;
+            this.counter = counter;
+            // Unset nested messages are written as null; unset oneof members and optional scalars are left out
+            this.nullWhenAbsent = kind.compareTo(Kind.TIMESTAMP) >= 0 && field.getRealContainingOneof() == null;
+            this.enumNames = kind == Kind.ENUM ? enumNames(field.getEnumType()) : null;
+            this.messageType = messageType;
+            this.messageDescriptor = kind == Kind.MESSAGE ? field.getMessageType() : null;
+        }
+
+        static ValueFieldWriter create(Class<?> owner, Descriptors.FieldDescriptor field) {
+            Kind kind = kind(field);
+            String accessor = FieldPath.javaName(field.getName());
+            String getterName = "get" + accessor + (kind == Kind.ENUM ? "Value" : "");
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                Method getter = field.isRepeated() ? owner.getMethod(getterName, int.class) : owner.getMethod(getterName);
+                Class<?> returnType = getter.getReturnType();
+                MethodType type = field.isRepeated()
+                        ? MethodType.methodType(returnType.isPrimitive() ? returnType : Object.class, Object.class, int.class)
+                        : MethodType.methodType(returnType.isPrimitive() ? returnType : Object.class, Object.class);
+
+                MethodHandle counter = null;
+                MethodHandle hasser = null;
+                if (field.isRepeated()) {
+                    counter = lookup.unreflect(owner.getMethod("get" + accessor + "Count")).asType(INT_GETTER);
+                } else if (field.hasPresence()) {
+                    hasser = lookup.unreflect(owner.getMethod("has" + accessor)).asType(BOOLEAN_GETTER);
+                }
+                return new ValueFieldWriter(field, kind, lookup.unreflect(getter).asType(type), hasser, counter, returnType);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalArgumentException("Cannot bind accessor for field '" + field.getFullName()
+                        + "' on " + owner.getName(), e);
+            }
+        }
+
+        @Override
+        public SerializedString name() {
+            return name;
+        }
+
+        @Override
+        public void write(Object message, JsonGenerator generator) throws IOException {
+            try {
+                if (repeated) {
+                    int count = (int) counter.invokeExact(message);
+                    generator.writeFieldName(name);
+                    generator.writeStartArray();
+                    for (int i = 0; i < count; i++) {
+                        writeElement(message, i, generator);
+                    }
+                    generator.writeEndArray();
+                    return;
+                }
+
+                if (hasser != null && !(boolean) hasser.invokeExact(message)) {
+                    if (nullWhenAbsent) {
+                        generator.writeFieldName(name);
+                        generator.writeNull();
+                    }
+                    return;
+                }
+                generator.writeFieldName(name);
+                writeValue(message, generator);
+            } catch (IOException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Field accessor failed for " + name.getValue(), t);
+            }
+        }
+
+        private void writeValue(Object message, JsonGenerator generator) throws Throwable {
+            switch (kind) {
+                case INT:
+                    generator.writeNumber((int) getter.invokeExact(message));
+                    break;
+                case UINT:
+                    generator.writeNumber(Integer.toUnsignedLong((int) getter.invokeExact(message)));
+                    break;
+                case LONG:
+                    generator.writeNumber((long) getter.invokeExact(message));
+                    break;
+                case ULONG:
+                    writeUnsigned((long) getter.invokeExact(message), generator);
+                    break;
+                case FLOAT:
+                    generator.writeNumber((float) getter.invokeExact(message));
+                    break;
+                case DOUBLE:
+                    generator.writeNumber((double) getter.invokeExact(message));
+                    break;
+                case BOOL:
+                    generator.writeBoolean((boolean) getter.invokeExact(message));
+                    break;
+                case ENUM:
+                    writeEnum((int) getter.invokeExact(message), generator);
+                    break;
+                default:
+                    writeObject((Object) getter.invokeExact(message), generator);
+                    break;
+            }
+        }
+
+        private void writeElement(Object message, int index, JsonGenerator generator) throws Throwable {
+            switch (kind) {
+                case INT:
+                    generator.writeNumber((int) getter.invokeExact(message, index));
+                    break;
+                case UINT:
+                    generator.writeNumber(Integer.toUnsignedLong((int) getter.invokeExact(message, index)));
+                    break;
+                case LONG:
+                    generator.writeNumber((long) getter.invokeExact(message, index));
+                    break;
+                case ULONG:
+                    writeUnsigned((long) getter.invokeExact(message, index), generator);
+                    break;
+                case FLOAT:
+                    generator.writeNumber((float) getter.invokeExact(message, index));
+                    break;
+                case DOUBLE:
+                    generator.writeNumber((double) getter.invokeExact(message, index));
+                    break;
+                case BOOL:
+                    generator.writeBoolean((boolean) getter.invokeExact(message, index));
+                    break;
+                case ENUM:
+                    writeEnum((int) getter.invokeExact(message, index), generator);
+                    break;
+                default:
+                    writeObject((Object) getter.invokeExact(message, index), generator);
+                    break;
+            }
+        }
+
+        private void writeEnum(int number, JsonGenerator generator) throws IOException {
+            if (number >= 0 && number < enumNames.length && enumNames[number] != null) {
+                generator.writeString(enumNames[number]);
+            } else {
+                generator.writeNumber(number);
+            }
+        }
+
+        private void writeObject(Object value, JsonGenerator generator) throws IOException {
+            switch (kind) {
+                case STRING:
+                    generator.writeString((String) value);
+                    break;
+                case BYTES:
+                    generator.writeString(Base64.getEncoder().encodeToString(((ByteString) value).toByteArray()));
+                    break;
+                case TIMESTAMP:
+                    Timestamp timestamp = (Timestamp) value;
+                    generator.writeString(Instant.ofEpochSecond(timestamp.getSeconds(), timestamp.getNanos()).toString());
+                    break;
+                case STRUCT:
+                    writeStruct((Struct) value, generator);
+                    break;
+                case VALUE:
+                    writeStructValue((Value) value, generator);
+                    break;
+                case LIST_VALUE:
+                    writeListValue((ListValue) value, generator);
+                    break;
+                default:
+                    MessagePlan messagePlan = plan;
+                    if (messagePlan == null) {
+                        messagePlan = plan(messageType, messageDescriptor);
+                        plan = messagePlan;
+                    }
+                    messagePlan.write(value, generator);
+                    break;
+            }
+        }
+
+        private static Kind kind(Descriptors.FieldDescriptor field) {
+            switch (field.getType()) {
+                case INT32:
+                case SINT32:
+                case SFIXED32:
+                    return Kind.INT;
+                case UINT32:
+                case FIXED32:
+                    return Kind.UINT;
+                case INT64:
+                case SINT64:
+                case SFIXED64:
+                    return Kind.LONG;
+                case UINT64:
+                case FIXED64:
+                    return Kind.ULONG;
+                case FLOAT:
+                    return Kind.FLOAT;
+                case DOUBLE:
+                    return Kind.DOUBLE;
+                case BOOL:
+                    return Kind.BOOL;
+                case STRING:
+                    return Kind.STRING;
+                case BYTES:
+                    return Kind.BYTES;
+                case ENUM:
+                    return Kind.ENUM;
+                default:
+                    String typeName = field.getMessageType().getFullName();
+                    if (TIMESTAMP_TYPE.equals(typeName)) {
+                        return Kind.TIMESTAMP;
+                    } else if (STRUCT_TYPE.equals(typeName)) {
+                        return Kind.STRUCT;
+                    } else if (VALUE_TYPE.equals(typeName)) {
+                        return Kind.VALUE;
+                    } else if (LIST_VALUE_TYPE.equals(typeName)) {
+                        return Kind.LIST_VALUE;
+                    }
+                    return Kind.MESSAGE;
+            }
+        }
+    }
+
+    /**
+     * Writes a map field as a JSON object keyed by the map keys.
+     */
+    private static final class MapFieldWriter implements FieldWriter {
+        private final SerializedString name;
+        private final MethodHandle getter;
+        private final Descriptors.FieldDescriptor valueField;
+        private final SerializedString[] enumNames;
+        private final Class<?> valueType;
+        // Resolved on first write
+        private volatile MessagePlan plan;
+
+        private MapFieldWriter(Descriptors.FieldDescriptor field, MethodHandle getter, Class<?> valueType) {
+            this.name = new SerializedString(field.getName());
+            this.getter = getter;
+            this.valueField = field.getMessageType().findFieldByName("value");
+            this.enumNames = valueField.getJavaType() == Descriptors.FieldDescriptor.JavaType.ENUM
+                    ? enumNames(valueField.getEnumType()) : null;
+            this.valueType = valueType;
+        }
+
+        static MapFieldWriter create(Class<?> owner, Descriptors.FieldDescriptor field) {
+            Descriptors.FieldDescriptor valueField = field.getMessageType().findFieldByName("value");
+            boolean enumValues = valueField.getJavaType() == Descriptors.FieldDescriptor.JavaType.ENUM;
+            String getterName = "get" + FieldPath.javaName(field.getName()) + (enumValues ? "ValueMap" : "Map");
+            try {
+                Method getter = owner.getMethod(getterName);
+                Class<?> valueType = Object.class;
+                if (getter.getGenericReturnType() instanceof ParameterizedType) {
+                    java.lang.reflect.Type[] arguments = ((ParameterizedType) getter.getGenericReturnType()).getActualTypeArguments();
+                    if (arguments[1] instanceof Class) {
+                        valueType = (Class<?>) arguments[1];
+                    }
+                }
+                MethodHandle handle = MethodHandles.publicLookup().unreflect(getter).asType(OBJECT_GETTER);
+                return new MapFieldWriter(field, handle, valueType);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalArgumentException("Cannot bind accessor for field '" + field.getFullName()
+                        + "' on " + owner.getName(), e);
+            }
+        }
+
+        @Override
+        public SerializedString name() {
+            return name;
+        }
+
+        @Override
+        public void write(Object message, JsonGenerator generator) throws IOException {
+            Map<?, ?> map;
+            try {
+                map = (Map<?, ?>) (Object) getter.invokeExact(message);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Field accessor failed for " + name.getValue(), t);
+            }
+
+            generator.writeFieldName(name);
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                generator.writeFieldName(String.valueOf(entry.getKey()));
+                writeValue(entry.getValue(), generator);
+            }
+            generator.writeEndObject();
+        }
+
+        private void writeValue(Object value, JsonGenerator generator) throws IOException {
+            switch (valueField.getJavaType()) {
+                case INT:
+                    generator.writeNumber((Integer) value);
+                    break;
+                case LONG:
+                    generator.writeNumber((Long) value);
+                    break;
+                case FLOAT:
+                    generator.writeNumber((Float) value);
+                    break;
+                case DOUBLE:
+                    generator.writeNumber((Double) value);
+                    break;
+                case BOOLEAN:
+                    generator.writeBoolean((Boolean) value);
+                    break;
+                case STRING:
+                    generator.writeString((String) value);
+                    break;
+                case BYTE_STRING:
+                    generator.writeString(Base64.getEncoder().encodeToString(((ByteString) value).toByteArray()));
+                    break;
+                case ENUM:
+                    int number = (Integer) value;
+                    if (number >= 0 && number < enumNames.length && enumNames[number] != null) {
+                        generator.writeString(enumNames[number]);
+                    } else {
+                        generator.writeNumber(number);
+                    }
+                    break;
+                default:
+                    MessagePlan messagePlan = plan;
+                    if (messagePlan == null) {
+                        messagePlan = plan(valueType == Object.class ? value.getClass() : valueType,
+                                valueField.getMessageType());
+                        plan = messagePlan;
+                    }
+                    messagePlan.write(value, generator);
+                    break;
+            }
+        }
+    }
+
+    private static SerializedString[] enumNames(Descriptors.EnumDescriptor enumType) {
+        int max = 0;
+        for (Descriptors.EnumValueDescriptor value : enumType.getValues()) {
+            max = Math.max(max, value.getNumber());
+        }
+        SerializedString[] names = new SerializedString[Math.min(max, 1024) + 1];
+        for (Descriptors.EnumValueDescriptor value : enumType.getValues()) {
+            if (value.getNumber() >= 0 && value.getNumber() < names.length && names[value.getNumber()] == null) {
+                names[value.getNumber()] = new SerializedString(value.getName());
+            }
+        }
+        return names;
+    }
+
+    private static void writeUnsigned(long value, JsonGenerator generator) throws IOException {
+        if (value >= 0) {
+            generator.writeNumber(value);
+        } else {
+            generator.writeNumber(new BigInteger(Long.toUnsignedString(value)));
+        }
+    }
+
+    private static void writeStruct(Struct struct, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        for (Map.Entry<String, Value> field : struct.getFieldsMap().entrySet()) {
+            generator.writeFieldName(field.getKey());
+            writeStructValue(field.getValue(), generator);
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeListValue(ListValue list, JsonGenerator generator) throws IOException {
+        generator.writeStartArray();
+        for (Value element : list.getValuesList()) {
+            writeStructValue(element, generator);
+        }
+        generator.writeEndArray();
+    }
+
+    private static void writeStructValue(Value value, JsonGenerator generator) throws IOException {
+        switch (value.getKindCase()) {
+            case STRUCT_VALUE:
+                writeStruct(value.getStructValue(), generator);
+                break;
+            case LIST_VALUE:
+                writeListValue(value.getListValue(), generator);
+                break;
+            case STRING_VALUE:
+                generator.writeString(value.getStringValue());
+                break;
+            case NUMBER_VALUE:
+                generator.writeNumber(value.getNumberValue());
+                break;
+            case BOOL_VALUE:
+                generator.writeBoolean(value.getBoolValue());
+                break;
+            default:
+                generator.writeNull();
+                break;
+        }
+    }
+
+    /**
+     * Output stream writing into a {@link ByteBuffer}.
+     */
+    private static final class ByteBufferOutputStream extends OutputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferOutputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            buffer.put(bytes, offset, length);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.webhook;
+
+import com.example.streaming.FieldPath;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Message;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@code WebhookOptions.request_template} compiled against a streamed message type.
+ *
+ * Follows the webhook template rules: any string may embed {@code {{field_path}}} placeholders
+ * referencing {@code robot_id} or a scalar under {@code state.*}, the template's structure is
+ * preserved, non-string values are copied through, and a path that resolves to no value renders
+ * as an empty string. As with {@link com.example.streaming.CompiledFieldFilter}, {@code state.}
+ * paths are resolved relative to the streamed message itself, with webhook payload names such as
+ * {@code current_mission} mapped by {@link FieldPath#compileWebhookPath}.
+ *
+ * Compilation turns the template into a flat list of write operations with pre-encoded field names
+ * and literals and pre-compiled {@link FieldPath}s, so rendering writes straight to a Jackson
+ * {@link JsonGenerator} without building an intermediate JSON tree.
+ * A compiled template is immutable; {@link #render} may be called from any thread.
+ */
+public final class RequestTemplate {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Op[] ops;
+
+    private RequestTemplate(Op[] ops) {
+        this.ops = ops;
+    }
+
+    /**
+     * Compiles a template given as a JSON object string.
+     *
+     * @param templateJson The template, e.g. {@code {"robot": "{{robot_id}}"}}
+     * @param prototype Any instance of the message type the template will render
+     * @return The compiled template
+     * @throws IllegalArgumentException If the template is not a JSON object or references an invalid path
+     */
+    public static RequestTemplate compile(String templateJson, Message prototype) {
+        JsonNode template;
+        try {
+            template = objectMapper.readTree(templateJson);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Template is not valid JSON", e);
+        }
+        return compile(template, prototype);
+    }
+
+    /**
+     * Compiles a template given as the {@code request_template} Struct of a webhook configuration.
+     *
+     * @param template The template
+     * @param prototype Any instance of the message type the template will render
+     * @return The compiled template
+     * @throws IllegalArgumentException If the template references an invalid path
+     */
+    public static RequestTemplate compile(Struct template, Message prototype) {
+        return compile(toJsonNode(Value.newBuilder().setStructValue(template).build()), prototype);
+    }
+
+    private static RequestTemplate compile(JsonNode template, Message prototype) {
+        if (template == null || !template.isObject()) {
+            throw new IllegalArgumentException("Template must be a JSON object");
+        }
+        List<Op> ops = new ArrayList<>();
+        compileNode(template, prototype, ops);
+        return new RequestTemplate(ops.toArray(new Op[0]));
+    }
+
+    /**
+     * Renders the template for a message.
+     *
+     * @param message The message to take placeholder values from
+     * @param generator The generator to write the rendered JSON object to
+     * @throws IOException If writing fails
+     */
+    public void render(Message message, JsonGenerator generator) throws IOException {
+        for (Op op : ops) {
+            op.write(message, generator);
+        }
+    }
+
+    private static void compileNode(JsonNode node, Message prototype, List<Op> ops) {
+        if (node.isObject()) {
+            ops.add((message, generator) -> generator.writeStartObject());
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                SerializedString name = new SerializedString(field.getKey());
+                ops.add((message, generator) -> generator.writeFieldName(name));
+                compileNode(field.getValue(), prototype, ops);
+            }
+            ops.add((message, generator) -> generator.writeEndObject());
+        } else if (node.isArray()) {
+            ops.add((message, generator) -> generator.writeStartArray());
+            for (JsonNode element : node) {
+                compileNode(element, prototype, ops);
+            }
+            ops.add((message, generator) -> generator.writeEndArray());
+        } else if (node.isTextual()) {
+            ops.add(compileString(node.textValue(), prototype));
+        } else if (node.isIntegralNumber()) {
+            BigInteger value = node.bigIntegerValue();
+            ops.add((message, generator) -> generator.writeNumber(value));
+        } else if (node.isNumber()) {
+            BigDecimal value = node.decimalValue();
+            ops.add((message, generator) -> generator.writeNumber(value));
+        } else if (node.isBoolean()) {
+            boolean value = node.booleanValue();
+            ops.add((message, generator) -> generator.writeBoolean(value));
+        } else {
+            ops.add((message, generator) -> generator.writeNull());
+        }
+    }
+
+    private static Op compileString(String text, Message prototype) {
+        List<String> literals = new ArrayList<>();
+        List<FieldPath> paths = new ArrayList<>();
+
+        int position = 0;
+        while (true) {
+            int open = text.indexOf("{{", position);
+            int close = open < 0 ? -1 : text.indexOf("}}", open + 2);
+            if (close < 0) {
+                literals.add(text.substring(position));
+                break;
+            }
+            literals.add(text.substring(position, open));
+            paths.add(compilePath(text.substring(open + 2, close).trim(), prototype));
+            position = close + 2;
+        }
+
+        if (paths.isEmpty()) {
+            SerializedString literal = new SerializedString(text);
+            return (message, generator) -> generator.writeString(literal);
+        }
+        if (paths.size() == 1 && literals.get(0).isEmpty() && literals.get(1).isEmpty()) {
+            FieldPath path = paths.get(0);
+            return (message, generator) -> generator.writeString(path.readAsText(message));
+        }
+
+        String[] literalParts = literals.toArray(new String[0]);
+        FieldPath[] pathParts = paths.toArray(new FieldPath[0]);
+        return (message, generator) -> {
+            StringBuilder value = new StringBuilder(64);
+            for (int i = 0; i < pathParts.length; i++) {
+                value.append(literalParts[i]).append(pathParts[i].readAsText(message));
+            }
+            value.append(literalParts[pathParts.length]);
+            generator.writeString(value.toString());
+        };
+    }
+
+    private static FieldPath compilePath(String path, Message prototype) {
+        return FieldPath.compileWebhookPath(path, prototype);
+    }
+
+    private static JsonNode toJsonNode(Value value) {
+        JsonNodeFactory nodes = JsonNodeFactory.instance;
+        switch (value.getKindCase()) {
+            case STRUCT_VALUE:
+                ObjectNode object = nodes.objectNode();
+                for (Map.Entry<String, Value> field : value.getStructValue().getFieldsMap().entrySet()) {
+                    object.set(field.getKey(), toJsonNode(field.getValue()));
+                }
+                return object;
+            case LIST_VALUE:
+                ArrayNode array = nodes.arrayNode();
+                ListValue list = value.getListValue();
+                for (Value element : list.getValuesList()) {
+                    array.add(toJsonNode(element));
+                }
+                return array;
+            case STRING_VALUE:
+                return nodes.textNode(value.getStringValue());
+            case NUMBER_VALUE:
+                double number = value.getNumberValue();
+                // Struct stores every number as a double; keep integral values integral in the output
+                if (number == Math.rint(number) && Math.abs(number) < 1e15) {
+                    return nodes.numberNode((long) number);
+                }
+                return nodes.numberNode(number);
+            case BOOL_VALUE:
+                return nodes.booleanNode(value.getBoolValue());
+            default:
+                return nodes.nullNode();
+        }
+    }
+
+    /**
+     * A single compiled write operation.
+     */
+    @FunctionalInterface
+    private interface Op {
+        void write(Message message, JsonGenerator generator) throws IOException;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.webhook;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+import bearrobotics.api.v1.core.MissionStatus.MissionState;
+import bearrobotics.api.v1.core.MissionStatus.MissionStates;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeBatteryStatusResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeMissionStatusResponse;
+
+/**
+ * Parses the default webhook envelope ({@code {"robot_id": ..., "state": {...}}}) into the
+ * same response messages the streaming RPCs deliver, so one observer can consume both.
+ *
+ * The body is read with a streaming parser straight into the protobuf builders, without
+ * building an intermediate JSON tree.
+ */
+public final class WebhookEnvelopeParser {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private WebhookEnvelopeParser() {
+    }
+
+    /**
+     * Parses a {@code "mission"} event into a {@link SubscribeMissionStatusResponse}.
+     * The payload's {@code missions} and {@code current_mission_index} become {@code mission_states},
+     * and {@code current_mission} becomes {@code mission_state}.
+     *
+     * @param body The raw request body
+     * @return The parsed response
+     * @throws IOException If the body is not a valid mission envelope
+     */
+    public static SubscribeMissionStatusResponse parseMission(byte[] body) throws IOException {
+        SubscribeMissionStatusResponse.Builder response = SubscribeMissionStatusResponse.newBuilder();
+        MissionStates.Builder missionStates = MissionStates.newBuilder();
+
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            startEnvelope(parser);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if ("robot_id".equals(name)) {
+                    response.setRobotId(parser.getText());
+                } else if ("state".equals(name) && parser.currentToken() == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.getCurrentName();
+                        JsonToken token = parser.nextToken();
+                        if (token == JsonToken.VALUE_NULL) {
+                            continue;
+                        }
+                        switch (field) {
+                            case "metadata":
+                                ProtoJsonReader.merge(parser, response.getMetadataBuilder());
+                                break;
+                            case "missions":
+                                if (token != JsonToken.START_ARRAY) {
+                                    throw new IOException("Expected array for missions but found " + token);
+                                }
+                                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                                    if (token == null) {
+                                        throw new IOException("Webhook body ends inside missions");
+                                    }
+                                    if (token == JsonToken.START_OBJECT) {
+                                        ProtoJsonReader.merge(parser, missionStates.addMissionsBuilder());
+                                    } else {
+                                        parser.skipChildren();
+                                    }
+                                }
+                                break;
+                            case "current_mission_index":
+                                missionStates.setCurrentMissionIndex(parser.getValueAsInt());
+                                break;
+                            case "current_mission":
+                                MissionState.Builder current = MissionState.newBuilder();
+                                ProtoJsonReader.merge(parser, current);
+                                response.setMissionState(current);
+                                break;
+                            default:
+                                // current_goal is derived from mission_state, other fields are not part of the response
+                                parser.skipChildren();
+                                break;
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        return response.setMissionStates(missionStates).build();
+    }
+
+    /**
+     * Parses a {@code "battery"} event into a {@link SubscribeBatteryStatusResponse}.
+     *
+     * @param body The raw request body
+     * @return The parsed response
+     * @throws IOException If the body is not a valid battery envelope
+     */
+    public static SubscribeBatteryStatusResponse parseBattery(byte[] body) throws IOException {
+        SubscribeBatteryStatusResponse.Builder response = SubscribeBatteryStatusResponse.newBuilder();
+
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            startEnvelope(parser);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if ("robot_id".equals(name)) {
+                    response.setRobotId(parser.getText());
+                } else if ("state".equals(name) && parser.currentToken() == JsonToken.START_OBJECT) {
+                    // The battery payload has the same fields as the stream response
+                    ProtoJsonReader.merge(parser, response);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        return response.build();
+    }
+
+    private static void startEnvelope(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Webhook body is not a JSON object");
+        }
+    }
+}
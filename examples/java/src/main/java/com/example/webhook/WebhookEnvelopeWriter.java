@@ -0,0 +1,155 @@
+package com.example.webhook;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.google.protobuf.Message;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import bearrobotics.api.v1.core.AnnotationOuterClass.Goal;
+import bearrobotics.api.v1.core.Metadata.EventMetadata;
+import bearrobotics.api.v1.core.MissionStatus.MissionState;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeBatteryStatusResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeMissionStatusResponse;
+
+/**
+ * Writes stream responses in the default webhook envelope ({@code {"robot_id": ..., "state": {...}}}),
+ * the inverse of {@link WebhookEnvelopeParser}. Lets an exporter emit the same JSON Bear delivers to
+ * webhooks for events it received over a stream.
+ *
+ * All output goes through {@link ProtoJsonWriter}, so nothing is rendered through descriptors or
+ * intermediate strings.
+ */
+public final class WebhookEnvelopeWriter {
+    private static final SerializedString ROBOT_ID = new SerializedString("robot_id");
+    private static final SerializedString STATE = new SerializedString("state");
+    private static final SerializedString METADATA = new SerializedString("metadata");
+    private static final SerializedString MISSIONS = new SerializedString("missions");
+    private static final SerializedString CURRENT_MISSION_INDEX = new SerializedString("current_mission_index");
+    private static final SerializedString CURRENT_MISSION = new SerializedString("current_mission");
+    private static final SerializedString CURRENT_GOAL = new SerializedString("current_goal");
+
+    private static final ProtoJsonWriter metadataWriter = ProtoJsonWriter.forType(EventMetadata.getDefaultInstance());
+    private static final ProtoJsonWriter missionWriter = ProtoJsonWriter.forType(MissionState.getDefaultInstance());
+    private static final ProtoJsonWriter goalWriter = ProtoJsonWriter.forType(Goal.getDefaultInstance());
+    private static final ProtoJsonWriter batteryWriter =
+            ProtoJsonWriter.forType(SubscribeBatteryStatusResponse.getDefaultInstance());
+
+    private WebhookEnvelopeWriter() {
+    }
+
+    /**
+     * Writes a mission status response as a {@code "mission"} event. {@code mission_states} becomes
+     * {@code missions} and {@code current_mission_index}, {@code mission_state} becomes
+     * {@code current_mission}, and its active goal becomes {@code current_goal}.
+     *
+     * @param response The response
+     * @param generator The generator to write the envelope to
+     * @throws IOException If writing fails
+     */
+    public static void writeMission(SubscribeMissionStatusResponse response, JsonGenerator generator)
+            throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(ROBOT_ID);
+        generator.writeString(response.getRobotId());
+        generator.writeFieldName(STATE);
+        generator.writeStartObject();
+
+        generator.writeFieldName(METADATA);
+        if (response.hasMetadata()) {
+            metadataWriter.write(response.getMetadata(), generator);
+        } else {
+            generator.writeNull();
+        }
+
+        generator.writeFieldName(MISSIONS);
+        generator.writeStartArray();
+        for (MissionState mission : response.getMissionStates().getMissionsList()) {
+            missionWriter.write(mission, generator);
+        }
+        generator.writeEndArray();
+        generator.writeFieldName(CURRENT_MISSION_INDEX);
+        generator.writeNumber(response.getMissionStates().getCurrentMissionIndex());
+
+        generator.writeFieldName(CURRENT_MISSION);
+        if (response.hasMissionState()) {
+            MissionState current = response.getMissionState();
+            missionWriter.write(current, generator);
+            int goalIndex = current.getCurrentGoalIndex();
+            generator.writeFieldName(CURRENT_GOAL);
+            if (goalIndex >= 0 && goalIndex < current.getGoalsCount()) {
+                goalWriter.write(current.getGoals(goalIndex), generator);
+            } else {
+                generator.writeNull();
+            }
+        } else {
+            generator.writeNull();
+            generator.writeFieldName(CURRENT_GOAL);
+            generator.writeNull();
+        }
+
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes a battery status response as a {@code "battery"} event.
+     *
+     * @param response The response
+     * @param generator The generator to write the envelope to
+     * @throws IOException If writing fails
+     */
+    public static void writeBattery(SubscribeBatteryStatusResponse response, JsonGenerator generator)
+            throws IOException {
+        writeEnvelope(batteryWriter, response, response.getRobotId(), generator);
+    }
+
+    /**
+     * Writes any response carrying a {@code robot_id} field in the envelope shape, with the remaining
+     * fields of the response as the {@code state}.
+     *
+     * @param writer Writer for the response type
+     * @param response The response
+     * @param robotId The robot ID to put on the envelope
+     * @param generator The generator to write the envelope to
+     * @throws IOException If writing fails
+     */
+    public static void writeEnvelope(ProtoJsonWriter writer, Message response, String robotId,
+                                     JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(ROBOT_ID);
+        generator.writeString(robotId);
+        generator.writeFieldName(STATE);
+        generator.writeStartObject();
+        writer.writeFields(response, generator, "robot_id");
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes a mission status response as a {@code "mission"} event in UTF-8. The stream is not closed.
+     *
+     * @param response The response
+     * @param out The stream to write to
+     * @throws IOException If writing fails
+     */
+    public static void writeMission(SubscribeMissionStatusResponse response, OutputStream out) throws IOException {
+        try (JsonGenerator generator = ProtoJsonWriter.createGenerator(out)) {
+            writeMission(response, generator);
+        }
+    }
+
+    /**
+     * Writes a battery status response as a {@code "battery"} event in UTF-8. The stream is not closed.
+     *
+     * @param response The response
+     * @param out The stream to write to
+     * @throws IOException If writing fails
+     */
+    public static void writeBattery(SubscribeBatteryStatusResponse response, OutputStream out) throws IOException {
+        try (JsonGenerator generator = ProtoJsonWriter.createGenerator(out)) {
+            writeBattery(response, generator);
+        }
+    }
+}
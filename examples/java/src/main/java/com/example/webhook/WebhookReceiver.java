@@ -0,0 +1,240 @@
+package com.example.webhook;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeBatteryStatusResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeMissionStatusResponse;
+
+/**
+ * Embedded HTTP receiver for webhook deliveries.
+ *
+ * Each webhook subscription points at its own path on the receiver. Deliveries are parsed from the
+ * default envelope into the same response messages the streaming RPCs deliver and handed to a
+ * {@link StreamObserver}, so low-priority subscriptions can move from streams to webhooks without
+ * changing the consumer. To receive an event type from both a stream and webhooks, pass the same
+ * {@link com.example.streaming.DeduplicatingObserver} to both so each event is observed once.
+ *
+ * Connections are accepted and read by the JDK HTTP server's selector thread; parsing and observer
+ * callbacks run on a small handler pool (one thread by default, which keeps callbacks ordered).
+ * The receiver sends {@code 204} once the body is parsed, before calling the observer, and a body
+ * that cannot be decoded is answered with {@code 400}. The observer runs on the handler thread
+ * before the exchange is closed, so a slow observer delays the next delivery on that thread; hand
+ * slow work off to another executor.
+ */
+public class WebhookReceiver {
+    private static final Logger logger = Logger.getLogger(WebhookReceiver.class.getName());
+
+    /**
+     * Parses a webhook request body into an event.
+     *
+     * @param <T> The event type
+     */
+    @FunctionalInterface
+    public interface EnvelopeParser<T> {
+        T parse(byte[] body) throws IOException;
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String secretHeader;
+    // UTF-8 bytes, compared in constant time
+    private final byte[] secretValue;
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Creates a webhook receiver.
+     *
+     * @param port The port to listen on, or 0 for an ephemeral port
+     * @param handlerThreads Number of threads parsing deliveries and invoking observers
+     * @param secretHeader Name of the custom header carrying a shared secret, or null to accept all deliveries
+     * @param secretValue Expected value of the shared secret header
+     * @throws IOException If the server socket cannot be bound
+     */
+    public WebhookReceiver(int port, int handlerThreads, String secretHeader, String secretValue) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = Executors.newFixedThreadPool(handlerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "WebhookReceiver-Handler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.secretHeader = secretHeader;
+        this.secretValue = secretValue != null ? secretValue.getBytes(StandardCharsets.UTF_8) : null;
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Routes {@code "mission"} deliveries on a path to an observer.
+     *
+     * @param path The request path the subscription delivers to, e.g. {@code "/bear/mission"}
+     * @param observer The observer to receive parsed events
+     */
+    public void onMissionEvents(String path, StreamObserver<SubscribeMissionStatusResponse> observer) {
+        route(path, WebhookEnvelopeParser::parseMission, observer);
+    }
+
+    /**
+     * Routes {@code "battery"} deliveries on a path to an observer.
+     *
+     * @param path The request path the subscription delivers to, e.g. {@code "/bear/battery"}
+     * @param observer The observer to receive parsed events
+     */
+    public void onBatteryEvents(String path, StreamObserver<SubscribeBatteryStatusResponse> observer) {
+        route(path, WebhookEnvelopeParser::parseBattery, observer);
+    }
+
+    /**
+     * Routes deliveries on a path through a custom parser to an observer.
+     *
+     * @param path The request path
+     * @param parser Parser turning the request body into an event
+     * @param observer The observer to receive parsed events
+     * @param <T> The event type
+     */
+    public <T> void route(String path, EnvelopeParser<T> parser, StreamObserver<T> observer) {
+        server.createContext(path, exchange -> handle(exchange, parser, observer));
+        logger.info("Webhook receiver routing " + path);
+    }
+
+    /**
+     * Starts accepting deliveries.
+     */
+    public void start() {
+        server.start();
+        logger.info("Webhook receiver listening on port " + getPort());
+    }
+
+    /**
+     * Gets the port the receiver is bound to.
+     *
+     * @return The local port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Gets the number of deliveries handed to observers.
+     *
+     * @return The delivered count
+     */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * Gets the number of deliveries rejected as unauthorized or malformed.
+     *
+     * @return The rejected count
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Stops the receiver, waiting briefly for in-flight deliveries.
+     *
+     * @throws InterruptedException If interrupted while waiting for handlers to finish
+     */
+    public void shutdown() throws InterruptedException {
+        server.stop(1);
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        logger.info("Webhook receiver stopped");
+    }
+
+    private <T> void handle(HttpExchange exchange, EnvelopeParser<T> parser, StreamObserver<T> observer)
+            throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (secretHeader != null && !hasSecret(exchange.getRequestHeaders().getFirst(secretHeader))) {
+                rejected.incrementAndGet();
+                exchange.sendResponseHeaders(401, -1);
+                return;
+            }
+
+            T event;
+            try (InputStream body = exchange.getRequestBody()) {
+                event = parser.parse(body.readAllBytes());
+            } catch (IOException | RuntimeException e) {
+                rejected.incrementAndGet();
+                logger.log(Level.WARNING, "Malformed webhook delivery on " + exchange.getRequestURI().getPath(), e);
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            exchange.sendResponseHeaders(204, -1);
+            delivered.incrementAndGet();
+
+            try {
+                observer.onNext(event);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Error in webhook callback for " + exchange.getRequestURI().getPath(), e);
+            }
+        }
+    }
+
+    /**
+     * Checks a delivered secret without leaking how much of it matched through the comparison time.
+     */
+    private boolean hasSecret(String provided) {
+        return provided != null && MessageDigest.isEqual(secretValue, provided.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Builder class for easier construction of WebhookReceiver instances.
+     */
+    public static class Builder {
+        private int port = 8080;
+        private int handlerThreads = 1;
+        private String secretHeader;
+        private String secretValue;
+
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder handlerThreads(int threads) {
+            this.handlerThreads = threads;
+            return this;
+        }
+
+        /**
+         * Require a custom header configured in {@code WebhookOptions.headers} on every delivery.
+         */
+        public Builder sharedSecret(String header, String value) {
+            this.secretHeader = header;
+            this.secretValue = value;
+            return this;
+        }
+
+        public WebhookReceiver build() throws IOException {
+            if (handlerThreads < 1) {
+                throw new IllegalArgumentException("handlerThreads must be at least 1");
+            }
+            if (secretHeader != null && secretValue == null) {
+                throw new IllegalArgumentException("secret value is required when a secret header is set");
+            }
+
+            return new WebhookReceiver(port, handlerThreads, secretHeader, secretValue);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.analytics;
+
+import com.google.protobuf.Timestamp;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import bearrobotics.api.v1.core.Errors.ErrorCode;
+import bearrobotics.api.v1.core.Metadata.EventMetadata;
+
+class ErrorCodeAggregatorTest {
+    private static final long NOW_MS = 1_000_000_000L;
+
+    private static EventMetadata at(long timeMs) {
+        return EventMetadata.newBuilder().setTimestamp(Timestamp.newBuilder().setSeconds(timeMs / 1000)).build();
+    }
+
+    private static List<ErrorCode> code(int code) {
+        return List.of(ErrorCode.newBuilder().setCode(code).setSeverity(ErrorCode.Severity.SEVERITY_HIGH).build());
+    }
+
+    @Test
+    void futureDatedRobotDoesNotSlideWindow() {
+        ErrorCodeAggregator aggregator = new ErrorCodeAggregator.Builder().window(60_000, 6).build();
+        aggregator.onErrorCodes("r1", code(1), at(NOW_MS), NOW_MS);
+        // Clock a day ahead
+        aggregator.onErrorCodes("r2", code(2), at(NOW_MS + 86_400_000L), NOW_MS);
+        aggregator.onErrorCodes("r3", code(3), at(NOW_MS), NOW_MS);
+
+        assertEquals(1, aggregator.getCount(1));
+        assertEquals(1, aggregator.getCount(2));
+        assertEquals(1, aggregator.getCount(3));
+        assertEquals(NOW_MS, aggregator.getFirstSeenMs("r2", 2));
+    }
+
+    @Test
+    void countsCodeOncePerAppearance() {
+        ErrorCodeAggregator aggregator = new ErrorCodeAggregator.Builder().window(60_000, 6).build();
+        aggregator.onErrorCodes("r1", code(1), at(NOW_MS), NOW_MS);
+        aggregator.onErrorCodes("r1", code(1), at(NOW_MS + 1000), NOW_MS + 1000);
+        aggregator.onErrorCodes("r1", List.of(), at(NOW_MS + 2000), NOW_MS + 2000);
+        aggregator.onErrorCodes("r1", code(1), at(NOW_MS + 3000), NOW_MS + 3000);
+
+        assertEquals(2, aggregator.getCount(1));
+        assertEquals(2, aggregator.getSeverityCount(ErrorCode.Severity.SEVERITY_HIGH));
+        assertEquals(1, aggregator.getTopCodes(5).get(0).getCode());
+    }
+
+    @Test
+    void rejectsNegativeTopCodesLimit() {
+        ErrorCodeAggregator aggregator = new ErrorCodeAggregator.Builder().build();
+
+        assertThrows(IllegalArgumentException.class, () -> aggregator.getTopCodes(-1));
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.analytics;
+
+import com.google.protobuf.Timestamp;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import bearrobotics.api.v1.core.Metadata.EventMetadata;
+import bearrobotics.api.v1.core.MissionStatus.MissionState;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeMissionStatusResponse;
+
+class MissionAnalyticsTest {
+    private static final long WINDOW_MS = 60_000;
+
+    private static SubscribeMissionStatusResponse event(String robotId, MissionState.State state, long timeMs) {
+        return SubscribeMissionStatusResponse.newBuilder()
+                .setRobotId(robotId)
+                .setMetadata(EventMetadata.newBuilder().setTimestamp(Timestamp.newBuilder()
+                        .setSeconds(timeMs / 1000).setNanos((int) (timeMs % 1000) * 1_000_000)))
+                .setMissionState(MissionState.newBuilder().setMissionId("m-" + robotId).setState(state))
+                .build();
+    }
+
+    @Test
+    void expiresAggregatesByEventTime() {
+        MissionAnalytics analytics = new MissionAnalytics(WINDOW_MS, 6, WINDOW_MS);
+        // Replayed events from long ago are already outside any window ending now
+        analytics.onMissionStatus(event("r1", MissionState.State.STATE_RUNNING, 1_000));
+
+        analytics.onMissionStatus(event("r2", MissionState.State.STATE_RUNNING, 1_000 + 2 * WINDOW_MS));
+
+        assertEquals(Set.of("r2"), analytics.getKeys(MissionAnalytics.Dimension.ROBOT));
+    }
+
+    @Test
+    void sweepReleasesQuietFleet() {
+        MissionAnalytics analytics = new MissionAnalytics(WINDOW_MS, 6, WINDOW_MS);
+        analytics.onMissionStatus(event("r1", MissionState.State.STATE_RUNNING, 1_000));
+        analytics.onMissionStatus(event("r1", MissionState.State.STATE_SUCCEEDED, 5_000));
+
+        analytics.sweep(5_000 + WINDOW_MS / 2);
+        assertEquals(Set.of("r1"), analytics.getKeys(MissionAnalytics.Dimension.ROBOT));
+        assertEquals(1, analytics.getTrackedMissionCount());
+
+        analytics.sweep(5_000 + 2 * WINDOW_MS);
+        assertEquals(Set.of(), analytics.getKeys(MissionAnalytics.Dimension.ROBOT));
+        assertEquals(Set.of(), analytics.getKeys(MissionAnalytics.Dimension.FLEET));
+        assertEquals(0, analytics.getTrackedMissionCount());
+    }
+}
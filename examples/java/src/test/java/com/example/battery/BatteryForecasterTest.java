@@ -0,0 +1,77 @@
+package com.example.battery;
+
+import com.google.protobuf.Timestamp;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import bearrobotics.api.v1.core.Metadata.EventMetadata;
+import bearrobotics.api.v1.core.RobotStatus.BatteryState;
+
+class BatteryForecasterTest {
+    private static final long START_MS = 1_700_000_000_000L;
+    private static final long MINUTE_MS = 60_000;
+
+    private static void report(BatteryForecaster forecaster, String robotId, BatteryState.State state,
+                               double percent, long timeMs) {
+        forecaster.onBatteryStatus(robotId,
+                BatteryState.newBuilder().setState(state).setChargePercent((int) Math.round(percent)).build(),
+                EventMetadata.newBuilder().setTimestamp(Timestamp.newBuilder()
+                        .setSeconds(timeMs / 1000).setNanos((int) (timeMs % 1000) * 1_000_000)).build());
+    }
+
+    @Test
+    void learnsIdleDrainDespiteRounding() {
+        BatteryForecaster forecaster = new BatteryForecaster();
+        for (int minute = 0; minute <= 180; minute++) {
+            report(forecaster, "r1", BatteryState.State.STATE_DISCHARGING, 100 - 6.0 * minute / 60,
+                    START_MS + minute * MINUTE_MS);
+        }
+
+        assertEquals(6.0, forecaster.getDrainPerHour("r1"), 0.3);
+        // 82% left after three hours, 62 points above the threshold
+        double hours = forecaster.getTimeToThresholdMs("r1", 20) / (double) (60 * MINUTE_MS);
+        assertEquals(62.0 / 6, hours, 0.5);
+    }
+
+    @Test
+    void learnsMissionDrainSeparately() {
+        BatteryForecaster forecaster = new BatteryForecaster();
+        forecaster.setActive("r1", true, START_MS);
+        for (int minute = 0; minute <= 180; minute++) {
+            report(forecaster, "r1", BatteryState.State.STATE_DISCHARGING, 100 - 20.0 * minute / 60,
+                    START_MS + minute * MINUTE_MS);
+        }
+
+        // Almost all recent time was on missions, and the idle rate stays at its 3%/h prior
+        assertEquals(20.0, forecaster.getDrainPerHour("r1"), 1.0);
+        forecaster.setActive("r1", false, START_MS + 180 * MINUTE_MS);
+        assertTrue(forecaster.getDrainPerHour("r1") > 3);
+    }
+
+    @Test
+    void learnsChargeRate() {
+        BatteryForecaster forecaster = new BatteryForecaster();
+        for (int minute = 0; minute <= 60; minute++) {
+            report(forecaster, "r1", BatteryState.State.STATE_CHARGING, 20 + 40.0 * minute / 60,
+                    START_MS + minute * MINUTE_MS);
+        }
+
+        assertEquals(40.0, forecaster.getChargeRatePerHour("r1"), 1.0);
+        assertEquals(Long.MAX_VALUE, forecaster.getTimeToThresholdMs("r1", 20));
+        // From 60% to 80% at 40%/h
+        assertEquals(30 * MINUTE_MS, forecaster.getTimeToChargeMs("r1", 80), 2 * MINUTE_MS);
+    }
+
+    @Test
+    void usesPriorsUntilRatesAreLearned() {
+        BatteryForecaster forecaster = new BatteryForecaster();
+        report(forecaster, "r1", BatteryState.State.STATE_DISCHARGING, 50, START_MS);
+
+        assertEquals(3.0, forecaster.getDrainPerHour("r1"), 1e-9);
+        assertEquals(10 * 60 * MINUTE_MS, forecaster.getTimeToThresholdMs("r1", 20));
+        assertEquals(-1, forecaster.getTimeToThresholdMs("unknown", 20));
+        assertTrue(Double.isNaN(forecaster.getDrainPerHour("unknown")));
+    }
+}
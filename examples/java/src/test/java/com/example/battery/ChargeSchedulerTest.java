@@ -0,0 +1,103 @@
+package com.example.battery;
+
+import com.example.rules.RuleAction;
+import com.google.protobuf.Timestamp;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import bearrobotics.api.v1.core.Metadata.EventMetadata;
+import bearrobotics.api.v1.core.RobotStatus.BatteryState;
+
+class ChargeSchedulerTest {
+    private final BatteryForecaster forecaster = new BatteryForecaster();
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final long nowMs = System.currentTimeMillis();
+
+    private ChargeScheduler scheduler(int chargers, RuleAction action) {
+        return new ChargeScheduler.Builder()
+                .forecaster(forecaster)
+                .chargeAction(action)
+                .chargersPerLocation(chargers)
+                .build();
+    }
+
+    private RuleAction recording() {
+        return (robotId, state) -> {
+            sent.add(robotId);
+            return CompletableFuture.completedFuture(null);
+        };
+    }
+
+    private void discharging(String robotId, int percent) {
+        forecaster.onBatteryStatus(robotId,
+                BatteryState.newBuilder().setState(BatteryState.State.STATE_DISCHARGING).setChargePercent(percent).build(),
+                EventMetadata.newBuilder().setTimestamp(Timestamp.newBuilder().setSeconds(nowMs / 1000)).build());
+    }
+
+    @Test
+    void dispatchesRobotDueWithinMargin() {
+        ChargeScheduler scheduler = scheduler(2, recording());
+        // Already at the threshold, while 60% at 3%/h leaves over 13 hours
+        discharging("r1", 20);
+        discharging("r2", 60);
+
+        assertEquals(List.of("r1"), sent);
+        assertEquals(List.of("r1"), scheduler.getCharging(""));
+        assertEquals(List.of("r2"), scheduler.getQueue(""));
+        scheduler.shutdown();
+    }
+
+    @Test
+    void congestionPullsChargingForward() {
+        ChargeScheduler scheduler = scheduler(1, recording());
+        // Each robot reaches 20% in 3h20m and needs an hour on the single charger
+        for (int i = 1; i <= 4; i++) {
+            discharging("r" + i, 30);
+        }
+        assertTrue(sent.isEmpty());
+
+        discharging("r5", 30);
+        assertEquals(1, sent.size());
+        assertEquals(1, scheduler.getDispatched());
+        assertEquals(4, scheduler.getQueue("").size());
+        scheduler.shutdown();
+    }
+
+    @Test
+    void failedDispatchReturnsRobotToQueue() {
+        ChargeScheduler scheduler = scheduler(1, (robotId, state) -> {
+            sent.add(robotId);
+            return CompletableFuture.failedFuture(new IllegalStateException("refused"));
+        });
+        discharging("r1", 20);
+
+        assertEquals(List.of("r1"), sent);
+        assertEquals(1, scheduler.getFailed());
+        assertEquals(List.of("r1"), scheduler.getQueue(""));
+        assertTrue(scheduler.getCharging("").isEmpty());
+        scheduler.shutdown();
+    }
+
+    @Test
+    void ignoresUpdatesAfterShutdown() {
+        ChargeScheduler scheduler = new ChargeScheduler.Builder()
+                .forecaster(forecaster)
+                .chargeAction(recording())
+                .minSpacing(0, TimeUnit.MILLISECONDS)
+                .build();
+        scheduler.shutdown();
+
+        scheduler.setLocation("r1", "l1");
+        discharging("r1", 20);
+
+        assertTrue(sent.isEmpty());
+        assertTrue(scheduler.getQueue("l1").isEmpty());
+    }
+}
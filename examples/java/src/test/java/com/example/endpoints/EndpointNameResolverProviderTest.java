@@ -0,0 +1,124 @@
+package com.example.endpoints;
+
+import io.grpc.ManagedChannel;
+import io.grpc.NameResolver;
+import io.grpc.ProxiedSocketAddress;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import bearrobotics.api.v1.services.cloud.APIServiceGrpc;
+import bearrobotics.api.v1.services.cloud.ApiService.GetRobotStatusRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.GetRobotStatusResponse;
+
+class EndpointNameResolverProviderTest {
+    private final List<Server> servers = new ArrayList<>();
+    private ManagedChannel channel;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        if (channel != null) {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        for (Server server : servers) {
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Starts a local API server that counts the GetRobotStatus calls it serves.
+     */
+    private String startServer(AtomicInteger calls) throws Exception {
+        Server server = ServerBuilder.forPort(0)
+                .addService(new APIServiceGrpc.APIServiceImplBase() {
+                    @Override
+                    public void getRobotStatus(GetRobotStatusRequest request,
+                                               StreamObserver<GetRobotStatusResponse> responseObserver) {
+                        calls.incrementAndGet();
+                        responseObserver.onNext(GetRobotStatusResponse.getDefaultInstance());
+                        responseObserver.onCompleted();
+                    }
+                })
+                .build()
+                .start();
+        servers.add(server);
+        return "localhost:" + server.getPort();
+    }
+
+    @Test
+    void balancesCallsOverEveryEndpoint() throws Exception {
+        List<AtomicInteger> calls = new ArrayList<>();
+        List<String> endpoints = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            calls.add(new AtomicInteger());
+            endpoints.add(startServer(calls.get(i)));
+        }
+        channel = MultiEndpointChannels.forEndpoints(endpoints).usePlaintext().build();
+        APIServiceGrpc.APIServiceBlockingStub stub = APIServiceGrpc.newBlockingStub(channel)
+                .withWaitForReady();
+
+        for (int i = 0; i < 30; i++) {
+            stub.withDeadlineAfter(5, TimeUnit.SECONDS).getRobotStatus(GetRobotStatusRequest.getDefaultInstance());
+        }
+
+        for (AtomicInteger served : calls) {
+            assertTrue(served.get() > 0, "every endpoint should serve calls: " + calls);
+        }
+    }
+
+    @Test
+    void malformedPortFailsResolutionAndAllowsRefresh() throws InterruptedException {
+        BlockingQueue<Status> errors = new LinkedBlockingQueue<>();
+        NameResolver.Args args = NameResolver.Args.newBuilder()
+                .setDefaultPort(443)
+                .setProxyDetector(address -> (ProxiedSocketAddress) null)
+                .setSynchronizationContext(new SynchronizationContext((thread, e) -> { }))
+                .setServiceConfigParser(new NameResolver.ServiceConfigParser() {
+                    @Override
+                    public NameResolver.ConfigOrError parseServiceConfig(Map<String, ?> rawServiceConfig) {
+                        return NameResolver.ConfigOrError.fromConfig(rawServiceConfig);
+                    }
+                })
+                .build();
+        NameResolver resolver = new EndpointNameResolverProvider()
+                .newNameResolver(URI.create(EndpointNameResolverProvider.target(List.of("localhost:44x"))), args);
+        resolver.start(new NameResolver.Listener2() {
+            @Override
+            public void onResult(NameResolver.ResolutionResult resolutionResult) {
+            }
+
+            @Override
+            public void onError(Status error) {
+                errors.add(error);
+            }
+        });
+
+        Status first = errors.poll(5, TimeUnit.SECONDS);
+        assertNotNull(first);
+        assertEquals(Status.Code.INVALID_ARGUMENT, first.getCode());
+
+        // The failed resolution must not leave the resolver stuck
+        resolver.refresh();
+        Status second = errors.poll(5, TimeUnit.SECONDS);
+        assertNotNull(second);
+        assertEquals(Status.Code.INVALID_ARGUMENT, second.getCode());
+        resolver.shutdown();
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.endpoints;
+
+import com.example.streaming.StreamingClient;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import bearrobotics.api.v1.services.cloud.APIServiceGrpc;
+import bearrobotics.api.v1.services.cloud.ApiService.GetRobotStatusRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.GetRobotStatusResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusResponse;
+
+class MultiEndpointChannelsTest {
+    private final Map<String, Server> servers = new HashMap<>();
+    private final Map<String, List<StreamObserver<SubscribeRobotStatusResponse>>> streams = new ConcurrentHashMap<>();
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+    private ManagedChannel channel;
+    private StreamingClient<SubscribeRobotStatusRequest, SubscribeRobotStatusResponse> client;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        if (client != null) {
+            client.stop();
+        }
+        if (channel != null) {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        for (Server server : servers.values()) {
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Starts a local API server whose streams send one event naming the endpoint and stay open, and
+     * whose GetRobotStatus calls fail if {@code failing} is set.
+     */
+    private String startServer(boolean failing, AtomicInteger calls) throws Exception {
+        String[] endpoint = new String[1];
+        Server server = ServerBuilder.forPort(0)
+                .addService(new APIServiceGrpc.APIServiceImplBase() {
+                    @Override
+                    public void subscribeRobotStatus(SubscribeRobotStatusRequest request,
+                                                     StreamObserver<SubscribeRobotStatusResponse> responseObserver) {
+                        streams.get(endpoint[0]).add(responseObserver);
+                        responseObserver.onNext(SubscribeRobotStatusResponse.newBuilder().setRobotId(endpoint[0]).build());
+                    }
+
+                    @Override
+                    public void getRobotStatus(GetRobotStatusRequest request,
+                                               StreamObserver<GetRobotStatusResponse> responseObserver) {
+                        calls.incrementAndGet();
+                        if (failing) {
+                            responseObserver.onError(Status.UNAVAILABLE.withDescription("Upstream down").asRuntimeException());
+                            return;
+                        }
+                        responseObserver.onNext(GetRobotStatusResponse.getDefaultInstance());
+                        responseObserver.onCompleted();
+                    }
+                })
+                .build()
+                .start();
+        endpoint[0] = "localhost:" + server.getPort();
+        servers.put(endpoint[0], server);
+        streams.put(endpoint[0], new CopyOnWriteArrayList<>());
+        return endpoint[0];
+    }
+
+    /**
+     * Drops an endpoint's open streams the way a dying relay does, and shuts it down.
+     */
+    private void kill(String endpoint) {
+        for (StreamObserver<SubscribeRobotStatusResponse> stream : streams.get(endpoint)) {
+            stream.onError(Status.UNAVAILABLE.withDescription("Relay going away").asRuntimeException());
+        }
+        servers.get(endpoint).shutdownNow();
+    }
+
+    private void startStream(List<String> endpoints, long minHealthyMs) {
+        channel = MultiEndpointChannels.forEndpoints(endpoints).usePlaintext().build();
+        client = new StreamingClient.Builder<SubscribeRobotStatusRequest, SubscribeRobotStatusResponse>()
+                .rpcMethod(APIServiceGrpc.newStub(channel)::subscribeRobotStatus)
+                .request(SubscribeRobotStatusRequest.getDefaultInstance())
+                .reconnectDelay(60)
+                .immediateFailover(true)
+                .failoverMinHealthy(minHealthyMs, TimeUnit.MILLISECONDS)
+                .observer(new StreamObserver<SubscribeRobotStatusResponse>() {
+                    @Override
+                    public void onNext(SubscribeRobotStatusResponse value) {
+                        events.add(value.getRobotId());
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                })
+                .build();
+        Thread thread = new Thread(() -> {
+            try {
+                client.startStreaming();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Test
+    void streamMigratesWhenItsEndpointDies() throws Exception {
+        List<String> endpoints = List.of(startServer(false, new AtomicInteger()), startServer(false, new AtomicInteger()));
+        startStream(endpoints, 0);
+
+        String first = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(first);
+        kill(first);
+
+        // The reconnect delay is a minute; only failover reopens the stream in time
+        String second = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(second);
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    void streamThatWasNotHealthyLongWaitsForReconnectDelay() throws Exception {
+        List<String> endpoints = List.of(startServer(false, new AtomicInteger()), startServer(false, new AtomicInteger()));
+        startStream(endpoints, TimeUnit.HOURS.toMillis(1));
+
+        String first = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(first);
+        kill(first);
+
+        assertNull(events.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void failingEndpointIsEjected() throws Exception {
+        AtomicInteger badCalls = new AtomicInteger();
+        List<String> endpoints = List.of(startServer(false, new AtomicInteger()), startServer(true, badCalls));
+        EndpointNameResolverProvider.register();
+        channel = ManagedChannelBuilder.forTarget(EndpointNameResolverProvider.target(endpoints))
+                .defaultServiceConfig(MultiEndpointChannels.serviceConfig("1s"))
+                .usePlaintext()
+                .build();
+        APIServiceGrpc.APIServiceBlockingStub stub = APIServiceGrpc.newBlockingStub(channel).withWaitForReady();
+
+        // Round-robin alternates between the endpoints until the failing one is ejected
+        int consecutiveSuccesses = 0;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (consecutiveSuccesses < 50 && System.nanoTime() < deadline) {
+            try {
+                stub.withDeadlineAfter(5, TimeUnit.SECONDS).getRobotStatus(GetRobotStatusRequest.getDefaultInstance());
+                consecutiveSuccesses++;
+            } catch (StatusRuntimeException e) {
+                consecutiveSuccesses = 0;
+                Thread.sleep(5);
+            }
+        }
+        assertTrue(consecutiveSuccesses >= 50, "the failing endpoint should be ejected");
+        assertTrue(badCalls.get() >= 20, "the failing endpoint should have served calls first: " + badCalls);
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.export;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SegmentReaderTest {
+    @TempDir
+    Path dir;
+
+    private static SegmentWriter.Schema telemetry() {
+        return new SegmentWriter.Schema("telemetry")
+                .column("robot_id", ColumnType.DICTIONARY)
+                .column("timestamp", ColumnType.DELTA_LONG)
+                .column("battery", ColumnType.LONG)
+                .column("x", ColumnType.DOUBLE)
+                .column("state", ColumnType.DICTIONARY)
+                .sortBy("robot_id", "timestamp");
+    }
+
+    private static void row(SegmentWriter writer, String robot, long timestamp, long battery, double x, String state) {
+        writer.setString(0, robot);
+        writer.setLong(1, timestamp);
+        writer.setLong(2, battery);
+        writer.setDouble(3, x);
+        if (state != null) {
+            writer.setString(4, state);
+        }
+        writer.endRow();
+    }
+
+    @Test
+    void roundTripsEveryColumnTypeInSortOrder() throws IOException {
+        // Starts small so the column arrays have to grow
+        SegmentWriter writer = new SegmentWriter(telemetry(), 1);
+        row(writer, "r2", 2_000, Long.MAX_VALUE, Double.NaN, "IDLE");
+        row(writer, "r1", 1_500, -1, -0.0, "MOVING");
+        row(writer, "r2", 1_000, Long.MIN_VALUE, Double.POSITIVE_INFINITY, "IDLE");
+        row(writer, "r1", 500, 0, 1.25, null);
+        for (int i = 0; i < 40; i++) {
+            row(writer, "r3", 10_000 + i * 100, 50 - i, 3.5 + i * 0.001, "MOVING");
+        }
+        Path path = dir.resolve("segment.brsg");
+        writer.write(path);
+
+        SegmentReader reader = SegmentReader.open(path);
+        assertEquals("telemetry", reader.getTable());
+        assertEquals(44, reader.getRowCount());
+        assertEquals(List.of("robot_id", "timestamp", "battery", "x", "state"), reader.getColumnNames());
+        assertEquals(ColumnType.DOUBLE, reader.getColumnType("x"));
+
+        // Rows are clustered by robot in first-seen order, then ordered by time; the timestamp
+        // deltas go negative between robots
+        String[] robots = reader.readStrings("robot_id");
+        long[] timestamps = reader.readLongs("timestamp");
+        assertEquals(List.of("r2", "r2", "r1", "r1", "r3"), Arrays.asList(robots).subList(0, 5));
+        assertArrayEquals(new long[] {1_000, 2_000, 500, 1_500, 10_000}, Arrays.copyOf(timestamps, 5));
+        assertEquals(13_900, timestamps[43]);
+
+        long[] battery = reader.readLongs("battery");
+        assertArrayEquals(new long[] {Long.MIN_VALUE, Long.MAX_VALUE, 0, -1, 50}, Arrays.copyOf(battery, 5));
+        assertEquals(11, battery[43]);
+
+        double[] x = reader.readDoubles("x");
+        assertEquals(Double.POSITIVE_INFINITY, x[0]);
+        assertEquals(Double.doubleToRawLongBits(Double.NaN), Double.doubleToRawLongBits(x[1]));
+        assertEquals(1.25, x[2]);
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(x[3]));
+        for (int i = 0; i < 40; i++) {
+            assertEquals(3.5 + i * 0.001, x[4 + i]);
+        }
+
+        // Code 0 is the empty string of unset cells; codes follow first-seen order
+        assertArrayEquals(new String[] {"", "IDLE", "MOVING"}, reader.readDictionary("state"));
+        assertArrayEquals(new int[] {1, 1, 0, 2, 2}, Arrays.copyOf(reader.readCodes("state"), 5));
+        assertEquals("", reader.readStrings("state")[2]);
+    }
+
+    @Test
+    void readsEmptySegment() throws IOException {
+        Path path = dir.resolve("empty.brsg");
+        new SegmentWriter(telemetry(), 0).write(path);
+
+        SegmentReader reader = SegmentReader.open(path);
+        assertEquals(0, reader.getRowCount());
+        assertEquals(0, reader.readLongs("timestamp").length);
+        assertEquals(0, reader.readDoubles("x").length);
+        assertEquals(0, reader.readCodes("robot_id").length);
+        assertArrayEquals(new String[] {""}, reader.readDictionary("robot_id"));
+    }
+
+    @Test
+    void rejectsWrongColumnType() throws IOException {
+        Path path = dir.resolve("segment.brsg");
+        new SegmentWriter(telemetry(), 0).write(path);
+        SegmentReader reader = SegmentReader.open(path);
+
+        assertThrows(IllegalArgumentException.class, () -> reader.readLongs("x"));
+        assertThrows(IllegalArgumentException.class, () -> reader.readDoubles("timestamp"));
+        assertThrows(IllegalArgumentException.class, () -> reader.readCodes("battery"));
+        assertThrows(IllegalArgumentException.class, () -> reader.readLongs("missing"));
+    }
+
+    @Test
+    void rejectsFileThatIsNotASegment() throws IOException {
+        Path path = dir.resolve("other.bin");
+        Files.write(path, "not a segment".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IOException.class, () -> SegmentReader.open(path));
+    }
+
+    @Test
+    void rejectsTruncatedFile() throws IOException {
+        SegmentWriter writer = new SegmentWriter(telemetry(), 16);
+        for (int i = 0; i < 100; i++) {
+            row(writer, "r" + (i % 7), i, i, i, "IDLE");
+        }
+        Path path = dir.resolve("segment.brsg");
+        writer.write(path);
+        byte[] bytes = Files.readAllBytes(path);
+
+        for (int length : new int[] {3, 10, bytes.length / 2, bytes.length - 1}) {
+            Path truncated = dir.resolve("truncated-" + length + ".brsg");
+            Files.write(truncated, Arrays.copyOf(bytes, length));
+            assertThrows(IOException.class, () -> SegmentReader.open(truncated), "length " + length);
+        }
+    }
+
+    @Test
+    void rejectsNegativeLengthInHeader() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(SegmentWriter.MAGIC);
+        out.writeByte(SegmentWriter.VERSION);
+        out.writeInt(-5);
+        Path path = dir.resolve("negative.brsg");
+        Files.write(path, bytes.toByteArray());
+
+        assertThrows(IOException.class, () -> SegmentReader.open(path));
+    }
+
+    @Test
+    void rejectsColumnWithTooFewValues() throws IOException {
+        // Three rows, but each column holds a single value
+        Path path = dir.resolve("short.brsg");
+        Files.write(path, segment(3,
+                column("timestamp", ColumnType.DELTA_LONG, new byte[] {2}),
+                column("x", ColumnType.DOUBLE, new byte[8]),
+                column("robot_id", ColumnType.DICTIONARY, new byte[] {1, 0, 0})));
+        SegmentReader reader = SegmentReader.open(path);
+
+        assertThrows(IOException.class, () -> reader.readLongs("timestamp"));
+        assertThrows(IOException.class, () -> reader.readDoubles("x"));
+        assertThrows(IOException.class, () -> reader.readCodes("robot_id"));
+        assertThrows(IOException.class, () -> reader.readStrings("robot_id"));
+    }
+
+    @Test
+    void rejectsCorruptDictionary() throws IOException {
+        // One entry whose length varint decodes to a negative int
+        Path path = dir.resolve("dictionary.brsg");
+        Files.write(path, segment(1,
+                column("robot_id", ColumnType.DICTIONARY, new byte[] {1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F}),
+                column("state", ColumnType.DICTIONARY, new byte[] {1, 0, 5})));
+        SegmentReader reader = SegmentReader.open(path);
+
+        assertThrows(IOException.class, () -> reader.readDictionary("robot_id"));
+        assertThrows(IOException.class, () -> reader.readStrings("robot_id"));
+        // Code 5 is outside the one-entry dictionary
+        assertThrows(IOException.class, () -> reader.readStrings("state"));
+    }
+
+    /**
+     * Builds a segment file by hand around already-encoded columns.
+     */
+    private static byte[] segment(int rowCount, byte[]... columns) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(SegmentWriter.MAGIC);
+        out.writeByte(SegmentWriter.VERSION);
+        writeString(out, "test");
+        out.writeInt(rowCount);
+        out.writeInt(columns.length);
+        for (byte[] column : columns) {
+            out.write(column);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] column(String name, ColumnType type, byte[] encoded) throws IOException {
+        Deflater deflater = new Deflater();
+        deflater.setInput(encoded);
+        deflater.finish();
+        byte[] compressed = new byte[encoded.length + 64];
+        int length = deflater.deflate(compressed);
+        deflater.end();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, name);
+        out.writeByte(type.ordinal());
+        out.writeInt(encoded.length);
+        out.writeInt(length);
+        out.write(compressed, 0, length);
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.heatmap;
+
+import com.google.protobuf.Timestamp;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import bearrobotics.api.v1.core.Errors.ErrorCode;
+import bearrobotics.api.v1.core.MapOuterClass;
+import bearrobotics.api.v1.core.Metadata.EventMetadata;
+import bearrobotics.api.v1.core.PoseOuterClass.Pose;
+
+class HeatmapEngineTest {
+
+    private static EventMetadata at(long seconds) {
+        return EventMetadata.newBuilder().setTimestamp(Timestamp.newBuilder().setSeconds(seconds)).build();
+    }
+
+    private static List<ErrorCode> code(int code) {
+        return List.of(ErrorCode.newBuilder().setCode(code).build());
+    }
+
+    @Test
+    void keepsPoseWhenTheSameMapIsSetAgain() {
+        HeatmapEngine engine = new HeatmapEngine();
+        engine.setMap(MapOuterClass.Map.newBuilder().setMapId("m1").setResolution(0.05f).build());
+        engine.setRobotMap("r1", "m1");
+        engine.onPose("r1", Pose.newBuilder().setXMeters(1).setYMeters(2).build(), at(100));
+
+        engine.setRobotMap("r1", "m1");
+        engine.onErrorCodes("r1", code(7), at(100));
+
+        assertEquals(2, engine.getAccumulatedCount());
+        assertEquals(0, engine.getDroppedNoPoseCount());
+    }
+
+    @Test
+    void discardsPoseFromAnotherMap() {
+        HeatmapEngine engine = new HeatmapEngine();
+        engine.setMap(MapOuterClass.Map.newBuilder().setMapId("m1").setResolution(0.05f).build());
+        engine.setMap(MapOuterClass.Map.newBuilder().setMapId("m2").setResolution(0.05f).build());
+        engine.setRobotMap("r1", "m1");
+        engine.onPose("r1", Pose.newBuilder().setXMeters(1).setYMeters(2).build(), at(100));
+
+        engine.setRobotMap("r1", "m2");
+        engine.onErrorCodes("r1", code(7), at(100));
+
+        assertEquals(0, engine.getAccumulatedCount());
+        assertEquals(1, engine.getDroppedNoPoseCount());
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountMinSketchTest {
+
+    @Test
+    void neverUndercountsAndStaysWithinBound() {
+        CountMinSketch sketch = new CountMinSketch(1024, 4);
+        long[] counts = new long[5000];
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // Skewed keys, so a few are hot and most are rare
+            int key = (int) Math.min(counts.length - 1, Math.abs(random.nextGaussian()) * 300);
+            counts[key]++;
+            sketch.add(key, 1);
+        }
+
+        assertEquals(100_000, sketch.getTotal());
+        long bound = (long) Math.ceil(Math.E / 1024 * sketch.getTotal());
+        int overBound = 0;
+        for (int key = 0; key < counts.length; key++) {
+            long estimate = sketch.estimate(key);
+            assertTrue(estimate >= counts[key], "undercounted key " + key);
+            if (estimate - counts[key] > bound) {
+                overBound++;
+            }
+        }
+        // The bound holds with probability 1 - exp(-4) per key
+        assertTrue(overBound < counts.length / 20, overBound + " keys over the error bound");
+    }
+
+    @Test
+    void clearResetsCounts() {
+        CountMinSketch sketch = new CountMinSketch(16, 2);
+        sketch.add(7, 5);
+        sketch.clear();
+
+        assertEquals(0, sketch.estimate(7));
+        assertEquals(0, sketch.getTotal());
+    }
+
+    @Test
+    void rejectsInvalidDimensions() {
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(0, 4));
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(16, 9));
+    }
+}
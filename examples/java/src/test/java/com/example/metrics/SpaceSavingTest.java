@@ -0,0 +1,54 @@
+package com.example.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTest {
+
+    @Test
+    void tracksKeysAboveTotalOverCapacity() {
+        SpaceSaving summary = new SpaceSaving(4);
+        for (int i = 0; i < 1000; i++) {
+            summary.add(1, 1);
+            // A long tail of keys seen once each
+            summary.add(1000 + i, 1);
+        }
+
+        // Key 1 holds 1000 of 2000, above the guarantee of 2000 / 4
+        SpaceSaving.Entry hot = null;
+        for (SpaceSaving.Entry entry : summary.top(4)) {
+            if (entry.getKey() == 1) {
+                hot = entry;
+            }
+        }
+        assertNotNull(hot);
+        assertTrue(hot.getCount() >= 1000);
+        assertTrue(hot.getCount() - hot.getError() <= 1000);
+    }
+
+    @Test
+    void replacesSmallestAndInheritsItsCount() {
+        SpaceSaving summary = new SpaceSaving(2);
+        summary.add(1, 5);
+        summary.add(2, 3);
+        summary.add(3, 1);
+
+        List<SpaceSaving.Entry> top = summary.top(2);
+        assertEquals(1, top.get(0).getKey());
+        assertEquals(3, top.get(1).getKey());
+        assertEquals(4, top.get(1).getCount());
+        assertEquals(3, top.get(1).getError());
+    }
+
+    @Test
+    void rejectsNegativeLimit() {
+        assertThrows(IllegalArgumentException.class, () -> new SpaceSaving(2).top(-1));
+        assertEquals(List.of(), new SpaceSaving(2).top(0));
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.relay;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SubscriberTest {
+
+    /**
+     * A server stream whose readiness the test controls.
+     */
+    private static class FakeCall extends ServerCallStreamObserver<String> {
+        final List<String> sent = new ArrayList<>();
+        Throwable error;
+        boolean ready;
+        Runnable onReady;
+
+        void setReady(boolean ready) {
+            this.ready = ready;
+            if (ready) {
+                onReady.run();
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+            this.onReady = onReadyHandler;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+        }
+
+        @Override
+        public void setCompression(String compression) {
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+
+        @Override
+        public void onNext(String value) {
+            sent.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+
+    @Test
+    void coalescesPerRobotWhileNotReady() {
+        FakeCall call = new FakeCall();
+        Subscriber<String> subscriber = new Subscriber<>(call, 2);
+
+        subscriber.offer("r1", 1, "r1:1");
+        subscriber.offer("r2", 1, "r2:1");
+        subscriber.offer("r1", 2, "r1:2");
+        subscriber.offer("r1", 3, "r1:3");
+        call.setReady(true);
+
+        assertEquals(List.of("r1:3", "r2:1"), call.sent);
+        assertEquals(0, subscriber.getDroppedCount());
+    }
+
+    @Test
+    void dropsLongestWaitingRobotWhenFull() {
+        FakeCall call = new FakeCall();
+        Subscriber<String> subscriber = new Subscriber<>(call, 2);
+
+        subscriber.offer("r1", 1, "r1:1");
+        subscriber.offer("r2", 1, "r2:1");
+        subscriber.offer("r3", 1, "r3:1");
+        call.setReady(true);
+
+        assertEquals(List.of("r2:1", "r3:1"), call.sent);
+        assertEquals(1, subscriber.getDroppedCount());
+    }
+
+    @Test
+    void dropsReplayOlderThanLiveEvent() {
+        FakeCall call = new FakeCall();
+        call.ready = true;
+        Subscriber<String> subscriber = new Subscriber<>(call, 2);
+
+        subscriber.offer("r1", 5, "r1:5");
+        subscriber.offer("r1", 4, "r1:4");
+        subscriber.offer("r1", 0, "r1:0");
+
+        assertEquals(List.of("r1:5", "r1:0"), call.sent);
+    }
+
+    @Test
+    void failEndsStreamOnce() {
+        FakeCall call = new FakeCall();
+        call.ready = true;
+        Subscriber<String> subscriber = new Subscriber<>(call, 2);
+
+        subscriber.fail(Status.NOT_FOUND);
+        subscriber.offer("r1", 1, "r1:1");
+        subscriber.complete();
+
+        assertTrue(call.sent.isEmpty());
+        assertEquals(Status.Code.NOT_FOUND, Status.fromThrowable(call.error).getCode());
+    }
+}
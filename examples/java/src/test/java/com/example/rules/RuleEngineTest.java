@@ -0,0 +1,144 @@
+package com.example.rules;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import bearrobotics.api.v1.core.RobotStatus.BatteryState;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeBatteryStatusResponse;
+
+class RuleEngineTest {
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+
+    private Rule.Builder lowBattery() {
+        return new Rule.Builder()
+                .name("low-battery")
+                .when(state -> state.getBattery().getChargePercent() < 20)
+                .cooldown(0, TimeUnit.MILLISECONDS)
+                .then((robotId, state) -> {
+                    sent.add(robotId);
+                    return CompletableFuture.completedFuture(null);
+                });
+    }
+
+    private static void battery(RuleEngine engine, String robotId, int percent) {
+        engine.batteryObserver().onNext(SubscribeBatteryStatusResponse.newBuilder()
+                .setRobotId(robotId)
+                .setBatteryState(BatteryState.newBuilder().setChargePercent(percent))
+                .build());
+    }
+
+    private void awaitSent(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sent.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, sent.size());
+    }
+
+    @Test
+    void firesOnceEachTimeConditionBecomesTrue() {
+        RuleEngine engine = new RuleEngine(List.of(lowBattery().build()), 100);
+
+        battery(engine, "r1", 10);
+        battery(engine, "r1", 5);
+        assertEquals(List.of("r1"), sent);
+
+        battery(engine, "r1", 50);
+        battery(engine, "r1", 10);
+        assertEquals(List.of("r1", "r1"), sent);
+    }
+
+    @Test
+    void holdForDebouncesCondition() throws Exception {
+        RuleEngine engine = new RuleEngine(List.of(lowBattery().holdFor(100, TimeUnit.MILLISECONDS).build()), 100);
+
+        // A condition that clears within the hold time does not fire
+        battery(engine, "r1", 10);
+        battery(engine, "r1", 50);
+        Thread.sleep(300);
+        assertEquals(0, engine.getFiredCount());
+
+        // One that holds fires from the timer without further events
+        battery(engine, "r1", 10);
+        assertEquals(0, engine.getFiredCount());
+        awaitSent(1);
+        assertEquals(List.of("r1"), sent);
+    }
+
+    @Test
+    void occurrencesMustFallWithinWindow() throws Exception {
+        RuleEngine engine = new RuleEngine(List.of(lowBattery().occurrences(3, 1, TimeUnit.SECONDS).build()), 100);
+
+        battery(engine, "r1", 10);
+        battery(engine, "r1", 50);
+        battery(engine, "r1", 10);
+        battery(engine, "r1", 50);
+        assertEquals(0, engine.getFiredCount());
+        battery(engine, "r1", 10);
+        assertEquals(1, engine.getFiredCount());
+
+        // Occurrences older than the window are forgotten
+        RuleEngine windowed = new RuleEngine(List.of(lowBattery().occurrences(2, 50, TimeUnit.MILLISECONDS).build()), 100);
+        battery(windowed, "r1", 10);
+        battery(windowed, "r1", 50);
+        Thread.sleep(100);
+        battery(windowed, "r1", 10);
+        assertEquals(0, windowed.getFiredCount());
+        battery(windowed, "r1", 50);
+        battery(windowed, "r1", 10);
+        assertEquals(1, windowed.getFiredCount());
+    }
+
+    @Test
+    void cooldownSuppressesRefiringPerRobot() {
+        RuleEngine engine = new RuleEngine(List.of(lowBattery().cooldown(1, TimeUnit.HOURS).build()), 100);
+
+        battery(engine, "r1", 10);
+        battery(engine, "r1", 50);
+        battery(engine, "r1", 10);
+        battery(engine, "r2", 10);
+        assertEquals(List.of("r1", "r2"), sent);
+    }
+
+    @Test
+    void rateLimitDefersActionsWhileConditionHolds() throws Exception {
+        RuleEngine engine = new RuleEngine(List.of(lowBattery().build()), 5);
+
+        for (int i = 0; i < 6; i++) {
+            battery(engine, "r" + i, 10);
+        }
+        // The bucket holds five tokens; the sixth action waits for a refill
+        assertEquals(5, engine.getFiredCount());
+        assertEquals(1, engine.getRateLimitedCount());
+        awaitSent(6);
+
+        // A deferred action is dropped if its condition no longer holds
+        battery(engine, "r6", 10);
+        battery(engine, "r7", 10);
+        battery(engine, "r7", 50);
+        Thread.sleep(600);
+        assertEquals(7, engine.getFiredCount());
+        assertEquals("r6", sent.get(6));
+    }
+
+    @Test
+    void nothingFiresAfterShutdown() throws Exception {
+        RuleEngine engine = new RuleEngine(List.of(lowBattery().holdFor(100, TimeUnit.MILLISECONDS).build(),
+                lowBattery().name("immediate").build()), 100);
+
+        battery(engine, "r1", 10);
+        engine.shutdown();
+        battery(engine, "r2", 10);
+        Thread.sleep(300);
+        assertEquals(List.of("r1"), sent);
+
+        // State is still merged
+        assertEquals(10, engine.getState("r2").getBattery().getChargePercent());
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import bearrobotics.api.v1.core.Errors.ErrorCode;
+import bearrobotics.api.v1.core.Errors.ErrorCodes;
+import bearrobotics.api.v1.core.MissionStatus.MissionState;
+import bearrobotics.api.v1.core.RobotStatus.BatteryState;
+import bearrobotics.api.v1.core.RobotStatus.RobotConnection;
+import bearrobotics.api.v1.core.RobotStatus.RobotState;
+
+class FleetIndexTest {
+    private final FleetIndex index = new FleetIndex();
+
+    private static RobotState state(int charge, MissionState.State mission, ErrorCode... errors) {
+        return RobotState.newBuilder()
+                .setConnection(RobotConnection.newBuilder().setState(RobotConnection.State.STATE_CONNECTED))
+                .setBattery(BatteryState.newBuilder().setChargePercent(charge))
+                .setMission(MissionState.newBuilder().setState(mission))
+                .setErrorCodes(ErrorCodes.newBuilder().addAllCodes(List.of(errors)))
+                .build();
+    }
+
+    private static ErrorCode error(int code, ErrorCode.Severity severity) {
+        return ErrorCode.newBuilder().setCode(code).setSeverity(severity).build();
+    }
+
+    @Test
+    void combinesConditions() {
+        index.update("r1", state(10, MissionState.State.STATE_RUNNING));
+        index.update("r2", state(15, MissionState.State.STATE_PAUSED));
+        index.update("r3", state(80, MissionState.State.STATE_PAUSED));
+        index.update("r4", state(5, MissionState.State.STATE_DEFAULT));
+        index.setLocation("r1", "loc-a");
+        index.setLocation("r2", "loc-a");
+        index.setLocation("r3", "loc-a");
+        index.setLocation("r4", "loc-b");
+
+        assertEquals(List.of("r2"), index.query()
+                .location("loc-a")
+                .chargeBelow(20)
+                .whereNot(FleetIndex.Field.MISSION_STATE, MissionState.State.STATE_RUNNING)
+                .robotIds());
+        assertEquals(List.of("r1", "r2", "r4"), index.query().chargeBetween(5, 15).robotIds());
+        assertEquals(0, index.query().location("loc-c").count());
+        assertEquals(4, index.query().where(FleetIndex.Field.CONNECTION, RobotConnection.State.STATE_CONNECTED).count());
+    }
+
+    @Test
+    void whereNotExcludesEveryValueAndKeepsOthers() {
+        index.update("r1", state(50, MissionState.State.STATE_RUNNING));
+        index.update("r2", state(50, MissionState.State.STATE_PAUSED));
+        index.update("r3", state(50, MissionState.State.STATE_UNKNOWN));
+
+        assertEquals(List.of("r3"), index.query()
+                .whereNot(FleetIndex.Field.MISSION_STATE, MissionState.State.STATE_RUNNING, MissionState.State.STATE_PAUSED)
+                .robotIds());
+        // A value no robot has excludes nobody
+        assertEquals(3, index.query().whereNot(FleetIndex.Field.MISSION_STATE, MissionState.State.STATE_CANCELED).count());
+
+        // Changing a robot's value moves it between the bitmaps
+        index.update("r1", state(50, MissionState.State.STATE_CANCELED));
+        assertEquals(List.of("r1", "r3"), index.query()
+                .whereNot(FleetIndex.Field.MISSION_STATE, MissionState.State.STATE_PAUSED)
+                .whereNot(FleetIndex.Field.MISSION_STATE, MissionState.State.STATE_RUNNING)
+                .robotIds());
+    }
+
+    @Test
+    void rejectsValueOfAnotherField() {
+        assertThrows(IllegalArgumentException.class,
+                () -> index.query().where(FleetIndex.Field.MISSION_STATE, RobotConnection.State.STATE_CONNECTED));
+    }
+
+    @Test
+    void reusedSlotDoesNotInheritRemovedRobotsValues() {
+        index.update("r1", state(10, MissionState.State.STATE_RUNNING, error(7, ErrorCode.Severity.SEVERITY_HIGH)));
+        index.setLocation("r1", "loc-a");
+        index.update("r2", state(90, MissionState.State.STATE_PAUSED));
+
+        index.remove("r1");
+        assertEquals(1, index.size());
+        assertEquals(0, index.query().location("loc-a").count());
+        assertEquals(0, index.query().errorCode(7).count());
+
+        // r3 takes the freed slot
+        index.update("r3", state(60, MissionState.State.STATE_PAUSED));
+        assertEquals(2, index.size());
+        assertEquals(0, index.query().location("loc-a").count());
+        assertEquals(0, index.query().errorCode(7).count());
+        assertEquals(0, index.query().chargeBelow(20).count());
+        assertEquals(0, index.query().where(FleetIndex.Field.MISSION_STATE, MissionState.State.STATE_RUNNING).count());
+        assertEquals(List.of("r3", "r2"), index.query()
+                .where(FleetIndex.Field.MISSION_STATE, MissionState.State.STATE_PAUSED)
+                .robotIds());
+    }
+
+    @Test
+    void robotWithOnlyLocationDoesNotMatch() {
+        index.setLocation("r1", "loc-a");
+        assertEquals(0, index.query().location("loc-a").count());
+
+        index.update("r1", state(50, MissionState.State.STATE_DEFAULT));
+        assertEquals(List.of("r1"), index.query().location("loc-a").robotIds());
+    }
+
+    @Test
+    void growsPastInitialCapacity() {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            index.update("r" + i, state(i, MissionState.State.STATE_DEFAULT));
+            index.setLocation("r" + i, i % 2 == 0 ? "even" : "odd");
+            if (i >= 10 && i < 20 && i % 2 == 0) {
+                expected.add("r" + i);
+            }
+        }
+
+        assertEquals(100, index.size());
+        assertEquals(50, index.query().location("even").count());
+        assertEquals(expected, index.query().location("even").chargeBetween(10, 19).robotIds());
+        assertEquals(100, index.query().chargeBetween(-5, 500).count());
+    }
+
+    @Test
+    void errorIndexesHoldEveryReportedError() {
+        index.update("r1", state(50, MissionState.State.STATE_DEFAULT,
+                error(7, ErrorCode.Severity.SEVERITY_HIGH), error(9, ErrorCode.Severity.SEVERITY_LOW)));
+        index.update("r2", state(50, MissionState.State.STATE_DEFAULT, error(9, ErrorCode.Severity.SEVERITY_LOW)));
+
+        assertEquals(List.of("r1"), index.query().errorCode(7).robotIds());
+        assertEquals(List.of("r1", "r2"), index.query().errorCode(9).robotIds());
+        assertEquals(List.of("r1"), index.query().errorSeverity(ErrorCode.Severity.SEVERITY_HIGH).robotIds());
+        assertEquals(2, index.query()
+                .errorSeverity(ErrorCode.Severity.SEVERITY_HIGH, ErrorCode.Severity.SEVERITY_LOW)
+                .count());
+
+        // Clearing one error keeps the robot's other errors and the other robot's copy
+        index.update("r1", state(50, MissionState.State.STATE_DEFAULT, error(9, ErrorCode.Severity.SEVERITY_LOW)));
+        assertEquals(0, index.query().errorCode(7).count());
+        assertEquals(0, index.query().errorSeverity(ErrorCode.Severity.SEVERITY_HIGH).count());
+        assertEquals(List.of("r1", "r2"), index.query().errorCode(9).robotIds());
+
+        index.update("r2", state(50, MissionState.State.STATE_DEFAULT));
+        assertEquals(List.of("r1"), index.query().errorCode(9).robotIds());
+    }
+}
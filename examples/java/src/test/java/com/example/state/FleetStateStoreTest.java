@@ -0,0 +1,59 @@
+package com.example.state;
+
+import com.google.protobuf.Timestamp;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import bearrobotics.api.v1.core.Metadata.EventMetadata;
+
+class FleetStateStoreTest {
+
+    private static EventMetadata metadata(long sequenceNumber, long seconds) {
+        return EventMetadata.newBuilder()
+                .setSequenceNumber(sequenceNumber)
+                .setTimestamp(Timestamp.newBuilder().setSeconds(seconds))
+                .build();
+    }
+
+    @Test
+    void acceptsCounterResetOnce() {
+        FleetStateStore store = new FleetStateStore(Path.of("unused"));
+
+        assertTrue(store.accept("s", "r1", metadata(5, 100)));
+        assertFalse(store.accept("s", "r1", metadata(5, 100)));
+        assertTrue(store.accept("s", "r1", metadata(0, 101)));
+        assertFalse(store.accept("s", "r1", metadata(0, 101)));
+        assertTrue(store.accept("s", "r1", metadata(1, 102)));
+    }
+
+    @Test
+    void checkpointsRepeatedlyAndReloadsStale(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("fleet.state");
+        FleetStateStore store = new FleetStateStore(file, 60_000);
+        store.setMap("r1", "map-1", "annotation-1");
+        store.accept("s", "r1", metadata(7, 100));
+        store.checkpoint();
+        store.setMap("r2", "map-2", "annotation-2");
+        store.checkpoint();
+        store.shutdown();
+        assertFalse(Files.exists(dir.resolve("fleet.state.tmp")));
+
+        FleetStateStore restored = new FleetStateStore(file, 60_000);
+        assertEquals(2, restored.start());
+        assertTrue(restored.isStale("r1"));
+        assertEquals("map-2", restored.getMapId("r2"));
+        assertEquals(7, restored.getSequenceNumber("s", "r1"));
+        // Stale position: a restarted counter with a later timestamp is accepted
+        assertTrue(restored.accept("s", "r1", metadata(2, 200)));
+        assertFalse(restored.accept("s", "r1", metadata(1, 150)));
+        restored.shutdown();
+    }
+}
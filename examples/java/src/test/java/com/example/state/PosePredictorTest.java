@@ -0,0 +1,142 @@
+package com.example.state;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import bearrobotics.api.v1.core.PoseOuterClass.Pose;
+import bearrobotics.api.v1.core.TwistOuterClass.Twist;
+
+class PosePredictorTest {
+    private static final double EPSILON = 1e-3;
+
+    private final PosePrediction out = new PosePrediction();
+
+    private static Pose pose(double x, double y, double heading) {
+        return Pose.newBuilder().setXMeters((float) x).setYMeters((float) y).setHeadingRadians((float) heading).build();
+    }
+
+    private static Twist twist(double linear, double angular) {
+        return Twist.newBuilder().setLinearVelocity((float) linear).setAngularVelocity((float) angular).build();
+    }
+
+    private static void assertPosition(double x, double y, double heading, PosePrediction prediction) {
+        assertEquals(x, prediction.getXMeters(), EPSILON, "x");
+        assertEquals(y, prediction.getYMeters(), EPSILON, "y");
+        assertEquals(heading, prediction.getHeadingRadians(), EPSILON, "heading");
+    }
+
+    @Test
+    void extrapolatesStraightLine() {
+        PosePredictor predictor = new PosePredictor.Builder()
+                .poseErrorMeters(0.05)
+                .maxAcceleration(1.0)
+                .maxAngularAcceleration(3.0)
+                .build();
+        predictor.updatePose("r1", pose(1, 2, Math.PI / 2), 1_000);
+        predictor.updateTwist("r1", twist(0.5, 0), 1_000);
+
+        assertTrue(predictor.predict("r1", 3_000, out));
+        assertPosition(1, 3, Math.PI / 2, out);
+        assertTrue(out.isExtrapolated());
+        assertEquals(2_000, out.getAgeMs());
+        // Pose error, plus a*t^2/2, plus v*alpha*t^3/6
+        assertEquals(0.05 + 2.0 + 2.0, out.getPositionErrorMeters(), EPSILON);
+    }
+
+    @Test
+    void extrapolatesAlongArc() {
+        PosePredictor predictor = new PosePredictor.Builder().build();
+        predictor.updatePose("r1", pose(0, 0, 0), 0);
+        // Counter-clockwise at 0.5 rad/s: a circle of radius 2 around (0, 2)
+        predictor.updateTwist("r1", twist(1, -0.5), 0);
+
+        assertTrue(predictor.predict("r1", 2_000, out));
+        assertPosition(2 * Math.sin(1), 2 * (1 - Math.cos(1)), 1, out);
+    }
+
+    @Test
+    void positiveAngularVelocityTurnsClockwise() {
+        PosePredictor predictor = new PosePredictor.Builder().horizonMs(10_000).build();
+        long quarterTurnMs = Math.round(Math.PI / 2 * 1000);
+        predictor.updatePose("right", pose(0, 0, 0), 0);
+        predictor.updateTwist("right", twist(1, 1), 0);
+        predictor.updatePose("left", pose(0, 0, 0), 0);
+        predictor.updateTwist("left", twist(1, -1), 0);
+
+        // Facing +x, a clockwise quarter turn of radius 1 ends at (1, -1) facing -y
+        assertTrue(predictor.predict("right", quarterTurnMs, out));
+        assertPosition(1, -1, -Math.PI / 2, out);
+
+        assertTrue(predictor.predict("left", quarterTurnMs, out));
+        assertPosition(1, 1, Math.PI / 2, out);
+    }
+
+    @Test
+    void holdsPredictionAtHorizon() {
+        PosePredictor predictor = new PosePredictor.Builder()
+                .poseErrorMeters(0)
+                .maxAcceleration(0)
+                .maxAngularAcceleration(0)
+                .maxSpeed(1.2)
+                .horizonMs(1_000)
+                .build();
+        predictor.updatePose("r1", pose(0, 0, 0), 0);
+        predictor.updateTwist("r1", twist(1, 0), 0);
+
+        assertTrue(predictor.predict("r1", 1_000, out));
+        assertPosition(1, 0, 0, out);
+        assertEquals(0, out.getPositionErrorMeters(), EPSILON);
+
+        assertTrue(predictor.predict("r1", 3_000, out));
+        assertPosition(1, 0, 0, out);
+        assertEquals(3_000, out.getAgeMs());
+        // The bound keeps growing at the largest speed, and the heading is unknown
+        assertEquals(1.2 * 2, out.getPositionErrorMeters(), EPSILON);
+        assertEquals(Math.PI, out.getHeadingErrorRadians(), EPSILON);
+    }
+
+    @Test
+    void staysAtPoseWithoutRecentTwist() {
+        PosePredictor predictor = new PosePredictor.Builder()
+                .poseErrorMeters(0.1)
+                .maxSpeed(1)
+                .maxTwistAgeMs(500)
+                .build();
+        predictor.updatePose("r1", pose(3, 4, 1), 2_000);
+        predictor.updateTwist("r1", twist(1, 0), 1_000);
+
+        assertTrue(predictor.predict("r1", 4_000, out));
+        assertPosition(3, 4, 1, out);
+        assertFalse(out.isExtrapolated());
+        assertEquals(0.1 + 2, out.getPositionErrorMeters(), EPSILON);
+    }
+
+    @Test
+    void ignoresOlderPoseAndEarlierInstant() {
+        PosePredictor predictor = new PosePredictor.Builder().build();
+        predictor.updatePose("r1", pose(5, 5, 0), 2_000);
+        predictor.updatePose("r1", pose(0, 0, 0), 1_000);
+        predictor.updateTwist("r1", twist(1, 0), 2_000);
+
+        assertTrue(predictor.predict("r1", 1_500, out));
+        assertPosition(5, 5, 0, out);
+        assertEquals(0, out.getAgeMs());
+    }
+
+    @Test
+    void forgetsRemovedRobots() {
+        PosePredictor predictor = new PosePredictor.Builder().build();
+        assertFalse(predictor.predict("r1", 0, out));
+        for (int i = 0; i < 40; i++) {
+            predictor.updatePose("r" + i, pose(i, 0, 0), 0);
+        }
+        predictor.remove("r1");
+
+        assertFalse(predictor.predict("r1", 0, out));
+        assertTrue(predictor.predict("r39", 0, out));
+        assertPosition(39, 0, 0, out);
+    }
+}
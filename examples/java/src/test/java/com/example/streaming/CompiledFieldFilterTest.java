@@ -0,0 +1,113 @@
+package com.example.streaming;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import bearrobotics.api.v1.core.MissionStatus.MissionState;
+import bearrobotics.api.v1.core.MissionStatus.MissionStates;
+import bearrobotics.api.v1.core.Webhook.FieldFilter;
+import bearrobotics.api.v1.core.Webhook.FilterOperator;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeMissionStatusResponse;
+
+class CompiledFieldFilterTest {
+    private static final SubscribeMissionStatusResponse PROTOTYPE = SubscribeMissionStatusResponse.getDefaultInstance();
+
+    private static FieldFilter filter(String field, String... values) {
+        return FieldFilter.newBuilder()
+                .setField(field)
+                .setOperator(FilterOperator.FILTER_OPERATOR_IN)
+                .addAllValues(List.of(values))
+                .build();
+    }
+
+    private static SubscribeMissionStatusResponse mission(String missionId, MissionState.State state) {
+        MissionState mission = MissionState.newBuilder().setMissionId(missionId).setState(state).build();
+        return SubscribeMissionStatusResponse.newBuilder()
+                .setRobotId("pennybot-abc123")
+                .setMissionState(mission)
+                .setMissionStates(MissionStates.newBuilder().addMissions(mission).setCurrentMissionIndex(0))
+                .build();
+    }
+
+    @Test
+    void webhookCurrentMissionPathMatchesMissionState() {
+        CompiledFieldFilter<SubscribeMissionStatusResponse> filter = CompiledFieldFilter.compile(
+                filter("state.current_mission.state", "STATE_SUCCEEDED", "STATE_FAILED"), PROTOTYPE);
+
+        assertEquals("mission_state.state", filter.getFieldPath().getPath());
+        assertTrue(filter.test(mission("m1", MissionState.State.STATE_SUCCEEDED)));
+        assertTrue(filter.test(mission("m1", MissionState.State.STATE_FAILED)));
+        assertFalse(filter.test(mission("m1", MissionState.State.STATE_RUNNING)));
+    }
+
+    @Test
+    void webhookMissionsPathsMapToMissionStates() {
+        CompiledFieldFilter<SubscribeMissionStatusResponse> byId = CompiledFieldFilter.compile(
+                filter("state.missions.0.mission_id", "m1"), PROTOTYPE);
+        CompiledFieldFilter<SubscribeMissionStatusResponse> byIndex = CompiledFieldFilter.compile(
+                filter("state.current_mission_index", "0"), PROTOTYPE);
+
+        assertEquals("mission_states.missions.0.mission_id", byId.getFieldPath().getPath());
+        assertTrue(byId.test(mission("m1", MissionState.State.STATE_RUNNING)));
+        assertFalse(byId.test(mission("m2", MissionState.State.STATE_RUNNING)));
+        assertTrue(byIndex.test(mission("m1", MissionState.State.STATE_RUNNING)));
+    }
+
+    @Test
+    void streamPathsStillCompile() {
+        CompiledFieldFilter<SubscribeMissionStatusResponse> filter = CompiledFieldFilter.compile(
+                filter("mission_state.state", "STATE_RUNNING"), PROTOTYPE);
+
+        assertTrue(filter.test(mission("m1", MissionState.State.STATE_RUNNING)));
+    }
+
+    @Test
+    void unsetMessageNeverMatches() {
+        CompiledFieldFilter<SubscribeMissionStatusResponse> filter = CompiledFieldFilter.compile(
+                filter("state.current_mission.state", "STATE_UNKNOWN"), PROTOTYPE);
+        SubscribeMissionStatusResponse empty = SubscribeMissionStatusResponse.newBuilder().setRobotId("r").build();
+
+        assertFalse(filter.test(empty));
+        assertEquals("", filter.getFieldPath().readAsText(empty));
+    }
+
+    @Test
+    void unsetScalarInSetMessageReadsDefault() {
+        CompiledFieldFilter<SubscribeMissionStatusResponse> filter = CompiledFieldFilter.compile(
+                filter("state.current_mission.state", "STATE_UNKNOWN"), PROTOTYPE);
+        SubscribeMissionStatusResponse response = SubscribeMissionStatusResponse.newBuilder()
+                .setMissionState(MissionState.newBuilder().setMissionId("m1"))
+                .build();
+
+        assertTrue(filter.test(response));
+        assertEquals("STATE_UNKNOWN", filter.getFieldPath().readAsText(response));
+    }
+
+    @Test
+    void indexPastEndOfListNeverMatches() {
+        CompiledFieldFilter<SubscribeMissionStatusResponse> filter = CompiledFieldFilter.compile(
+                filter("state.missions.1.mission_id", ""), PROTOTYPE);
+
+        assertFalse(filter.test(mission("m1", MissionState.State.STATE_RUNNING)));
+    }
+
+    @Test
+    void invalidFiltersAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> CompiledFieldFilter.compile(filter("state.current_goal.destination_id", "d"), PROTOTYPE));
+        assertThrows(IllegalArgumentException.class,
+                () -> CompiledFieldFilter.compile(filter("state.current_mission", "x"), PROTOTYPE));
+        assertThrows(IllegalArgumentException.class,
+                () -> CompiledFieldFilter.compile(filter("state.current_mission.state", "STATE_DONE"), PROTOTYPE));
+        assertThrows(IllegalArgumentException.class,
+                () -> CompiledFieldFilter.compile(filter("state.current_mission_index", "zero"), PROTOTYPE));
+        assertThrows(IllegalArgumentException.class,
+                () -> CompiledFieldFilter.compile(filter("state.current_mission.state"), PROTOTYPE));
+    }
+}
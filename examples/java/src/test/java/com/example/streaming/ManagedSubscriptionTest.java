@@ -0,0 +1,155 @@
+package com.example.streaming;
+
+import com.google.protobuf.Any;
+import com.google.rpc.Code;
+import com.google.rpc.ResourceInfo;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.Status;
+import io.grpc.protobuf.StatusProto;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import bearrobotics.api.v1.core.FleetSelector.RobotSelector;
+import bearrobotics.api.v1.services.cloud.APIServiceGrpc;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusResponse;
+
+class ManagedSubscriptionTest {
+    private final BlockingQueue<Set<String>> requests = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Set<String>> rejections = new LinkedBlockingQueue<>();
+    // Returned for every selector when set
+    private volatile Status denied;
+    private Server server;
+    private ManagedChannel channel;
+    private ManagedSubscription<SubscribeRobotStatusRequest, SubscribeRobotStatusResponse> subscription;
+
+    /**
+     * Starts a server that refuses selectors containing "bad", naming it in the error details
+     * when {@code structured} is set, and otherwise keeps the call open.
+     */
+    private void start(boolean structured) throws Exception {
+        server = ServerBuilder.forPort(0)
+                .addService(new APIServiceGrpc.APIServiceImplBase() {
+                    @Override
+                    public void subscribeRobotStatus(SubscribeRobotStatusRequest request,
+                                                     StreamObserver<SubscribeRobotStatusResponse> responseObserver) {
+                        Set<String> ids = new TreeSet<>(request.getSelector().getRobotIds().getIdsList());
+                        Status refusal = denied;
+                        requests.add(ids);
+                        if (refusal != null) {
+                            responseObserver.onError(refusal.asRuntimeException());
+                            return;
+                        }
+                        if (!ids.contains("bad")) {
+                            return;
+                        }
+                        if (structured) {
+                            responseObserver.onError(StatusProto.toStatusRuntimeException(com.google.rpc.Status.newBuilder()
+                                    .setCode(Code.NOT_FOUND_VALUE)
+                                    .setMessage("Unknown robot")
+                                    .addDetails(Any.pack(ResourceInfo.newBuilder()
+                                            .setResourceType("robot")
+                                            .setResourceName("bad")
+                                            .build()))
+                                    .build()));
+                        } else {
+                            responseObserver.onError(Status.NOT_FOUND.withDescription("Unknown robot").asRuntimeException());
+                        }
+                    }
+                })
+                .build()
+                .start();
+        channel = ManagedChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+        APIServiceGrpc.APIServiceStub stub = APIServiceGrpc.newStub(channel);
+
+        subscription = new ManagedSubscription<>(
+                new StreamingClient.Builder<SubscribeRobotStatusRequest, SubscribeRobotStatusResponse>()
+                        .rpcMethod(stub::subscribeRobotStatus)
+                        .reconnectDelay(0),
+                selector -> SubscribeRobotStatusRequest.newBuilder().setSelector(selector).build(),
+                new StreamObserver<SubscribeRobotStatusResponse>() {
+                    @Override
+                    public void onNext(SubscribeRobotStatusResponse value) {
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                },
+                SubscribeRobotStatusResponse::getRobotId,
+                response -> response.getMetadata().getSequenceNumber(),
+                10,
+                (robots, status) -> rejections.add(robots));
+        subscription.start();
+    }
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        subscription.stop();
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static <T> T next(BlockingQueue<T> queue) throws InterruptedException {
+        T value = queue.poll(5, TimeUnit.SECONDS);
+        assertNotNull(value);
+        return value;
+    }
+
+    @Test
+    void robotNamedByErrorIsDropped() throws Exception {
+        start(true);
+        subscription.addRobots(List.of("bad", "r1", "r2"));
+
+        assertEquals(Set.of("bad", "r1", "r2"), next(requests));
+        assertEquals(Set.of("bad"), next(rejections));
+        assertEquals(Set.of("r1", "r2"), next(requests));
+        assertEquals(Set.of("r1", "r2"), subscription.getRobotIds());
+    }
+
+    @Test
+    void unnamedRefusalIsBisectedDownToOneRobot() throws Exception {
+        start(false);
+        subscription.addRobots(List.of("bad", "r1", "r2", "r3", "r4"));
+
+        assertEquals(Set.of("bad", "r1", "r2", "r3", "r4"), next(requests));
+        assertEquals(Set.of("bad", "r1"), next(requests));
+        assertEquals(Set.of("bad"), next(requests));
+        assertEquals(Set.of("bad"), next(rejections));
+        assertEquals(Set.of("r1", "r2", "r3", "r4"), next(requests));
+        assertEquals(Set.of("r1", "r2", "r3", "r4"), subscription.getRobotIds());
+        assertNull(rejections.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void permissionDeniedDoesNotDropRobots() throws Exception {
+        start(false);
+        subscription.addRobots(List.of("r1"));
+        assertEquals(Set.of("r1"), next(requests));
+
+        denied = Status.PERMISSION_DENIED;
+        subscription.addRobots(List.of("r2"));
+        assertEquals(Set.of("r1", "r2"), next(requests));
+        assertNull(rejections.poll(500, TimeUnit.MILLISECONDS));
+        assertEquals(Set.of("r1", "r2"), subscription.getRobotIds());
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.streaming;
+
+import com.google.protobuf.FieldMask;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import bearrobotics.api.v1.carti.Conveyor.ConveyorState;
+import bearrobotics.api.v1.core.Errors.ErrorCode;
+import bearrobotics.api.v1.core.Errors.ErrorCodes;
+import bearrobotics.api.v1.core.PoseOuterClass.Pose;
+import bearrobotics.api.v1.core.RobotStatus.BatteryState;
+import bearrobotics.api.v1.core.RobotStatus.CartiState;
+import bearrobotics.api.v1.core.RobotStatus.RobotState;
+import bearrobotics.api.v1.core.RobotStatus.ServiState;
+
+class MessageDiffTest {
+    private static final RobotState BASE = RobotState.newBuilder()
+            .setBattery(BatteryState.newBuilder()
+                    .setChargePercent(50)
+                    .setState(BatteryState.State.STATE_DISCHARGING))
+            .setPose(Pose.newBuilder().setXMeters(1.5f).setYMeters(2f).setHeadingRadians(0.5f))
+            .setServiState(ServiState.getDefaultInstance())
+            .build();
+
+    /**
+     * Diffs two states, checks that applying the extracted changes reproduces the later state,
+     * and returns the changed paths.
+     */
+    private static List<String> diff(RobotState previous, RobotState current, int maxDepth) {
+        FieldMask mask = MessageDiff.diff(previous, current, maxDepth);
+        RobotState changes = MessageDiff.extract(current, mask);
+        assertEquals(current, MessageDiff.apply(previous, mask, changes));
+        return mask.getPathsList();
+    }
+
+    @Test
+    void equalMessagesHaveNoChangedPaths() {
+        assertEquals(List.of(), diff(BASE, BASE.toBuilder().build(), 2));
+    }
+
+    @Test
+    void reportsChangedFieldOfSubMessage() {
+        RobotState current = BASE.toBuilder()
+                .setBattery(BASE.getBattery().toBuilder().setChargePercent(49))
+                .build();
+
+        assertEquals(List.of("battery.charge_percent"), diff(BASE, current, 2));
+        RobotState changes = MessageDiff.extract(current, MessageDiff.diff(BASE, current, 2));
+        assertEquals(49, changes.getBattery().getChargePercent());
+        assertFalse(changes.hasPose());
+    }
+
+    @Test
+    void reportsTopLevelFieldAtDepthOne() {
+        RobotState current = BASE.toBuilder()
+                .setBattery(BASE.getBattery().toBuilder().setChargePercent(49))
+                .build();
+
+        assertEquals(List.of("battery"), diff(BASE, current, 1));
+    }
+
+    @Test
+    void rollsUpSubMessageWhoseFieldsAllChanged() {
+        RobotState current = BASE.toBuilder()
+                .setBattery(BatteryState.newBuilder()
+                        .setChargePercent(80)
+                        .setState(BatteryState.State.STATE_CHARGING))
+                .build();
+
+        assertEquals(List.of("battery"), diff(BASE, current, 2));
+
+        // A sub-message with a single field set is not rolled up
+        RobotState previous = RobotState.newBuilder().setBattery(BatteryState.newBuilder().setChargePercent(10)).build();
+        RobotState next = RobotState.newBuilder().setBattery(BatteryState.newBuilder().setChargePercent(11)).build();
+        assertEquals(List.of("battery.charge_percent"), diff(previous, next, 2));
+    }
+
+    @Test
+    void fieldResetToDefaultIsCleared() {
+        RobotState current = BASE.toBuilder()
+                .setPose(BASE.getPose().toBuilder().setXMeters(0f))
+                .build();
+
+        assertEquals(List.of("pose.x_meters"), diff(BASE, current, 2));
+    }
+
+    @Test
+    void clearedSubMessageIsReportedAtItsPath() {
+        RobotState current = BASE.toBuilder().clearPose().build();
+
+        assertEquals(List.of("pose"), diff(BASE, current, 2));
+        assertFalse(MessageDiff.extract(current, MessageDiff.diff(BASE, current, 2)).hasPose());
+
+        // An empty sub-message is still set, and is distinct from a cleared one
+        RobotState empty = BASE.toBuilder().setPose(Pose.getDefaultInstance()).build();
+        assertEquals(List.of("pose"), diff(current, empty, 2));
+    }
+
+    @Test
+    void oneofSwitchClearsThePreviousCase() {
+        RobotState carti = BASE.toBuilder()
+                .setCartiState(CartiState.newBuilder().setConveyorState(ConveyorState.newBuilder().setIndex(2)))
+                .build();
+
+        assertEquals(List.of("servi_state", "carti_state"), diff(BASE, carti, 2));
+        FieldMask mask = MessageDiff.diff(BASE, carti, 2);
+        RobotState applied = MessageDiff.apply(BASE, mask, MessageDiff.extract(carti, mask));
+        assertEquals(RobotState.TypedStatusCase.CARTI_STATE, applied.getTypedStatusCase());
+        assertFalse(applied.hasServiState());
+
+        assertEquals(List.of("servi_state", "carti_state"), diff(carti, BASE, 2));
+    }
+
+    @Test
+    void reportsRepeatedFieldAsAWhole() {
+        RobotState previous = BASE.toBuilder()
+                .setErrorCodes(ErrorCodes.newBuilder().addCodes(ErrorCode.newBuilder().setCode(7)))
+                .build();
+        RobotState current = BASE.toBuilder()
+                .setErrorCodes(ErrorCodes.newBuilder()
+                        .addCodes(ErrorCode.newBuilder().setCode(7))
+                        .addCodes(ErrorCode.newBuilder().setCode(9)))
+                .build();
+
+        assertEquals(List.of("error_codes.codes"), diff(previous, current, 3));
+        assertEquals(List.of("error_codes"), diff(current, BASE, 3));
+    }
+
+    @Test
+    void rejectsMessagesOfDifferentTypes() {
+        assertThrows(IllegalArgumentException.class, () -> MessageDiff.diff(BASE, BASE.getPose(), 2));
+    }
+}
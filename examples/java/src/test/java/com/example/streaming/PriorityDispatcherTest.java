@@ -0,0 +1,147 @@
+package com.example.streaming;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriorityDispatcherTest {
+    private final List<String> ran = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private PriorityDispatcher dispatcher;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        release.countDown();
+        dispatcher.shutdown();
+    }
+
+    private PriorityDispatcher dispatcher(int laneCapacity, OverflowPolicy policy) {
+        dispatcher = new PriorityDispatcher(new EnumMap<>(StreamPriority.class), laneCapacity, policy);
+        return dispatcher;
+    }
+
+    /**
+     * Occupies a lane's thread until {@link #release} is counted down.
+     */
+    private void block(Executor lane) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        lane.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    private Runnable record(String name) {
+        return () -> ran.add(name);
+    }
+
+    private void awaitRan(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (ran.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, ran.size());
+    }
+
+    @Test
+    void runsTasksInSubmissionOrderWithinLane() throws InterruptedException {
+        Executor lane = dispatcher(10_000, OverflowPolicy.DROP_OLDEST).lane(StreamPriority.STATUS);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            expected.add("t" + i);
+            lane.execute(record("t" + i));
+        }
+
+        awaitRan(1_000);
+        assertEquals(expected, ran);
+        assertEquals(0, dispatcher.getDroppedCount(StreamPriority.STATUS));
+    }
+
+    @Test
+    void lowerLaneWaitsForHigherLaneThenRuns() throws InterruptedException {
+        dispatcher(10_000, OverflowPolicy.DROP_OLDEST);
+        block(dispatcher.lane(StreamPriority.SAFETY));
+
+        dispatcher.lane(StreamPriority.TELEMETRY).execute(record("pose"));
+        Thread.sleep(200);
+        assertTrue(ran.isEmpty(), "telemetry must not run while a safety callback is busy");
+
+        // Once the higher lane is idle the starved lane catches up
+        release.countDown();
+        awaitRan(1);
+        assertEquals(List.of("pose"), ran);
+    }
+
+    @Test
+    void higherLaneIsNotDelayedByLowerBacklog() throws InterruptedException {
+        dispatcher(10_000, OverflowPolicy.DROP_OLDEST);
+        block(dispatcher.lane(StreamPriority.TELEMETRY));
+        for (int i = 0; i < 1_000; i++) {
+            dispatcher.lane(StreamPriority.TELEMETRY).execute(record("pose"));
+        }
+
+        dispatcher.lane(StreamPriority.SAFETY).execute(record("estop"));
+        awaitRan(1);
+        assertEquals(List.of("estop"), ran);
+    }
+
+    @Test
+    void fullLaneDropsOldest() throws InterruptedException {
+        Executor lane = dispatcher(2, OverflowPolicy.DROP_OLDEST).lane(StreamPriority.TELEMETRY);
+        block(lane);
+        lane.execute(record("a"));
+        lane.execute(record("b"));
+        lane.execute(record("c"));
+        assertEquals(1, dispatcher.getDroppedCount(StreamPriority.TELEMETRY));
+        assertEquals(2, dispatcher.getBacklog(StreamPriority.TELEMETRY));
+
+        release.countDown();
+        awaitRan(2);
+        assertEquals(List.of("b", "c"), ran);
+    }
+
+    @Test
+    void fullLaneDropsNewest() throws InterruptedException {
+        Executor lane = dispatcher(2, OverflowPolicy.DROP_NEWEST).lane(StreamPriority.TELEMETRY);
+        block(lane);
+        lane.execute(record("a"));
+        lane.execute(record("b"));
+        lane.execute(record("c"));
+        assertEquals(1, dispatcher.getDroppedCount(StreamPriority.TELEMETRY));
+
+        release.countDown();
+        awaitRan(2);
+        assertEquals(List.of("a", "b"), ran);
+    }
+
+    @Test
+    void unsheddableCallbacksAreNeverDropped() throws InterruptedException {
+        Executor lane = dispatcher(1, OverflowPolicy.DROP_OLDEST).lane(StreamPriority.TELEMETRY);
+        block(lane);
+        lane.execute(record("a"));
+        lane.execute(PriorityDispatcher.unsheddable(record("completed")));
+        lane.execute(record("b"));
+        assertEquals(1, dispatcher.getDroppedCount(StreamPriority.TELEMETRY));
+
+        release.countDown();
+        awaitRan(2);
+        assertEquals(List.of("completed", "b"), ran);
+        assertFalse(ran.contains("a"));
+    }
+}
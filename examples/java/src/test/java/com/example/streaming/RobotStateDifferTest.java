@@ -0,0 +1,108 @@
+package com.example.streaming;
+
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import bearrobotics.api.v1.core.PoseOuterClass.Pose;
+import bearrobotics.api.v1.core.RobotStatus.BatteryState;
+import bearrobotics.api.v1.core.RobotStatus.CartiState;
+import bearrobotics.api.v1.core.RobotStatus.RobotState;
+import bearrobotics.api.v1.core.RobotStatus.ServiState;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusResponse;
+
+class RobotStateDifferTest {
+    private final List<RobotStateDiff> diffs = new ArrayList<>();
+    private final RobotStateDiffer differ = new RobotStateDiffer(new StreamObserver<RobotStateDiff>() {
+        @Override
+        public void onNext(RobotStateDiff value) {
+            diffs.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    });
+
+    private void send(String robotId, RobotState state) {
+        differ.onNext(SubscribeRobotStatusResponse.newBuilder().setRobotId(robotId).setRobotState(state).build());
+    }
+
+    private static RobotState state(int charge, float x) {
+        return RobotState.newBuilder()
+                .setBattery(BatteryState.newBuilder().setChargePercent(charge).setState(BatteryState.State.STATE_DISCHARGING))
+                .setPose(Pose.newBuilder().setXMeters(x).setYMeters(1f))
+                .build();
+    }
+
+    @Test
+    void forwardsFirstStateInFullThenOnlyChanges() {
+        send("r1", state(50, 1f));
+        send("r1", state(50, 1f));
+        send("r1", state(50, 2f));
+
+        assertEquals(2, diffs.size());
+        assertTrue(diffs.get(0).isFull());
+        assertEquals(state(50, 1f), diffs.get(0).getChanges());
+        assertFalse(diffs.get(1).isFull());
+        assertEquals(List.of("pose.x_meters"), diffs.get(1).getChangedFields().getPathsList());
+        assertFalse(diffs.get(1).getChanges().hasBattery());
+        assertEquals(2, differ.getForwardedCount());
+        assertEquals(1, differ.getSuppressedCount());
+    }
+
+    @Test
+    void tracksEachRobotSeparately() {
+        send("r1", state(50, 1f));
+        send("r2", state(50, 1f));
+        send("r2", state(49, 1f));
+
+        assertEquals(3, diffs.size());
+        assertTrue(diffs.get(1).isFull());
+        assertEquals("r2", diffs.get(2).getRobotId());
+        assertEquals(List.of("battery.charge_percent"), diffs.get(2).getChangedFields().getPathsList());
+    }
+
+    @Test
+    void resetForwardsNextStateInFull() {
+        send("r1", state(50, 1f));
+        differ.reset();
+        send("r1", state(50, 1f));
+
+        assertEquals(2, diffs.size());
+        assertTrue(diffs.get(1).isFull());
+    }
+
+    @Test
+    void appliedDiffsReproduceEveryState() {
+        List<RobotState> states = List.of(
+                state(50, 1f),
+                state(49, 1f),
+                state(49, 1f).toBuilder().setServiState(ServiState.getDefaultInstance()).build(),
+                state(49, 1f).toBuilder().setCartiState(CartiState.getDefaultInstance()).build(),
+                state(80, 0f).toBuilder().setCartiState(CartiState.getDefaultInstance()).build(),
+                state(80, 0f).toBuilder().clearPose().build(),
+                RobotState.getDefaultInstance(),
+                state(10, 3f));
+        for (RobotState state : states) {
+            send("r1", state);
+        }
+
+        assertEquals(states.size(), diffs.size());
+        RobotState reconstructed = null;
+        for (int i = 0; i < states.size(); i++) {
+            reconstructed = diffs.get(i).applyTo(reconstructed);
+            assertEquals(states.get(i), reconstructed, "state " + i);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.streaming;
+
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SequenceTrackerTest {
+
+    @Test
+    void acceptsIncreasingAndDropsDuplicatesAndStale() {
+        SequenceTracker tracker = new SequenceTracker();
+
+        assertTrue(tracker.accept("r1", 5));
+        assertTrue(tracker.accept("r1", 6));
+        assertFalse(tracker.accept("r1", 6));
+        assertFalse(tracker.accept("r1", 4));
+        assertEquals(6, tracker.lastSequence("r1"));
+        assertTrue(tracker.accept("r2", 1));
+    }
+
+    @Test
+    void acceptsResetOnce() {
+        SequenceTracker tracker = new SequenceTracker();
+        tracker.accept("r1", 10);
+
+        assertTrue(tracker.isNewer("r1", 0));
+        assertTrue(tracker.accept("r1", 0));
+        assertFalse(tracker.isNewer("r1", 0));
+        assertFalse(tracker.accept("r1", 0));
+        assertTrue(tracker.accept("r1", 1));
+        assertTrue(tracker.accept("r1", 0));
+    }
+
+    @Test
+    void firstEventMayBeAReset() {
+        SequenceTracker tracker = new SequenceTracker();
+
+        assertEquals(-1, tracker.lastSequence("r1"));
+        assertTrue(tracker.accept("r1", 0));
+        assertFalse(tracker.accept("r1", 0));
+    }
+
+    @Test
+    void resetForgetsRobot() {
+        SequenceTracker tracker = new SequenceTracker();
+        tracker.accept("r1", 10);
+        tracker.reset("r1");
+
+        assertTrue(tracker.accept("r1", 3));
+    }
+
+    @Test
+    void sharedTrackerDeliversEachEventOnce() {
+        List<long[]> delivered = new ArrayList<>();
+        StreamObserver<long[]> sink = new StreamObserver<long[]>() {
+            @Override
+            public void onNext(long[] event) {
+                delivered.add(event);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        };
+        SequenceTracker tracker = new SequenceTracker();
+        DeduplicatingObserver<long[]> stream = new DeduplicatingObserver<>(sink, event -> "r" + event[0], event -> event[1], tracker);
+        DeduplicatingObserver<long[]> webhook = new DeduplicatingObserver<>(sink, event -> "r" + event[0], event -> event[1], tracker);
+
+        stream.onNext(new long[]{1, 7});
+        webhook.onNext(new long[]{1, 7});
+        stream.onNext(new long[]{1, 0});
+        webhook.onNext(new long[]{1, 0});
+        webhook.onNext(new long[]{1, 1});
+        stream.onNext(new long[]{1, 1});
+
+        assertEquals(3, delivered.size());
+        assertEquals(7, delivered.get(0)[1]);
+        assertEquals(0, delivered.get(1)[1]);
+        assertEquals(1, delivered.get(2)[1]);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.streaming;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StallDetectorTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void learnsThresholdFromEventGaps() {
+        StallDetector detector = new StallDetector(100, 10_000, TimeUnit.MILLISECONDS);
+        assertEquals(10_000 * MS, detector.getThresholdNanos());
+
+        long now = 0;
+        detector.reset(now);
+        for (int i = 0; i < 50; i++) {
+            now += 50 * MS;
+            detector.onEvent(now);
+        }
+        assertEquals(400 * MS, detector.getThresholdNanos(), MS);
+        assertFalse(detector.isStalled(now + 300 * MS));
+        assertTrue(detector.isStalled(now + 500 * MS));
+    }
+
+    @Test
+    void probeFailureBacksOffUntilNextEvent() {
+        StallDetector detector = new StallDetector(100, 1_000, TimeUnit.MILLISECONDS);
+        detector.reset(0);
+        detector.onEvent(100 * MS);
+        long threshold = detector.getThresholdNanos();
+
+        detector.probeFailed(200 * MS);
+        assertEquals(2 * threshold, detector.getThresholdNanos());
+        detector.onEvent(300 * MS);
+        assertTrue(detector.getThresholdNanos() < 2 * threshold);
+    }
+
+    @Test
+    void resetForgetsLearnedRateAndBackoff() {
+        StallDetector detector = new StallDetector(100, 1_000, TimeUnit.MILLISECONDS);
+        detector.reset(0);
+        detector.onEvent(100 * MS);
+        detector.probeFailed(200 * MS);
+
+        detector.reset(300 * MS);
+        assertEquals(1_000 * MS, detector.getThresholdNanos());
+        assertFalse(detector.isStalled(1_200 * MS));
+        assertTrue(detector.isStalled(1_400 * MS));
+    }
+}
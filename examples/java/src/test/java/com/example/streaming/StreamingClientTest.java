@@ -0,0 +1,138 @@
+package com.example.streaming;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import bearrobotics.api.v1.core.FleetSelector.RobotSelector;
+import bearrobotics.api.v1.services.cloud.APIServiceGrpc;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusRequest;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeRobotStatusResponse;
+
+class StreamingClientTest {
+    private final BlockingQueue<String> requests = new LinkedBlockingQueue<>();
+    private final BlockingQueue<StreamObserver<SubscribeRobotStatusResponse>> calls = new LinkedBlockingQueue<>();
+    private final BlockingQueue<SubscribeRobotStatusResponse> events = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Status> errors = new LinkedBlockingQueue<>();
+    private Server server;
+    private ManagedChannel channel;
+    private StreamingClient<SubscribeRobotStatusRequest, SubscribeRobotStatusResponse> client;
+
+    @BeforeEach
+    void start() throws Exception {
+        // Refuses the location "refused"; otherwise sends one event and keeps the call open
+        server = ServerBuilder.forPort(0)
+                .addService(new APIServiceGrpc.APIServiceImplBase() {
+                    @Override
+                    public void subscribeRobotStatus(SubscribeRobotStatusRequest request,
+                                                     StreamObserver<SubscribeRobotStatusResponse> responseObserver) {
+                        String location = request.getSelector().getLocationId();
+                        requests.add(location);
+                        if ("refused".equals(location)) {
+                            responseObserver.onError(Status.INVALID_ARGUMENT.asRuntimeException());
+                            return;
+                        }
+                        calls.add(responseObserver);
+                        responseObserver.onNext(SubscribeRobotStatusResponse.newBuilder().setRobotId(location).build());
+                    }
+                })
+                .build()
+                .start();
+        channel = ManagedChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+        APIServiceGrpc.APIServiceStub stub = APIServiceGrpc.newStub(channel);
+
+        client = new StreamingClient.Builder<SubscribeRobotStatusRequest, SubscribeRobotStatusResponse>()
+                .rpcMethod(stub::subscribeRobotStatus)
+                .request(request("loc-a"))
+                .reconnectDelay(0)
+                .observer(new StreamObserver<SubscribeRobotStatusResponse>() {
+                    @Override
+                    public void onNext(SubscribeRobotStatusResponse value) {
+                        events.add(value);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        errors.add(Status.fromThrowable(t));
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                })
+                .build();
+        Thread thread = new Thread(() -> {
+            try {
+                client.startStreaming();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        client.stop();
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static SubscribeRobotStatusRequest request(String locationId) {
+        return SubscribeRobotStatusRequest.newBuilder()
+                .setSelector(RobotSelector.newBuilder().setLocationId(locationId))
+                .build();
+    }
+
+    private static <T> T next(BlockingQueue<T> queue) throws InterruptedException {
+        T value = queue.poll(5, TimeUnit.SECONDS);
+        assertNotNull(value);
+        return value;
+    }
+
+    @Test
+    void refusedRequestIsReportedAndNotUsedForReconnects() throws Exception {
+        assertEquals("loc-a", next(requests));
+        assertEquals("loc-a", next(events).getRobotId());
+
+        client.updateRequest(request("refused"));
+        assertEquals("refused", next(requests));
+        assertEquals(Status.Code.INVALID_ARGUMENT, next(errors).getCode());
+
+        // The current call fails; the subscription reconnects with the request it still serves
+        next(calls).onError(Status.UNAVAILABLE.asRuntimeException());
+        assertEquals(Status.Code.UNAVAILABLE, next(errors).getCode());
+        assertEquals("loc-a", next(requests));
+        assertEquals("loc-a", next(events).getRobotId());
+    }
+
+    @Test
+    void acceptedRequestIsUsedOnceLive() throws Exception {
+        assertEquals("loc-a", next(requests));
+        next(events);
+
+        client.updateRequest(request("loc-b"));
+        assertEquals("loc-b", next(requests));
+        assertEquals("loc-b", next(events).getRobotId());
+
+        // The replaced call is cancelled; a failure of the new call reconnects with the new request
+        next(calls);
+        next(calls).onError(Status.UNAVAILABLE.asRuntimeException());
+        assertEquals("loc-b", next(requests));
+        assertEquals("loc-b", next(events).getRobotId());
+    }
+}
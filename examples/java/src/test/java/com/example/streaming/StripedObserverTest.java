@@ -0,0 +1,155 @@
+package com.example.streaming;
+
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StripedObserverTest {
+
+    /**
+     * Records events, keyed by the robot ID before the colon, and signals completion.
+     */
+    private static class Recorder implements StreamObserver<String> {
+        final Map<String, List<String>> byRobot = new ConcurrentHashMap<>();
+        final List<String> all = new CopyOnWriteArrayList<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void onNext(String event) {
+            byRobot.computeIfAbsent(robot(event), k -> new CopyOnWriteArrayList<>()).add(event);
+            all.add(event);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+            completed.countDown();
+        }
+    }
+
+    private static String robot(String event) {
+        return event.substring(0, event.indexOf(':'));
+    }
+
+    @Test
+    void keepsPerRobotOrderAndCompletesAfterEvents() throws InterruptedException {
+        Recorder recorder = new Recorder();
+        StripedObserver<String> observer = new StripedObserver<>(recorder, StripedObserver.byRobotId(StripedObserverTest::robot), 4, 1_000);
+
+        for (int i = 0; i < 100; i++) {
+            for (int robot = 0; robot < 8; robot++) {
+                observer.onNext("r" + robot + ":" + i);
+            }
+        }
+        observer.onCompleted();
+
+        assertTrue(recorder.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(800, recorder.all.size());
+        for (int robot = 0; robot < 8; robot++) {
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                expected.add("r" + robot + ":" + i);
+            }
+            assertEquals(expected, recorder.byRobot.get("r" + robot));
+        }
+        observer.shutdown();
+    }
+
+    @Test
+    void dropsInsteadOfBlockingWhenFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Recorder recorder = new Recorder() {
+            @Override
+            public void onNext(String event) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onNext(event);
+            }
+        };
+        StripedObserver<String> observer = new StripedObserver<>(recorder, StripedObserver.byRobotId(StripedObserverTest::robot), 1, 2);
+
+        observer.onNext("r1:1");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        observer.onNext("r1:2");
+        observer.onNext("r1:3");
+        observer.onNext("r1:4");
+        observer.onCompleted();
+        assertEquals(1, observer.getDroppedCount());
+
+        release.countDown();
+        assertTrue(recorder.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("r1:1", "r1:2", "r1:3"), recorder.all);
+        observer.shutdown();
+    }
+
+    @Test
+    void dropsOldestWhenConfigured() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Recorder recorder = new Recorder() {
+            @Override
+            public void onNext(String event) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onNext(event);
+            }
+        };
+        StripedObserver<String> observer = new StripedObserver<>(recorder, StripedObserver.byRobotId(StripedObserverTest::robot), 1, 2,
+                OverflowPolicy.DROP_OLDEST);
+
+        observer.onNext("r1:1");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        observer.onNext("r1:2");
+        observer.onNext("r1:3");
+        observer.onCompleted();
+        observer.onNext("r1:4");
+        observer.onNext("r1:5");
+        assertEquals(2, observer.getDroppedCount());
+
+        // The completion signal is never dropped; the newest events are kept
+        release.countDown();
+        assertTrue(recorder.completed.await(5, TimeUnit.SECONDS));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (recorder.all.size() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of("r1:1", "r1:4", "r1:5"), recorder.all);
+        observer.shutdown();
+    }
+
+    @Test
+    void discardsEventsAfterShutdown() throws InterruptedException {
+        Recorder recorder = new Recorder();
+        StripedObserver<String> observer = new StripedObserver<>(recorder, StripedObserver.byRobotId(StripedObserverTest::robot), 2, 10);
+        observer.shutdown();
+
+        observer.onNext("r1:1");
+        observer.onCompleted();
+
+        assertFalse(recorder.completed.await(200, TimeUnit.MILLISECONDS));
+        assertTrue(recorder.all.isEmpty());
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.unary;
+
+import io.grpc.Status;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import bearrobotics.api.v1.core.RobotStatus.RobotConnection;
+
+class CircuitBreakerRegistryTest {
+
+    private static CircuitBreakerRegistry registry(CircuitBreakerRegistry.OfflinePolicy policy, long parkTimeoutMs) {
+        return new CircuitBreakerRegistry.Builder()
+                .failureThreshold(2, 4)
+                .openDuration(50)
+                .offlinePolicy(policy)
+                .parkTimeout(parkTimeoutMs)
+                .build();
+    }
+
+    private static Status.Code codeOf(CompletableFuture<?> future) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        return Status.fromThrowable(e.getCause()).getCode();
+    }
+
+    @Test
+    void offlineRobotFailsFast() {
+        CircuitBreakerRegistry breakers = registry(CircuitBreakerRegistry.OfflinePolicy.FAIL_FAST, 1000);
+        breakers.onConnectionState("r1", RobotConnection.State.STATE_DISCONNECTED);
+
+        assertEquals(CircuitBreakerRegistry.State.OPEN, breakers.getState("r1"));
+        assertEquals(Status.Code.UNAVAILABLE, codeOf(breakers.acquire("r1")));
+        assertFalse(breakers.allowsRetry("r1"));
+        assertTrue(breakers.acquire("r2").isDone());
+    }
+
+    @Test
+    void halfOpenBreakerAdmitsOneProbe() throws Exception {
+        CircuitBreakerRegistry breakers = registry(CircuitBreakerRegistry.OfflinePolicy.FAIL_FAST, 1000);
+        breakers.onConnectionState("r1", RobotConnection.State.STATE_DISCONNECTED);
+        breakers.onConnectionState("r1", RobotConnection.State.STATE_CONNECTED);
+        assertEquals(CircuitBreakerRegistry.State.HALF_OPEN, breakers.getState("r1"));
+
+        breakers.acquire("r1").get(5, TimeUnit.SECONDS);
+        assertEquals(Status.Code.UNAVAILABLE, codeOf(breakers.acquire("r1")));
+
+        breakers.record("r1", null);
+        assertEquals(CircuitBreakerRegistry.State.CLOSED, breakers.getState("r1"));
+        breakers.acquire("r1").get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void failedCallsOpenThenProbeAfterCoolDown() throws Exception {
+        CircuitBreakerRegistry breakers = registry(CircuitBreakerRegistry.OfflinePolicy.FAIL_FAST, 1000);
+        breakers.record("r1", null);
+        breakers.acquire("r1");
+        breakers.record("r1", Status.UNAVAILABLE.asRuntimeException());
+        breakers.record("r1", Status.NOT_FOUND.asRuntimeException());
+        assertEquals(CircuitBreakerRegistry.State.CLOSED, breakers.getState("r1"));
+        breakers.record("r1", Status.DEADLINE_EXCEEDED.asRuntimeException());
+        assertEquals(CircuitBreakerRegistry.State.OPEN, breakers.getState("r1"));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (breakers.getState("r1") == CircuitBreakerRegistry.State.OPEN && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(CircuitBreakerRegistry.State.HALF_OPEN, breakers.getState("r1"));
+
+        // A failed probe opens the breaker again
+        breakers.acquire("r1").get(5, TimeUnit.SECONDS);
+        breakers.record("r1", Status.UNAVAILABLE.asRuntimeException());
+        assertEquals(CircuitBreakerRegistry.State.OPEN, breakers.getState("r1"));
+    }
+
+    @Test
+    void parkedCallsAreReleasedWhenProbeSucceeds() throws Exception {
+        CircuitBreakerRegistry breakers = registry(CircuitBreakerRegistry.OfflinePolicy.PARK, 5000);
+        breakers.onConnectionState("r1", RobotConnection.State.STATE_DISCONNECTED);
+        CompletableFuture<Void> first = breakers.acquire("r1");
+        CompletableFuture<Void> second = breakers.acquire("r1");
+        assertFalse(first.isDone());
+
+        breakers.onConnectionState("r1", RobotConnection.State.STATE_CONNECTED);
+        first.get(5, TimeUnit.SECONDS);
+        assertFalse(second.isDone());
+
+        breakers.record("r1", null);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(CircuitBreakerRegistry.State.CLOSED, breakers.getState("r1"));
+    }
+
+    @Test
+    void parkedCallTimesOut() {
+        CircuitBreakerRegistry breakers = registry(CircuitBreakerRegistry.OfflinePolicy.PARK, 50);
+        breakers.onConnectionState("r1", RobotConnection.State.STATE_DISCONNECTED);
+
+        assertEquals(Status.Code.UNAVAILABLE, codeOf(breakers.acquire("r1")));
+        assertTrue(breakers.allowsRetry("r1"));
+    }
+
+    @Test
+    void retryAfterParkTimeoutDoesNotDeadlock() {
+        // Each attempt times out while parked, and is retried from the timeout's continuation
+        CircuitBreakerRegistry breakers = registry(CircuitBreakerRegistry.OfflinePolicy.PARK, 50);
+        breakers.onConnectionState("r1", RobotConnection.State.STATE_DISCONNECTED);
+        AtomicInteger calls = new AtomicInteger();
+        UnaryClient<String, String> client = new UnaryClient.Builder<String, String>()
+                .rpcMethod(request -> {
+                    calls.incrementAndGet();
+                    return request;
+                })
+                .request("r")
+                .maxRetries(2)
+                .retryDelay(1)
+                .circuitBreakers(breakers)
+                .robotId("r1")
+                .build();
+
+        assertEquals(Status.Code.UNAVAILABLE, codeOf(client.call()));
+        assertEquals(0, calls.get());
+    }
+}
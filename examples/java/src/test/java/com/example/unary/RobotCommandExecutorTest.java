@@ -0,0 +1,71 @@
+package com.example.unary;
+
+import com.google.common.util.concurrent.SettableFuture;
+import io.grpc.Status;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import bearrobotics.api.v1.core.RobotStatus.RobotConnection;
+
+class RobotCommandExecutorTest {
+
+    @Test
+    void commandsWaitForParkedRobotInOrder() throws Exception {
+        CircuitBreakerRegistry breakers = new CircuitBreakerRegistry.Builder()
+                .offlinePolicy(CircuitBreakerRegistry.OfflinePolicy.PARK)
+                .build();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder().build();
+        RobotCommandExecutor executor = new RobotCommandExecutor(2, null, limiter, breakers, 5000);
+        List<String> sent = new CopyOnWriteArrayList<>();
+        AsyncUnaryRpcMethod<String, String> command = request -> {
+            sent.add(request);
+            SettableFuture<String> ack = SettableFuture.create();
+            ack.set(request);
+            return ack;
+        };
+
+        breakers.onConnectionState("r1", RobotConnection.State.STATE_DISCONNECTED);
+        CompletableFuture<String> first = executor.submit("r1", command, "a");
+        CompletableFuture<String> second = executor.submit("r1", command, "b");
+        assertTrue(sent.isEmpty());
+
+        // The first command is the probe; once it succeeds the second follows
+        breakers.onConnectionState("r1", RobotConnection.State.STATE_CONNECTED);
+        assertEquals("a", first.get(5, TimeUnit.SECONDS));
+        assertEquals("b", second.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("a", "b"), sent);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void openBreakerFailsCommandsWithoutSending() throws Exception {
+        CircuitBreakerRegistry breakers = new CircuitBreakerRegistry.Builder().build();
+        RobotCommandExecutor executor = new RobotCommandExecutor(1, null, null, breakers, 5000);
+        List<String> sent = new CopyOnWriteArrayList<>();
+        AsyncUnaryRpcMethod<String, String> command = request -> {
+            sent.add(request);
+            SettableFuture<String> ack = SettableFuture.create();
+            ack.set(request);
+            return ack;
+        };
+
+        breakers.onConnectionState("r1", RobotConnection.State.STATE_DISCONNECTED);
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> executor.submit("r1", command, "a").get(5, TimeUnit.SECONDS));
+        assertEquals(Status.Code.UNAVAILABLE, Status.fromThrowable(e.getCause()).getCode());
+
+        // The failed command does not hold back the robot's queue
+        breakers.onConnectionState("r1", RobotConnection.State.STATE_CONNECTED);
+        assertEquals("b", executor.submit("r1", command, "b").get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("b"), sent);
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.unary;
+
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UnaryClientTest {
+
+    @Test
+    void limitedCallsRunConcurrentlyOnLimiterThreads() throws Exception {
+        int calls = 8;
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+                .initialLimit(calls)
+                .maxLimit(calls)
+                .build();
+        CountDownLatch allRunning = new CountDownLatch(calls);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        UnaryRpcMethod<String, String> blocking = request -> {
+            threads.add(Thread.currentThread().getName());
+            allRunning.countDown();
+            // Only returns once every call is in flight at the same time
+            if (!allRunning.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("calls did not run concurrently");
+            }
+            return request;
+        };
+
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < calls; i++) {
+            results.add(new UnaryClient.Builder<String, String>()
+                    .rpcMethod(blocking)
+                    .request("r" + i)
+                    .maxRetries(0)
+                    .limiter(limiter)
+                    .build()
+                    .call());
+        }
+
+        for (int i = 0; i < calls; i++) {
+            assertEquals("r" + i, results.get(i).get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(calls, threads.size());
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("ConcurrencyLimiter-Call-")));
+    }
+
+    @Test
+    void limitersCanShareCallExecutor() throws Exception {
+        ExecutorService shared = Executors.newCachedThreadPool(runnable -> new Thread(runnable, "Shared-Call"));
+        try {
+            Set<String> threads = ConcurrentHashMap.newKeySet();
+            for (int i = 0; i < 2; i++) {
+                ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder().callExecutor(shared).build();
+                new UnaryClient.Builder<String, String>()
+                        .rpcMethod(request -> {
+                            threads.add(Thread.currentThread().getName());
+                            return request;
+                        })
+                        .request("r")
+                        .limiter(limiter)
+                        .build()
+                        .call()
+                        .get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(Set.of("Shared-Call"), threads);
+        } finally {
+            shared.shutdown();
+        }
+    }
+
+    @Test
+    void retriesDoNotHoldLimiterThreads() throws Exception {
+        // Every limiter thread is busy with a call that fails once; the retries need those threads
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+                .initialLimit(2)
+                .maxLimit(2)
+                .build();
+        Set<String> failedOnce = ConcurrentHashMap.newKeySet();
+        CountDownLatch bothFailing = new CountDownLatch(2);
+        UnaryRpcMethod<String, String> flaky = request -> {
+            if (failedOnce.add(request)) {
+                bothFailing.countDown();
+                bothFailing.await(5, TimeUnit.SECONDS);
+                throw Status.UNAVAILABLE.asRuntimeException();
+            }
+            return request;
+        };
+
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            results.add(new UnaryClient.Builder<String, String>()
+                    .rpcMethod(flaky)
+                    .request("r" + i)
+                    .retryDelay(1)
+                    .limiter(limiter)
+                    .build()
+                    .call());
+        }
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals("r" + i, results.get(i).get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private static UnaryClient<String, String> failing(Status status, AtomicInteger attempts, boolean idempotent) {
+        return new UnaryClient.Builder<String, String>()
+                .rpcMethod(request -> {
+                    attempts.incrementAndGet();
+                    throw status.asRuntimeException();
+                })
+                .request("r")
+                .maxRetries(2)
+                .retryDelay(1)
+                .idempotent(idempotent)
+                .build();
+    }
+
+    @Test
+    void nonIdempotentCallIsNotRetriedAfterDeadline() {
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(Exception.class, failing(Status.DEADLINE_EXCEEDED, attempts, false)::callBlocking);
+        assertEquals(1, attempts.get());
+
+        attempts.set(0);
+        assertThrows(Exception.class, failing(Status.UNAVAILABLE, attempts, false)::callBlocking);
+        assertEquals(3, attempts.get());
+
+        attempts.set(0);
+        assertThrows(Exception.class, failing(Status.DEADLINE_EXCEEDED, attempts, true)::callBlocking);
+        assertEquals(3, attempts.get());
+    }
+
+    private static Deadline deadlineOf(UnaryClient.Builder<String, String> builder) throws Exception {
+        AtomicReference<Deadline> deadline = new AtomicReference<>();
+        builder.rpcMethod(request -> {
+                    deadline.set(Context.current().getDeadline());
+                    return request;
+                })
+                .request("r")
+                .build()
+                .callBlocking();
+        return deadline.get();
+    }
+
+    @Test
+    void attemptsHaveDefaultDeadlineUnlessDisabled() throws Exception {
+        Deadline byDefault = deadlineOf(new UnaryClient.Builder<>());
+        assertNotNull(byDefault);
+        assertTrue(byDefault.timeRemaining(TimeUnit.SECONDS) <= 30);
+
+        assertTrue(deadlineOf(new UnaryClient.Builder<String, String>().deadline(50))
+                .timeRemaining(TimeUnit.MILLISECONDS) <= 50);
+        assertNull(deadlineOf(new UnaryClient.Builder<String, String>().deadline(0)));
+        assertThrows(IllegalArgumentException.class, new UnaryClient.Builder<String, String>()
+                .rpcMethod(request -> request)
+                .request("r")
+                .deadline(-1)::build);
+    }
+
+    @Test
+    void adaptiveDeadlinesRequireRpcName() {
+        UnaryClient.Builder<String, String> builder = new UnaryClient.Builder<String, String>()
+                .rpcMethod(request -> request)
+                .request("r")
+                .deadlines(new AdaptiveDeadlines.Builder().build());
+
+        assertThrows(IllegalArgumentException.class, builder::build);
+        builder.rpcName("GetRobotStatus").build();
+        assertThrows(IllegalArgumentException.class, builder.hedged(true).idempotent(false)::build);
+    }
+}
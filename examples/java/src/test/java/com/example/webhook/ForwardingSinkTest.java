@@ -0,0 +1,114 @@
+package com.example.webhook;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.Message;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import bearrobotics.api.v1.core.MissionStatus.MissionState;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeBatteryStatusResponse;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeMissionStatusResponse;
+
+class ForwardingSinkTest {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final BlockingQueue<String> bodies = new LinkedBlockingQueue<>();
+    private HttpServer server;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/events", exchange -> {
+            try (exchange; InputStream body = exchange.getRequestBody()) {
+                bodies.add(new String(body.readAllBytes(), "UTF-8"));
+                exchange.sendResponseHeaders(204, -1);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    private ForwardingSink<Message> sink(int maxBatchSize, long lingerMs) {
+        RequestTemplate template = RequestTemplate.compile(
+                "{\"robot\": \"{{robot_id}}\", \"mission\": \"{{state.current_mission.mission_id}}\"}",
+                SubscribeMissionStatusResponse.getDefaultInstance());
+        return new ForwardingSink.Builder<Message>()
+                .url("http://localhost:" + server.getAddress().getPort() + "/events")
+                .template(template)
+                .maxBatchSize(maxBatchSize)
+                .linger(lingerMs)
+                .build();
+    }
+
+    private static SubscribeMissionStatusResponse mission(String robotId, String missionId) {
+        return SubscribeMissionStatusResponse.newBuilder()
+                .setRobotId(robotId)
+                .setMissionState(MissionState.newBuilder().setMissionId(missionId))
+                .build();
+    }
+
+    @Test
+    void failedRenderDoesNotCorruptBatch() throws Exception {
+        // Linger long enough that only the batch size triggers a send
+        ForwardingSink<Message> sink = sink(3, 60_000);
+
+        sink.onNext(mission("r1", "m1"));
+        // Rendered against the wrong message type, the template fails after starting the object
+        sink.onNext(SubscribeBatteryStatusResponse.newBuilder().setRobotId("r2").build());
+        sink.onNext(mission("r3", "m3"));
+        sink.onNext(mission("r4", "m4"));
+
+        String body = bodies.poll(5, TimeUnit.SECONDS);
+        assertNotNull(body);
+        JsonNode batch = objectMapper.readTree(body);
+        assertEquals(3, batch.size());
+        assertEquals("r1", batch.get(0).get("robot").asText());
+        assertEquals("m3", batch.get(1).get("mission").asText());
+        assertEquals("r4", batch.get(2).get("robot").asText());
+        assertEquals(1, sink.getDroppedCount());
+        sink.shutdown();
+        assertEquals(3, sink.getForwardedCount());
+    }
+
+    @Test
+    void lingerSendsPartialBatchAsSingleObject() throws Exception {
+        ForwardingSink<Message> sink = sink(1, 20);
+
+        sink.onNext(mission("r1", "m1"));
+
+        JsonNode event = objectMapper.readTree(bodies.poll(5, TimeUnit.SECONDS));
+        assertEquals("m1", event.get("mission").asText());
+        sink.shutdown();
+    }
+
+    @Test
+    void shutdownFlushesAndDropsLaterEvents() throws Exception {
+        ForwardingSink<Message> sink = sink(100, 60_000);
+
+        sink.onNext(mission("r1", "m1"));
+        sink.shutdown();
+        sink.onNext(mission("r2", "m2"));
+        sink.flush();
+
+        assertEquals(1, objectMapper.readTree(bodies.poll(5, TimeUnit.SECONDS)).size());
+        assertNull(bodies.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, sink.getDroppedCount());
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.webhook;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import bearrobotics.api.v1.core.Errors.ErrorCode;
+import bearrobotics.api.v1.core.Errors.ErrorCodes;
+import bearrobotics.api.v1.core.Metadata.EventMetadata;
+import bearrobotics.api.v1.core.MissionStatus.MissionState;
+import bearrobotics.api.v1.core.RobotStatus.BatteryState;
+import bearrobotics.api.v1.core.RobotStatus.RobotState;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeBatteryStatusResponse;
+
+class ProtoJsonWriterTest {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static String write(ProtoJsonWriter writer, Message message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(message, out);
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    void writesWebhookFormat() throws IOException {
+        SubscribeBatteryStatusResponse response = SubscribeBatteryStatusResponse.newBuilder()
+                .setRobotId("pennybot-abc123")
+                .setMetadata(EventMetadata.newBuilder()
+                        .setTimestamp(Timestamp.newBuilder().setSeconds(1743528000))
+                        .setSequenceNumber(87))
+                .setBatteryState(BatteryState.newBuilder()
+                        .setChargePercent(85)
+                        .setState(BatteryState.State.STATE_CHARGING))
+                .build();
+
+        JsonNode json = objectMapper.readTree(write(ProtoJsonWriter.forType(response), response));
+
+        assertEquals("2025-04-01T17:20:00Z", json.get("metadata").get("timestamp").asText());
+        assertEquals(87, json.get("metadata").get("sequence_number").asLong());
+        assertEquals(85, json.get("battery_state").get("charge_percent").asInt());
+        assertEquals("STATE_CHARGING", json.get("battery_state").get("state").asText());
+        // Scalars are written with their default, enums by name
+        assertEquals("CHARGE_METHOD_UNKNOWN", json.get("battery_state").get("charge_method").asText());
+    }
+
+    @Test
+    void writesUnsetMessagesAsNullAndOmitsUnsetOneofs() throws IOException {
+        RobotState state = RobotState.newBuilder()
+                .setMission(MissionState.newBuilder().setMissionId("m1"))
+                .build();
+
+        JsonNode json = objectMapper.readTree(write(ProtoJsonWriter.forType(state), state));
+
+        assertEquals("m1", json.get("mission").get("mission_id").asText());
+        assertTrue(json.get("battery").isNull());
+        assertFalse(json.has("servi_state"));
+        assertFalse(json.has("carti_state"));
+    }
+
+    @Test
+    void concurrentFirstUseOfATypeSeesCompletePlans() throws Exception {
+        // Nothing else in the tests writes ErrorCodes, so its plans are built by these threads
+        ErrorCodes message = ErrorCodes.newBuilder()
+                .addCodes(ErrorCode.newBuilder().setCode(42).setMessage("stuck"))
+                .build();
+        int threads = 16;
+        CyclicBarrier start = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return write(ProtoJsonWriter.forType(message), message);
+                }));
+            }
+            String expected = results.get(0).get();
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+            assertEquals(42, objectMapper.readTree(expected).get("codes").get(0).get("code").asInt());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.webhook;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import bearrobotics.api.v1.core.MissionStatus.MissionState;
+import bearrobotics.api.v1.core.MissionStatus.MissionStates;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeMissionStatusResponse;
+
+class RequestTemplateTest {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static JsonNode render(RequestTemplate template, SubscribeMissionStatusResponse response) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            template.render(response, generator);
+        }
+        return objectMapper.readTree(out.toString());
+    }
+
+    @Test
+    void rendersWebhookPlaceholders() throws IOException {
+        RequestTemplate template = RequestTemplate.compile("{\"robot\": \"{{robot_id}}\","
+                + " \"mission\": \"{{state.current_mission.mission_id}}\","
+                + " \"outcome\": \"Mission {{state.current_mission.state}}\","
+                + " \"first\": \"{{state.missions.0.mission_id}}\","
+                + " \"index\": \"{{state.current_mission_index}}\","
+                + " \"tags\": [\"static\", 3, true]}", SubscribeMissionStatusResponse.getDefaultInstance());
+        MissionState mission = MissionState.newBuilder().setMissionId("m1").setState(MissionState.State.STATE_FAILED).build();
+        SubscribeMissionStatusResponse response = SubscribeMissionStatusResponse.newBuilder()
+                .setRobotId("pennybot-abc123")
+                .setMissionState(mission)
+                .setMissionStates(MissionStates.newBuilder().addMissions(mission).setCurrentMissionIndex(0))
+                .build();
+
+        JsonNode rendered = render(template, response);
+
+        assertEquals("pennybot-abc123", rendered.get("robot").asText());
+        assertEquals("m1", rendered.get("mission").asText());
+        assertEquals("Mission STATE_FAILED", rendered.get("outcome").asText());
+        assertEquals("m1", rendered.get("first").asText());
+        assertEquals("0", rendered.get("index").asText());
+        assertEquals(3, rendered.get("tags").get(1).asInt());
+        assertEquals(true, rendered.get("tags").get(2).asBoolean());
+    }
+
+    @Test
+    void unsetMessageRendersEmpty() throws IOException {
+        RequestTemplate template = RequestTemplate.compile("{\"mission\": \"{{state.current_mission.mission_id}}\"}",
+                SubscribeMissionStatusResponse.getDefaultInstance());
+
+        assertEquals("", render(template, SubscribeMissionStatusResponse.getDefaultInstance()).get("mission").asText());
+    }
+
+    @Test
+    void rejectsInvalidTemplates() {
+        SubscribeMissionStatusResponse prototype = SubscribeMissionStatusResponse.getDefaultInstance();
+
+        assertThrows(IllegalArgumentException.class, () -> RequestTemplate.compile("[1]", prototype));
+        assertThrows(IllegalArgumentException.class, () -> RequestTemplate.compile("{", prototype));
+        assertThrows(IllegalArgumentException.class,
+                () -> RequestTemplate.compile("{\"x\": \"{{state.no_such_field}}\"}", prototype));
+        assertThrows(IllegalArgumentException.class,
+                () -> RequestTemplate.compile("{\"x\": \"{{state.current_mission}}\"}", prototype));
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.webhook;
+
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import bearrobotics.api.v1.core.MissionStatus.MissionState;
+import bearrobotics.api.v1.services.cloud.ApiService.SubscribeMissionStatusResponse;
+
+class WebhookReceiverTest {
+    private static final String MISSION_BODY = "{\"robot_id\": \"pennybot-abc123\", \"state\": {"
+            + "\"metadata\": {\"timestamp\": \"2025-04-01T17:20:00Z\", \"sequence_number\": 42},"
+            + "\"missions\": [{\"mission_id\": \"m1\", \"state\": \"STATE_SUCCEEDED\"}],"
+            + "\"current_mission_index\": 0,"
+            + "\"current_mission\": {\"mission_id\": \"m1\", \"state\": \"STATE_SUCCEEDED\"},"
+            + "\"current_goal\": null}}";
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final BlockingQueue<SubscribeMissionStatusResponse> received = new LinkedBlockingQueue<>();
+    private WebhookReceiver receiver;
+
+    @BeforeEach
+    void start() throws Exception {
+        receiver = new WebhookReceiver.Builder().port(0).sharedSecret("X-Secret", "s3cret").build();
+        receiver.onMissionEvents("/mission", collect(received));
+        receiver.route("/broken", body -> {
+            throw new IllegalArgumentException("Illegal base64 character");
+        }, collect(new LinkedBlockingQueue<>()));
+        receiver.start();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        receiver.shutdown();
+    }
+
+    @Test
+    void deliversParsedMissionEvent() throws Exception {
+        assertEquals(204, post("/mission", MISSION_BODY, "s3cret"));
+
+        // 204 is sent before the observer runs
+        SubscribeMissionStatusResponse response = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(response);
+        assertEquals("pennybot-abc123", response.getRobotId());
+        assertEquals(42, response.getMetadata().getSequenceNumber());
+        assertEquals(MissionState.State.STATE_SUCCEEDED, response.getMissionState().getState());
+        assertEquals("m1", response.getMissionStates().getMissions(0).getMissionId());
+        assertEquals(1, receiver.getDeliveredCount());
+    }
+
+    @Test
+    void rejectsWrongSecretAndMethod() throws Exception {
+        assertEquals(401, post("/mission", MISSION_BODY, "wrong"));
+        HttpResponse<Void> get = http.send(HttpRequest.newBuilder(uri("/mission")).GET().build(),
+                HttpResponse.BodyHandlers.discarding());
+        assertEquals(405, get.statusCode());
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void answersBadRequestForUndecodableBodies() throws Exception {
+        assertEquals(400, post("/mission", "[1, 2]", "s3cret"));
+        assertEquals(400, post("/mission", "{\"state\": {\"metadata\": {\"sequence_number\": \"x\"}}}", "s3cret"));
+        assertEquals(400, post("/broken", MISSION_BODY, "s3cret"));
+        assertEquals(400, post("/mission", "{\"state\": {\"missions\": {}}}", "s3cret"));
+        assertEquals(400, post("/mission", "{\"state\": {\"missions\": 3}}", "s3cret"));
+        assertEquals(5, receiver.getRejectedCount());
+        assertEquals(0, receiver.getDeliveredCount());
+    }
+
+    @Test
+    void answersBeforeObserverFinishes() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        receiver.onMissionEvents("/slow", new StreamObserver<SubscribeMissionStatusResponse>() {
+            @Override
+            public void onNext(SubscribeMissionStatusResponse value) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        });
+
+        assertEquals(204, post("/slow", MISSION_BODY, "s3cret"));
+        release.countDown();
+    }
+
+    private int post(String path, String body, String secret) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri(path))
+                .header("X-Secret", secret)
+                .timeout(Duration.ofSeconds(2))
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                .build();
+        return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + receiver.getPort() + path);
+    }
+
+    private static <T> StreamObserver<T> collect(Collection<T> events) {
+        return new StreamObserver<T>() {
+            @Override
+            public void onNext(T value) {
+                events.add(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        };
+    }
+}